@@ -3,6 +3,7 @@ import org.gradle.jvm.tasks.Jar
 plugins {
     application
     id("org.openjfx.javafxplugin") version "0.1.0"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 repositories {
@@ -27,17 +28,67 @@ dependencies {
 
     // Тесты
     testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
+
+    // Гистограммы задержек нагрузочных генераторов (src/jmh)
+    jmh("org.hdrhistogram:HdrHistogram:2.2.2")
 }
 
 tasks.test {
     useJUnitPlatform()
 }
 
+// Бенчмарки (src/jmh): ./gradlew jmh -Pjmh.includes=<имя класса> [-Pjmh.profilers=gc]
+jmh {
+    jmhVersion.set("1.37")
+    includes.addAll(providers.gradleProperty("jmh.includes").map { listOf(it) }.orElse(emptyList()))
+    profilers.addAll(providers.gradleProperty("jmh.profilers").map { it.split(",") }.orElse(emptyList()))
+}
+
 application {
 
     mainClass.set("com.example.phonebook.Launcher")
 }
 
+// Постоянная запись JFR с событиями справочника: ./gradlew run -Pjfr
+tasks.named<JavaExec>("run") {
+    if (providers.gradleProperty("jfr").isPresent) {
+        val settings = file("jfr/phonebook.jfc")
+        val output = layout.buildDirectory.dir("jfr").get().asFile
+        doFirst { output.mkdirs() }
+        jvmArgs(
+            "-XX:StartFlightRecording=settings=default,settings=$settings," +
+                    "disk=true,maxage=6h,dumponexit=true,filename=$output/"
+        )
+    }
+}
+
+// Перцентили длительности операций по записи: ./gradlew jfrReport -Pjfr.file=<запись .jfr>
+tasks.register<JavaExec>("jfrReport") {
+    group = "application"
+    description = "Печатает перцентили длительности операций справочника по записи JFR"
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("com.example.phonebook.diagnostics.JfrLatencyReport")
+    args(listOfNotNull(providers.gradleProperty("jfr.file").orNull))
+}
+
+// Нагрузка на сервер определения номера: ./gradlew lookupLoad [-Pload.args="--connections=8 --pipeline=32"]
+tasks.register<JavaExec>("lookupLoad") {
+    group = "application"
+    description = "Нагружает сервер определения номера и печатает перцентили задержки"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("com.example.phonebook.bench.LookupLoadGenerator")
+    args(providers.gradleProperty("load.args").map { it.split(" ").filter(String::isNotBlank) }.orElse(emptyList()).get())
+}
+
+// Смешанная нагрузка на справочник: ./gradlew workload [-Pworkload.args="--rate=5000 --report=build/workload.txt"]
+tasks.register<JavaExec>("workload") {
+    group = "application"
+    description = "Имитирует смешанную нагрузку на справочник и печатает перцентили задержки по операциям"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("com.example.phonebook.bench.WorkloadSimulator")
+    args(providers.gradleProperty("workload.args").map { it.split(" ").filter(String::isNotBlank) }.orElse(emptyList()).get())
+}
+
 
 tasks.jar {
     manifest {
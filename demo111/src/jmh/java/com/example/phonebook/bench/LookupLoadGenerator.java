@@ -0,0 +1,169 @@
+package com.example.phonebook.bench;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.model.PhoneNumber;
+import com.example.phonebook.server.LookupClient;
+import com.example.phonebook.server.LookupResponse;
+import com.example.phonebook.server.LookupServer;
+import com.example.phonebook.service.PhonebookService;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нагрузочный генератор для сервера определения номера ({@link LookupServer}).
+ * <p>Запускает в том же процессе справочник из синтетических контактов и сервер
+ * на локальном адресе, затем открывает несколько соединений. В каждом держится
+ * постоянное число запросов «в полёте» (глубина конвейера): на каждый ответ
+ * сразу отправляется следующий запрос. Задержка — время от отправки запроса
+ * до получения ответа на него.</p>
+ * <pre>
+ * ./gradlew lookupLoad -Pload.args="--contacts=100000 --connections=4 --pipeline=16 --seconds=10"
+ * </pre>
+ * <p>Параметры: {@code --contacts} (100000), {@code --connections} (4),
+ * {@code --pipeline} (16), {@code --seconds} (10), {@code --warmup} (3, секунд),
+ * {@code --hits} (0.5 — доля запросов с номерами из справочника).</p>
+ */
+public final class LookupLoadGenerator {
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private LookupLoadGenerator() {
+    }
+
+    /**
+     * Точка входа.
+     * @param args параметры вида {@code --имя=значение}
+     * @throws Exception при ошибке запуска
+     */
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        int contacts = options.getInt("contacts", 100_000);
+        int connections = options.getInt("connections", 4);
+        int pipeline = options.getInt("pipeline", 16);
+        int seconds = options.getInt("seconds", 10);
+        int warmup = options.getInt("warmup", 3);
+        double hits = options.getDouble("hits", 0.5);
+
+        Path dir = Files.createTempDirectory("phonebook-load");
+        PhonebookService service = new PhonebookService(dir.resolve("phonebook.bin"));
+        List<Contact> data = new SyntheticData(42).contacts(contacts);
+        service.batch(tx -> data.forEach(tx::add));
+        List<String> known = new ArrayList<>();
+        for (Contact c : data) {
+            for (PhoneNumber pn : c.getPhones()) {
+                known.add(pn.getNumber());
+            }
+        }
+
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try (LookupServer server = LookupServer.start(service, new InetSocketAddress(loopback, 0))) {
+            InetSocketAddress address = new InetSocketAddress(loopback, server.getTcpPort());
+            long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmup);
+            long end = warmupEnd + TimeUnit.SECONDS.toNanos(seconds);
+
+            List<Worker> workers = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                Worker w = new Worker(address, pipeline, known, hits, warmupEnd, end, i);
+                workers.add(w);
+                w.start();
+            }
+            Histogram total = new Histogram(MAX_LATENCY_NANOS, 3);
+            for (Worker w : workers) {
+                w.join();
+                if (w.failure != null) {
+                    throw w.failure;
+                }
+                total.add(w.histogram);
+            }
+            report(total, seconds, contacts, connections, pipeline);
+        } finally {
+            Files.deleteIfExists(dir.resolve("phonebook.bin"));
+            Files.deleteIfExists(dir.resolve("phonebook.bin.numbers"));
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static void report(Histogram h, int seconds, int contacts, int connections, int pipeline) {
+        System.out.printf("Контактов: %d, соединений: %d, глубина конвейера: %d%n", contacts, connections, pipeline);
+        System.out.printf("Пропускная способность: %.0f запросов/с%n", h.getTotalCount() / (double) seconds);
+        System.out.printf("Задержка, мкс: p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f p99.99=%.1f max=%.1f%n",
+                h.getValueAtPercentile(50) / 1e3, h.getValueAtPercentile(90) / 1e3,
+                h.getValueAtPercentile(99) / 1e3, h.getValueAtPercentile(99.9) / 1e3,
+                h.getValueAtPercentile(99.99) / 1e3, h.getMaxValue() / 1e3);
+    }
+
+    /** Одно соединение с постоянной глубиной конвейера */
+    private static final class Worker extends Thread {
+
+        private final InetSocketAddress address;
+        private final int pipeline;
+        private final List<String> known;
+        private final double hits;
+        private final long warmupEnd;
+        private final long end;
+        private final Random random;
+        private final Histogram histogram = new Histogram(MAX_LATENCY_NANOS, 3);
+        private volatile Exception failure;
+
+        private Worker(InetSocketAddress address, int pipeline, List<String> known, double hits,
+                       long warmupEnd, long end, int index) {
+            super("lookup-load-" + index);
+            this.address = address;
+            this.pipeline = pipeline;
+            this.known = known;
+            this.hits = hits;
+            this.warmupEnd = warmupEnd;
+            this.end = end;
+            this.random = new Random(index);
+        }
+
+        @Override
+        public void run() {
+            long[] sentAt = new long[pipeline];
+            try (LookupClient client = new LookupClient(address)) {
+                int nextId = 0;
+                for (; nextId < pipeline; nextId++) {
+                    sentAt[nextId] = System.nanoTime();
+                    client.send(nextId, nextNumber());
+                }
+                client.flush();
+
+                int inFlight = pipeline;
+                boolean sending = true;
+                while (inFlight > 0) {
+                    LookupResponse r = client.receive();
+                    long now = System.nanoTime();
+                    inFlight--;
+                    if (now > warmupEnd) {
+                        histogram.recordValue(Math.min(now - sentAt[r.getRequestId() % pipeline], MAX_LATENCY_NANOS));
+                    }
+                    sending &= now < end;
+                    if (sending) {
+                        sentAt[nextId % pipeline] = now;
+                        client.send(nextId++, nextNumber());
+                        client.flush();
+                        inFlight++;
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        private String nextNumber() {
+            if (random.nextDouble() < hits) {
+                return known.get(random.nextInt(known.size()));
+            }
+            return "+7999" + (1_000_000 + random.nextInt(9_000_000));
+        }
+    }
+}
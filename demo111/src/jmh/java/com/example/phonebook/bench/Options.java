@@ -0,0 +1,41 @@
+package com.example.phonebook.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Параметры командной строки нагрузочных программ вида {@code --имя=значение}.
+ */
+final class Options {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    /**
+     * Разбирает аргументы командной строки.
+     * @param args аргументы вида {@code --имя=значение}
+     * @throws IllegalArgumentException если аргумент записан иначе
+     */
+    Options(String[] args) {
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Ожидался параметр вида --имя=значение: " + arg);
+            }
+            values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+    }
+
+    String get(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    int getInt(String name, int defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    double getDouble(String name, double defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+}
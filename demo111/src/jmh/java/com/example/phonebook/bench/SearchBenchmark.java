@@ -0,0 +1,67 @@
+package com.example.phonebook.bench;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.service.PhonebookService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Поиск по ФИО и номеру — полный просмотр справочника.
+ * <p>Запросы подобраны так, чтобы совпадений почти не было: тогда
+ * выделения памяти за вызов сводятся к списку результата, а на каждый
+ * просмотренный контакт приходится ноль байт. Проверяется профилировщиком GC:</p>
+ * <pre>
+ * ./gradlew jmh -Pjmh.includes=SearchBenchmark -Pjmh.profilers=gc
+ * </pre>
+ * <p>Метрика {@code gc.alloc.rate.norm} не должна зависеть от {@code contacts}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"10000", "100000"})
+    public int contacts;
+
+    private PhonebookService service;
+    private Path dir;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("phonebook-bench");
+        service = new PhonebookService(dir.resolve("phonebook.bin"));
+        List<Contact> data = new SyntheticData(42).contacts(contacts);
+        service.batch(tx -> data.forEach(tx::add));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        service.close();
+        // кроме файла данных, в каталоге лежит файл фильтра номеров
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Contact> searchName() {
+        return service.search("Ёлкин");
+    }
+
+    @Benchmark
+    public List<Contact> searchNumber() {
+        return service.search("+7 (000) 000-00");
+    }
+}
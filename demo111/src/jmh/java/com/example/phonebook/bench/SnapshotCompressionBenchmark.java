@@ -0,0 +1,65 @@
+package com.example.phonebook.bench;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.storage.PhonebookStorage;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение уровней сжатия файла справочника.
+ * <p>Для каждого уровня измеряется время сохранения и загрузки,
+ * а размер файла выводится в конце прогона. {@code -1} — исходный
+ * несжатый формат.</p>
+ * <pre>
+ * ./gradlew jmh -Pjmh.includes=SnapshotCompressionBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SnapshotCompressionBenchmark {
+
+    @Param({"100000"})
+    public int contacts;
+
+    @Param({"-1", "1", "6", "9"})
+    public int level;
+
+    private List<Contact> data;
+    private Path dir;
+    private PhonebookStorage storage;
+
+    @Setup
+    public void setUp() throws IOException {
+        data = new SyntheticData(42).contacts(contacts);
+        dir = Files.createTempDirectory("phonebook-bench");
+        storage = new PhonebookStorage(dir.resolve("phonebook.bin"), level);
+        storage.save(data);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Path file = storage.getFilePath();
+        System.out.printf("%nУровень %d: %d контактов, %d байт%n", level, contacts, Files.size(file));
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public void save() {
+        storage.save(data);
+    }
+
+    @Benchmark
+    public List<Contact> load() {
+        return storage.load();
+    }
+}
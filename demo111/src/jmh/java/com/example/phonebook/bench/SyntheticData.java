@@ -0,0 +1,136 @@
+package com.example.phonebook.bench;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.model.PhoneNumber;
+import com.example.phonebook.model.PhoneType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Генератор синтетических контактов для бенчмарков.
+ * <p>Создаёт правдоподобные русские ФИО (с учётом рода фамилии и отчества)
+ * и номера в нескольких распространённых записях. При одинаковом зерне
+ * генератор выдаёт одинаковые данные, поэтому результаты разных сборок
+ * можно сравнивать между собой.</p>
+ */
+public final class SyntheticData {
+
+    private static final String[] MALE_NAMES = {
+            "Александр", "Алексей", "Андрей", "Антон", "Артём", "Борис", "Вадим", "Василий",
+            "Виктор", "Владимир", "Дмитрий", "Евгений", "Егор", "Иван", "Игорь", "Кирилл",
+            "Константин", "Максим", "Михаил", "Никита", "Николай", "Олег", "Павел", "Пётр",
+            "Роман", "Сергей", "Станислав", "Степан", "Юрий", "Ярослав"
+    };
+
+    private static final String[] FEMALE_NAMES = {
+            "Александра", "Алёна", "Алина", "Анастасия", "Анна", "Валентина", "Вера", "Дарья",
+            "Екатерина", "Елена", "Елизавета", "Ирина", "Ксения", "Любовь", "Людмила", "Марина",
+            "Мария", "Надежда", "Наталья", "Ольга", "Полина", "Светлана", "София", "Татьяна",
+            "Юлия"
+    };
+
+    private static final String[] SURNAMES = {
+            "Иванов", "Смирнов", "Кузнецов", "Попов", "Васильев", "Петров", "Соколов", "Михайлов",
+            "Новиков", "Фёдоров", "Морозов", "Волков", "Алексеев", "Лебедев", "Семёнов", "Егоров",
+            "Павлов", "Козлов", "Степанов", "Николаев", "Орлов", "Андреев", "Макаров", "Никитин",
+            "Захаров", "Зайцев", "Соловьёв", "Борисов", "Яковлев", "Григорьев", "Романов", "Воробьёв",
+            "Сергеев", "Кузьмин", "Фролов", "Александров", "Дмитриев", "Королёв", "Гусев", "Киселёв"
+    };
+
+    private static final String[] PATRONYMIC_STEMS = {
+            "Александров", "Алексеев", "Андреев", "Борисов", "Васильев", "Викторов", "Владимиров",
+            "Дмитриев", "Евгеньев", "Иванов", "Игорев", "Константинов", "Максимов", "Михайлов",
+            "Николаев", "Олегов", "Павлов", "Петров", "Романов", "Сергеев", "Юрьев"
+    };
+
+    private static final String[] AREA_CODES = {"495", "499", "812", "343", "383", "846", "861"};
+
+    private final Random random;
+
+    /**
+     * Создаёт генератор с указанным зерном.
+     * @param seed зерно генератора случайных чисел
+     */
+    public SyntheticData(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Создаёт указанное количество контактов.
+     * @param count количество контактов
+     * @return новый список контактов
+     */
+    public List<Contact> contacts(int count) {
+        List<Contact> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(contact());
+        }
+        return result;
+    }
+
+    /**
+     * Создаёт один контакт с одним–тремя телефонами.
+     * @return новый контакт
+     */
+    public Contact contact() {
+        Contact c = new Contact(fullName());
+        int phones = 1 + (random.nextInt(10) < 7 ? 0 : 1 + random.nextInt(2));
+        for (int i = 0; i < phones; i++) {
+            PhoneType type = i == 0 ? PhoneType.MOBILE : PhoneType.values()[1 + random.nextInt(3)];
+            c.addPhone(new PhoneNumber(type == PhoneType.MOBILE ? mobileNumber() : cityNumber(), type));
+        }
+        return c;
+    }
+
+    /**
+     * Создаёт ФИО в порядке «Фамилия Имя Отчество».
+     * @return ФИО
+     */
+    public String fullName() {
+        boolean female = random.nextBoolean();
+        String surname = pick(SURNAMES);
+        String stem = pick(PATRONYMIC_STEMS);
+        if (female) {
+            return surname + "а " + pick(FEMALE_NAMES) + " " + stem + "на";
+        }
+        return surname + " " + pick(MALE_NAMES) + " " + stem + "ич";
+    }
+
+    /**
+     * Создаёт мобильный номер в одной из распространённых записей.
+     * @return номер телефона
+     */
+    public String mobileNumber() {
+        String digits = "9" + digits(9);
+        return switch (random.nextInt(3)) {
+            case 0 -> "+7" + digits;
+            case 1 -> "8" + digits;
+            default -> "+7 (" + digits.substring(0, 3) + ") " + digits.substring(3, 6)
+                    + "-" + digits.substring(6, 8) + "-" + digits.substring(8);
+        };
+    }
+
+    /**
+     * Создаёт городской номер с кодом крупного города.
+     * @return номер телефона
+     */
+    public String cityNumber() {
+        String digits = digits(7);
+        return "+7 (" + pick(AREA_CODES) + ") " + digits.substring(0, 3)
+                + "-" + digits.substring(3, 5) + "-" + digits.substring(5);
+    }
+
+    private String digits(int count) {
+        char[] chars = new char[count];
+        for (int i = 0; i < count; i++) {
+            chars[i] = (char) ('0' + random.nextInt(10));
+        }
+        return new String(chars);
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,429 @@
+package com.example.phonebook.bench;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.model.PhoneNumber;
+import com.example.phonebook.model.PhoneType;
+import com.example.phonebook.service.PhonebookService;
+import com.example.phonebook.storage.lsm.LsmContactStore;
+import com.example.phonebook.util.TextNormalizer;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Имитация рабочей нагрузки на справочник: смесь определений номера,
+ * поисков и правок от нескольких одновременных клиентов.
+ * <p>Нагрузка подаётся по открытой модели: каждый клиент выполняет операции
+ * по расписанию с заданной общей частотой и не ждёт, пока справочник
+ * «освободится». Задержка отсчитывается от момента, когда операция должна
+ * была начаться по расписанию, а не от фактического старта, — иначе медленная
+ * операция задержала бы следующие, и их ожидание не попало бы в измерения
+ * (coordinated omission).</p>
+ * <pre>
+ * ./gradlew workload -Pworkload.args="--rate=5000 --mix=lookup:90,search:8,edit:2 --report=build/workload.txt"
+ * ./gradlew workload -Pworkload.args="--rate=5000 --report=build/workload-new.txt --baseline=build/workload.txt"
+ * </pre>
+ * <p>Параметры: {@code --contacts} (100000), {@code --clients} (4),
+ * {@code --rate} (2000, операций в секунду на всех клиентов), {@code --seconds} (30),
+ * {@code --warmup} (5, секунд), {@code --mix} (lookup:90,search:8,edit:2),
+ * {@code --hits} (0.8 — доля определений существующих номеров),
+ * {@code --storage} (file или lsm), {@code --seed} (42),
+ * {@code --report} (файл отчёта), {@code --baseline} (отчёт для сравнения).</p>
+ * <p>При одинаковых параметрах и зерне последовательность операций одна и та же,
+ * поэтому отчёты разных сборок можно сравнивать. Рядом с отчётом для каждой
+ * операции пишется распределение {@code .hgrm} в формате HdrHistogram.</p>
+ */
+public final class WorkloadSimulator {
+
+    private static final long HIGHEST_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /** Остаток ожидания, который досиживается активным ожиданием: точность парковки потока хуже */
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    /** Операции смеси */
+    enum Operation {
+        LOOKUP, SEARCH, EDIT;
+
+        String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private WorkloadSimulator() {
+    }
+
+    /**
+     * Точка входа.
+     * @param args параметры вида {@code --имя=значение}
+     * @throws Exception при ошибке запуска
+     */
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        Map<String, String> config = new LinkedHashMap<>();
+        int contacts = options.getInt("contacts", 100_000);
+        int clients = options.getInt("clients", 4);
+        double rate = options.getDouble("rate", 2000);
+        int seconds = options.getInt("seconds", 30);
+        int warmup = options.getInt("warmup", 5);
+        String mix = options.get("mix", "lookup:90,search:8,edit:2");
+        double hits = options.getDouble("hits", 0.8);
+        String storage = options.get("storage", "file");
+        long seed = options.getInt("seed", 42);
+        config.put("contacts", String.valueOf(contacts));
+        config.put("clients", String.valueOf(clients));
+        config.put("rate", String.valueOf(rate));
+        config.put("seconds", String.valueOf(seconds));
+        config.put("mix", mix);
+        config.put("hits", String.valueOf(hits));
+        config.put("storage", storage);
+        config.put("seed", String.valueOf(seed));
+        int[] weights = parseMix(mix);
+
+        Path dir = Files.createTempDirectory("phonebook-workload");
+        PhonebookService service = switch (storage) {
+            case "file" -> new PhonebookService(dir.resolve("phonebook.bin"));
+            case "lsm" -> new PhonebookService(LsmContactStore.open(dir.resolve("lsm")));
+            default -> throw new IllegalArgumentException("Неизвестное хранилище: " + storage);
+        };
+        try {
+            List<Contact> data = new SyntheticData(seed).contacts(contacts);
+            service.batch(tx -> data.forEach(tx::add));
+            List<String> numbers = new ArrayList<>();
+            for (Contact c : data) {
+                for (PhoneNumber pn : c.getPhones()) {
+                    numbers.add(pn.getNumber());
+                }
+            }
+
+            long period = Math.round(clients * 1e9 / rate);
+            long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+            long warmupEnd = start + TimeUnit.SECONDS.toNanos(warmup);
+            long end = warmupEnd + TimeUnit.SECONDS.toNanos(seconds);
+
+            List<Client> workers = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                List<Contact> owned = new ArrayList<>();
+                for (int j = i; j < data.size(); j += clients) {
+                    owned.add(data.get(j));
+                }
+                Client client = new Client(i, service, owned, numbers, weights, hits, seed,
+                        start + period * i / clients, period, warmupEnd, end);
+                workers.add(client);
+                client.start();
+            }
+
+            Map<Operation, Histogram> total = new EnumMap<>(Operation.class);
+            for (Operation op : Operation.values()) {
+                total.put(op, new Histogram(HIGHEST_NANOS, 3));
+            }
+            long finished = end;
+            for (Client client : workers) {
+                client.join();
+                if (client.failure != null) {
+                    throw client.failure;
+                }
+                for (Operation op : Operation.values()) {
+                    total.get(op).add(client.histograms.get(op));
+                }
+                finished = Math.max(finished, client.finished);
+            }
+
+            Map<String, String> results = results(total, finished - warmupEnd);
+            print(config, results, rate);
+            if (finished - end > TimeUnit.SECONDS.toNanos(1)) {
+                System.out.printf(Locale.ROOT, "Внимание: справочник не успевает за расписанием, "
+                        + "последняя операция завершилась на %.1f с позже срока%n", (finished - end) / 1e9);
+            }
+            String report = options.get("report", null);
+            if (report != null) {
+                write(Path.of(report), config, results, total);
+            }
+            String baseline = options.get("baseline", null);
+            if (baseline != null) {
+                compare(Path.of(baseline), config, results);
+            }
+        } finally {
+            service.close();
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+
+    /**
+     * Разбирает смесь вида {@code lookup:90,search:8,edit:2}.
+     * @param mix описание смеси
+     * @return веса операций в порядке {@link Operation}
+     */
+    static int[] parseMix(String mix) {
+        int[] weights = new int[Operation.values().length];
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split(":");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Ожидалось «операция:вес»: " + part);
+            }
+            Operation op = Operation.valueOf(kv[0].trim().toUpperCase(Locale.ROOT));
+            weights[op.ordinal()] = Integer.parseInt(kv[1].trim());
+        }
+        int sum = 0;
+        for (int w : weights) {
+            if (w < 0) {
+                throw new IllegalArgumentException("Отрицательный вес в смеси: " + mix);
+            }
+            sum += w;
+        }
+        if (sum == 0) {
+            throw new IllegalArgumentException("В смеси нет ни одной операции: " + mix);
+        }
+        return weights;
+    }
+
+    private static Map<String, String> results(Map<Operation, Histogram> histograms, long elapsedNanos) {
+        Map<String, String> results = new LinkedHashMap<>();
+        long count = 0;
+        for (Operation op : Operation.values()) {
+            Histogram h = histograms.get(op);
+            count += h.getTotalCount();
+            if (h.getTotalCount() == 0) {
+                continue;
+            }
+            String key = op.key();
+            results.put(key + ".count", String.valueOf(h.getTotalCount()));
+            results.put(key + ".mean_us", micros(h.getMean()));
+            for (double p : PERCENTILES) {
+                results.put(key + ".p" + percentileName(p) + "_us", micros(h.getValueAtPercentile(p)));
+            }
+            results.put(key + ".max_us", micros(h.getMaxValue()));
+        }
+        results.put("throughput", String.format(Locale.ROOT, "%.1f", count * 1e9 / elapsedNanos));
+        return results;
+    }
+
+    private static void print(Map<String, String> config, Map<String, String> results, double rate) {
+        System.out.println("Нагрузка: " + config);
+        System.out.printf(Locale.ROOT, "Выполнено операций в секунду: %s (задано %.1f)%n",
+                results.get("throughput"), rate);
+        System.out.printf("%-8s %10s %10s", "", "count", "mean");
+        for (double p : PERCENTILES) {
+            System.out.printf(" %10s", "p" + percentileName(p));
+        }
+        System.out.printf(" %10s   (мкс)%n", "max");
+        for (Operation op : Operation.values()) {
+            String key = op.key();
+            if (!results.containsKey(key + ".count")) {
+                continue;
+            }
+            System.out.printf("%-8s %10s %10s", key, results.get(key + ".count"), results.get(key + ".mean_us"));
+            for (double p : PERCENTILES) {
+                System.out.printf(" %10s", results.get(key + ".p" + percentileName(p) + "_us"));
+            }
+            System.out.printf(" %10s%n", results.get(key + ".max_us"));
+        }
+    }
+
+    private static void write(Path report, Map<String, String> config, Map<String, String> results,
+                              Map<Operation, Histogram> histograms) throws IOException {
+        Path parent = report.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        try (Writer out = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+            out.write("# Отчёт WorkloadSimulator, задержки в микросекундах\n");
+            for (Map.Entry<String, String> e : config.entrySet()) {
+                out.write("config." + e.getKey() + "=" + e.getValue() + "\n");
+            }
+            for (Map.Entry<String, String> e : results.entrySet()) {
+                out.write(e.getKey() + "=" + e.getValue() + "\n");
+            }
+        }
+        String base = report.getFileName().toString().replaceFirst("\\.[^.]*$", "");
+        for (Operation op : Operation.values()) {
+            Histogram h = histograms.get(op);
+            if (h.getTotalCount() == 0) {
+                continue;
+            }
+            Path hgrm = parent.resolve(base + "-" + op.key() + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(hgrm), false, StandardCharsets.UTF_8)) {
+                h.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        System.out.println("Отчёт записан в " + report);
+    }
+
+    private static void compare(Path baseline, Map<String, String> config, Map<String, String> results)
+            throws IOException {
+        Properties base = new Properties();
+        try (Reader in = Files.newBufferedReader(baseline, StandardCharsets.UTF_8)) {
+            base.load(in);
+        }
+        for (Map.Entry<String, String> e : config.entrySet()) {
+            String old = base.getProperty("config." + e.getKey());
+            if (!e.getValue().equals(old)) {
+                System.out.printf("Внимание: параметр %s отличается от базового (%s и %s), сравнение неточно%n",
+                        e.getKey(), old, e.getValue());
+            }
+        }
+        System.out.println("Сравнение с " + baseline + ":");
+        for (Map.Entry<String, String> e : results.entrySet()) {
+            String old = base.getProperty(e.getKey());
+            if (old == null || e.getKey().endsWith(".count")) {
+                continue;
+            }
+            double before = Double.parseDouble(old);
+            double after = Double.parseDouble(e.getValue());
+            String change = before == 0 ? "" : String.format(Locale.ROOT, "%+.1f%%", (after - before) * 100 / before);
+            System.out.printf(Locale.ROOT, "  %-20s %12.1f -> %12.1f  %s%n", e.getKey(), before, after, change);
+        }
+    }
+
+    private static String micros(double nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000);
+    }
+
+    private static String percentileName(double p) {
+        return String.valueOf(p).replace(".0", "").replace(".", "");
+    }
+
+    /** Клиент, выполняющий свою долю операций по расписанию */
+    private static final class Client extends Thread {
+
+        private final PhonebookService service;
+        private final List<Contact> owned;
+        private final List<String> numbers;
+        private final int[] weights;
+        private final int totalWeight;
+        private final double hits;
+        private final Random random;
+        private final SyntheticData synthetic;
+        private final long first;
+        private final long period;
+        private final long warmupEnd;
+        private final long end;
+        private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+        private volatile Exception failure;
+        private volatile long finished;
+
+        private Client(int index, PhonebookService service, List<Contact> owned, List<String> numbers,
+                       int[] weights, double hits, long seed, long first, long period, long warmupEnd, long end) {
+            super("workload-client-" + index);
+            this.service = service;
+            this.owned = owned;
+            this.numbers = numbers;
+            this.weights = weights;
+            int sum = 0;
+            for (int w : weights) {
+                sum += w;
+            }
+            this.totalWeight = sum;
+            this.hits = hits;
+            this.random = new Random(seed * 31 + index);
+            this.synthetic = new SyntheticData(seed * 31 + index + 1_000);
+            this.first = first;
+            this.period = period;
+            this.warmupEnd = warmupEnd;
+            this.end = end;
+            for (Operation op : Operation.values()) {
+                histograms.put(op, new Histogram(HIGHEST_NANOS, 3));
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (long k = 0; ; k++) {
+                    long intended = first + k * period;
+                    if (intended >= end) {
+                        break;
+                    }
+                    waitUntil(intended);
+                    Operation op = nextOperation();
+                    execute(op);
+                    long done = System.nanoTime();
+                    if (intended >= warmupEnd) {
+                        histograms.get(op).recordValue(Math.min(done - intended, HIGHEST_NANOS));
+                    }
+                    finished = done;
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        private static void waitUntil(long deadline) {
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                if (remaining > 2 * SPIN_NANOS) {
+                    LockSupport.parkNanos(remaining - SPIN_NANOS);
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+
+        private Operation nextOperation() {
+            int r = random.nextInt(totalWeight);
+            Operation[] ops = Operation.values();
+            for (int i = 0; i < ops.length; i++) {
+                r -= weights[i];
+                if (r < 0) {
+                    return ops[i];
+                }
+            }
+            throw new IllegalStateException();
+        }
+
+        private void execute(Operation op) {
+            switch (op) {
+                case LOOKUP -> service.lookupNumber(random.nextDouble() < hits
+                        ? numbers.get(random.nextInt(numbers.size()))
+                        : synthetic.mobileNumber());
+                case SEARCH -> service.search(searchQuery());
+                case EDIT -> edit();
+            }
+        }
+
+        /** Половина запросов — начало фамилии, половина — фрагмент номера */
+        private String searchQuery() {
+            if (random.nextBoolean()) {
+                String name = owned.get(random.nextInt(owned.size())).getFullName();
+                return name.substring(0, Math.min(5, name.length()));
+            }
+            String digits = TextNormalizer.digits(numbers.get(random.nextInt(numbers.size())));
+            return digits.substring(Math.max(0, digits.length() - 7), Math.max(0, digits.length() - 2));
+        }
+
+        /** Меняет основной номер одного из своих контактов: другие клиенты их не трогают */
+        private void edit() {
+            int i = random.nextInt(owned.size());
+            Contact old = owned.get(i);
+            Contact updated = new Contact(old.getFullName());
+            updated.addPhone(new PhoneNumber(synthetic.mobileNumber(), PhoneType.MOBILE));
+            List<PhoneNumber> phones = old.getPhones();
+            for (int j = 1; j < phones.size(); j++) {
+                updated.addPhone(new PhoneNumber(phones.get(j).getNumber(), phones.get(j).getType()));
+            }
+            service.updateContact(old, updated);
+            owned.set(i, updated);
+        }
+    }
+}
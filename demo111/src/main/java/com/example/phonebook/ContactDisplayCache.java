@@ -0,0 +1,103 @@
+package com.example.phonebook;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.model.PhoneNumber;
+import com.example.phonebook.service.Mutation;
+import com.example.phonebook.service.MutationListener;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.util.Callback;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Кэш строк, которыми контакты отображаются в списках главного окна.
+ * <p>Стандартная ячейка {@link ListView} при каждой перерисовке вызывает
+ * {@link Contact#toString()}, то есть заново собирает строку телефонов.
+ * Здесь строка контакта и строки его телефонов строятся один раз и хранятся
+ * до изменения контакта: кэш подписан на изменения сервиса и удаляет записи
+ * изменённых и удалённых контактов. Контакты различаются по ссылке, так как
+ * у разных контактов может быть одинаковое ФИО.</p>
+ */
+class ContactDisplayCache implements MutationListener {
+
+    private final Map<Contact, Display> cache = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /**
+     * Возвращает строку контакта для списка контактов.
+     * @param contact контакт
+     * @return строка вида «Иван Иванов (Мобильный: 123; Домашний: 456)»
+     */
+    String title(Contact contact) {
+        return display(contact).title();
+    }
+
+    /**
+     * Возвращает строки телефонов контакта для списка телефонов.
+     * @param contact контакт
+     * @return неизменяемый список строк вида «Мобильный: 123»
+     */
+    List<String> phoneLines(Contact contact) {
+        return display(contact).phoneLines();
+    }
+
+    /**
+     * Создаёт фабрику ячеек списка контактов, берущих текст из кэша.
+     * @return фабрика ячеек
+     */
+    Callback<ListView<Contact>, ListCell<Contact>> cellFactory() {
+        return list -> new ListCell<>() {
+            @Override
+            protected void updateItem(Contact item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null ? null : title(item));
+            }
+        };
+    }
+
+    /**
+     * Удаляет из кэша прежние версии изменённых и удалённых контактов.
+     * @param mutations применённые изменения
+     */
+    @Override
+    public void onMutations(List<Mutation> mutations) {
+        for (Mutation m : mutations) {
+            if (m.getBefore() != null) {
+                cache.remove(m.getBefore());
+            }
+            if (m.getAfter() != null) {
+                cache.remove(m.getAfter());
+            }
+        }
+    }
+
+    private Display display(Contact contact) {
+        Display display = cache.get(contact);
+        if (display == null) {
+            display = build(contact);
+            cache.put(contact, display);
+        }
+        return display;
+    }
+
+    private static Display build(Contact contact) {
+        List<String> lines = new ArrayList<>(contact.getPhones().size());
+        for (PhoneNumber pn : contact.getPhones()) {
+            String type = pn.getType() == null ? "" : pn.getType().getDisplayName();
+            lines.add(type + ": " + pn.getNumber());
+        }
+        return new Display(contact.toString(), List.copyOf(lines));
+    }
+
+    /**
+     * Готовые строки одного контакта.
+     * @param title      строка для списка контактов
+     * @param phoneLines строки для списка телефонов
+     */
+    private record Display(String title, List<String> phoneLines) {
+    }
+}
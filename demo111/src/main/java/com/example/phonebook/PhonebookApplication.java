@@ -1,11 +1,17 @@
 package com.example.phonebook;
 
+import com.example.phonebook.service.DataFileWatcher;
 import com.example.phonebook.service.PhonebookService;
+import com.example.phonebook.storage.ContactStore;
+import com.example.phonebook.storage.PhonebookStorage;
+import com.example.phonebook.storage.lsm.LsmContactStore;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
 import java.nio.file.Path;
@@ -15,7 +21,13 @@ import java.nio.file.Path;
  * <p>
  * Отвечает за:
  * <ul>
- *     <li>инициализацию службы работы со справочником ({@link PhonebookService})</li>
+ *     <li>инициализацию службы работы со справочником ({@link PhonebookService});
+ *     уровень сжатия файла задаётся свойством {@code -Dphonebook.compression=0..9},
+ *     LSM-хранилище вместо файла включается свойством {@code -Dphonebook.storage=lsm};
+ *     индекс ключей номеров и ФИО сохраняется между запусками в файл,
+ *     заданный свойством {@code -Dphonebook.keys=<путь>}</li>
+ *     <li>наблюдение за файлом справочника: замена файла другой программой
+ *     подхватывается без перезапуска ({@link DataFileWatcher})</li>
  *     <li>загрузку главного интерфейса из FXML</li>
  *     <li>передачу сервиса контроллеру</li>
  *     <li>отображение основного окна</li>
@@ -23,6 +35,11 @@ import java.nio.file.Path;
  */
 public class PhonebookApplication extends Application {
 
+    private static final Logger log = LogManager.getLogger(PhonebookApplication.class);
+
+    private PhonebookService service;
+    private DataFileWatcher watcher;
+
     /**
      * Запускает графическое приложение.
      * @param stage главное окно приложения
@@ -30,8 +47,12 @@ public class PhonebookApplication extends Application {
      */
     @Override
     public void start(Stage stage) throws IOException {
-        Path storagePath = Path.of("data", "phonebook.bin");
-        PhonebookService service = new PhonebookService(storagePath);
+        ContactStore store = createStore();
+        String keys = System.getProperty("phonebook.keys");
+        service = new PhonebookService(store, keys == null ? null : Path.of(keys));
+        if (store instanceof PhonebookStorage file) {
+            watcher = DataFileWatcher.start(service, file);
+        }
 
         FXMLLoader loader = new FXMLLoader(
                 PhonebookApplication.class.getResource("main-view.fxml")
@@ -48,6 +69,36 @@ public class PhonebookApplication extends Application {
         stage.show();
     }
 
+    /**
+     * Останавливает наблюдение за файлом и закрывает хранилище при выходе из приложения.
+     */
+    @Override
+    public void stop() {
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                log.warn("Не удалось остановить наблюдение за файлом", e);
+            }
+        }
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    /**
+     * Создаёт хранилище согласно системным свойствам.
+     * @return хранилище справочника
+     * @throws IOException если LSM-хранилище не удалось открыть
+     */
+    private static ContactStore createStore() throws IOException {
+        if ("lsm".equals(System.getProperty("phonebook.storage"))) {
+            return LsmContactStore.open(Path.of("data", "phonebook-lsm"));
+        }
+        int compression = Integer.getInteger("phonebook.compression", PhonebookStorage.NO_COMPRESSION);
+        return new PhonebookStorage(Path.of("data", "phonebook.bin"), compression);
+    }
+
     /**
      * Запуск JavaFX-приложения.
      * @param args параметры командной строки
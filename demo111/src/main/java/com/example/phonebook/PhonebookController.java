@@ -1,19 +1,34 @@
 package com.example.phonebook;
 
+import com.example.phonebook.index.PhoneFilter;
 import com.example.phonebook.model.Contact;
-import com.example.phonebook.model.PhoneNumber;
+import com.example.phonebook.model.PhoneType;
+import com.example.phonebook.service.Mutation;
 import com.example.phonebook.service.PhonebookService;
+import com.example.phonebook.suggest.Suggestion;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Side;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.ContextMenu;
 import javafx.scene.control.ListView;
+import javafx.scene.control.MenuItem;
 import javafx.scene.control.TextField;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import javafx.util.StringConverter;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Контроллер главного окна телефонного справочника.
@@ -21,9 +36,10 @@ import java.util.List;
  * Отвечает за:
  * <ul>
  *     <li>отображение списка контактов</li>
- *     <li>поиск, сортировку и масштабирование</li>
+ *     <li>поиск с подсказками, фильтр по типу телефона, сортировку и масштабирование</li>
  *     <li>отображение телефонных номеров выбранного контакта</li>
  *     <li>работу кнопок: добавить, изменить, удалить</li>
+ *     <li>перенос в список изменений, сделанных не из интерфейса</li>
  *     <li>открытие окна редактора контактов</li>
  * </ul>
  */
@@ -31,6 +47,18 @@ public class PhonebookController {
 
     private PhonebookService service;
 
+    /** Готовые строки контактов для ячеек списков */
+    private final ContactDisplayCache display = new ContactDisplayCache();
+
+    /** Сколько вариантов дополнения показывать под строкой поиска */
+    private static final int SUGGESTIONS = 8;
+
+    /** Варианты дополнения строки поиска */
+    private final ContextMenu suggestionMenu = new ContextMenu();
+
+    /** Строка поиска меняется выбранным вариантом: новые варианты не показываются */
+    private boolean applyingSuggestion;
+
     /** Текущий размер шрифта списков. */
     private double fontSize = 12.0;
 
@@ -44,12 +72,15 @@ public class PhonebookController {
      */
     public void setPhonebookService(PhonebookService service) {
         this.service = service;
+        service.addMutationListener(display);
+        service.addMutationListener(this::onBackgroundMutations);
         if (contactList != null) {
             refreshContactList(service.getAllContacts());
         }
     }
 
     @FXML private TextField searchField;
+    @FXML private ComboBox<PhoneType> typeFilter;
     @FXML private Button sortButton;
     @FXML private ListView<Contact> contactList;
     @FXML private ListView<String> phoneList;
@@ -67,6 +98,59 @@ public class PhonebookController {
         contactList.getItems().setAll(contacts);
     }
 
+    /**
+     * Передаёт в поток интерфейса изменения, пришедшие из фоновых потоков
+     * (например, при перезагрузке файла, заменённого другой программой).
+     * Изменения, сделанные из интерфейса, список обновляет сам.
+     * @param mutations изменения в порядке применения
+     */
+    private void onBackgroundMutations(List<Mutation> mutations) {
+        if (Platform.isFxApplicationThread()) {
+            return;
+        }
+        List<Mutation> copy = List.copyOf(mutations);
+        Platform.runLater(() -> applyMutations(copy));
+    }
+
+    /**
+     * Переносит изменения в список контактов, не перестраивая его целиком:
+     * обновлённые контакты заменяются на месте, удалённые убираются,
+     * добавленные дописываются в конец. При активном поиске или фильтре
+     * список просто заполняется результатом поиска заново.
+     * @param mutations изменения в порядке применения
+     */
+    private void applyMutations(List<Mutation> mutations) {
+        String query = searchField.getText();
+        if (query != null && !query.isBlank() || typeFilter.getValue() != null) {
+            refreshContactList(searchContacts());
+            return;
+        }
+        Map<Contact, Contact> updated = new IdentityHashMap<>();
+        Set<Contact> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Contact> added = new ArrayList<>();
+        for (Mutation m : mutations) {
+            switch (m.getKind()) {
+                case ADD -> added.add(m.getAfter());
+                case REMOVE -> removed.add(m.getBefore());
+                case UPDATE -> updated.put(m.getBefore(), m.getAfter());
+            }
+        }
+        ObservableList<Contact> items = contactList.getItems();
+        if (!updated.isEmpty()) {
+            for (int i = 0; i < items.size(); i++) {
+                Contact after = updated.get(items.get(i));
+                if (after != null) {
+                    items.set(i, after);
+                }
+            }
+        }
+        if (!removed.isEmpty()) {
+            items.removeAll(removed);
+        }
+        items.addAll(added);
+        showPhones(contactList.getSelectionModel().getSelectedItem());
+    }
+
     /**
      * Открывает окно редактора контактов для добавления или изменения.
      * @param original контакт, который нужно изменить, либо {@code null} для нового
@@ -105,24 +189,82 @@ public class PhonebookController {
      * @param contact выбранный контакт
      */
     private void showPhones(Contact contact) {
-        phoneList.getItems().clear();
-        if (contact == null) return;
-
-        for (PhoneNumber pn : contact.getPhones()) {
-            String line = String.format("%s: %s",
-                    pn.getType().getDisplayName(),
-                    pn.getNumber());
-            phoneList.getItems().add(line);
+        if (contact == null) {
+            phoneList.getItems().clear();
+            return;
         }
+        phoneList.getItems().setAll(display.phoneLines(contact));
     }
 
     /**
      * Применяет текущий размер шрифта ко всем спискам.
+     * Высота строки списка контактов задаётся явно, чтобы при прокрутке
+     * не измерять каждую ячейку.
      */
     private void applyFontSize() {
         String style = String.format("-fx-font-size: %.0fpx;", fontSize);
         contactList.setStyle(style);
         phoneList.setStyle(style);
+        contactList.setFixedCellSize(Math.round(fontSize * 2));
+    }
+
+    /**
+     * Ищет контакты по строке поиска и выбранному типу телефона.
+     * @return найденные контакты
+     */
+    private List<Contact> searchContacts() {
+        return service.search(searchField.getText(), PhoneFilter.ofType(typeFilter.getValue()));
+    }
+
+    /**
+     * Обновляет список по строке поиска и фильтру.
+     */
+    private void onSearchChanged() {
+        if (service == null) return;
+        refreshContactList(searchContacts());
+        phoneList.getItems().clear();
+    }
+
+    /**
+     * Показывает под строкой поиска варианты дополнения последнего слова или номера.
+     * @param text текущая строка поиска
+     */
+    private void showSuggestions(String text) {
+        if (service == null || applyingSuggestion || !searchField.isFocused()) {
+            suggestionMenu.hide();
+            return;
+        }
+        List<Suggestion> suggestions = service.suggest(text, SUGGESTIONS);
+        if (suggestions.isEmpty()) {
+            suggestionMenu.hide();
+            return;
+        }
+        List<MenuItem> items = new ArrayList<>(suggestions.size());
+        for (Suggestion suggestion : suggestions) {
+            MenuItem item = new MenuItem(suggestion.getText());
+            item.setOnAction(e -> applySuggestion(suggestion));
+            items.add(item);
+        }
+        suggestionMenu.getItems().setAll(items);
+        if (!suggestionMenu.isShowing()) {
+            suggestionMenu.show(searchField, Side.BOTTOM, 0, 0);
+        }
+    }
+
+    /**
+     * Подставляет выбранный вариант в строку поиска.
+     * @param suggestion вариант дополнения
+     */
+    private void applySuggestion(Suggestion suggestion) {
+        String text = suggestion.applyTo(searchField.getText());
+        suggestionMenu.hide();
+        applyingSuggestion = true;
+        try {
+            searchField.setText(text);
+        } finally {
+            applyingSuggestion = false;
+        }
+        searchField.positionCaret(text.length());
     }
 
     /**
@@ -143,16 +285,42 @@ public class PhonebookController {
     @FXML
     private void initialize() {
 
+        contactList.setCellFactory(display.cellFactory());
+
         contactList.getSelectionModel()
                 .selectedItemProperty()
-                .addListener((obs, oldC, newC) -> showPhones(newC));
+                .addListener((obs, oldC, newC) -> {
+                    showPhones(newC);
+                    if (newC != null && service != null) {
+                        service.recordLookup(newC);
+                    }
+                });
 
         searchField.textProperty().addListener((obs, oldText, newText) -> {
-            if (service == null) return;
-            List<Contact> filtered = service.search(newText);
-            refreshContactList(filtered);
-            phoneList.getItems().clear();
+            onSearchChanged();
+            showSuggestions(newText);
+        });
+        searchField.focusedProperty().addListener((obs, was, focused) -> {
+            if (!focused) {
+                suggestionMenu.hide();
+            }
+        });
+
+        // null в списке — «Все типы», фильтр по типу не применяется
+        typeFilter.getItems().add(null);
+        typeFilter.getItems().addAll(PhoneType.values());
+        typeFilter.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(PhoneType type) {
+                return type == null ? "Все типы" : type.getDisplayName();
+            }
+
+            @Override
+            public PhoneType fromString(String text) {
+                return null;
+            }
         });
+        typeFilter.valueProperty().addListener((obs, oldType, newType) -> onSearchChanged());
 
         addButton.setOnAction(e -> {
             Contact c = openEditor(null);
@@ -0,0 +1,76 @@
+package com.example.phonebook.cache;
+
+/**
+ * Статистика работы кэша на момент запроса.
+ */
+public final class CacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+    private final int size;
+
+    CacheStats(long hits, long misses, long evictions, long invalidations, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.size = size;
+    }
+
+    /**
+     * Возвращает количество попаданий.
+     * @return число запросов, найденных в кэше
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Возвращает количество промахов.
+     * @return число запросов, которых не было в кэше
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Возвращает количество вытеснений из-за ограничения размера.
+     * @return число вытесненных или не допущенных в кэш элементов
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Возвращает количество элементов, удалённых при изменении данных.
+     * @return число инвалидаций
+     */
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Возвращает текущее количество элементов в кэше.
+     * @return размер кэша
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Возвращает долю попаданий.
+     * @return отношение попаданий ко всем запросам; {@code 0}, если запросов не было
+     */
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d, misses=%d, hitRate=%.3f, evictions=%d, invalidations=%d, size=%d",
+                hits, misses, getHitRate(), evictions, invalidations, size);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.phonebook.cache;
+
+/**
+ * Приближённый счётчик частоты обращений (Count-Min Sketch с 4-битными счётчиками).
+ * <p>Каждый ключ отображается в четыре счётчика; оценка частоты — минимум из них.
+ * Шестнадцать счётчиков упакованы в одно {@code long}, поэтому таблица занимает
+ * около восьми байт на элемент кэша. Когда число учтённых обращений достигает
+ * {@code 10 × ёмкость}, все счётчики делятся пополам — так старая популярность
+ * со временем забывается и кэш подстраивается под изменившийся поток запросов.</p>
+ */
+final class FrequencySketch {
+
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+    private static final int MAX_COUNT = 15;
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * Создаёт счётчик для кэша указанной ёмкости.
+     * @param capacity ёмкость кэша
+     */
+    FrequencySketch(int capacity) {
+        int size = Integer.highestOneBit(Math.max(16, capacity - 1) * 2);
+        table = new long[size];
+        mask = size - 1;
+        sampleSize = Math.max(10 * capacity, 160);
+    }
+
+    /**
+     * Возвращает оценку частоты ключа.
+     * @param hash хэш ключа
+     * @return частота от 0 до 15
+     */
+    int frequency(int hash) {
+        int min = MAX_COUNT;
+        for (int i = 0; i < 4; i++) {
+            long h = spread(hash, i);
+            int index = (int) (h >>> 32) & mask;
+            int offset = ((int) h & 15) << 2;
+            min = Math.min(min, (int) ((table[index] >>> offset) & 0xF));
+        }
+        return min;
+    }
+
+    /**
+     * Учитывает одно обращение к ключу.
+     * @param hash хэш ключа
+     */
+    void increment(int hash) {
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            long h = spread(hash, i);
+            int index = (int) (h >>> 32) & mask;
+            int offset = ((int) h & 15) << 2;
+            if (((table[index] >>> offset) & 0xF) < MAX_COUNT) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Делит все счётчики пополам.
+     */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private static long spread(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[(i + 1) & 3];
+        return h ^ (h >>> 29);
+    }
+}
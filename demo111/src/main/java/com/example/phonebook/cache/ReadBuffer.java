@@ -0,0 +1,89 @@
+package com.example.phonebook.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Буфер обращений к кэшу, заполняемый без блокировок.
+ * <p>Потоки записывают обращения в одно из нескольких колец (выбирается по потоку),
+ * а владелец блокировки кэша время от времени переносит их в политику вытеснения.
+ * Если кольцо заполнено или за ячейку одновременно борются два потока, обращение
+ * теряется: для оценки популярности достаточно выборки, а чтение никогда не ждёт.</p>
+ */
+final class ReadBuffer {
+
+    /** Ячеек в одном кольце */
+    private static final int SIZE = 64;
+    private static final int MASK = SIZE - 1;
+
+    /** Заполненность кольца, после которой его пора разобрать */
+    private static final int DRAIN_THRESHOLD = SIZE / 2;
+
+    private final Ring[] rings;
+
+    ReadBuffer() {
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+        rings = new Ring[Math.min(stripes, 64)];
+        for (int i = 0; i < rings.length; i++) {
+            rings[i] = new Ring();
+        }
+    }
+
+    /**
+     * Записывает обращение.
+     * @param event обращение
+     * @return {@code true}, если буфер пора разобрать
+     */
+    boolean offer(Object event) {
+        int h = Thread.currentThread().hashCode() * 0x9E3779B9;
+        return rings[(h ^ (h >>> 16)) & (rings.length - 1)].offer(event);
+    }
+
+    /**
+     * Передаёт накопленные обращения получателю. Вызывается только
+     * под блокировкой кэша.
+     * @param consumer получатель
+     */
+    void drainTo(Consumer<Object> consumer) {
+        for (Ring ring : rings) {
+            ring.drainTo(consumer);
+        }
+    }
+
+    private static final class Ring {
+        private final AtomicReferenceArray<Object> slots = new AtomicReferenceArray<>(SIZE);
+        private final AtomicLong tail = new AtomicLong();
+        /** Следующая разбираемая позиция; изменяется только под блокировкой кэша */
+        private volatile long head;
+
+        boolean offer(Object event) {
+            long t = tail.get();
+            long pending = t - head;
+            if (pending >= SIZE) {
+                return true;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                slots.lazySet((int) (t & MASK), event);
+                return pending + 1 >= DRAIN_THRESHOLD;
+            }
+            return false;
+        }
+
+        void drainTo(Consumer<Object> consumer) {
+            long h = head;
+            long t = tail.get();
+            for (; h < t; h++) {
+                int i = (int) (h & MASK);
+                Object event = slots.get(i);
+                if (event == null) {
+                    // позиция занята, но запись ещё не видна: разберём в следующий раз
+                    break;
+                }
+                slots.lazySet(i, null);
+                consumer.accept(event);
+            }
+            head = h;
+        }
+    }
+}
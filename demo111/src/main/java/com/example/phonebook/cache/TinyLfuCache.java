@@ -0,0 +1,324 @@
+package com.example.phonebook.cache;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ограниченный кэш с политикой допуска W-TinyLFU.
+ * <p>Кэш разделён на небольшое окно (около 1% ёмкости), управляемое по LRU,
+ * и основную область — сегментированный LRU из испытательной и защищённой частей.
+ * Новые элементы попадают в окно; вытесненный из окна кандидат допускается
+ * в основную область, только если по оценке {@link FrequencySketch} к нему
+ * обращаются чаще, чем к жертве — самому старому элементу испытательной части.
+ * Так редкие ключи (например, разовые звонки с неизвестных номеров) не вытесняют
+ * популярные, а окно даёт шанс закрепиться новым, но быстро набирающим
+ * популярность ключам.</p>
+ * <p>Чтение не берёт блокировку: значение ищется в {@link ConcurrentHashMap},
+ * а само обращение записывается в {@link ReadBuffer}. Частоты и порядок элементов
+ * обновляются по накопленным обращениям пачкой, под блокировкой, которую берёт
+ * запись или читатель, заполнивший буфер (если она свободна). Так попадания
+ * в кэш определения номера из разных потоков не выстраиваются в очередь.
+ * Часть обращений при высокой нагрузке теряется, что для оценки популярности
+ * не важно. Запись и удаление выполняются под блокировкой.</p>
+ * @param <K> тип ключа
+ * @param <V> тип значения
+ */
+public class TinyLfuCache<K, V> {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    /** Узел удалён из кэша; отложенные обращения к нему игнорируются */
+    private static final int REMOVED = -1;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<K, Node<K, V>> data;
+    private final FrequencySketch sketch;
+    private final ReadBuffer readBuffer = new ReadBuffer();
+
+    private final Deque<K, V> window = new Deque<>();
+    private final Deque<K, V> probation = new Deque<>();
+    private final Deque<K, V> protectedArea = new Deque<>();
+
+    private final int capacity;
+    private final int windowCapacity;
+    private final int protectedCapacity;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Создаёт кэш указанной ёмкости.
+     * @param capacity максимальное количество элементов
+     */
+    public TinyLfuCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Ёмкость кэша должна быть положительной: " + capacity);
+        }
+        this.capacity = capacity;
+        this.windowCapacity = Math.max(1, capacity / 100);
+        this.protectedCapacity = (int) ((capacity - windowCapacity) * 0.8);
+        this.data = new ConcurrentHashMap<>(Math.max(16, capacity * 4 / 3 + 1));
+        this.sketch = new FrequencySketch(capacity);
+    }
+
+    /**
+     * Возвращает значение из кэша и учитывает обращение к ключу.
+     * Не блокирует: обращение учитывается отложенно.
+     * @param key ключ
+     * @return значение или {@code null}, если ключа нет в кэше
+     */
+    public V get(K key) {
+        Node<K, V> node = data.get(key);
+        boolean full;
+        if (node == null) {
+            misses.increment();
+            full = readBuffer.offer(key);
+        } else {
+            hits.increment();
+            full = readBuffer.offer(node);
+        }
+        if (full && lock.tryLock()) {
+            try {
+                drainReads();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Помещает значение в кэш. Элемент может быть сразу вытеснен,
+     * если политика допуска сочтёт его менее ценным, чем уже хранящиеся.
+     * @param key   ключ
+     * @param value значение
+     */
+    public void put(K key, V value) {
+        Objects.requireNonNull(value);
+        lock.lock();
+        try {
+            drainReads();
+            Node<K, V> node = data.get(key);
+            if (node != null) {
+                node.value = value;
+                return;
+            }
+            node = new Node<>(key, value);
+            data.put(key, node);
+            node.area = WINDOW;
+            window.addLast(node);
+            if (window.size > windowCapacity) {
+                Node<K, V> candidate = window.removeFirst();
+                candidate.area = PROBATION;
+                probation.addLast(candidate);
+                evictIfNeeded(candidate);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет ключ из кэша.
+     * @param key ключ
+     */
+    public void invalidate(K key) {
+        lock.lock();
+        try {
+            Node<K, V> node = data.remove(key);
+            if (node != null) {
+                area(node.area).remove(node);
+                node.area = REMOVED;
+                invalidations++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Очищает кэш. Накопленная статистика частот сохраняется.
+     */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            drainReads();
+            invalidations += data.size();
+            data.values().forEach(node -> node.area = REMOVED);
+            data.clear();
+            window.clear();
+            probation.clear();
+            protectedArea.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает статистику кэша.
+     * @return снимок счётчиков
+     */
+    public CacheStats stats() {
+        lock.lock();
+        try {
+            return new CacheStats(hits.sum(), misses.sum(), evictions, invalidations, data.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает ёмкость кэша.
+     * @return максимальное количество элементов
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Переносит отложенные обращения в счётчик частот и порядок элементов.
+     * Вызывается под блокировкой.
+     */
+    @SuppressWarnings("unchecked")
+    private void drainReads() {
+        readBuffer.drainTo(event -> {
+            if (event instanceof Node<?, ?> n) {
+                Node<K, V> node = (Node<K, V>) n;
+                sketch.increment(spread(node.key));
+                if (node.area != REMOVED) {
+                    onHit(node);
+                }
+            } else {
+                sketch.increment(spread(event));
+            }
+        });
+    }
+
+    private void onHit(Node<K, V> node) {
+        switch (node.area) {
+            case WINDOW -> window.moveToEnd(node);
+            case PROTECTED -> protectedArea.moveToEnd(node);
+            default -> {
+                probation.remove(node);
+                node.area = PROTECTED;
+                protectedArea.addLast(node);
+                if (protectedArea.size > protectedCapacity) {
+                    Node<K, V> demoted = protectedArea.removeFirst();
+                    demoted.area = PROBATION;
+                    probation.addLast(demoted);
+                }
+            }
+        }
+    }
+
+    /**
+     * Если основная область переполнена, выбирает между кандидатом
+     * и самым старым элементом испытательной части по оценке частоты.
+     */
+    private void evictIfNeeded(Node<K, V> candidate) {
+        if (data.size() <= capacity) {
+            return;
+        }
+        Node<K, V> victim = probation.first();
+        Node<K, V> evicted = victim != candidate
+                && sketch.frequency(spread(candidate.key)) > sketch.frequency(spread(victim.key))
+                ? victim : candidate;
+        probation.remove(evicted);
+        data.remove(evicted.key);
+        evicted.area = REMOVED;
+        evictions++;
+    }
+
+    private Deque<K, V> area(int area) {
+        return switch (area) {
+            case WINDOW -> window;
+            case PROBATION -> probation;
+            default -> protectedArea;
+        };
+    }
+
+    private static int spread(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        /** Часть кэша; изменяется только под блокировкой */
+        int area;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Двусвязный список узлов: в начале самые давние, в конце самые свежие.
+     */
+    private static final class Deque<K, V> {
+        Node<K, V> head;
+        Node<K, V> tail;
+        int size;
+
+        Node<K, V> first() {
+            return head;
+        }
+
+        void addLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            size++;
+        }
+
+        Node<K, V> removeFirst() {
+            Node<K, V> node = head;
+            remove(node);
+            return node;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            size--;
+        }
+
+        void moveToEnd(Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void clear() {
+            head = null;
+            tail = null;
+            size = 0;
+        }
+    }
+}
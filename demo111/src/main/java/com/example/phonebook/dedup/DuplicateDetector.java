@@ -0,0 +1,318 @@
+package com.example.phonebook.dedup;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.model.PhoneNumber;
+import com.example.phonebook.util.TextNormalizer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.*;
+
+/**
+ * Поиск дубликатов контактов.
+ * <p>{@link Contact#equals(Object)} сравнивает только ФИО, поэтому один и тот же
+ * абонент, записанный дважды с разным написанием или порядком слов, не
+ * распознаётся как повтор. Детектор решает эту задачу без попарного сравнения
+ * всех контактов:</p>
+ * <ol>
+ *     <li>для каждого контакта строятся ключи блоков — нормализованные номера,
+ *     отсортированный набор слов ФИО и фонетические ключи слов;</li>
+ *     <li>контакты раскладываются по блокам в хэш-таблице;</li>
+ *     <li>сравниваются только контакты внутри одного блока, а найденные пары
+ *     объединяются в группы через систему непересекающихся множеств.</li>
+ * </ol>
+ * <p>Совпадение набора слов ФИО само по себе означает дубликат, поэтому такие
+ * блоки объединяются за линейное время. Общего номера недостаточно: один
+ * городской номер бывает у всей семьи, а номер коммутатора — у всей организации.
+ * Поэтому в блоках номеров, как и в фонетических, контакты сравниваются попарно
+ * и объединяются только при похожих ФИО. Размер таких блоков ограничен
+ * {@link #getMaxBlockSize()}: слишком большие блоки (очень распространённые
+ * фамилии, общий номер справочной) пропускаются, чтобы общее время оставалось
+ * почти линейным.</p>
+ */
+public class DuplicateDetector {
+
+    private static final Logger log = LogManager.getLogger(DuplicateDetector.class);
+
+    /** Размер блока номера или фонетического блока по умолчанию, выше которого блок пропускается */
+    public static final int DEFAULT_MAX_BLOCK_SIZE = 500;
+
+    /** Минимальная длина номера (в цифрах), по которой контакты считаются одним абонентом */
+    private static final int MIN_NUMBER_DIGITS = 6;
+
+    /** Максимальное расстояние редактирования между «похожими» ФИО */
+    private static final int MAX_NAME_DISTANCE = 2;
+
+    private static final char NUMBER_BLOCK = 'd';
+    private static final char NAME_BLOCK = 'n';
+    private static final char PHONETIC_BLOCK = 'p';
+
+    private final int maxBlockSize;
+
+    /**
+     * Создаёт детектор с ограничением размера блока по умолчанию.
+     */
+    public DuplicateDetector() {
+        this(DEFAULT_MAX_BLOCK_SIZE);
+    }
+
+    /**
+     * Создаёт детектор с указанным ограничением размера блоков, сравниваемых попарно.
+     * @param maxBlockSize максимальное число контактов в блоке, который ещё сравнивается попарно
+     */
+    public DuplicateDetector(int maxBlockSize) {
+        if (maxBlockSize < 2) {
+            throw new IllegalArgumentException("maxBlockSize должен быть не меньше 2: " + maxBlockSize);
+        }
+        this.maxBlockSize = maxBlockSize;
+    }
+
+    /**
+     * Возвращает ограничение размера блоков, сравниваемых попарно.
+     * @return максимальный размер блока
+     */
+    public int getMaxBlockSize() {
+        return maxBlockSize;
+    }
+
+    /**
+     * Находит группы дубликатов среди переданных контактов.
+     * @param contacts проверяемые контакты
+     * @return группы из двух и более контактов; порядок групп соответствует
+     *         порядку первых контактов в исходном списке
+     */
+    public List<DuplicateGroup> findDuplicates(List<Contact> contacts) {
+        int n = contacts.size();
+        String[] names = new String[n];
+        Map<String, int[]> blocks = new HashMap<>(Math.max(16, n * 2));
+
+        for (int i = 0; i < n; i++) {
+            Contact c = contacts.get(i);
+
+            for (PhoneNumber pn : c.getPhones()) {
+                String digits = TextNormalizer.digits(pn.getNumber());
+                if (digits.length() >= MIN_NUMBER_DIGITS) {
+                    addToBlock(blocks, NUMBER_BLOCK + digits, i);
+                }
+            }
+
+            List<String> tokens = new ArrayList<>(TextNormalizer.nameTokens(c.getFullName()));
+            if (tokens.isEmpty()) {
+                continue;
+            }
+            Collections.sort(tokens);
+            names[i] = String.join(" ", tokens);
+            addToBlock(blocks, NAME_BLOCK + names[i], i);
+
+            String[] phonetic = new String[tokens.size()];
+            for (int t = 0; t < phonetic.length; t++) {
+                phonetic[t] = PhoneticKey.of(tokens.get(t));
+            }
+            Arrays.sort(phonetic);
+            addToBlock(blocks, PHONETIC_BLOCK + String.join(" ", phonetic), i);
+        }
+
+        DisjointSet groups = new DisjointSet(n);
+        int skipped = 0;
+
+        for (Map.Entry<String, int[]> e : blocks.entrySet()) {
+            int[] block = e.getValue();
+            int size = block[0];
+            if (size < 2) {
+                continue;
+            }
+            char kind = e.getKey().charAt(0);
+            if (kind == NAME_BLOCK) {
+                unionAll(groups, block, DuplicateGroup.Reason.SAME_NAME);
+            } else if (size > maxBlockSize) {
+                skipped++;
+            } else if (kind == NUMBER_BLOCK) {
+                unionSimilar(groups, block, names, true, DuplicateGroup.Reason.SAME_NUMBER);
+            } else {
+                // одинаковые наборы слов уже объединены блоком ФИО
+                unionSimilar(groups, block, names, false, DuplicateGroup.Reason.SIMILAR_NAME);
+            }
+        }
+
+        if (skipped > 0) {
+            log.warn("Пропущено блоков номеров и фонетических блоков больше {} контактов: {}", maxBlockSize, skipped);
+        }
+
+        List<DuplicateGroup> result = collect(contacts, groups);
+        log.info("Поиск дубликатов: контактов {}, блоков {}, групп {}", n, blocks.size(), result.size());
+        return result;
+    }
+
+    /**
+     * Собирает компоненты связности из двух и более контактов.
+     */
+    private static List<DuplicateGroup> collect(List<Contact> contacts, DisjointSet groups) {
+        int n = contacts.size();
+        Map<Integer, List<Contact>> byRoot = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            int root = groups.find(i);
+            if (groups.size(root) > 1) {
+                byRoot.computeIfAbsent(root, r -> new ArrayList<>()).add(contacts.get(i));
+            }
+        }
+
+        List<DuplicateGroup> result = new ArrayList<>(byRoot.size());
+        for (Map.Entry<Integer, List<Contact>> e : byRoot.entrySet()) {
+            result.add(new DuplicateGroup(e.getValue(), groups.reasons(e.getKey())));
+        }
+        return result;
+    }
+
+    /**
+     * Добавляет индекс контакта в блок.
+     * Блок хранится как массив, в нулевом элементе которого записан размер.
+     */
+    private static void addToBlock(Map<String, int[]> blocks, String key, int id) {
+        int[] block = blocks.get(key);
+        if (block == null) {
+            blocks.put(key, new int[]{1, id});
+            return;
+        }
+        int size = block[0];
+        if (block[size] == id) {
+            return;
+        }
+        if (size + 1 == block.length) {
+            block = Arrays.copyOf(block, block.length * 2);
+            blocks.put(key, block);
+        }
+        block[size + 1] = id;
+        block[0] = size + 1;
+    }
+
+    private static void unionAll(DisjointSet groups, int[] block, DuplicateGroup.Reason reason) {
+        for (int i = 2; i <= block[0]; i++) {
+            groups.union(block[1], block[i], reason);
+        }
+    }
+
+    /**
+     * Попарно объединяет контакты блока, ФИО которых отличаются не больше чем
+     * на {@link #MAX_NAME_DISTANCE} правок. Контакты без ФИО не объединяются.
+     * @param sameNames объединять ли и контакты с одинаковым набором слов ФИО
+     */
+    private static void unionSimilar(DisjointSet groups, int[] block, String[] names,
+                                     boolean sameNames, DuplicateGroup.Reason reason) {
+        int size = block[0];
+        for (int a = 1; a <= size; a++) {
+            for (int b = a + 1; b <= size; b++) {
+                String x = names[block[a]];
+                String y = names[block[b]];
+                if (x == null || y == null || (!sameNames && x.equals(y))) {
+                    continue;
+                }
+                if (withinDistance(x, y, MAX_NAME_DISTANCE)) {
+                    groups.union(block[a], block[b], reason);
+                }
+            }
+        }
+    }
+
+    /**
+     * Проверяет, что расстояние Левенштейна между строками не превышает {@code max}.
+     * Считается только полоса шириной {@code 2 * max + 1} вокруг диагонали.
+     */
+    static boolean withinDistance(String a, String b, int max) {
+        int la = a.length();
+        int lb = b.length();
+        if (Math.abs(la - lb) > max) {
+            return false;
+        }
+        int inf = max + 1;
+        int[] prev = new int[lb + 1];
+        int[] cur = new int[lb + 1];
+        for (int j = 0; j <= lb; j++) {
+            prev[j] = j <= max ? j : inf;
+        }
+        for (int i = 1; i <= la; i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(lb, i + max);
+            Arrays.fill(cur, inf);
+            cur[0] = i <= max ? i : inf;
+            int best = cur[0];
+            for (int j = from; j <= to; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int v = Math.min(prev[j - 1] + cost, Math.min(prev[j], cur[j - 1]) + 1);
+                cur[j] = Math.min(v, inf);
+                best = Math.min(best, cur[j]);
+            }
+            if (best > max) {
+                return false;
+            }
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return prev[lb] <= max;
+    }
+
+    /**
+     * Система непересекающихся множеств с объединением по размеру
+     * и сжатием путей. Для каждого корня хранит битовую маску причин.
+     */
+    private static final class DisjointSet {
+        private final int[] parent;
+        private final int[] size;
+        private final byte[] reasons;
+
+        DisjointSet(int n) {
+            parent = new int[n];
+            size = new int[n];
+            reasons = new byte[n];
+            for (int i = 0; i < n; i++) {
+                parent[i] = i;
+                size[i] = 1;
+            }
+        }
+
+        int find(int x) {
+            int root = x;
+            while (parent[root] != root) {
+                root = parent[root];
+            }
+            while (parent[x] != root) {
+                int next = parent[x];
+                parent[x] = root;
+                x = next;
+            }
+            return root;
+        }
+
+        void union(int a, int b, DuplicateGroup.Reason reason) {
+            int ra = find(a);
+            int rb = find(b);
+            byte bit = (byte) (1 << reason.ordinal());
+            if (ra == rb) {
+                reasons[ra] |= bit;
+                return;
+            }
+            if (size[ra] < size[rb]) {
+                int t = ra;
+                ra = rb;
+                rb = t;
+            }
+            parent[rb] = ra;
+            size[ra] += size[rb];
+            reasons[ra] |= (byte) (reasons[rb] | bit);
+        }
+
+        int size(int root) {
+            return size[root];
+        }
+
+        Set<DuplicateGroup.Reason> reasons(int root) {
+            EnumSet<DuplicateGroup.Reason> set = EnumSet.noneOf(DuplicateGroup.Reason.class);
+            for (DuplicateGroup.Reason r : DuplicateGroup.Reason.values()) {
+                if ((reasons[root] & (1 << r.ordinal())) != 0) {
+                    set.add(r);
+                }
+            }
+            return set;
+        }
+    }
+}
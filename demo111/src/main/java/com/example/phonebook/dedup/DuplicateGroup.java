@@ -0,0 +1,95 @@
+package com.example.phonebook.dedup;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.model.PhoneNumber;
+import com.example.phonebook.util.TextNormalizer;
+
+import java.util.*;
+
+/**
+ * Группа контактов, которые, по всей видимости, описывают одного абонента.
+ * <p>Группа хранит найденные контакты и причины, по которым они были
+ * объединены, а также умеет строить предлагаемый объединённый контакт.</p>
+ */
+public class DuplicateGroup {
+
+    /**
+     * Причина, по которой контакты попали в одну группу.
+     */
+    public enum Reason {
+        /** Совпадает хотя бы один нормализованный номер телефона, и ФИО похожи */
+        SAME_NUMBER,
+        /** Совпадает набор слов ФИО (возможно, в другом порядке) */
+        SAME_NAME,
+        /** ФИО звучат одинаково и отличаются написанием */
+        SIMILAR_NAME
+    }
+
+    private final List<Contact> contacts;
+    private final Set<Reason> reasons;
+
+    /**
+     * Создаёт группу дубликатов.
+     * @param contacts контакты группы (не менее двух)
+     * @param reasons  причины объединения
+     */
+    public DuplicateGroup(List<Contact> contacts, Set<Reason> reasons) {
+        this.contacts = List.copyOf(contacts);
+        this.reasons = reasons.isEmpty()
+                ? Collections.emptySet()
+                : Collections.unmodifiableSet(EnumSet.copyOf(reasons));
+    }
+
+    /**
+     * Возвращает контакты, входящие в группу.
+     * @return неизменяемый список контактов
+     */
+    public List<Contact> getContacts() {
+        return contacts;
+    }
+
+    /**
+     * Возвращает причины, по которым контакты признаны дубликатами.
+     * @return неизменяемое множество причин
+     */
+    public Set<Reason> getReasons() {
+        return reasons;
+    }
+
+    /**
+     * Строит предлагаемый объединённый контакт.
+     * <p>В качестве ФИО берётся самое полное (самое длинное) написание,
+     * телефоны объединяются без повторов: номера, совпадающие после
+     * нормализации, попадают в результат один раз — в первой встреченной записи.</p>
+     * @return новый контакт; исходные контакты не изменяются
+     */
+    public Contact merged() {
+        String name = null;
+        for (Contact c : contacts) {
+            String n = c.getFullName();
+            if (n != null && (name == null || n.trim().length() > name.length())) {
+                name = n.trim();
+            }
+        }
+
+        Contact result = new Contact(name);
+        Set<String> seen = new HashSet<>();
+        for (Contact c : contacts) {
+            for (PhoneNumber pn : c.getPhones()) {
+                String key = TextNormalizer.digits(pn.getNumber());
+                if (key.isEmpty()) {
+                    key = pn.getNumber();
+                }
+                if (seen.add(key)) {
+                    result.addPhone(new PhoneNumber(pn.getNumber(), pn.getType()));
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return reasons + " " + contacts;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.phonebook.dedup;
+
+/**
+ * Упрощённый фонетический ключ для слов ФИО.
+ * <p>Ключ строится по правилам, близким к «русскому Metaphone»:
+ * гласные после первой буквы отбрасываются, звонкие согласные заменяются
+ * парными глухими, мягкий и твёрдый знаки удаляются, повторы схлопываются.
+ * Благодаря этому «Андреев», «Андреефф» и «Aндриев» получают один ключ.</p>
+ * <p>Латинские буквы предварительно приводятся к близким кириллическим,
+ * чтобы транслитерированные записи попадали в тот же блок.</p>
+ */
+final class PhoneticKey {
+
+    private PhoneticKey() {
+    }
+
+    /**
+     * Вычисляет фонетический ключ одного слова.
+     * @param token слово в нижнем регистре (см. {@link com.example.phonebook.util.TextNormalizer})
+     * @return фонетический ключ; пустая строка, если в слове нет букв
+     */
+    static String of(String token) {
+        StringBuilder sb = new StringBuilder(token.length());
+        char last = 0;
+        for (int i = 0; i < token.length(); i++) {
+            char ch = map(token.charAt(i));
+            if (ch == 0) {
+                continue;
+            }
+            boolean vowel = isVowel(ch);
+            if (vowel && sb.length() > 0) {
+                last = 0;
+                continue;
+            }
+            if (vowel) {
+                ch = 'а';
+            }
+            if (ch != last) {
+                sb.append(ch);
+                last = ch;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Приводит букву к её фонетическому классу.
+     * @param ch исходная буква
+     * @return представитель класса или {@code 0}, если символ не учитывается
+     */
+    private static char map(char ch) {
+        return switch (ch) {
+            case 'б', 'b', 'п', 'p' -> 'п';
+            case 'в', 'v', 'w', 'ф', 'f' -> 'ф';
+            case 'г', 'g', 'к', 'k', 'q', 'c' -> 'к';
+            case 'д', 'd', 'т', 't' -> 'т';
+            case 'ж', 'ш', 'щ' -> 'ш';
+            case 'з', 'z', 'с', 's', 'ц' -> 'с';
+            case 'х', 'h' -> 'х';
+            case 'ч' -> 'ч';
+            case 'л', 'l' -> 'л';
+            case 'м', 'm' -> 'м';
+            case 'н', 'n' -> 'н';
+            case 'р', 'r' -> 'р';
+            case 'й', 'j' -> 'й';
+            case 'x' -> 'к';
+            case 'а', 'a', 'о', 'o', 'у', 'u', 'ы', 'y', 'э', 'е', 'e', 'ё', 'и', 'i', 'ю', 'я' -> 'а';
+            default -> 0;
+        };
+    }
+
+    private static boolean isVowel(char ch) {
+        return ch == 'а';
+    }
+}
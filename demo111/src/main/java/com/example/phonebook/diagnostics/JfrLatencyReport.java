@@ -0,0 +1,107 @@
+package com.example.phonebook.diagnostics;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Печатает перцентили длительности операций справочника по записи JFR.
+ * <p>Учитываются события {@link SearchEvent}, {@link MutationEvent}
+ * и {@link StorageEvent}; изменения и операции с файлом группируются
+ * по полю «операция».</p>
+ * <pre>
+ * java -cp phonebook.jar com.example.phonebook.diagnostics.JfrLatencyReport recording.jfr
+ * </pre>
+ */
+public final class JfrLatencyReport {
+
+    private static final Set<String> EVENTS = Set.of(SearchEvent.NAME, MutationEvent.NAME, StorageEvent.NAME);
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private JfrLatencyReport() {
+    }
+
+    /**
+     * Точка входа.
+     * @param args путь к файлу записи JFR
+     * @throws IOException если запись не удалось прочитать
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Использование: JfrLatencyReport <файл .jfr>");
+            System.exit(2);
+        }
+        print(read(Path.of(args[0])), System.out);
+    }
+
+    /**
+     * Читает длительности событий справочника из записи.
+     * @param recording файл записи JFR
+     * @return длительности в наносекундах по группам «событие/операция»
+     * @throws IOException если запись не удалось прочитать
+     */
+    static Map<String, List<Long>> read(Path recording) throws IOException {
+        Map<String, List<Long>> durations = new TreeMap<>();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                String name = event.getEventType().getName();
+                if (!EVENTS.contains(name)) {
+                    continue;
+                }
+                String group = event.getEventType().getLabel();
+                if (event.hasField("operation")) {
+                    group += " / " + event.getString("operation");
+                }
+                durations.computeIfAbsent(group, k -> new ArrayList<>()).add(event.getDuration().toNanos());
+            }
+        }
+        return durations;
+    }
+
+    /**
+     * Печатает таблицу: количество событий, перцентили и максимум в миллисекундах.
+     * @param durations длительности по группам
+     * @param out       поток вывода
+     */
+    static void print(Map<String, List<Long>> durations, PrintStream out) {
+        if (durations.isEmpty()) {
+            out.println("В записи нет событий справочника");
+            return;
+        }
+        out.printf("%-40s %8s", "Операция", "Кол-во");
+        for (double p : PERCENTILES) {
+            out.printf(" %10s", "p" + (p == Math.rint(p) ? String.valueOf((int) p) : String.valueOf(p)));
+        }
+        out.printf(" %10s%n", "max");
+
+        for (Map.Entry<String, List<Long>> e : durations.entrySet()) {
+            long[] sorted = e.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+            out.printf("%-40s %8d", e.getKey(), sorted.length);
+            for (double p : PERCENTILES) {
+                out.printf(" %10.3f", percentile(sorted, p) / 1e6);
+            }
+            out.printf(" %10.3f%n", sorted[sorted.length - 1] / 1e6);
+        }
+    }
+
+    /**
+     * Перцентиль методом ближайшего ранга.
+     * @param sorted отсортированные значения (не пустой массив)
+     * @param p      перцентиль от 0 до 100
+     * @return значение перцентиля
+     */
+    static long percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.phonebook.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JFR: изменение справочника — добавление, изменение, удаление
+ * контакта или пакет изменений.
+ * <p>Длительность включает обновление индекса, оповещение слушателей
+ * и запись в хранилище.</p>
+ */
+@Name(MutationEvent.NAME)
+@Label("Изменение справочника")
+@Description("Добавление, изменение или удаление контактов")
+@Category({"Phonebook", "Service"})
+@StackTrace(false)
+public class MutationEvent extends jdk.jfr.Event {
+
+    /** Имя события в записи JFR */
+    public static final String NAME = "com.example.phonebook.Mutation";
+
+    @Label("Операция")
+    String operation;
+
+    @Label("Количество изменений")
+    int mutationCount;
+
+    @Label("Контактов в справочнике")
+    int contactCount;
+
+    /**
+     * Заполняет и записывает событие, если оно включено и превышает порог.
+     * @param operation     операция: ADD, UPDATE, REMOVE или BATCH
+     * @param mutationCount количество применённых изменений
+     * @param contactCount  количество контактов после изменения
+     */
+    public void complete(String operation, int mutationCount, int contactCount) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.mutationCount = mutationCount;
+            this.contactCount = contactCount;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.phonebook.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JFR: поиск контактов
+ * ({@link com.example.phonebook.service.PhonebookService#search(String)}).
+ * <p>Длительность события — время выполнения поиска.</p>
+ */
+@Name(SearchEvent.NAME)
+@Label("Поиск контактов")
+@Description("Поиск по ФИО или номеру телефона")
+@Category({"Phonebook", "Service"})
+@StackTrace(false)
+public class SearchEvent extends jdk.jfr.Event {
+
+    /** Имя события в записи JFR */
+    public static final String NAME = "com.example.phonebook.Search";
+
+    @Label("Длина запроса")
+    int queryLength;
+
+    @Label("Найдено контактов")
+    int resultCount;
+
+    @Label("Контактов в справочнике")
+    int contactCount;
+
+    /**
+     * Заполняет и записывает событие, если оно включено и превышает порог.
+     * @param query        строка запроса (может быть {@code null})
+     * @param resultCount  количество найденных контактов
+     * @param contactCount количество контактов в справочнике
+     */
+    public void complete(String query, int resultCount, int contactCount) {
+        end();
+        if (shouldCommit()) {
+            this.queryLength = query == null ? 0 : query.length();
+            this.resultCount = resultCount;
+            this.contactCount = contactCount;
+            commit();
+        }
+    }
+}
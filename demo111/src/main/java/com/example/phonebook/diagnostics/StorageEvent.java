@@ -0,0 +1,54 @@
+package com.example.phonebook.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JFR: сохранение или загрузка файла справочника
+ * ({@link com.example.phonebook.storage.PhonebookStorage}).
+ */
+@Name(StorageEvent.NAME)
+@Label("Файл справочника")
+@Description("Сохранение или загрузка файла справочника")
+@Category({"Phonebook", "Storage"})
+@StackTrace(false)
+public class StorageEvent extends jdk.jfr.Event {
+
+    /** Имя события в записи JFR */
+    public static final String NAME = "com.example.phonebook.Storage";
+
+    @Label("Операция")
+    String operation;
+
+    @Label("Файл")
+    String path;
+
+    @Label("Количество контактов")
+    int contactCount;
+
+    @Label("Размер файла")
+    @DataAmount
+    long bytes;
+
+    /**
+     * Заполняет и записывает событие, если оно включено и превышает порог.
+     * @param operation    операция: SAVE или LOAD
+     * @param path         путь к файлу
+     * @param contactCount количество сохранённых или загруженных контактов
+     * @param bytes        размер файла
+     */
+    public void complete(String operation, String path, int contactCount, long bytes) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.path = path;
+            this.contactCount = contactCount;
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.example.phonebook.index;
+
+import com.example.phonebook.model.Contact;
+
+import java.util.*;
+
+/**
+ * Производные структуры данных над списком контактов справочника.
+ * <p>Индекс хранит для каждого контакта запись {@link IndexedContact}
+ * и поддерживает упорядоченные представления: в порядке добавления и по ФИО.
+ * Благодаря им постраничный обход и сортировка не требуют копирования
+ * и пересортировки всего справочника. Битовые индексы по признакам
+ * телефонов ({@link #select(PhoneFilter)}), n-граммы ФИО
+ * ({@link #selectName(String, boolean)}) и упорядоченные ключи номеров и слов ФИО
+ * ({@link #selectNumberPrefix(String)}, {@link #selectWordPrefix(String)}) отбирают
+ * кандидатов для запроса, не просматривая весь справочник.</p>
+ * <p>Номера и начала слов хранятся вне кучи ({@link OffHeapKeyIndex}), поэтому
+ * индекс нужно закрыть ({@link #close()}), когда он больше не нужен.</p>
+ * <p>Контакты идентифицируются по ссылке, а не по {@link Contact#equals(Object)},
+ * так как разные контакты могут иметь одинаковое ФИО. Индекс не потокобезопасен:
+ * синхронизацию обеспечивает владелец
+ * ({@link com.example.phonebook.service.PhonebookService}).</p>
+ */
+public class ContactIndex implements AutoCloseable {
+
+    private final Map<Contact, IndexedContact> entries = new IdentityHashMap<>();
+    private final NavigableSet<IndexedContact> byId = new TreeSet<>(IndexedContact.BY_ID);
+    private final NavigableSet<IndexedContact> byName = new TreeSet<>(IndexedContact.BY_NAME);
+    /** Записи по номеру; удалённые номера содержат {@code null} */
+    private final List<IndexedContact> slots = new ArrayList<>();
+    private final FacetIndex facets = new FacetIndex();
+    private final NameGramIndex nameGrams = new NameGramIndex();
+    private final OffHeapKeyIndex keys;
+
+    private int nextId;
+    /** Идёт перестроение: индекс ключей заполняется одним проходом в конце */
+    private boolean rebuilding;
+
+    /**
+     * Создаёт пустой индекс; ключи номеров и слов хранятся в прямой памяти.
+     */
+    public ContactIndex() {
+        this(OffHeapKeyIndex.inMemory());
+    }
+
+    /**
+     * Создаёт пустой индекс над готовым индексом ключей, например
+     * открытым из файла ({@link OffHeapKeyIndex#open(java.nio.file.Path)}).
+     * Индекс ключей закрывается вместе с этим индексом.
+     * @param keys индекс ключей вне кучи
+     */
+    public ContactIndex(OffHeapKeyIndex keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * Добавляет контакт в конец индекса.
+     * @param contact контакт
+     * @return новая запись индекса
+     * @throws IllegalArgumentException если этот объект уже есть в индексе
+     */
+    public IndexedContact add(Contact contact) {
+        return insert(new IndexedContact(nextId++, contact));
+    }
+
+    /**
+     * Удаляет контакт из индекса. Отсутствующий контакт игнорируется.
+     * @param contact контакт (сравнивается по ссылке)
+     * @return удалённая запись или {@code null}, если контакта не было
+     */
+    public IndexedContact remove(Contact contact) {
+        IndexedContact entry = entries.remove(contact);
+        if (entry != null) {
+            byId.remove(entry);
+            byName.remove(entry);
+            slots.set(entry.getId(), null);
+            facets.remove(entry);
+            nameGrams.remove(entry);
+            keys.remove(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Заменяет контакт новой версией, сохраняя его позицию в порядке добавления.
+     * Если прежней версии нет в индексе, новая добавляется в конец.
+     * @param previous прежняя версия (сравнивается по ссылке)
+     * @param updated  новая версия
+     * @return новая запись индекса
+     */
+    public IndexedContact replace(Contact previous, Contact updated) {
+        IndexedContact entry = remove(previous);
+        if (entry == null) {
+            return add(updated);
+        }
+        return insert(new IndexedContact(entry.getId(), updated));
+    }
+
+    /**
+     * Возвращает в индекс ранее удалённую запись с её прежним номером.
+     * Используется при отмене изменений, которые не удалось сохранить.
+     * @param entry запись, возвращённая {@link #remove(Contact)}
+     * @return та же запись
+     * @throws IllegalArgumentException если этот контакт уже есть в индексе
+     */
+    public IndexedContact restore(IndexedContact entry) {
+        return insert(entry);
+    }
+
+    /**
+     * Перестраивает индекс по списку контактов. Индекс ключей вне кучи
+     * заполняется одним проходом в конце, а если он уже соответствует
+     * этим контактам (прочитан из файла), остаётся прежним.
+     * @param contacts контакты в порядке справочника
+     */
+    public void rebuild(Collection<Contact> contacts) {
+        entries.clear();
+        byId.clear();
+        byName.clear();
+        slots.clear();
+        facets.clear();
+        nameGrams.clear();
+        nextId = 0;
+        rebuilding = true;
+        try {
+            contacts.forEach(this::add);
+        } finally {
+            rebuilding = false;
+        }
+        keys.rebuild(byId);
+    }
+
+    /**
+     * Возвращает запись индекса для контакта.
+     * @param contact контакт (сравнивается по ссылке)
+     * @return запись или {@code null}, если контакта нет в индексе
+     */
+    public IndexedContact entry(Contact contact) {
+        return entries.get(contact);
+    }
+
+    /**
+     * Возвращает запись по её номеру.
+     * @param id номер записи ({@link IndexedContact#getId()})
+     * @return запись или {@code null}, если записи с таким номером нет
+     */
+    public IndexedContact byId(int id) {
+        return id >= 0 && id < slots.size() ? slots.get(id) : null;
+    }
+
+    /**
+     * Отбирает номера записей, которые могут подходить под фильтр, по битовым индексам.
+     * Для начала номера длиннее трёх цифр выборка может быть шире точной,
+     * поэтому кандидатов нужно проверить {@link PhoneFilter#matches(IndexedContact)}.
+     * @param filter фильтр по телефонам
+     * @return новое множество номеров записей по возрастанию
+     */
+    public RoaringBitmap select(PhoneFilter filter) {
+        return facets.select(filter);
+    }
+
+    /**
+     * Оценивает размер выборки {@link #select(PhoneFilter)}, по возможности
+     * не строя её.
+     * @param filter фильтр по телефонам
+     * @return число кандидатов
+     */
+    public int estimate(PhoneFilter filter) {
+        return facets.estimate(filter);
+    }
+
+    /**
+     * Отбирает по n-граммам записи, ФИО которых может содержать фрагмент.
+     * Кандидатов нужно проверить: n-граммы могут встретиться в ФИО порознь.
+     * @param fragment  фрагмент в нормализованном виде ({@link IndexedContact#getFoldedName()})
+     * @param wordStart {@code true}, если фрагмент должен стоять в начале слова
+     * @return новое множество номеров записей или {@code null}, если фрагмент
+     *         слишком короток и индекс неприменим
+     */
+    public RoaringBitmap selectName(String fragment, boolean wordStart) {
+        return nameGrams.select(fragment, wordStart);
+    }
+
+    /**
+     * Оценивает сверху размер выборки {@link #selectName(String, boolean)} без её построения.
+     * @param fragment  фрагмент в нормализованном виде
+     * @param wordStart {@code true}, если фрагмент должен стоять в начале слова
+     * @return число кандидатов или {@code -1}, если индекс неприменим
+     */
+    public int estimateName(String fragment, boolean wordStart) {
+        return nameGrams.estimate(fragment, wordStart);
+    }
+
+    /**
+     * Отбирает по ключам слов записи, в ФИО которых есть слово, начинающееся с фрагмента.
+     * Для фрагмента длиннее {@link OffHeapKeyIndex#WORD_KEY_CHARS} символов
+     * выборка шире точной, поэтому кандидатов нужно проверить.
+     * @param fragment фрагмент в нормализованном виде ({@link IndexedContact#getFoldedName()})
+     * @return новое множество номеров записей или {@code null}, если фрагмент
+     *         начинается не с буквы или цифры и индекс неприменим
+     */
+    public RoaringBitmap selectWordPrefix(String fragment) {
+        return keys.selectWordPrefix(fragment);
+    }
+
+    /**
+     * Оценивает сверху размер выборки {@link #selectWordPrefix(String)} без её построения.
+     * @param fragment фрагмент в нормализованном виде
+     * @return число кандидатов или {@code -1}, если индекс неприменим
+     */
+    public int estimateWordPrefix(String fragment) {
+        return keys.estimateWordPrefix(fragment);
+    }
+
+    /**
+     * Отбирает записи, у которых есть нормализованный номер с указанным началом.
+     * @param prefix непустое начало нормализованного номера из цифр
+     * @return новое множество номеров записей
+     */
+    public RoaringBitmap selectNumberPrefix(String prefix) {
+        return keys.selectNumberPrefix(prefix);
+    }
+
+    /**
+     * Оценивает сверху размер выборки {@link #selectNumberPrefix(String)} без её построения.
+     * @param prefix непустое начало нормализованного номера из цифр
+     * @return число кандидатов
+     */
+    public int estimateNumberPrefix(String prefix) {
+        return keys.estimateNumberPrefix(prefix);
+    }
+
+    /**
+     * Находит первую в порядке добавления запись с указанным номером телефона
+     * по хеш-таблице номеров, не просматривая справочник.
+     * @param key нормализованный номер ({@link com.example.phonebook.util.TextNormalizer#digits(String)})
+     * @return запись или {@code null}, если номера нет
+     */
+    public IndexedContact firstWithNumber(String key) {
+        if (key.isEmpty()) {
+            return null;
+        }
+        if (key.length() <= OffHeapKeyIndex.MAX_NUMBER_DIGITS) {
+            return byId(keys.firstWithNumber(key));
+        }
+        for (int id : keys.selectNumberPrefix(key).toArray()) {
+            IndexedContact e = byId(id);
+            if (e != null && e.phoneFor(key) != null) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает объём памяти вне кучи, занятой индексом ключей.
+     * @return байты прямой памяти
+     */
+    public long getOffHeapBytes() {
+        return keys.getOffHeapBytes();
+    }
+
+    /**
+     * Возвращает записи контактов с указанным ФИО (с учётом регистра)
+     * в порядке добавления.
+     * @param fullName ФИО или {@code null}
+     * @return новый список записей
+     */
+    public List<IndexedContact> withName(String fullName) {
+        List<IndexedContact> result = new ArrayList<>();
+        for (IndexedContact e : byName.subSet(IndexedContact.probe(Integer.MIN_VALUE, fullName), true,
+                IndexedContact.probe(Integer.MAX_VALUE, fullName), true)) {
+            if (Objects.equals(e.getContact().getFullName(), fullName)) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Проверяет, есть ли этот объект контакта в индексе.
+     * @param contact контакт (сравнивается по ссылке)
+     * @return {@code true}, если контакт проиндексирован
+     */
+    public boolean contains(Contact contact) {
+        return entries.containsKey(contact);
+    }
+
+    /**
+     * Возвращает количество контактов в индексе.
+     * @return количество контактов
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Возвращает записи в порядке добавления, начиная после указанного номера.
+     * @param afterId номер, после которого начинается обход; {@code -1} — с начала
+     * @return представление, читающее индекс лениво
+     */
+    public Iterable<IndexedContact> byInsertion(int afterId) {
+        return byId.tailSet(IndexedContact.probe(afterId, null), false);
+    }
+
+    /**
+     * Возвращает записи в порядке ФИО, начиная после указанной позиции.
+     * @param afterId   номер записи, после которой начинается обход
+     * @param afterName ФИО этой записи
+     * @return представление, читающее индекс лениво
+     */
+    public Iterable<IndexedContact> byName(int afterId, String afterName) {
+        return byName.tailSet(IndexedContact.probe(afterId, afterName), false);
+    }
+
+    /**
+     * Возвращает все записи в порядке ФИО.
+     * @return представление, читающее индекс лениво
+     */
+    public Iterable<IndexedContact> byName() {
+        return Collections.unmodifiableSet(byName);
+    }
+
+    /**
+     * Закрывает индекс ключей вне кучи (и сохраняет его, если он открыт из файла).
+     * После вызова индекс использовать нельзя.
+     */
+    @Override
+    public void close() {
+        keys.close();
+    }
+
+    private IndexedContact insert(IndexedContact entry) {
+        if (entries.putIfAbsent(entry.getContact(), entry) != null) {
+            throw new IllegalArgumentException("Контакт уже есть в справочнике: "
+                    + entry.getContact().getFullName());
+        }
+        byId.add(entry);
+        byName.add(entry);
+        if (entry.getId() == slots.size()) {
+            slots.add(entry);
+        } else {
+            slots.set(entry.getId(), entry);
+        }
+        facets.add(entry);
+        nameGrams.add(entry);
+        if (!rebuilding) {
+            keys.add(entry);
+        }
+        return entry;
+    }
+}
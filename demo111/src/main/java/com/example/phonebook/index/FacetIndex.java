@@ -0,0 +1,177 @@
+package com.example.phonebook.index;
+
+import com.example.phonebook.model.PhoneType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Битовые индексы по признакам телефонов: для каждого значения признака —
+ * множество номеров записей ({@link IndexedContact#getId()}) в виде {@link RoaringBitmap}.
+ * <p>Признаки:</p>
+ * <ul>
+ *     <li>тип номера — контакт попадает в множество, если у него есть хоть один номер этого типа;</li>
+ *     <li>тип номера и первые {@link #PREFIX_LENGTH} цифры номера без кода страны —
+ *     для этой пары, поэтому «рабочий, 495» отбирается одним множеством;</li>
+ *     <li>количество телефонов от 0 до {@link PhoneFilter#MANY_PHONES}.</li>
+ * </ul>
+ * <p>Номер без типа не попадает в множества типов, а его начало хранится отдельно:
+ * такой номер находится только фильтром без типа.</p>
+ * <p>Выборка по {@link PhoneFilter} пересекает и объединяет множества,
+ * не обращаясь к самим контактам.</p>
+ */
+final class FacetIndex {
+
+    /** Сколько первых цифр номера индексируется */
+    static final int PREFIX_LENGTH = 3;
+
+    private final RoaringBitmap all = new RoaringBitmap();
+    private final Map<PhoneType, RoaringBitmap> byType = new EnumMap<>(PhoneType.class);
+    private final Map<PhoneType, NavigableMap<String, RoaringBitmap>> byPrefix = new EnumMap<>(PhoneType.class);
+    /** Начала номеров без типа */
+    private final NavigableMap<String, RoaringBitmap> untypedPrefix = new TreeMap<>();
+    private final RoaringBitmap[] byPhoneCount = new RoaringBitmap[PhoneFilter.MANY_PHONES + 1];
+
+    FacetIndex() {
+        for (int i = 0; i < byPhoneCount.length; i++) {
+            byPhoneCount[i] = new RoaringBitmap();
+        }
+    }
+
+    /**
+     * Возвращает номер без кода страны: у одиннадцатизначных номеров
+     * с кодом 7 (8 к этому времени уже заменена) первая цифра отбрасывается.
+     * @param key нормализованный номер ({@link com.example.phonebook.util.TextNormalizer#digits(String)})
+     * @return номер без кода страны
+     */
+    static String nationalNumber(String key) {
+        return key.length() == 11 && key.charAt(0) == '7' ? key.substring(1) : key;
+    }
+
+    void add(IndexedContact entry) {
+        int id = entry.getId();
+        String[] keys = entry.numberKeys();
+        PhoneType[] types = entry.phoneTypes();
+        all.add(id);
+        byPhoneCount[Math.min(keys.length, PhoneFilter.MANY_PHONES)].add(id);
+        for (int i = 0; i < keys.length; i++) {
+            NavigableMap<String, RoaringBitmap> prefixes = untypedPrefix;
+            if (types[i] != null) {
+                byType.computeIfAbsent(types[i], t -> new RoaringBitmap()).add(id);
+                prefixes = byPrefix.computeIfAbsent(types[i], t -> new TreeMap<>());
+            }
+            prefixes.computeIfAbsent(prefixOf(keys[i]), p -> new RoaringBitmap()).add(id);
+        }
+    }
+
+    void remove(IndexedContact entry) {
+        int id = entry.getId();
+        String[] keys = entry.numberKeys();
+        PhoneType[] types = entry.phoneTypes();
+        all.remove(id);
+        byPhoneCount[Math.min(keys.length, PhoneFilter.MANY_PHONES)].remove(id);
+        for (int i = 0; i < keys.length; i++) {
+            NavigableMap<String, RoaringBitmap> prefixes = untypedPrefix;
+            if (types[i] != null) {
+                RoaringBitmap typed = byType.get(types[i]);
+                if (typed != null) {
+                    typed.remove(id);
+                }
+                prefixes = byPrefix.get(types[i]);
+            }
+            if (prefixes != null) {
+                String prefix = prefixOf(keys[i]);
+                RoaringBitmap bitmap = prefixes.get(prefix);
+                if (bitmap != null && bitmap.remove(id) && bitmap.isEmpty()) {
+                    prefixes.remove(prefix);
+                }
+            }
+        }
+    }
+
+    void clear() {
+        all.clear();
+        byType.clear();
+        byPrefix.clear();
+        untypedPrefix.clear();
+        for (RoaringBitmap bitmap : byPhoneCount) {
+            bitmap.clear();
+        }
+    }
+
+    /**
+     * Отбирает записи, которые могут подходить под фильтр. Если начало номера
+     * длиннее {@link #PREFIX_LENGTH} цифр, выборка шире точной и кандидатов
+     * нужно проверить {@link PhoneFilter#matches(IndexedContact)}.
+     * @param filter фильтр
+     * @return новое множество номеров записей
+     */
+    RoaringBitmap select(PhoneFilter filter) {
+        RoaringBitmap counted = filter.getPhoneCount() >= 0 ? byPhoneCount[filter.getPhoneCount()] : all;
+        if (filter.getType() == null && filter.getPrefix() == null) {
+            return counted.copy();
+        }
+        return RoaringBitmap.and(counted, withPhone(filter.getType(), filter.getPrefix()));
+    }
+
+    /**
+     * Оценивает размер выборки по фильтру. Для фильтра только по типу
+     * или только по количеству телефонов размер берётся из готового множества.
+     * @param filter фильтр
+     * @return число кандидатов
+     */
+    int estimate(PhoneFilter filter) {
+        if (filter.getPrefix() == null) {
+            if (filter.getType() == null) {
+                return (filter.getPhoneCount() >= 0 ? byPhoneCount[filter.getPhoneCount()] : all).getCardinality();
+            }
+            if (filter.getPhoneCount() < 0) {
+                RoaringBitmap typed = byType.get(filter.getType());
+                return typed == null ? 0 : typed.getCardinality();
+            }
+        }
+        return select(filter).getCardinality();
+    }
+
+    /**
+     * Записи, у которых есть номер указанного типа с указанным началом.
+     * Без типа учитываются и номера, у которых тип не задан.
+     */
+    private RoaringBitmap withPhone(PhoneType type, String prefix) {
+        RoaringBitmap result = new RoaringBitmap();
+        for (PhoneType t : type == null ? PhoneType.values() : new PhoneType[]{type}) {
+            if (prefix == null) {
+                RoaringBitmap bitmap = byType.get(t);
+                if (bitmap != null) {
+                    result = RoaringBitmap.or(result, bitmap);
+                }
+                continue;
+            }
+            result = withPrefix(result, byPrefix.getOrDefault(t, new TreeMap<>()), prefix);
+        }
+        if (type == null && prefix != null) {
+            result = withPrefix(result, untypedPrefix, prefix);
+        }
+        return result;
+    }
+
+    /** Добавляет к множеству записи с номерами, начинающимися с {@code prefix} */
+    private static RoaringBitmap withPrefix(RoaringBitmap result, NavigableMap<String, RoaringBitmap> prefixes,
+                                            String prefix) {
+        if (prefix.length() >= PREFIX_LENGTH) {
+            RoaringBitmap bitmap = prefixes.get(prefix.substring(0, PREFIX_LENGTH));
+            return bitmap == null ? result : RoaringBitmap.or(result, bitmap);
+        }
+        for (RoaringBitmap bitmap : prefixes.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            result = RoaringBitmap.or(result, bitmap);
+        }
+        return result;
+    }
+
+    private static String prefixOf(String key) {
+        String national = nationalNumber(key);
+        return national.length() > PREFIX_LENGTH ? national.substring(0, PREFIX_LENGTH) : national;
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.phonebook.index;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.model.PhoneNumber;
+import com.example.phonebook.model.PhoneType;
+import com.example.phonebook.util.TextNormalizer;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Запись индекса: контакт вместе с его внутренним номером и ключами сортировки.
+ * <p>Номер присваивается контакту при добавлении в индекс и сохраняется,
+ * если контакт заменяется новой версией, поэтому порядок номеров совпадает
+ * с порядком контактов в справочнике. Ключи — ФИО для сортировки,
+ * нормализованное ФИО и цифры номеров для поиска — вычисляются один раз
+ * при добавлении и не пересчитываются при каждом запросе. Если контакт
+ * изменён на месте, его нужно заново передать сервису через обновление.</p>
+ */
+public final class IndexedContact {
+
+    /** Порядок по ФИО без учёта регистра (пустые ФИО в конце), затем по номеру */
+    static final Comparator<IndexedContact> BY_NAME = Comparator
+            .comparing((IndexedContact e) -> e.sortName, Comparator.nullsLast(String::compareToIgnoreCase))
+            .thenComparingInt(e -> e.id);
+
+    /** Порядок добавления */
+    static final Comparator<IndexedContact> BY_ID = Comparator.comparingInt(e -> e.id);
+
+    private final int id;
+    private final Contact contact;
+    private final String sortName;
+    private final String foldedName;
+    private final String numberDigits;
+    private final PhoneNumber[] phones;
+    private final PhoneType[] phoneTypes;
+    private final String[] numberKeys;
+
+    IndexedContact(int id, Contact contact) {
+        this.id = id;
+        this.contact = contact;
+        this.sortName = contact.getFullName();
+        this.foldedName = TextNormalizer.foldName(sortName);
+        this.numberDigits = joinDigits(contact);
+        this.phones = contact.getPhones().toArray(new PhoneNumber[0]);
+        this.phoneTypes = new PhoneType[phones.length];
+        this.numberKeys = new String[phones.length];
+        for (int i = 0; i < phones.length; i++) {
+            phoneTypes[i] = phones[i].getType();
+            numberKeys[i] = TextNormalizer.digits(phones[i].getNumber());
+        }
+    }
+
+    /**
+     * Создаёт запись-ориентир для поиска позиции в упорядоченных представлениях.
+     * @param id       внутренний номер
+     * @param sortName ФИО, по которому выполняется сортировка
+     * @return запись без контакта
+     */
+    static IndexedContact probe(int id, String sortName) {
+        return new IndexedContact(id, sortName);
+    }
+
+    private IndexedContact(int id, String sortName) {
+        this.id = id;
+        this.contact = null;
+        this.sortName = sortName;
+        this.foldedName = "";
+        this.numberDigits = "";
+        this.phones = new PhoneNumber[0];
+        this.phoneTypes = new PhoneType[0];
+        this.numberKeys = new String[0];
+    }
+
+    /**
+     * Склеивает цифры всех номеров через разделитель, который не является цифрой:
+     * так поиск подстроки цифр не может совпасть на стыке двух номеров.
+     */
+    private static String joinDigits(Contact contact) {
+        StringBuilder sb = new StringBuilder();
+        for (PhoneNumber pn : contact.getPhones()) {
+            if (sb.length() > 0) {
+                sb.append('|');
+            }
+            sb.append(TextNormalizer.digitsOnly(pn.getNumber()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Возвращает внутренний номер контакта в индексе.
+     * @return номер, уникальный в пределах индекса
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Возвращает сам контакт.
+     * @return контакт
+     */
+    public Contact getContact() {
+        return contact;
+    }
+
+    /**
+     * Возвращает ФИО, по которому контакт упорядочен в индексе.
+     * @return ФИО на момент добавления в индекс
+     */
+    public String getSortName() {
+        return sortName;
+    }
+
+    /**
+     * Возвращает ФИО в нормализованном виде (см. {@link TextNormalizer#foldName(String)}).
+     * @return нормализованное ФИО
+     */
+    public String getFoldedName() {
+        return foldedName;
+    }
+
+    /**
+     * Возвращает цифры всех номеров контакта, разделённые символом «|».
+     * @return цифры номеров
+     */
+    public String getNumberDigits() {
+        return numberDigits;
+    }
+
+    /**
+     * Возвращает нормализованные номера телефонов (см. {@link TextNormalizer#digits(String)})
+     * в порядке телефонов контакта.
+     * @return неизменяемый список ключей номеров
+     */
+    public List<String> getNumberKeys() {
+        return List.of(numberKeys);
+    }
+
+    /** Те же ключи номеров без копирования; массив нельзя изменять */
+    String[] numberKeys() {
+        return numberKeys;
+    }
+
+    /**
+     * Типы телефонов на момент добавления в индекс, в том же порядке, что и {@link #numberKeys()}.
+     * Массив нельзя изменять.
+     */
+    PhoneType[] phoneTypes() {
+        return phoneTypes;
+    }
+
+    /**
+     * Возвращает количество телефонов контакта.
+     * @return количество телефонов
+     */
+    public int getPhoneCount() {
+        return phones.length;
+    }
+
+    /**
+     * Проверяет, есть ли у контакта телефон указанного типа.
+     * @param type тип номера
+     * @return {@code true}, если есть
+     */
+    public boolean hasPhoneType(PhoneType type) {
+        for (PhoneType t : phoneTypes) {
+            if (t == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Проверяет, начинается ли один из нормализованных номеров с указанных цифр.
+     * @param prefix начало нормализованного номера
+     * @return {@code true}, если такой номер есть
+     */
+    public boolean hasNumberPrefix(String prefix) {
+        for (String key : numberKeys) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Находит телефон контакта с указанным нормализованным номером.
+     * @param key нормализованный номер
+     * @return телефон или {@code null}, если у контакта такого номера нет
+     */
+    public PhoneNumber phoneFor(String key) {
+        for (int i = 0; i < numberKeys.length; i++) {
+            if (numberKeys[i].equals(key)) {
+                return phones[i];
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.phonebook.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Индекс n-грамм нормализованного ФИО: для каждой последовательности
+ * из {@link #GRAM} символов — множество номеров записей, в ФИО которых она встречается.
+ * <p>Перед разбиением все символы, кроме букв и цифр, заменяются пробелом,
+ * а в начало добавляется пробел. Поэтому начало слова даёт отдельную n-грамму
+ * («␣ив» для «иванов»), и поиск по началу слова из двух букв тоже использует индекс.
+ * Фрагмент при поиске преобразуется так же, значит, каждый контакт, ФИО которого
+ * содержит фрагмент, попадает в пересечение; лишних кандидатов отсеивает проверка.</p>
+ */
+final class NameGramIndex {
+
+    /** Длина n-граммы */
+    static final int GRAM = 3;
+
+    private final Map<String, RoaringBitmap> grams = new HashMap<>();
+
+    void add(IndexedContact entry) {
+        String text = gramText(entry.getFoldedName(), true);
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.computeIfAbsent(text.substring(i, i + GRAM), g -> new RoaringBitmap()).add(entry.getId());
+        }
+    }
+
+    void remove(IndexedContact entry) {
+        String text = gramText(entry.getFoldedName(), true);
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            String gram = text.substring(i, i + GRAM);
+            RoaringBitmap ids = grams.get(gram);
+            if (ids != null && ids.remove(entry.getId()) && ids.isEmpty()) {
+                grams.remove(gram);
+            }
+        }
+    }
+
+    void clear() {
+        grams.clear();
+    }
+
+    /**
+     * Оценивает число кандидатов: размер самого редкого множества среди n-грамм фрагмента.
+     * @param fragment  нормализованный фрагмент ФИО
+     * @param wordStart {@code true}, если фрагмент должен стоять в начале слова
+     * @return оценка сверху или {@code -1}, если фрагмент слишком короток для индекса
+     */
+    int estimate(String fragment, boolean wordStart) {
+        List<String> parts = gramsOf(fragment, wordStart);
+        if (parts == null) {
+            return -1;
+        }
+        int min = Integer.MAX_VALUE;
+        for (String gram : parts) {
+            RoaringBitmap ids = grams.get(gram);
+            min = Math.min(min, ids == null ? 0 : ids.getCardinality());
+        }
+        return min;
+    }
+
+    /**
+     * Пересекает множества всех n-грамм фрагмента, начиная с самого редкого.
+     * @param fragment  нормализованный фрагмент ФИО
+     * @param wordStart {@code true}, если фрагмент должен стоять в начале слова
+     * @return новое множество кандидатов или {@code null}, если фрагмент слишком короток
+     */
+    RoaringBitmap select(String fragment, boolean wordStart) {
+        List<String> parts = gramsOf(fragment, wordStart);
+        if (parts == null) {
+            return null;
+        }
+        List<RoaringBitmap> sets = new ArrayList<>(parts.size());
+        for (String gram : parts) {
+            RoaringBitmap ids = grams.get(gram);
+            if (ids == null) {
+                return new RoaringBitmap();
+            }
+            sets.add(ids);
+        }
+        sets.sort((a, b) -> Integer.compare(a.getCardinality(), b.getCardinality()));
+        RoaringBitmap result = sets.get(0).copy();
+        for (int i = 1; i < sets.size() && !result.isEmpty(); i++) {
+            result = RoaringBitmap.and(result, sets.get(i));
+        }
+        return result;
+    }
+
+    /** Различные n-граммы фрагмента или {@code null}, если их нет */
+    private static List<String> gramsOf(String fragment, boolean wordStart) {
+        String text = gramText(fragment, wordStart);
+        if (text.length() < GRAM) {
+            return null;
+        }
+        List<String> result = new ArrayList<>(text.length() - GRAM + 1);
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            String gram = text.substring(i, i + GRAM);
+            if (!result.contains(gram)) {
+                result.add(gram);
+            }
+        }
+        return result;
+    }
+
+    private static String gramText(String folded, boolean wordStart) {
+        StringBuilder sb = new StringBuilder(folded.length() + 1);
+        if (wordStart) {
+            sb.append(' ');
+        }
+        for (int i = 0; i < folded.length(); i++) {
+            char ch = folded.charAt(i);
+            sb.append(Character.isLetterOrDigit(ch) ? ch : ' ');
+        }
+        return sb.toString();
+    }
+}
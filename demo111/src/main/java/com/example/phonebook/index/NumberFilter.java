@@ -0,0 +1,233 @@
+package com.example.phonebook.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Считающий фильтр Блума по нормализованным номерам телефонов
+ * (см. {@link com.example.phonebook.util.TextNormalizer#digits(String)}).
+ * <p>Фильтр отвечает на вопрос «может ли номер быть в справочнике» без обхода
+ * контактов: ответ «нет» точен, ответ «да» ошибочен примерно в 1% случаев при
+ * заполнении до расчётной ёмкости. Вместо битов используются 4-битные счётчики
+ * (по шестнадцать в одном {@code long}), поэтому номера можно не только
+ * добавлять, но и удалять. Счётчик, дошедший до 15, больше не меняется:
+ * так переполнение не может привести к ложному «нет».</p>
+ * <p>На каждый ожидаемый номер отводится десять счётчиков (5 байт).
+ * Когда номеров становится больше ёмкости, доля ложных срабатываний растёт;
+ * {@link #isOverloaded()} подсказывает владельцу, что фильтр пора перестроить.
+ * Фильтр не потокобезопасен.</p>
+ */
+public final class NumberFilter {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int COUNTERS_PER_KEY = 10;
+    private static final int HASHES = 5;
+    private static final int MAX_COUNT = 15;
+    private static final int MIN_CAPACITY = 1024;
+
+    private final int capacity;
+    private final long[] table;
+    private final int mask;
+    private int size;
+
+    private NumberFilter(int capacity, long[] table, int size) {
+        this.capacity = capacity;
+        this.table = table;
+        this.mask = table.length * 16 - 1;
+        this.size = size;
+    }
+
+    /**
+     * Создаёт пустой фильтр.
+     * @param expectedKeys ожидаемое количество номеров
+     * @return пустой фильтр
+     */
+    public static NumberFilter withCapacity(int expectedKeys) {
+        int capacity = Math.max(MIN_CAPACITY, expectedKeys);
+        long counters = Long.highestOneBit((long) capacity * COUNTERS_PER_KEY - 1) << 1;
+        if (counters > (1L << 30)) {
+            throw new IllegalArgumentException("Слишком большая ёмкость фильтра: " + expectedKeys);
+        }
+        return new NumberFilter(capacity, new long[(int) (counters / 16)], 0);
+    }
+
+    /**
+     * Строит фильтр по номерам всех записей индекса с запасом ёмкости вдвое.
+     * @param entries записи индекса
+     * @return заполненный фильтр
+     */
+    public static NumberFilter of(Iterable<IndexedContact> entries) {
+        int keys = 0;
+        for (IndexedContact e : entries) {
+            keys += e.numberKeys().length;
+        }
+        NumberFilter filter = withCapacity(keys * 2);
+        for (IndexedContact e : entries) {
+            filter.add(e);
+        }
+        return filter;
+    }
+
+    /**
+     * Проверяет, может ли номер присутствовать в фильтре.
+     * @param key нормализованный номер
+     * @return {@code false}, если номера точно нет
+     */
+    public boolean mightContain(String key) {
+        long h = hash(key);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            if (counter(h1 + i * h2) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Учитывает все номера записи индекса.
+     * @param entry запись; {@code null} игнорируется
+     */
+    public void add(IndexedContact entry) {
+        if (entry != null) {
+            for (String key : entry.numberKeys()) {
+                add(key);
+            }
+        }
+    }
+
+    /**
+     * Удаляет все номера записи индекса, ранее учтённые через {@link #add(IndexedContact)}.
+     * @param entry запись; {@code null} игнорируется
+     */
+    public void remove(IndexedContact entry) {
+        if (entry != null) {
+            for (String key : entry.numberKeys()) {
+                remove(key);
+            }
+        }
+    }
+
+    /**
+     * Учитывает один номер. Пустой номер не учитывается.
+     * @param key нормализованный номер
+     */
+    public void add(String key) {
+        if (key.isEmpty()) {
+            return;
+        }
+        long h = hash(key);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            update(h1 + i * h2, 1);
+        }
+        size++;
+    }
+
+    /**
+     * Удаляет один ранее учтённый номер.
+     * @param key нормализованный номер
+     */
+    public void remove(String key) {
+        if (key.isEmpty()) {
+            return;
+        }
+        long h = hash(key);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            update(h1 + i * h2, -1);
+        }
+        size--;
+    }
+
+    /**
+     * Возвращает количество учтённых номеров (с повторами).
+     * @return количество номеров
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Проверяет, превышена ли расчётная ёмкость фильтра.
+     * @return {@code true}, если фильтр стоит перестроить
+     */
+    public boolean isOverloaded() {
+        return size > capacity;
+    }
+
+    /**
+     * Записывает фильтр в поток.
+     * @param out поток вывода
+     * @throws IOException при ошибке записи
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(capacity);
+        out.writeInt(size);
+        out.writeInt(table.length);
+        for (long word : table) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Читает фильтр, записанный методом {@link #writeTo(DataOutput)}.
+     * @param in поток ввода
+     * @return прочитанный фильтр
+     * @throws IOException при ошибке чтения или неизвестном формате
+     */
+    public static NumberFilter readFrom(DataInput in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Неизвестная версия фильтра номеров: " + version);
+        }
+        int capacity = in.readInt();
+        int size = in.readInt();
+        int words = in.readInt();
+        if (capacity <= 0 || size < 0 || words <= 0 || Integer.bitCount(words) != 1) {
+            throw new IOException("Повреждён заголовок фильтра номеров");
+        }
+        long[] table = new long[words];
+        for (int i = 0; i < words; i++) {
+            table[i] = in.readLong();
+        }
+        return new NumberFilter(capacity, table, size);
+    }
+
+    private int counter(int position) {
+        int slot = position & mask;
+        return (int) (table[slot >>> 4] >>> ((slot & 15) << 2)) & 0xF;
+    }
+
+    private void update(int position, int delta) {
+        int slot = position & mask;
+        int offset = (slot & 15) << 2;
+        int value = (int) (table[slot >>> 4] >>> offset) & 0xF;
+        // Насыщенный счётчик «залипает»: после переполнения точное значение неизвестно.
+        if (value == MAX_COUNT || (delta < 0 && value == 0)) {
+            return;
+        }
+        table[slot >>> 4] += (long) delta << offset;
+    }
+
+    /**
+     * 64-битный хэш строки (FNV-1a с финальным перемешиванием): старшая и младшая
+     * половины используются как два независимых хэша для двойного хэширования.
+     */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.phonebook.index;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Хеш-таблица с открытой адресацией вне кучи: ключ {@code long} — номер записи.
+ * <p>Ячейка занимает {@link #SLOT} байт ({@code long} ключ, {@code int} номер)
+ * в прямом буфере; коллизии разрешаются линейным пробированием. Один ключ может
+ * встречаться с разными номерами: у разных контактов бывает один телефон.
+ * Пустая ячейка — ключ {@link #EMPTY}, освобождённая — {@link #DELETED};
+ * поэтому {@code 0} и {@code -1} ключами быть не могут.
+ * Таблица заполняется не больше чем наполовину, включая освобождённые ячейки,
+ * и перестраивается при переполнении.</p>
+ * <p>Чтение не меняет состояния, поэтому поиск можно выполнять из нескольких
+ * потоков, пока таблицу никто не изменяет.</p>
+ */
+final class OffHeapHash {
+
+    /** Размер ячейки в байтах */
+    static final int SLOT = 12;
+
+    /** Ключ пустой ячейки */
+    static final long EMPTY = 0;
+
+    /** Ключ освобождённой ячейки */
+    static final long DELETED = -1;
+
+    private static final int MIN_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 27;
+
+    private ByteBuffer table;
+    private int mask;
+    private int live;
+    private int used;
+
+    OffHeapHash() {
+        this(ByteBuffer.allocateDirect(MIN_CAPACITY * SLOT), 0, 0);
+    }
+
+    /**
+     * Создаёт таблицу поверх готовых ячеек.
+     * @param table ячейки; количество — степень двойки
+     * @param live  занятые ячейки
+     * @param used  занятые и освобождённые ячейки
+     */
+    OffHeapHash(ByteBuffer table, int live, int used) {
+        this.table = table;
+        this.mask = table.capacity() / SLOT - 1;
+        this.live = live;
+        this.used = used;
+    }
+
+    void add(long key, int id) {
+        if ((long) (used + 1) * 2 > capacity()) {
+            resize(live + 1);
+        }
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long k = table.getLong(slot * SLOT);
+            if (k == EMPTY || k == DELETED) {
+                if (k == EMPTY) {
+                    used++;
+                }
+                table.putLong(slot * SLOT, key);
+                table.putInt(slot * SLOT + 8, id);
+                live++;
+                return;
+            }
+        }
+    }
+
+    void remove(long key, int id) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long k = table.getLong(slot * SLOT);
+            if (k == EMPTY) {
+                return;
+            }
+            if (k == key && table.getInt(slot * SLOT + 8) == id) {
+                table.putLong(slot * SLOT, DELETED);
+                live--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Возвращает наименьший номер записи с ключом.
+     * @param key ключ
+     * @return номер записи или {@code -1}, если ключа нет
+     */
+    int first(long key) {
+        int result = -1;
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long k = table.getLong(slot * SLOT);
+            if (k == EMPTY) {
+                return result;
+            }
+            if (k == key) {
+                int id = table.getInt(slot * SLOT + 8);
+                if (result < 0 || id < result) {
+                    result = id;
+                }
+            }
+        }
+    }
+
+    /**
+     * Готовит таблицу к добавлению ключей без промежуточных перестроений.
+     * @param keys сколько ключей будет в таблице
+     */
+    void presize(int keys) {
+        if ((long) keys * 2 > capacity()) {
+            resize(keys);
+        }
+    }
+
+    void clear() {
+        table = ByteBuffer.allocateDirect(MIN_CAPACITY * SLOT);
+        mask = MIN_CAPACITY - 1;
+        live = 0;
+        used = 0;
+    }
+
+    int size() {
+        return live;
+    }
+
+    int used() {
+        return used;
+    }
+
+    long bytes() {
+        return table.capacity();
+    }
+
+    /** Ячейки таблицы; изменять нельзя */
+    ByteBuffer table() {
+        return table.duplicate().clear();
+    }
+
+    /** Перемешивание битов ключа (финальный шаг MurmurHash3) */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private int capacity() {
+        return mask + 1;
+    }
+
+    private int slot(long key) {
+        return (int) mix(key) & mask;
+    }
+
+    /** Переносит занятые ячейки в таблицу, где для ключей хватает половины ячеек */
+    private void resize(int keys) {
+        long wanted = Math.max(MIN_CAPACITY, (long) keys * 2 + 1);
+        if (wanted > MAX_CAPACITY) {
+            throw new IllegalStateException("Слишком много номеров для индекса: " + keys);
+        }
+        int capacity = Integer.highestOneBit((int) wanted - 1) << 1;
+        ByteBuffer old = table;
+        table = ByteBuffer.allocateDirect(capacity * SLOT);
+        mask = capacity - 1;
+        used = 0;
+        live = 0;
+        for (int i = 0; i < old.capacity() / SLOT; i++) {
+            long k = old.getLong(i * SLOT);
+            if (k != EMPTY && k != DELETED) {
+                add(k, old.getInt(i * SLOT + 8));
+            }
+        }
+    }
+}
@@ -0,0 +1,493 @@
+package com.example.phonebook.index;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Индекс ключей контактов вне кучи: нормализованные номера и начала слов ФИО.
+ * <p>Номер определяется по хеш-таблице с открытой адресацией ({@link OffHeapHash}),
+ * выборки по началу номера и по началу слова ФИО — по упорядоченным массивам
+ * ключей ({@link OffHeapSortedKeys}). Всё это лежит в прямых буферах
+ * ({@link ByteBuffer#allocateDirect(int)}), поэтому объём индекса не увеличивает
+ * кучу и не удлиняет паузы сборщика мусора, сколько бы контактов ни было.
+ * Объём прямой памяти ограничивает {@code -XX:MaxDirectMemorySize}.</p>
+ * <p>Номер хранится в {@code long} по четыре бита на цифру, начиная со старших,
+ * поэтому порядок ключей совпадает с порядком строк, а начало номера задаёт
+ * диапазон ключей. Номера длиннее {@link #MAX_NUMBER_DIGITS} цифр (на практике
+ * не встречаются) хранятся отдельным множеством и попадают в каждую выборку по номеру.
+ * Ключ слова — его первые {@link #WORD_KEY_CHARS} символа по 16 бит, поэтому
+ * выборка по началу слова длиннее четырёх символов шире точной.</p>
+ * <p>Время жизни индекса задаётся явно: {@link #close()} освобождает буферы
+ * (память вернётся, когда их заберёт сборщик), после чего индекс использовать
+ * нельзя. Индекс, открытый через {@link #open(Path)}, при закрытии записывает
+ * свой образ в файл, а при следующем запуске читает его обратно:
+ * если контрольная сумма содержимого совпадает с загруженным справочником,
+ * {@link #rebuild(Iterable)} не строит индекс заново. Контрольная сумма учитывает
+ * внутренние номера записей, поэтому после удалений, сдвигающих номера,
+ * индекс при следующем запуске всё же перестраивается. Формат файла:</p>
+ * <pre>
+ * int MAGIC ("PBK1"), long контрольная сумма, int записей,
+ * int ячеек хеш-таблицы, int занятых, int занятых и освобождённых,
+ * int ключей номеров, int ключей слов, int записей с длинными номерами, int резерв, int MAGIC
+ * ячейки хеш-таблицы, ключи номеров по возрастанию, ключи слов по возрастанию, int[] записи с длинными номерами
+ * </pre>
+ * <p>Индекс не потокобезопасен: синхронизацию обеспечивает владелец. Чтение
+ * не меняет состояния и может выполняться из нескольких потоков одновременно.</p>
+ */
+public final class OffHeapKeyIndex implements AutoCloseable {
+
+    private static final Logger log = LogManager.getLogger(OffHeapKeyIndex.class);
+
+    /** Наибольшая длина номера, хранимого в ключе */
+    public static final int MAX_NUMBER_DIGITS = 16;
+
+    /** Сколько первых символов слова ФИО хранится в ключе */
+    public static final int WORD_KEY_CHARS = 4;
+
+    /** Признак файла индекса ключей: «PBK1» */
+    static final int MAGIC = 0x50424B31;
+
+    private static final int HEADER_BYTES = 48;
+
+    private final Path file;
+    private OffHeapHash numbers = new OffHeapHash();
+    private OffHeapSortedKeys numberKeys = new OffHeapSortedKeys();
+    private OffHeapSortedKeys wordKeys = new OffHeapSortedKeys();
+    /** Записи с номерами длиннее {@link #MAX_NUMBER_DIGITS}: их мало, они остаются в куче */
+    private RoaringBitmap longNumbers = new RoaringBitmap();
+    private long checksum;
+    private int entries;
+    private boolean closed;
+
+    private OffHeapKeyIndex(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Создаёт пустой индекс в прямой памяти без файла.
+     * @return новый индекс
+     */
+    public static OffHeapKeyIndex inMemory() {
+        return new OffHeapKeyIndex(null);
+    }
+
+    /**
+     * Открывает индекс, который при закрытии сохраняется в файл.
+     * Если файл есть и не повреждён, его содержимое загружается;
+     * иначе индекс создаётся пустым.
+     * @param file путь к файлу образа индекса
+     * @return открытый индекс
+     */
+    public static OffHeapKeyIndex open(Path file) {
+        OffHeapKeyIndex index = new OffHeapKeyIndex(file);
+        try {
+            index.load();
+        } catch (NoSuchFileException e) {
+            log.info("Файл индекса ключей {} не найден, индекс будет построен", file);
+        } catch (IOException e) {
+            log.warn("Файл индекса ключей {} не прочитан, индекс будет построен заново", file, e);
+            index.reset();
+        }
+        return index;
+    }
+
+    /**
+     * Приводит индекс к записям справочника. Если контрольная сумма уже
+     * совпадает (например, индекс только что прочитан из файла), ничего не делает.
+     * @param source все записи индекса контактов
+     * @return {@code true}, если индекс остался прежним
+     */
+    public boolean rebuild(Iterable<IndexedContact> source) {
+        checkOpen();
+        long sum = 0;
+        int count = 0;
+        int keys = 0;
+        for (IndexedContact e : source) {
+            sum += checksumOf(e);
+            count++;
+            keys += e.numberKeys().length;
+        }
+        if (sum == checksum && count == entries) {
+            if (file != null && count > 0) {
+                log.info("Индекс ключей взят из файла {}: контактов {}", file, count);
+            }
+            return true;
+        }
+        reset();
+        numbers.presize(keys);
+        numberKeys.beginBulk();
+        wordKeys.beginBulk();
+        for (IndexedContact e : source) {
+            add(e);
+        }
+        numberKeys.endBulk();
+        wordKeys.endBulk();
+        return false;
+    }
+
+    /**
+     * Добавляет номера и слова ФИО записи.
+     * @param entry запись индекса контактов
+     */
+    public void add(IndexedContact entry) {
+        checkOpen();
+        int id = entry.getId();
+        String[] keys = entry.numberKeys();
+        for (int i = 0; i < keys.length; i++) {
+            if (isNewNumber(keys, i)) {
+                if (keys[i].length() > MAX_NUMBER_DIGITS) {
+                    longNumbers.add(id);
+                } else {
+                    long key = packNumber(keys[i], keys[i].length());
+                    numbers.add(key, id);
+                    numberKeys.add(key, id);
+                }
+            }
+        }
+        for (long word : wordKeysOf(entry.getFoldedName())) {
+            wordKeys.add(word, id);
+        }
+        checksum += checksumOf(entry);
+        entries++;
+    }
+
+    /**
+     * Удаляет номера и слова ФИО записи, ранее добавленной через {@link #add(IndexedContact)}.
+     * @param entry запись индекса контактов
+     */
+    public void remove(IndexedContact entry) {
+        checkOpen();
+        int id = entry.getId();
+        String[] keys = entry.numberKeys();
+        for (int i = 0; i < keys.length; i++) {
+            if (isNewNumber(keys, i)) {
+                if (keys[i].length() > MAX_NUMBER_DIGITS) {
+                    longNumbers.remove(id);
+                } else {
+                    long key = packNumber(keys[i], keys[i].length());
+                    numbers.remove(key, id);
+                    numberKeys.remove(key, id);
+                }
+            }
+        }
+        for (long word : wordKeysOf(entry.getFoldedName())) {
+            wordKeys.remove(word, id);
+        }
+        checksum -= checksumOf(entry);
+        entries--;
+    }
+
+    /**
+     * Находит первую по номеру запись с указанным номером телефона.
+     * @param key нормализованный номер не длиннее {@link #MAX_NUMBER_DIGITS} цифр
+     * @return номер записи или {@code -1}, если номера нет
+     */
+    public int firstWithNumber(String key) {
+        checkOpen();
+        if (key.isEmpty() || key.length() > MAX_NUMBER_DIGITS) {
+            return -1;
+        }
+        return numbers.first(packNumber(key, key.length()));
+    }
+
+    /**
+     * Отбирает записи, у которых есть номер с указанным началом.
+     * Для начала длиннее {@link #MAX_NUMBER_DIGITS} цифр выборка шире точной.
+     * @param prefix непустое начало нормализованного номера из цифр
+     * @return новое множество номеров записей
+     */
+    public RoaringBitmap selectNumberPrefix(String prefix) {
+        checkOpen();
+        RoaringBitmap result = longNumbers.copy();
+        if (prefix.length() <= MAX_NUMBER_DIGITS) {
+            long lo = packNumber(prefix, prefix.length());
+            numberKeys.select(lo, numberRangeEnd(lo, prefix.length()), result);
+        }
+        return result;
+    }
+
+    /**
+     * Оценивает сверху размер выборки {@link #selectNumberPrefix(String)} без её построения.
+     * @param prefix непустое начало нормализованного номера из цифр
+     * @return число кандидатов
+     */
+    public int estimateNumberPrefix(String prefix) {
+        checkOpen();
+        int result = longNumbers.getCardinality();
+        if (prefix.length() <= MAX_NUMBER_DIGITS) {
+            long lo = packNumber(prefix, prefix.length());
+            result += numberKeys.count(lo, numberRangeEnd(lo, prefix.length()));
+        }
+        return result;
+    }
+
+    /**
+     * Отбирает записи, в ФИО которых есть слово, начинающееся с фрагмента.
+     * Проверяются первые {@link #WORD_KEY_CHARS} символа, поэтому кандидатов нужно проверить.
+     * @param fragment фрагмент в нормализованном виде ({@link IndexedContact#getFoldedName()})
+     * @return новое множество номеров записей или {@code null}, если фрагмент
+     *         начинается не с буквы или цифры и индекс неприменим
+     */
+    public RoaringBitmap selectWordPrefix(String fragment) {
+        checkOpen();
+        int length = wordLength(fragment, 0);
+        if (length == 0) {
+            return null;
+        }
+        RoaringBitmap result = new RoaringBitmap();
+        long lo = packWord(fragment, 0, length);
+        wordKeys.select(lo, wordRangeEnd(lo, length), result);
+        return result;
+    }
+
+    /**
+     * Оценивает сверху размер выборки {@link #selectWordPrefix(String)} без её построения.
+     * @param fragment фрагмент в нормализованном виде
+     * @return число кандидатов или {@code -1}, если индекс неприменим
+     */
+    public int estimateWordPrefix(String fragment) {
+        checkOpen();
+        int length = wordLength(fragment, 0);
+        if (length == 0) {
+            return -1;
+        }
+        long lo = packWord(fragment, 0, length);
+        return wordKeys.count(lo, wordRangeEnd(lo, length));
+    }
+
+    /**
+     * Возвращает количество записей в индексе.
+     * @return количество записей
+     */
+    public int size() {
+        return entries;
+    }
+
+    /**
+     * Возвращает объём прямой памяти, занятой индексом.
+     * @return байты вне кучи
+     */
+    public long getOffHeapBytes() {
+        checkOpen();
+        return numbers.bytes() + numberKeys.bytes() + wordKeys.bytes();
+    }
+
+    /**
+     * Закрывает индекс: сохраняет образ в файл, если индекс открыт через {@link #open(Path)},
+     * и освобождает буферы. Повторный вызов ничего не делает.
+     * @throws UncheckedIOException если образ не удалось записать
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            if (file != null) {
+                save();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось сохранить индекс ключей в " + file, e);
+        } finally {
+            closed = true;
+            numbers = null;
+            numberKeys = null;
+            wordKeys = null;
+            longNumbers = null;
+        }
+    }
+
+    /** Контрольная сумма записи; сумма по всем записям не зависит от порядка добавления */
+    static long checksumOf(IndexedContact entry) {
+        long h = OffHeapHash.mix(entry.getId() * 0x9E3779B97F4A7C15L + entry.getFoldedName().hashCode());
+        for (String key : entry.numberKeys()) {
+            h = OffHeapHash.mix(h + key.hashCode());
+        }
+        return h;
+    }
+
+    /** Первые {@code length} цифр номера по четыре бита, начиная со старших; цифра d хранится как d + 1 */
+    static long packNumber(String digits, int length) {
+        long key = 0;
+        for (int i = 0; i < length; i++) {
+            key |= (long) (digits.charAt(i) - '0' + 1) << (60 - 4 * i);
+        }
+        return key;
+    }
+
+    /** Первые символы слова (не больше {@link #WORD_KEY_CHARS}) по 16 бит, начиная со старших */
+    static long packWord(String text, int start, int length) {
+        long key = 0;
+        for (int i = 0; i < Math.min(length, WORD_KEY_CHARS); i++) {
+            key |= (long) text.charAt(start + i) << (48 - 16 * i);
+        }
+        return key;
+    }
+
+    private static long numberRangeEnd(long lo, int length) {
+        return length >= MAX_NUMBER_DIGITS ? lo : lo | (-1L >>> (4 * length));
+    }
+
+    private static long wordRangeEnd(long lo, int length) {
+        return length >= WORD_KEY_CHARS ? lo : lo | (-1L >>> (16 * length));
+    }
+
+    private static int wordLength(String text, int start) {
+        int i = start;
+        while (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+            i++;
+        }
+        return i - start;
+    }
+
+    /** Различные ключи слов ФИО: слово — последовательность букв и цифр */
+    private static long[] wordKeysOf(String folded) {
+        long[] keys = new long[4];
+        int count = 0;
+        for (int i = 0; i < folded.length(); ) {
+            int length = wordLength(folded, i);
+            if (length == 0) {
+                i++;
+                continue;
+            }
+            long key = packWord(folded, i, length);
+            if (!contains(keys, count, key)) {
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, count * 2);
+                }
+                keys[count++] = key;
+            }
+            i += length;
+        }
+        return count == keys.length ? keys : Arrays.copyOf(keys, count);
+    }
+
+    private static boolean contains(long[] keys, int count, long key) {
+        for (int i = 0; i < count; i++) {
+            if (keys[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Номер встречается у записи впервые и не пуст */
+    private static boolean isNewNumber(String[] keys, int i) {
+        if (keys[i].isEmpty()) {
+            return false;
+        }
+        for (int j = 0; j < i; j++) {
+            if (keys[j].equals(keys[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void reset() {
+        numbers.clear();
+        numberKeys.clear();
+        wordKeys.clear();
+        longNumbers.clear();
+        checksum = 0;
+        entries = 0;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Индекс ключей закрыт");
+        }
+    }
+
+    private void save() throws IOException {
+        ByteBuffer numberRecords = numberKeys.compacted();
+        ByteBuffer wordRecords = wordKeys.compacted();
+        int[] longIds = longNumbers.toArray();
+        ByteBuffer table = numbers.table();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putLong(checksum).putInt(entries)
+                .putInt(table.capacity() / OffHeapHash.SLOT).putInt(numbers.size()).putInt(numbers.used())
+                .putInt(numberKeys.size()).putInt(wordKeys.size()).putInt(longIds.length)
+                .putInt(0).putInt(MAGIC);
+        header.flip();
+        ByteBuffer ids = ByteBuffer.allocate(longIds.length * 4);
+        ids.asIntBuffer().put(longIds);
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (ByteBuffer part : new ByteBuffer[]{header, table, numberRecords, wordRecords, ids}) {
+                while (part.hasRemaining()) {
+                    ch.write(part);
+                }
+            }
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Индекс ключей сохранён в {}: контактов {}", file, entries);
+    }
+
+    private void load() throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = read(ch, HEADER_BYTES);
+            int magic = header.getInt();
+            long sum = header.getLong();
+            int count = header.getInt();
+            int slots = header.getInt();
+            int live = header.getInt();
+            int used = header.getInt();
+            int numberCount = header.getInt();
+            int wordCount = header.getInt();
+            int longCount = header.getInt();
+            header.getInt();
+            if (magic != MAGIC || header.getInt() != MAGIC || count < 0 || slots <= 0
+                    || Integer.bitCount(slots) != 1 || live < 0 || used < live || used > slots
+                    || numberCount < 0 || wordCount < 0 || longCount < 0
+                    || ch.size() != HEADER_BYTES + (long) slots * OffHeapHash.SLOT
+                    + (long) (numberCount + wordCount) * OffHeapSortedKeys.RECORD + longCount * 4L) {
+                throw new IOException("Файл индекса ключей " + file + " повреждён");
+            }
+            ByteBuffer table = read(ch, slots * OffHeapHash.SLOT);
+            ByteBuffer numberRecords = read(ch, numberCount * OffHeapSortedKeys.RECORD);
+            ByteBuffer wordRecords = read(ch, wordCount * OffHeapSortedKeys.RECORD);
+            ByteBuffer ids = ByteBuffer.allocate(longCount * 4);
+            while (ids.hasRemaining() && ch.read(ids) >= 0) {
+                // читаем до конца
+            }
+            ids.flip();
+
+            numbers = new OffHeapHash(table, live, used);
+            numberKeys = new OffHeapSortedKeys(numberRecords, numberCount);
+            wordKeys = new OffHeapSortedKeys(wordRecords, wordCount);
+            longNumbers = new RoaringBitmap();
+            while (ids.hasRemaining()) {
+                longNumbers.add(ids.getInt());
+            }
+            checksum = sum;
+            entries = count;
+        }
+    }
+
+    /** Читает следующие байты файла в новый прямой буфер */
+    private static ByteBuffer read(FileChannel ch, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+        while (buffer.hasRemaining()) {
+            if (ch.read(buffer) < 0) {
+                throw new IOException("Неожиданный конец файла индекса ключей");
+            }
+        }
+        return buffer.flip();
+    }
+}
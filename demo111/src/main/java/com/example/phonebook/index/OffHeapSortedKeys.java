@@ -0,0 +1,330 @@
+package com.example.phonebook.index;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Упорядоченный массив пар «ключ — номер записи» вне кучи.
+ * <p>Запись занимает {@link #RECORD} байт ({@code long} ключ, {@code int} номер)
+ * в прямом буфере; записи упорядочены по ключу как числу без знака, затем по номеру.
+ * Выборка по диапазону ключей — двоичный поиск и последовательное чтение.</p>
+ * <p>Новые записи дописываются в небольшой неупорядоченный буфер, который
+ * каждый запрос просматривает целиком. Когда буфер переполняется, он сортируется
+ * и сливается с основным массивом на месте за один проход. Удалённая запись основного
+ * массива помечается старшим битом номера и выбрасывается при следующем слиянии.
+ * При массовой загрузке ({@link #beginBulk()}) буфер не ограничен и сливается
+ * один раз в {@link #endBulk()}.</p>
+ * <p>Чтение не меняет состояния, поэтому запросы можно выполнять из нескольких
+ * потоков, пока массив никто не изменяет.</p>
+ */
+final class OffHeapSortedKeys {
+
+    /** Размер записи в байтах */
+    static final int RECORD = 12;
+
+    private static final int REMOVED = 0x8000_0000;
+    private static final int MIN_DELTA = 1024;
+    private static final int INSERTION_SORT = 16;
+    private static final int MAX_RECORDS = Integer.MAX_VALUE / RECORD;
+
+    private ByteBuffer main;
+    private int mainSize;
+    private int removed;
+    private ByteBuffer delta = ByteBuffer.allocateDirect(MIN_DELTA * RECORD);
+    private int deltaSize;
+    private boolean bulk;
+
+    OffHeapSortedKeys() {
+        this(ByteBuffer.allocateDirect(0), 0);
+    }
+
+    /**
+     * Создаёт массив поверх готовых упорядоченных записей без удалённых.
+     * @param main записи по возрастанию
+     * @param size количество записей
+     */
+    OffHeapSortedKeys(ByteBuffer main, int size) {
+        this.main = main;
+        this.mainSize = size;
+    }
+
+    void add(long key, int id) {
+        if (deltaSize == delta.capacity() / RECORD) {
+            delta = grow(delta, deltaSize);
+        }
+        put(delta, deltaSize++, key, id);
+        if (!bulk && deltaSize >= deltaLimit()) {
+            merge();
+        }
+    }
+
+    void remove(long key, int id) {
+        // действующая запись с этой парой одна: либо в основном массиве, либо в буфере
+        int i = lowerBound(key, id);
+        if (i < mainSize && key(main, i) == key && id(main, i) == id) {
+            main.putInt(i * RECORD + 8, id | REMOVED);
+            removed++;
+            if (!bulk && removed >= MIN_DELTA && removed > mainSize / 4) {
+                merge();
+            }
+            return;
+        }
+        for (int j = 0; j < deltaSize; j++) {
+            if (key(delta, j) == key && id(delta, j) == id) {
+                deltaSize--;
+                put(delta, j, key(delta, deltaSize), id(delta, deltaSize));
+                return;
+            }
+        }
+    }
+
+    void clear() {
+        main = ByteBuffer.allocateDirect(0);
+        mainSize = 0;
+        removed = 0;
+        delta = ByteBuffer.allocateDirect(MIN_DELTA * RECORD);
+        deltaSize = 0;
+    }
+
+    /** Откладывает слияние до {@link #endBulk()} */
+    void beginBulk() {
+        bulk = true;
+    }
+
+    /** Завершает массовую загрузку одним слиянием */
+    void endBulk() {
+        bulk = false;
+        merge();
+    }
+
+    /**
+     * Считает записи с ключом из диапазона, включая ещё не выброшенные удалённые.
+     * @param lo наименьший ключ
+     * @param hi наибольший ключ (без знака)
+     * @return оценка сверху
+     */
+    int count(long lo, long hi) {
+        int result = upperBound(hi) - lowerBound(lo, 0);
+        for (int i = 0; i < deltaSize; i++) {
+            if (inRange(key(delta, i), lo, hi)) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Добавляет в множество номера записей с ключом из диапазона.
+     * @param lo  наименьший ключ
+     * @param hi  наибольший ключ (без знака)
+     * @param out множество номеров
+     */
+    void select(long lo, long hi, RoaringBitmap out) {
+        for (int i = lowerBound(lo, 0), end = upperBound(hi); i < end; i++) {
+            int id = id(main, i);
+            if ((id & REMOVED) == 0) {
+                out.add(id);
+            }
+        }
+        for (int i = 0; i < deltaSize; i++) {
+            if (inRange(key(delta, i), lo, hi)) {
+                out.add(id(delta, i));
+            }
+        }
+    }
+
+    /**
+     * Возвращает количество действующих записей.
+     * @return записи без удалённых
+     */
+    int size() {
+        return mainSize - removed + deltaSize;
+    }
+
+    /**
+     * Возвращает объём занятой памяти вне кучи.
+     * @return байты обоих буферов
+     */
+    long bytes() {
+        return (long) main.capacity() + delta.capacity();
+    }
+
+    /**
+     * Сливает буфер новых записей с основным массивом и возвращает основной массив.
+     * @return буфер с {@link #size()} упорядоченными записями; изменять нельзя
+     */
+    ByteBuffer compacted() {
+        if (deltaSize > 0 || removed > 0) {
+            merge();
+        }
+        return main.duplicate().clear().limit(mainSize * RECORD);
+    }
+
+    /**
+     * Сортирует новые записи и сливает их с основным массивом на месте:
+     * сначала из массива выбрасываются удалённые записи, затем слияние идёт
+     * с конца, и запись не обгоняет чтение. Новый буфер выделяется, только
+     * когда массиву не хватает места, и сразу с запасом в полтора раза.
+     */
+    private void merge() {
+        sort(delta, 0, deltaSize - 1);
+        if (removed > 0) {
+            int out = 0;
+            for (int i = 0; i < mainSize; i++) {
+                int id = id(main, i);
+                if ((id & REMOVED) == 0) {
+                    put(main, out++, key(main, i), id);
+                }
+            }
+            mainSize = out;
+            removed = 0;
+        }
+        long total = (long) mainSize + deltaSize;
+        if (total > MAX_RECORDS) {
+            throw new IllegalStateException("Слишком много ключей для индекса: " + total);
+        }
+        if (total * RECORD > main.capacity()) {
+            long capacity = Math.min(MAX_RECORDS, Math.max(total, (long) main.capacity() / RECORD * 3 / 2));
+            ByteBuffer grown = ByteBuffer.allocateDirect((int) capacity * RECORD);
+            grown.put(main.duplicate().clear().limit(mainSize * RECORD));
+            main = grown;
+        }
+        int i = mainSize - 1;
+        int j = deltaSize - 1;
+        for (int out = (int) total - 1; j >= 0; out--) {
+            if (i >= 0 && compare(key(main, i), id(main, i), key(delta, j), id(delta, j)) > 0) {
+                put(main, out, key(main, i), id(main, i));
+                i--;
+            } else {
+                put(main, out, key(delta, j), id(delta, j));
+                j--;
+            }
+        }
+        mainSize = (int) total;
+        deltaSize = 0;
+        if (delta.capacity() > MIN_DELTA * RECORD) {
+            delta = ByteBuffer.allocateDirect(MIN_DELTA * RECORD);
+        }
+    }
+
+    /** Предел буфера новых записей: растёт как корень из размера массива */
+    private int deltaLimit() {
+        return Math.max(MIN_DELTA, 8 * (int) Math.sqrt(mainSize));
+    }
+
+    /** Первая позиция основного массива, где запись не меньше (key, id) */
+    private int lowerBound(long key, int id) {
+        int lo = 0;
+        int hi = mainSize;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(key(main, mid), id(main, mid), key, id) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Первая позиция основного массива, где ключ больше указанного */
+    private int upperBound(long key) {
+        int lo = 0;
+        int hi = mainSize;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Long.compareUnsigned(key(main, mid), key) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static boolean inRange(long key, long lo, long hi) {
+        return Long.compareUnsigned(key, lo) >= 0 && Long.compareUnsigned(key, hi) <= 0;
+    }
+
+    private static int compare(long key1, int id1, long key2, int id2) {
+        int c = Long.compareUnsigned(key1, key2);
+        return c != 0 ? c : Integer.compare(id1 & ~REMOVED, id2 & ~REMOVED);
+    }
+
+    /** Быстрая сортировка записей [lo, hi] на месте */
+    private static void sort(ByteBuffer b, int lo, int hi) {
+        while (hi - lo >= INSERTION_SORT) {
+            int mid = (lo + hi) >>> 1;
+            if (less(b, mid, lo)) {
+                swap(b, mid, lo);
+            }
+            if (less(b, hi, lo)) {
+                swap(b, hi, lo);
+            }
+            if (less(b, hi, mid)) {
+                swap(b, hi, mid);
+            }
+            long pivotKey = key(b, mid);
+            int pivotId = id(b, mid);
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (compare(key(b, i), id(b, i), pivotKey, pivotId) < 0) {
+                    i++;
+                }
+                while (compare(key(b, j), id(b, j), pivotKey, pivotId) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(b, i++, j--);
+                }
+            }
+            // меньшая часть — рекурсией, большая — в цикле: глубина не больше log n
+            if (j - lo < hi - i) {
+                sort(b, lo, j);
+                lo = i;
+            } else {
+                sort(b, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && less(b, j, j - 1); j--) {
+                swap(b, j, j - 1);
+            }
+        }
+    }
+
+    private static boolean less(ByteBuffer b, int i, int j) {
+        return compare(key(b, i), id(b, i), key(b, j), id(b, j)) < 0;
+    }
+
+    private static void swap(ByteBuffer b, int i, int j) {
+        long key = key(b, i);
+        int id = id(b, i);
+        put(b, i, key(b, j), id(b, j));
+        put(b, j, key, id);
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int records) {
+        if (records >= MAX_RECORDS) {
+            throw new IllegalStateException("Слишком много ключей для индекса: " + records);
+        }
+        int capacity = (int) Math.min(MAX_RECORDS, (long) records * 2);
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity * RECORD);
+        grown.put(buffer.duplicate().clear().limit(records * RECORD));
+        return grown;
+    }
+
+    private static long key(ByteBuffer b, int i) {
+        return b.getLong(i * RECORD);
+    }
+
+    private static int id(ByteBuffer b, int i) {
+        return b.getInt(i * RECORD + 8);
+    }
+
+    private static void put(ByteBuffer b, int i, long key, int id) {
+        b.putLong(i * RECORD, key);
+        b.putInt(i * RECORD + 8, id);
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.phonebook.index;
+
+import com.example.phonebook.model.PhoneType;
+import com.example.phonebook.util.TextNormalizer;
+
+import java.util.Objects;
+
+/**
+ * Фильтр контактов по телефонам: тип номера, начало номера и количество телефонов.
+ * <p>Тип и начало номера относятся к одному и тому же телефону: фильтр
+ * «рабочий, 495» пропускает контакт, у которого есть рабочий номер с кодом 495,
+ * но не контакт с рабочим мобильным и домашним московским номерами.
+ * Начало номера сравнивается без кода страны: «495» подходит
+ * и к «+7 (495) …», и к «8 495 …».</p>
+ * <p>Фильтр неизменяем; незаданные условия не ограничивают выборку.
+ * Индекс сначала отбирает кандидатов пересечением битовых карт
+ * ({@link ContactIndex#select(PhoneFilter)}), а затем они проверяются
+ * методом {@link #matches(IndexedContact)}.</p>
+ */
+public final class PhoneFilter {
+
+    /** Количество телефонов, означающее «столько и больше» */
+    public static final int MANY_PHONES = 3;
+
+    /** Фильтр без условий */
+    public static final PhoneFilter ANY = new PhoneFilter(null, null, -1);
+
+    private final PhoneType type;
+    private final String prefix;
+    private final int phoneCount;
+
+    private PhoneFilter(PhoneType type, String prefix, int phoneCount) {
+        this.type = type;
+        this.prefix = prefix;
+        this.phoneCount = phoneCount;
+    }
+
+    /**
+     * Создаёт фильтр по типу номера.
+     * @param type тип номера или {@code null} — любой
+     * @return фильтр
+     */
+    public static PhoneFilter ofType(PhoneType type) {
+        return ANY.withType(type);
+    }
+
+    /**
+     * Возвращает фильтр с другим типом номера.
+     * @param type тип номера или {@code null} — любой
+     * @return новый фильтр
+     */
+    public PhoneFilter withType(PhoneType type) {
+        return new PhoneFilter(type, prefix, phoneCount);
+    }
+
+    /**
+     * Возвращает фильтр с другим началом номера.
+     * @param prefix начало номера без кода страны (например, «495»);
+     *               учитываются только цифры; пустая строка или {@code null} — любое
+     * @return новый фильтр
+     */
+    public PhoneFilter withPrefix(String prefix) {
+        String digits = TextNormalizer.digitsOnly(prefix);
+        return new PhoneFilter(type, digits.isEmpty() ? null : digits, phoneCount);
+    }
+
+    /**
+     * Возвращает фильтр с другим количеством телефонов.
+     * @param phoneCount количество от 0 до {@link #MANY_PHONES} («столько и больше»)
+     *                   или {@code -1} — любое
+     * @return новый фильтр
+     * @throws IllegalArgumentException если количество вне допустимых пределов
+     */
+    public PhoneFilter withPhoneCount(int phoneCount) {
+        if (phoneCount < -1 || phoneCount > MANY_PHONES) {
+            throw new IllegalArgumentException("Недопустимое количество телефонов: " + phoneCount);
+        }
+        return new PhoneFilter(type, prefix, phoneCount);
+    }
+
+    /**
+     * Возвращает тип номера.
+     * @return тип или {@code null}, если тип не важен
+     */
+    public PhoneType getType() {
+        return type;
+    }
+
+    /**
+     * Возвращает начало номера без кода страны.
+     * @return цифры или {@code null}, если не важно
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Возвращает количество телефонов.
+     * @return количество или {@code -1}, если не важно
+     */
+    public int getPhoneCount() {
+        return phoneCount;
+    }
+
+    /**
+     * Проверяет, что фильтр ничего не ограничивает.
+     * @return {@code true}, если ни одно условие не задано
+     */
+    public boolean isEmpty() {
+        return type == null && prefix == null && phoneCount < 0;
+    }
+
+    /**
+     * Проверяет, подходит ли контакт под фильтр.
+     * @param entry запись индекса
+     * @return {@code true}, если подходит
+     */
+    public boolean matches(IndexedContact entry) {
+        String[] keys = entry.numberKeys();
+        if (phoneCount >= 0 && Math.min(keys.length, MANY_PHONES) != phoneCount) {
+            return false;
+        }
+        if (type == null && prefix == null) {
+            return true;
+        }
+        PhoneType[] types = entry.phoneTypes();
+        for (int i = 0; i < keys.length; i++) {
+            if ((type == null || types[i] == type)
+                    && (prefix == null || FacetIndex.nationalNumber(keys[i]).startsWith(prefix))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PhoneFilter that)) return false;
+        return phoneCount == that.phoneCount && type == that.type && Objects.equals(prefix, that.prefix);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, prefix, phoneCount);
+    }
+
+    @Override
+    public String toString() {
+        return "PhoneFilter{type=" + type + ", prefix=" + prefix + ", phoneCount=" + phoneCount + "}";
+    }
+}
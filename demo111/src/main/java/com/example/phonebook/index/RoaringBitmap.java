@@ -0,0 +1,519 @@
+package com.example.phonebook.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Сжатое множество неотрицательных целых чисел в духе Roaring bitmap.
+ * <p>Числа делятся на блоки по старшим 16 битам. Блок хранится либо
+ * отсортированным массивом младших 16 бит (пока в нём не больше
+ * {@link #ARRAY_LIMIT} чисел), либо битовой картой на 65536 бит (8 КиБ).
+ * Разреженные множества занимают по 2 байта на число, плотные — не больше
+ * бита на число, а пересечение и объединение работают поблочно:
+ * битовые карты — словами по 64 бита, массивы — слиянием.</p>
+ * <p>Класс не потокобезопасен.</p>
+ */
+public final class RoaringBitmap {
+
+    /** Наибольшее количество чисел в блоке-массиве; дальше массив занимает больше битовой карты */
+    static final int ARRAY_LIMIT = 4096;
+
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    /** Старшие 16 бит блоков по возрастанию */
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size;
+
+    /**
+     * Создаёт множество из перечисленных чисел.
+     * @param values числа
+     * @return новое множество
+     */
+    public static RoaringBitmap of(int... values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int v : values) {
+            bitmap.add(v);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Добавляет число.
+     * @param value неотрицательное число
+     * @return {@code true}, если числа в множестве не было
+     */
+    public boolean add(int value) {
+        checkValue(value);
+        char key = (char) (value >>> 16);
+        int i = find(key);
+        if (i < 0) {
+            i = -i - 1;
+            insertContainer(i, key, new ArrayContainer());
+        }
+        Container c = containers[i];
+        if (c.contains((char) value)) {
+            return false;
+        }
+        containers[i] = c.add((char) value);
+        return true;
+    }
+
+    /**
+     * Удаляет число.
+     * @param value число
+     * @return {@code true}, если число было в множестве
+     */
+    public boolean remove(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int i = find((char) (value >>> 16));
+        if (i < 0 || !containers[i].contains((char) value)) {
+            return false;
+        }
+        Container c = containers[i].remove((char) value);
+        if (c.cardinality() == 0) {
+            removeContainer(i);
+        } else {
+            containers[i] = c;
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет, есть ли число в множестве.
+     * @param value число
+     * @return {@code true}, если есть
+     */
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int i = find((char) (value >>> 16));
+        return i >= 0 && containers[i].contains((char) value);
+    }
+
+    /**
+     * Возвращает количество чисел в множестве.
+     * @return мощность множества
+     */
+    public int getCardinality() {
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            n += containers[i].cardinality();
+        }
+        return n;
+    }
+
+    /**
+     * Проверяет, пусто ли множество.
+     * @return {@code true}, если чисел нет
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Удаляет все числа.
+     */
+    public void clear() {
+        Arrays.fill(containers, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Возвращает независимую копию множества.
+     * @return новое множество с теми же числами
+     */
+    public RoaringBitmap copy() {
+        RoaringBitmap result = new RoaringBitmap();
+        for (int i = 0; i < size; i++) {
+            result.appendContainer(keys[i], containers[i].copy());
+        }
+        return result;
+    }
+
+    /**
+     * Передаёт все числа по возрастанию.
+     * @param action получатель чисел
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    /**
+     * Возвращает все числа по возрастанию.
+     * @return новый массив
+     */
+    public int[] toArray() {
+        int[] result = new int[getCardinality()];
+        int[] pos = {0};
+        forEach(v -> result[pos[0]++] = v);
+        return result;
+    }
+
+    /**
+     * Возвращает пересечение двух множеств. Исходные множества не меняются.
+     * @param a первое множество
+     * @param b второе множество
+     * @return новое множество
+     */
+    public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Container c = a.containers[i].and(b.containers[j]);
+                if (c.cardinality() > 0) {
+                    result.appendContainer(a.keys[i], c);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает объединение двух множеств. Исходные множества не меняются.
+     * @param a первое множество
+     * @param b второе множество
+     * @return новое множество
+     */
+    public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.size || j < b.size) {
+            if (j == b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+                result.appendContainer(a.keys[i], a.containers[i].copy());
+                i++;
+            } else if (i == a.size || a.keys[i] > b.keys[j]) {
+                result.appendContainer(b.keys[j], b.containers[j].copy());
+                j++;
+            } else {
+                result.appendContainer(a.keys[i], a.containers[i].or(b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RoaringBitmap other)) return false;
+        return Arrays.equals(toArray(), other.toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    @Override
+    public String toString() {
+        return "RoaringBitmap{cardinality=" + getCardinality() + ", blocks=" + size + "}";
+    }
+
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertContainer(int i, char key, Container c) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = c;
+        size++;
+    }
+
+    private void appendContainer(char key, Container c) {
+        insertContainer(size, key, c);
+    }
+
+    private void removeContainer(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+        containers[--size] = null;
+    }
+
+    private static void checkValue(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Отрицательное число: " + value);
+        }
+    }
+
+    /** Блок из 65536 возможных значений; изменяющие методы возвращают блок, который нужно сохранить */
+    private interface Container {
+
+        boolean contains(char value);
+
+        Container add(char value);
+
+        Container remove(char value);
+
+        int cardinality();
+
+        void forEach(int high, IntConsumer action);
+
+        Container and(Container other);
+
+        Container or(Container other);
+
+        Container copy();
+    }
+
+    /** Отсортированный массив значений */
+    private static final class ArrayContainer implements Container {
+
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        public Container add(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_LIMIT) {
+                return toBitmap().add(value);
+            }
+            i = -i - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, Math.max(4, cardinality * 2)));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        public Container remove(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < cardinality; i++) {
+                action.accept(high | values[i]);
+            }
+        }
+
+        @Override
+        public Container and(Container other) {
+            char[] result = new char[Math.min(cardinality, other.cardinality())];
+            int n = 0;
+            if (other instanceof ArrayContainer a) {
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < a.cardinality) {
+                    if (values[i] < a.values[j]) {
+                        i++;
+                    } else if (values[i] > a.values[j]) {
+                        j++;
+                    } else {
+                        result[n++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        result[n++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        @Override
+        public Container or(Container other) {
+            if (other instanceof BitmapContainer b) {
+                return b.or(this);
+            }
+            ArrayContainer a = (ArrayContainer) other;
+            if (cardinality + a.cardinality > ARRAY_LIMIT) {
+                return toBitmap().or(a);
+            }
+            char[] result = new char[cardinality + a.cardinality];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < a.cardinality) {
+                if (j == a.cardinality || (i < cardinality && values[i] < a.values[j])) {
+                    result[n++] = values[i++];
+                } else if (i == cardinality || values[i] > a.values[j]) {
+                    result[n++] = a.values[j++];
+                } else {
+                    result[n++] = values[i++];
+                    j++;
+                }
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        @Override
+        public Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 4)), cardinality);
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer(new long[BITMAP_WORDS], 0);
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    /** Битовая карта на 65536 значений */
+    private static final class BitmapContainer implements Container {
+
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        public Container add(char value) {
+            long before = words[value >>> 6];
+            long after = before | (1L << value);
+            if (before != after) {
+                words[value >>> 6] = after;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        public Container remove(char value) {
+            long before = words[value >>> 6];
+            long after = before & ~(1L << value);
+            if (before != after) {
+                words[value >>> 6] = after;
+                cardinality--;
+                if (cardinality <= ARRAY_LIMIT) {
+                    return toArray();
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public void forEach(int high, IntConsumer action) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    action.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        public Container and(Container other) {
+            if (other instanceof ArrayContainer a) {
+                return a.and(this);
+            }
+            BitmapContainer b = (BitmapContainer) other;
+            long[] result = new long[BITMAP_WORDS];
+            int n = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result[w] = words[w] & b.words[w];
+                n += Long.bitCount(result[w]);
+            }
+            BitmapContainer c = new BitmapContainer(result, n);
+            return n <= ARRAY_LIMIT ? c.toArray() : c;
+        }
+
+        @Override
+        public Container or(Container other) {
+            BitmapContainer result = (BitmapContainer) copy();
+            if (other instanceof ArrayContainer a) {
+                for (int i = 0; i < a.cardinality; i++) {
+                    result.add(a.values[i]);
+                }
+                return result;
+            }
+            BitmapContainer b = (BitmapContainer) other;
+            int n = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result.words[w] |= b.words[w];
+                n += Long.bitCount(result.words[w]);
+            }
+            result.cardinality = n;
+            return result;
+        }
+
+        @Override
+        public Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        ArrayContainer toArray() {
+            char[] values = new char[cardinality];
+            int n = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    values[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, n);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.phonebook.index;
+
+import com.example.phonebook.util.TextNormalizer;
+
+/**
+ * Подготовленная строка поиска по ФИО или номеру телефона.
+ * <p>Строка нормализуется один раз на запрос, а сравнение с каждым контактом
+ * выполняется над заранее вычисленными формами из {@link IndexedContact}
+ * поиском подстроки без создания промежуточных объектов. Поэтому просмотр
+ * контакта при поиске не выделяет память.</p>
+ */
+public final class SearchTerm {
+
+    private final String text;
+    private final String digits;
+
+    private SearchTerm(String text, String digits) {
+        this.text = text;
+        this.digits = digits;
+    }
+
+    /**
+     * Подготавливает строку поиска.
+     * @param query строка, введённая пользователем
+     * @return подготовленный запрос или {@code null}, если строка пустая
+     */
+    public static SearchTerm of(String query) {
+        if (query == null || query.isBlank()) {
+            return null;
+        }
+        String digits = TextNormalizer.isNumberLike(query) ? TextNormalizer.digitsOnly(query) : null;
+        return new SearchTerm(TextNormalizer.foldName(query), digits);
+    }
+
+    /**
+     * Проверяет, подходит ли контакт под запрос: ФИО содержит строку поиска
+     * без учёта регистра или один из номеров содержит цифры запроса.
+     * @param entry запись индекса
+     * @return {@code true}, если контакт подходит
+     */
+    public boolean matches(IndexedContact entry) {
+        return entry.getFoldedName().contains(text)
+                || (digits != null && entry.getNumberDigits().contains(digits));
+    }
+}
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.StringJoiner;
 
 /**
  * Модель контакта телефонного справочника.
@@ -71,10 +72,11 @@ public class Contact implements Serializable {
      * @return строка вида "Мобильный: 123; Рабочий: 456"
      */
     public String phonesAsString() {
-        return phones.stream()
-                .map(PhoneNumber::toString)
-                .reduce((a, b) -> a + "; " + b)
-                .orElse("");
+        StringJoiner joiner = new StringJoiner("; ");
+        for (PhoneNumber pn : phones) {
+            joiner.add(pn.toString());
+        }
+        return joiner.toString();
     }
 
     /**
@@ -0,0 +1,132 @@
+package com.example.phonebook.query;
+
+import com.example.phonebook.index.RoaringBitmap;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Способ получить кандидатов для проверки условия запроса: полный просмотр,
+ * выборка по одному из индексов или объединение нескольких выборок.
+ * <p>Оценки строк и стоимости вычисляются при планировании
+ * ({@link QueryPlanner}); стоимость выражена в условных единицах,
+ * где проверка одной записи стоит 1.</p>
+ */
+public final class AccessPath {
+
+    /** Способ доступа */
+    public enum Kind {
+        /** Просмотр всех записей справочника */
+        FULL_SCAN("Полный просмотр"),
+        /** Индекс n-грамм ФИО */
+        NAME_GRAMS("Индекс n-грамм ФИО"),
+        /** Упорядоченные ключи слов ФИО */
+        NAME_KEYS("Ключи слов ФИО"),
+        /** Упорядоченные ключи номеров */
+        NUMBER_KEYS("Ключи номеров"),
+        /** Битовый индекс типов телефонов */
+        TYPE_BITMAP("Битовый индекс типов"),
+        /** Битовый индекс количества телефонов */
+        PHONES_BITMAP("Битовый индекс количества телефонов"),
+        /** Объединение выборок для условия {@code OR} */
+        UNION("Объединение");
+
+        private final String displayName;
+
+        Kind(String displayName) {
+            this.displayName = displayName;
+        }
+
+        /**
+         * Возвращает название для вывода {@code EXPLAIN}.
+         * @return название способа доступа
+         */
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    private final Kind kind;
+    private final Condition condition;
+    private final long rows;
+    private final long cost;
+    private final List<AccessPath> inputs;
+    private final Supplier<RoaringBitmap> fetch;
+
+    AccessPath(Kind kind, Condition condition, long rows, long cost,
+               List<AccessPath> inputs, Supplier<RoaringBitmap> fetch) {
+        this.kind = kind;
+        this.condition = condition;
+        this.rows = rows;
+        this.cost = cost;
+        this.inputs = List.copyOf(inputs);
+        this.fetch = fetch;
+    }
+
+    /**
+     * Возвращает способ доступа.
+     * @return способ доступа
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Возвращает условие, по которому отбираются кандидаты.
+     * @return условие или {@code null} для полного просмотра
+     */
+    public Condition getCondition() {
+        return condition;
+    }
+
+    /**
+     * Возвращает оценку числа кандидатов.
+     * @return оценка сверху
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Возвращает оценку стоимости.
+     * @return стоимость в условных единицах
+     */
+    public long getCost() {
+        return cost;
+    }
+
+    /**
+     * Возвращает выборки, которые объединяет {@link Kind#UNION}.
+     * @return неизменяемый список; пустой для остальных способов
+     */
+    public List<AccessPath> getInputs() {
+        return inputs;
+    }
+
+    /** Номера записей-кандидатов или {@code null} для полного просмотра */
+    RoaringBitmap fetch() {
+        if (kind == Kind.FULL_SCAN) {
+            return null;
+        }
+        if (kind == Kind.UNION) {
+            RoaringBitmap result = new RoaringBitmap();
+            for (AccessPath input : inputs) {
+                result = RoaringBitmap.or(result, input.fetch());
+            }
+            return result;
+        }
+        return fetch.get();
+    }
+
+    void describe(StringBuilder sb, String indent) {
+        sb.append(indent).append(kind.getDisplayName());
+        if (condition != null && kind != Kind.UNION) {
+            sb.append(' ').append(condition);
+        }
+        sb.append(" — строк ").append(kind == Kind.FULL_SCAN ? "" : "≈ ").append(rows)
+                .append(", стоимость ").append(cost).append('\n');
+        for (AccessPath input : inputs) {
+            input.describe(sb, indent + "  ");
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.phonebook.query;
+
+import com.example.phonebook.index.IndexedContact;
+import com.example.phonebook.index.PhoneFilter;
+import com.example.phonebook.model.PhoneType;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Условие запроса к справочнику — узел дерева, которое строит {@link QueryParser}.
+ * <p>Значения хранятся в нормализованном виде, поэтому проверка записи
+ * индекса не выделяет память. {@link #toString()} возвращает условие
+ * в синтаксисе запросов.</p>
+ */
+public sealed interface Condition {
+
+    /**
+     * Проверяет, подходит ли запись под условие.
+     * @param entry запись индекса
+     * @return {@code true}, если подходит
+     */
+    boolean matches(IndexedContact entry);
+
+    /**
+     * ФИО содержит фрагмент: {@code name:иван} — в любом месте,
+     * {@code name:иван*} — в начале слова.
+     * @param fragment  нормализованный фрагмент ФИО
+     * @param wordStart {@code true}, если фрагмент должен стоять в начале слова
+     */
+    record NameTerm(String fragment, boolean wordStart) implements Condition {
+        @Override
+        public boolean matches(IndexedContact entry) {
+            String name = entry.getFoldedName();
+            if (!wordStart) {
+                return name.contains(fragment);
+            }
+            for (int i = name.indexOf(fragment); i >= 0; i = name.indexOf(fragment, i + 1)) {
+                if (i == 0 || !Character.isLetterOrDigit(name.charAt(i - 1))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "name:" + QueryParser.quote(fragment) + (wordStart ? "*" : "");
+        }
+    }
+
+    /**
+     * Номер телефона: {@code number:^7495} — нормализованный номер начинается
+     * с цифр, {@code number:922} — цифры номера содержат последовательность.
+     * @param digits цифры
+     * @param prefix {@code true} для сравнения с началом нормализованного номера
+     */
+    record NumberTerm(String digits, boolean prefix) implements Condition {
+        @Override
+        public boolean matches(IndexedContact entry) {
+            return prefix ? entry.hasNumberPrefix(digits) : entry.getNumberDigits().contains(digits);
+        }
+
+        @Override
+        public String toString() {
+            return "number:" + (prefix ? "^" : "") + digits;
+        }
+    }
+
+    /**
+     * У контакта есть телефон указанного типа: {@code type:MOBILE}.
+     * @param type тип номера
+     */
+    record TypeTerm(PhoneType type) implements Condition {
+        @Override
+        public boolean matches(IndexedContact entry) {
+            return entry.hasPhoneType(type);
+        }
+
+        @Override
+        public String toString() {
+            return "type:" + type.name();
+        }
+    }
+
+    /**
+     * Количество телефонов: {@code phones:2}; {@code phones:3+} — три и больше.
+     * @param count количество от 0 до {@link PhoneFilter#MANY_PHONES}
+     */
+    record PhoneCountTerm(int count) implements Condition {
+        @Override
+        public boolean matches(IndexedContact entry) {
+            return Math.min(entry.getPhoneCount(), PhoneFilter.MANY_PHONES) == count;
+        }
+
+        @Override
+        public String toString() {
+            return "phones:" + count + (count == PhoneFilter.MANY_PHONES ? "+" : "");
+        }
+    }
+
+    /**
+     * Выполняются все условия.
+     * @param operands условия
+     */
+    record And(List<Condition> operands) implements Condition {
+        public And {
+            operands = List.copyOf(operands);
+        }
+
+        @Override
+        public boolean matches(IndexedContact entry) {
+            for (Condition c : operands) {
+                if (!c.matches(entry)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return operands.stream()
+                    .map(c -> c instanceof Or ? "(" + c + ")" : c.toString())
+                    .collect(Collectors.joining(" AND "));
+        }
+    }
+
+    /**
+     * Выполняется хотя бы одно условие.
+     * @param operands условия
+     */
+    record Or(List<Condition> operands) implements Condition {
+        public Or {
+            operands = List.copyOf(operands);
+        }
+
+        @Override
+        public boolean matches(IndexedContact entry) {
+            for (Condition c : operands) {
+                if (c.matches(entry)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return operands.stream().map(Condition::toString).collect(Collectors.joining(" OR "));
+        }
+    }
+
+    /**
+     * Условие не выполняется.
+     * @param operand условие
+     */
+    record Not(Condition operand) implements Condition {
+        @Override
+        public boolean matches(IndexedContact entry) {
+            return !operand.matches(entry);
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + (operand instanceof And || operand instanceof Or ? "(" + operand + ")" : operand);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.phonebook.query;
+
+/**
+ * Разобранный запрос к справочнику (см. {@link QueryParser}).
+ */
+public final class Query {
+
+    private final Condition condition;
+    private final boolean explain;
+
+    /**
+     * Создаёт запрос.
+     * @param condition условие отбора
+     * @param explain   {@code true}, если нужен только план выполнения
+     */
+    public Query(Condition condition, boolean explain) {
+        this.condition = condition;
+        this.explain = explain;
+    }
+
+    /**
+     * Возвращает условие отбора.
+     * @return корень дерева условий
+     */
+    public Condition getCondition() {
+        return condition;
+    }
+
+    /**
+     * Проверяет, начинается ли запрос с {@code EXPLAIN}.
+     * @return {@code true}, если запрос нужно только спланировать, не выполняя
+     */
+    public boolean isExplain() {
+        return explain;
+    }
+
+    @Override
+    public String toString() {
+        return (explain ? "EXPLAIN " : "") + condition;
+    }
+}
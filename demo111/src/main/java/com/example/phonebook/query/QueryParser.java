@@ -0,0 +1,269 @@
+package com.example.phonebook.query;
+
+import com.example.phonebook.index.PhoneFilter;
+import com.example.phonebook.model.PhoneType;
+import com.example.phonebook.util.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Разбор запросов к справочнику.
+ * <p>Синтаксис:</p>
+ * <ul>
+ *     <li>{@code name:иван} — ФИО содержит фрагмент; {@code name:иван*} — фрагмент
+ *     стоит в начале слова; значение с пробелами берётся в кавычки: {@code name:"иванов иван"};</li>
+ *     <li>{@code number:^7495} — нормализованный номер («+7 (495) …» и «8 495 …»
+ *     дают «7495…») начинается с цифр; {@code number:922} — номер содержит цифры;</li>
+ *     <li>{@code type:MOBILE} — есть телефон типа (имя константы или название, например «Рабочий»);</li>
+ *     <li>{@code phones:2} — количество телефонов; {@code phones:3+} — три и больше;</li>
+ *     <li>слово без поля ищется так же, как в {@code PhonebookService.search(String)}:
+ *     в ФИО, а если похоже на номер — и в номерах;</li>
+ *     <li>{@code NOT}, {@code AND}, {@code OR} (по убыванию приоритета) и скобки;
+ *     условия, записанные подряд, объединяются через {@code AND};</li>
+ *     <li>{@code EXPLAIN} в начале запроса — показать план, не выполняя запрос.</li>
+ * </ul>
+ * <p>Ключевые слова распознаются без учёта регистра; чтобы искать такое слово
+ * в ФИО, его нужно взять в кавычки.</p>
+ */
+public final class QueryParser {
+
+    private final String text;
+    private int pos;
+    private Token token;
+
+    private QueryParser(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Разбирает запрос.
+     * @param text текст запроса
+     * @return разобранный запрос
+     * @throws IllegalArgumentException если запрос пустой или содержит ошибку;
+     *                                  сообщение указывает позицию ошибки
+     */
+    public static Query parse(String text) {
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("Пустой запрос");
+        }
+        QueryParser parser = new QueryParser(text);
+        parser.advance();
+        boolean explain = parser.token.isKeyword("EXPLAIN");
+        if (explain) {
+            parser.advance();
+        }
+        Condition condition = parser.parseOr();
+        if (parser.token.kind != Kind.END) {
+            throw parser.error(parser.token, "лишний текст");
+        }
+        return new Query(condition, explain);
+    }
+
+    /**
+     * Записывает значение так, чтобы разбор вернул его без изменений:
+     * значения с пробелами, скобками и ключевые слова берутся в кавычки.
+     * @param value значение
+     * @return значение для текста запроса
+     */
+    static String quote(String value) {
+        boolean plain = !value.isEmpty() && !isKeyword(value);
+        for (int i = 0; i < value.length() && plain; i++) {
+            char ch = value.charAt(i);
+            plain = !Character.isWhitespace(ch) && "()\"*:^".indexOf(ch) < 0;
+        }
+        return plain ? value : '"' + value + '"';
+    }
+
+    private Condition parseOr() {
+        List<Condition> operands = new ArrayList<>();
+        operands.add(parseAnd());
+        while (token.isKeyword("OR")) {
+            advance();
+            operands.add(parseAnd());
+        }
+        return operands.size() == 1 ? operands.get(0) : new Condition.Or(operands);
+    }
+
+    private Condition parseAnd() {
+        List<Condition> operands = new ArrayList<>();
+        operands.add(parseNot());
+        while (true) {
+            if (token.isKeyword("AND")) {
+                advance();
+            } else if (token.kind == Kind.END || token.kind == Kind.CLOSE || token.isKeyword("OR")) {
+                break;
+            }
+            operands.add(parseNot());
+        }
+        return operands.size() == 1 ? operands.get(0) : new Condition.And(operands);
+    }
+
+    private Condition parseNot() {
+        if (token.isKeyword("NOT")) {
+            advance();
+            return new Condition.Not(parseNot());
+        }
+        return parsePrimary();
+    }
+
+    private Condition parsePrimary() {
+        Token t = token;
+        if (t.kind == Kind.OPEN) {
+            advance();
+            Condition inner = parseOr();
+            if (token.kind != Kind.CLOSE) {
+                throw error(token, "ожидалась «)»");
+            }
+            advance();
+            return inner;
+        }
+        if (t.kind != Kind.WORD || t.isKeyword("AND") || t.isKeyword("OR")) {
+            throw error(t, "ожидалось условие");
+        }
+        advance();
+        return term(t);
+    }
+
+    private Condition term(Token t) {
+        if (t.field == null) {
+            String fragment = nameFragment(t);
+            if (t.star || !TextNormalizer.isNumberLike(t.value)) {
+                return new Condition.NameTerm(fragment, t.star);
+            }
+            return new Condition.Or(List.of(new Condition.NameTerm(fragment, false),
+                    new Condition.NumberTerm(TextNormalizer.digitsOnly(t.value), false)));
+        }
+        switch (t.field) {
+            case "name":
+                return new Condition.NameTerm(nameFragment(t), t.star);
+            case "number": {
+                noStar(t);
+                boolean prefix = t.value.startsWith("^");
+                String digits = TextNormalizer.digitsOnly(prefix ? t.value.substring(1) : t.value);
+                if (digits.isEmpty()) {
+                    throw error(t, "в номере нет цифр");
+                }
+                return new Condition.NumberTerm(digits, prefix);
+            }
+            case "type":
+                noStar(t);
+                for (PhoneType type : PhoneType.values()) {
+                    if (type.name().equalsIgnoreCase(t.value) || type.getDisplayName().equalsIgnoreCase(t.value)) {
+                        return new Condition.TypeTerm(type);
+                    }
+                }
+                throw error(t, "неизвестный тип телефона «" + t.value + "»");
+            case "phones": {
+                noStar(t);
+                boolean orMore = t.value.endsWith("+");
+                String value = orMore ? t.value.substring(0, t.value.length() - 1) : t.value;
+                int count = value.length() == 1 && value.charAt(0) >= '0' && value.charAt(0) <= '9'
+                        ? value.charAt(0) - '0' : -1;
+                if (count < 0 || count > PhoneFilter.MANY_PHONES || (orMore && count != PhoneFilter.MANY_PHONES)) {
+                    throw error(t, "количество телефонов должно быть от 0 до " + PhoneFilter.MANY_PHONES + "+");
+                }
+                return new Condition.PhoneCountTerm(count);
+            }
+            default:
+                throw error(t, "неизвестное поле «" + t.field + "»");
+        }
+    }
+
+    private String nameFragment(Token t) {
+        if (!t.quoted && t.value.indexOf('*') >= 0) {
+            throw error(t, "«*» допускается только в конце значения");
+        }
+        String fragment = TextNormalizer.foldName(t.value);
+        if (fragment.isEmpty()) {
+            throw error(t, "пустое значение");
+        }
+        return fragment;
+    }
+
+    private void noStar(Token t) {
+        if (t.star) {
+            throw error(t, "«*» допускается только в ФИО");
+        }
+    }
+
+    private IllegalArgumentException error(Token t, String message) {
+        return new IllegalArgumentException("Ошибка в запросе (позиция " + (t.start + 1) + "): " + message);
+    }
+
+    private static boolean isKeyword(String value) {
+        return value.equalsIgnoreCase("AND") || value.equalsIgnoreCase("OR")
+                || value.equalsIgnoreCase("NOT") || value.equalsIgnoreCase("EXPLAIN");
+    }
+
+    /** Читает следующую лексему в {@link #token} */
+    private void advance() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+        int start = pos;
+        if (pos == text.length()) {
+            token = new Token(Kind.END, start, null, "", false, false);
+            return;
+        }
+        char first = text.charAt(pos);
+        if (first == '(' || first == ')') {
+            pos++;
+            token = new Token(first == '(' ? Kind.OPEN : Kind.CLOSE, start, null, String.valueOf(first), false, false);
+            return;
+        }
+
+        String field = null;
+        int end = pos;
+        while (end < text.length() && isLatinLetter(text.charAt(end))) {
+            end++;
+        }
+        if (end > pos && end < text.length() && text.charAt(end) == ':') {
+            field = text.substring(pos, end).toLowerCase(Locale.ROOT);
+            pos = end + 1;
+        }
+
+        String value;
+        boolean quoted = pos < text.length() && text.charAt(pos) == '"';
+        boolean star = false;
+        if (quoted) {
+            int close = text.indexOf('"', pos + 1);
+            if (close < 0) {
+                throw new IllegalArgumentException("Ошибка в запросе (позиция " + (pos + 1) + "): нет закрывающей кавычки");
+            }
+            value = text.substring(pos + 1, close);
+            pos = close + 1;
+            if (pos < text.length() && text.charAt(pos) == '*') {
+                star = true;
+                pos++;
+            }
+        } else {
+            int from = pos;
+            while (pos < text.length() && !Character.isWhitespace(text.charAt(pos)) && "()\"".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            value = text.substring(from, pos);
+            if (value.endsWith("*")) {
+                star = true;
+                value = value.substring(0, value.length() - 1);
+            }
+        }
+        token = new Token(Kind.WORD, start, field, value, quoted, star);
+        if (field != null && value.isEmpty() && !quoted) {
+            throw error(token, "нет значения поля «" + field + "»");
+        }
+    }
+
+    private static boolean isLatinLetter(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+    }
+
+    private enum Kind { WORD, OPEN, CLOSE, END }
+
+    private record Token(Kind kind, int start, String field, String value, boolean quoted, boolean star) {
+        boolean isKeyword(String keyword) {
+            return kind == Kind.WORD && field == null && !quoted && !star && value.equalsIgnoreCase(keyword);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.phonebook.query;
+
+import com.example.phonebook.index.ContactIndex;
+import com.example.phonebook.index.IndexedContact;
+import com.example.phonebook.index.RoaringBitmap;
+import com.example.phonebook.model.Contact;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * План выполнения запроса: выбранный способ получить кандидатов,
+ * условие, которым проверяется каждый кандидат, и отклонённые варианты.
+ * <p>План привязан к индексу, по которому составлен, и выполняется
+ * под той же блокировкой.</p>
+ */
+public final class QueryPlan {
+
+    private final Query query;
+    private final ContactIndex index;
+    private final AccessPath access;
+    private final List<AccessPath> rejected;
+    private final int contactCount;
+
+    QueryPlan(Query query, ContactIndex index, AccessPath access, List<AccessPath> rejected) {
+        this.query = query;
+        this.index = index;
+        this.access = access;
+        this.rejected = List.copyOf(rejected);
+        this.contactCount = index.size();
+    }
+
+    /**
+     * Возвращает запрос.
+     * @return разобранный запрос
+     */
+    public Query getQuery() {
+        return query;
+    }
+
+    /**
+     * Возвращает выбранный способ доступа.
+     * @return способ доступа
+     */
+    public AccessPath getAccess() {
+        return access;
+    }
+
+    /**
+     * Возвращает рассмотренные, но более дорогие варианты.
+     * @return неизменяемый список
+     */
+    public List<AccessPath> getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Возвращает оценку стоимости выбранного плана.
+     * @return стоимость в условных единицах
+     */
+    public long getCost() {
+        return access.getCost();
+    }
+
+    /**
+     * Выполняет план: получает кандидатов и проверяет их условием запроса.
+     * @return подходящие контакты в порядке добавления
+     */
+    public List<Contact> execute() {
+        Condition condition = query.getCondition();
+        List<Contact> result = new ArrayList<>();
+        RoaringBitmap ids = access.fetch();
+        if (ids == null) {
+            for (IndexedContact e : index.byInsertion(-1)) {
+                if (condition.matches(e)) {
+                    result.add(e.getContact());
+                }
+            }
+        } else {
+            ids.forEach(id -> {
+                IndexedContact e = index.byId(id);
+                if (e != null && condition.matches(e)) {
+                    result.add(e.getContact());
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает описание плана для {@code EXPLAIN}: способ доступа с оценками,
+     * проверяемое условие и отклонённые варианты.
+     * @return многострочный текст
+     */
+    public String explain() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Запрос: ").append(query.getCondition()).append('\n');
+        sb.append("Доступ:\n");
+        access.describe(sb, "  ");
+        sb.append("Проверка: ").append(query.getCondition()).append('\n');
+        if (!rejected.isEmpty()) {
+            sb.append("Отклонено:\n");
+            for (AccessPath path : rejected) {
+                path.describe(sb, "  ");
+            }
+        }
+        sb.append("Контактов в справочнике: ").append(contactCount);
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return explain();
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.phonebook.query;
+
+import com.example.phonebook.index.ContactIndex;
+import com.example.phonebook.index.PhoneFilter;
+import com.example.phonebook.index.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Выбор способа выполнения запроса.
+ * <p>Для каждого условия, которое поддерживает индекс, оценивается число
+ * кандидатов: n-граммы ФИО — фрагменты от трёх символов (или от двух в начале слова),
+ * ключи слов ФИО — начало слова любой длины ({@code name:и*}), ключи номеров —
+ * {@code number:^…}, битовые индексы — тип и количество телефонов. Для {@code AND} выбирается самое избирательное из условий,
+ * для {@code OR} — объединение, если индекс есть у каждой ветви.
+ * Если индексная выборка не дешевле полного просмотра, справочник просматривается
+ * целиком. В любом случае каждый кандидат проверяется всем условием запроса.</p>
+ * <p>Оценки читаются из индекса, поэтому планировать нужно под той же
+ * блокировкой, под которой запрос будет выполнен.</p>
+ */
+public final class QueryPlanner {
+
+    /** Стоимость обращения к одному множеству индекса относительно проверки записи */
+    static final long LOOKUP_COST = 8;
+
+    private final ContactIndex index;
+
+    /**
+     * Создаёт планировщик над индексом справочника.
+     * @param index индекс контактов
+     */
+    public QueryPlanner(ContactIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Составляет план выполнения запроса.
+     * @param query разобранный запрос
+     * @return план с выбранным способом доступа и отклонёнными вариантами
+     */
+    public QueryPlan plan(Query query) {
+        Condition condition = query.getCondition();
+        List<AccessPath> candidates = new ArrayList<>();
+        if (condition instanceof Condition.And and) {
+            for (Condition operand : and.operands()) {
+                AccessPath path = path(operand);
+                if (path != null) {
+                    candidates.add(path);
+                }
+            }
+        } else {
+            AccessPath path = path(condition);
+            if (path != null) {
+                candidates.add(path);
+            }
+        }
+        candidates.add(new AccessPath(AccessPath.Kind.FULL_SCAN, null, index.size(), index.size(), List.of(), null));
+
+        AccessPath best = candidates.stream().min(Comparator.comparingLong(AccessPath::getCost)).orElseThrow();
+        candidates.remove(best);
+        return new QueryPlan(query, index, best, candidates);
+    }
+
+    /** Индексная выборка для условия или {@code null}, если индекс неприменим */
+    private AccessPath path(Condition condition) {
+        if (condition instanceof Condition.NameTerm name) {
+            AccessPath best = null;
+            int rows = index.estimateName(name.fragment(), name.wordStart());
+            if (rows >= 0) {
+                best = lookup(AccessPath.Kind.NAME_GRAMS, name, rows,
+                        () -> index.selectName(name.fragment(), name.wordStart()));
+            }
+            int words = name.wordStart() ? index.estimateWordPrefix(name.fragment()) : -1;
+            if (words >= 0 && (best == null || words < rows)) {
+                best = lookup(AccessPath.Kind.NAME_KEYS, name, words,
+                        () -> index.selectWordPrefix(name.fragment()));
+            }
+            return best;
+        }
+        if (condition instanceof Condition.NumberTerm number) {
+            if (!number.prefix()) {
+                return null;
+            }
+            return lookup(AccessPath.Kind.NUMBER_KEYS, number, index.estimateNumberPrefix(number.digits()),
+                    () -> index.selectNumberPrefix(number.digits()));
+        }
+        if (condition instanceof Condition.TypeTerm type) {
+            PhoneFilter filter = PhoneFilter.ofType(type.type());
+            return lookup(AccessPath.Kind.TYPE_BITMAP, type, index.estimate(filter), () -> index.select(filter));
+        }
+        if (condition instanceof Condition.PhoneCountTerm count) {
+            PhoneFilter filter = PhoneFilter.ANY.withPhoneCount(count.count());
+            return lookup(AccessPath.Kind.PHONES_BITMAP, count, index.estimate(filter), () -> index.select(filter));
+        }
+        if (condition instanceof Condition.And and) {
+            AccessPath best = null;
+            for (Condition operand : and.operands()) {
+                AccessPath path = path(operand);
+                if (path != null && (best == null || path.getCost() < best.getCost())) {
+                    best = path;
+                }
+            }
+            return best;
+        }
+        if (condition instanceof Condition.Or or) {
+            List<AccessPath> inputs = new ArrayList<>();
+            long rows = 0;
+            long cost = 0;
+            for (Condition operand : or.operands()) {
+                AccessPath path = path(operand);
+                if (path == null) {
+                    return null;
+                }
+                inputs.add(path);
+                rows += path.getRows();
+                cost += path.getCost();
+            }
+            return new AccessPath(AccessPath.Kind.UNION, or, Math.min(rows, index.size()), cost, inputs, null);
+        }
+        return null;
+    }
+
+    private static AccessPath lookup(AccessPath.Kind kind, Condition condition, long rows,
+                                     Supplier<RoaringBitmap> fetch) {
+        return new AccessPath(kind, condition, rows, rows + LOOKUP_COST, List.of(), fetch);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.phonebook.query;
+
+import com.example.phonebook.model.Contact;
+
+import java.util.List;
+
+/**
+ * Результат запроса: найденные контакты и план, по которому они найдены.
+ * Для запроса с {@code EXPLAIN} план составляется, но не выполняется,
+ * и список контактов пуст.
+ */
+public final class QueryResult {
+
+    private final QueryPlan plan;
+    private final List<Contact> contacts;
+    private final long elapsedNanos;
+
+    /**
+     * Создаёт результат.
+     * @param plan         план запроса
+     * @param contacts     найденные контакты
+     * @param elapsedNanos время планирования и выполнения в наносекундах
+     */
+    public QueryResult(QueryPlan plan, List<Contact> contacts, long elapsedNanos) {
+        this.plan = plan;
+        this.contacts = List.copyOf(contacts);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Возвращает план запроса.
+     * @return план
+     */
+    public QueryPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Возвращает найденные контакты в порядке добавления.
+     * @return неизменяемый список; пустой для {@code EXPLAIN}
+     */
+    public List<Contact> getContacts() {
+        return contacts;
+    }
+
+    /**
+     * Проверяет, был ли запрос только спланирован.
+     * @return {@code true} для запроса с {@code EXPLAIN}
+     */
+    public boolean isExplain() {
+        return plan.getQuery().isExplain();
+    }
+
+    /**
+     * Возвращает время планирования и выполнения.
+     * @return время в наносекундах
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
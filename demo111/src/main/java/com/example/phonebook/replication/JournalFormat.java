@@ -0,0 +1,117 @@
+package com.example.phonebook.replication;
+
+import com.example.phonebook.service.Mutation;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Формат каталога репликации.
+ * <p>Каталог содержит файлы двух видов:</p>
+ * <ul>
+ *     <li>{@code snapshot-<seq>.bin} — снимок справочника в формате
+ *     {@link com.example.phonebook.storage.PhonebookStorage}, включающий все изменения
+ *     с номерами не больше {@code seq};</li>
+ *     <li>{@code journal-<first>.log} — сегмент журнала, записи которого
+ *     начинаются с номера {@code first} и идут подряд.</li>
+ * </ul>
+ * <p>Запись журнала: заголовок (номер, время записи, длина, CRC32)
+ * и сериализованный список {@link Mutation}, применённых как одно целое.</p>
+ */
+final class JournalFormat {
+
+    /** Размер заголовка записи: seq (8) + время (8) + длина (4) + CRC32 (4) */
+    static final int HEADER_SIZE = 24;
+
+    private static final Pattern SNAPSHOT = Pattern.compile("snapshot-(\\d{20})\\.bin");
+    private static final Pattern SEGMENT = Pattern.compile("journal-(\\d{20})\\.log");
+
+    private JournalFormat() {
+    }
+
+    static Path snapshotFile(Path dir, long seq) {
+        return dir.resolve(String.format("snapshot-%020d.bin", seq));
+    }
+
+    static Path segmentFile(Path dir, long firstSeq) {
+        return dir.resolve(String.format("journal-%020d.log", firstSeq));
+    }
+
+    /**
+     * Возвращает номера всех снимков в каталоге по возрастанию.
+     */
+    static List<Long> snapshots(Path dir) throws IOException {
+        return list(dir, SNAPSHOT);
+    }
+
+    /**
+     * Возвращает первые номера всех сегментов журнала по возрастанию.
+     */
+    static List<Long> segments(Path dir) throws IOException {
+        return list(dir, SEGMENT);
+    }
+
+    static Optional<Long> latestSnapshot(Path dir) throws IOException {
+        List<Long> all = snapshots(dir);
+        return all.isEmpty() ? Optional.empty() : Optional.of(all.get(all.size() - 1));
+    }
+
+    private static List<Long> list(Path dir, Pattern pattern) throws IOException {
+        List<Long> result = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return result;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(f -> {
+                Matcher m = pattern.matcher(f.getFileName().toString());
+                if (m.matches()) {
+                    result.add(Long.parseLong(m.group(1)));
+                }
+            });
+        }
+        result.sort(null);
+        return result;
+    }
+
+    /**
+     * Кодирует запись журнала целиком, вместе с заголовком.
+     */
+    static ByteBuffer encode(long seq, long timeMillis, List<Mutation> mutations) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(new ArrayList<>(mutations));
+        }
+        byte[] payload = bytes.toByteArray();
+
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buf.putLong(seq).putLong(timeMillis).putInt(payload.length).putInt(crc(payload)).put(payload);
+        return buf.flip();
+    }
+
+    /**
+     * Декодирует полезную нагрузку записи.
+     */
+    @SuppressWarnings("unchecked")
+    static List<Mutation> decode(byte[] payload) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            return (List<Mutation>) ois.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Некорректная запись журнала", e);
+        }
+    }
+
+    static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
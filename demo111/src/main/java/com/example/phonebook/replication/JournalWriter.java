@@ -0,0 +1,334 @@
+package com.example.phonebook.replication;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.service.Mutation;
+import com.example.phonebook.service.MutationListener;
+import com.example.phonebook.service.PhonebookService;
+import com.example.phonebook.storage.PhonebookStorage;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Ведущая сторона репликации: записывает журнал изменений справочника в общий каталог.
+ * <p>Писатель подписывается на изменения {@link PhonebookService} и дописывает каждую
+ * группу изменений отдельной записью в текущий сегмент журнала. Периодически
+ * (при превышении размера сегмента или по вызову {@link #checkpoint()}) он
+ * сохраняет снимок справочника и начинает новый сегмент, а устаревшие файлы удаляет.
+ * Реплики ({@link ReplicaFollower}) читают тот же каталог и применяют записи по порядку,
+ * поэтому копировать файл справочника целиком при каждом изменении не нужно.</p>
+ * <p>При открытии писатель всегда сохраняет свежий снимок с новым номером:
+ * так реплики, отставшие от предыдущего запуска ведущего экземпляра,
+ * гарантированно догоняют его по снимку.</p>
+ */
+public final class JournalWriter implements MutationListener, Closeable {
+
+    private static final Logger log = LogManager.getLogger(JournalWriter.class);
+
+    /** Размер сегмента по умолчанию, после которого создаётся новый снимок */
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private final Path dir;
+    private final PhonebookService service;
+    private final long maxSegmentBytes;
+    private final boolean fsync;
+    private final ExecutorService checkpointer;
+
+    private FileChannel segment;
+    private long lastSeq;
+    private boolean checkpointPending;
+    /** Запись в журнал не удалась: до контрольной точки изменения не дописываются */
+    private boolean broken;
+    private boolean closed;
+
+    /**
+     * Открывает журнал в каталоге с настройками по умолчанию
+     * (без принудительного сброса на диск после каждой записи).
+     * @param dir     общий каталог репликации
+     * @param service ведущий экземпляр сервиса
+     * @return открытый писатель
+     * @throws IOException если каталог недоступен
+     */
+    public static JournalWriter open(Path dir, PhonebookService service) throws IOException {
+        return new JournalWriter(dir, service, DEFAULT_MAX_SEGMENT_BYTES, false);
+    }
+
+    /**
+     * Открывает журнал в каталоге.
+     * @param dir             общий каталог репликации
+     * @param service         ведущий экземпляр сервиса
+     * @param maxSegmentBytes размер сегмента, после которого выполняется {@link #checkpoint()}
+     * @param fsync           сбрасывать ли каждую запись на диск
+     * @throws IOException если каталог недоступен
+     */
+    public JournalWriter(Path dir, PhonebookService service, long maxSegmentBytes, boolean fsync)
+            throws IOException {
+        this.dir = dir;
+        this.service = service;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.fsync = fsync;
+        this.checkpointer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "journal-checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+
+        Files.createDirectories(dir);
+        long recovered = recoverLastSequence();
+
+        try {
+            service.read(contacts -> {
+                synchronized (this) {
+                    lastSeq = recovered + 1;
+                    try {
+                        writeSnapshot(contacts, lastSeq);
+                        startSegment(lastSeq + 1);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    service.addMutationListener(this);
+                }
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        deleteObsolete(lastSeq);
+        log.info("Журнал репликации открыт в {}. Номер снимка: {}", dir.toAbsolutePath(), lastSeq);
+    }
+
+    /**
+     * Возвращает номер последней записи журнала.
+     * @return номер последнего изменения
+     */
+    public synchronized long getLastSequence() {
+        return lastSeq;
+    }
+
+    /**
+     * Дописывает группу изменений в журнал.
+     * Вызывается сервисом под его блокировкой записи.
+     * <p>Если запись не удалась, сегмент обрезается до прежнего размера, а писатель
+     * перестаёт дописывать журнал до следующей контрольной точки, которая запускается
+     * сразу: она сохраняет снимок с новым номером, и реплики догоняют по нему
+     * вместо того, чтобы применить следующие записи без потерянной.</p>
+     * @param mutations изменения в порядке применения
+     */
+    @Override
+    public synchronized void onMutations(List<Mutation> mutations) {
+        if (closed) {
+            return;
+        }
+        if (broken) {
+            scheduleCheckpoint();
+            return;
+        }
+        long size = -1;
+        try {
+            size = segment.size();
+            ByteBuffer record = JournalFormat.encode(lastSeq + 1, System.currentTimeMillis(), mutations);
+            while (record.hasRemaining()) {
+                segment.write(record);
+            }
+            if (fsync) {
+                segment.force(false);
+            }
+            lastSeq++;
+
+            if (segment.size() >= maxSegmentBytes) {
+                scheduleCheckpoint();
+            }
+        } catch (IOException e) {
+            log.error("Не удалось записать изменения в журнал {}. Реплики догонят по снимку", dir, e);
+            broken = true;
+            truncate(size);
+            scheduleCheckpoint();
+        }
+    }
+
+    /**
+     * Сохраняет снимок справочника и начинает новый сегмент журнала.
+     * Старые снимки и сегменты удаляются, только когда новый снимок записан
+     * и сброшен на диск. Если запись не удалась после сбоя журнала,
+     * писатель остаётся в состоянии сбоя и повторит контрольную точку.
+     * @throws IOException если снимок не удалось записать
+     */
+    public void checkpoint() throws IOException {
+        long[] seq = new long[1];
+        boolean[] recovering = new boolean[1];
+        List<Contact> copy = service.read(contacts -> {
+            synchronized (this) {
+                recovering[0] = broken;
+                if (broken) {
+                    // изменения после сбоя есть только в снимке: новый номер заставит реплики загрузить его
+                    lastSeq++;
+                    broken = false;
+                }
+                seq[0] = lastSeq;
+                try {
+                    segment.close();
+                    startSegment(lastSeq + 1);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    checkpointPending = false;
+                }
+            }
+            return List.copyOf(contacts);
+        });
+
+        try {
+            writeSnapshot(copy, seq[0]);
+        } catch (IOException e) {
+            if (recovering[0]) {
+                synchronized (this) {
+                    broken = true;
+                }
+            }
+            throw e;
+        }
+        deleteObsolete(seq[0]);
+        log.info("Контрольная точка журнала: снимок {}, контактов {}", seq[0], copy.size());
+    }
+
+    /**
+     * Отписывается от сервиса и закрывает текущий сегмент.
+     * @throws IOException если сегмент не удалось закрыть
+     */
+    @Override
+    public void close() throws IOException {
+        service.removeMutationListener(this);
+        checkpointer.shutdown();
+        synchronized (this) {
+            closed = true;
+            segment.close();
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Не удалось выполнить контрольную точку журнала {}", dir, e);
+        }
+    }
+
+    private void scheduleCheckpoint() {
+        if (!checkpointPending && !checkpointer.isShutdown()) {
+            checkpointPending = true;
+            checkpointer.execute(this::checkpointQuietly);
+        }
+    }
+
+    /**
+     * Отрезает от сегмента недописанную запись.
+     * @param size размер сегмента до записи или {@code -1}, если он неизвестен
+     */
+    private void truncate(long size) {
+        if (size < 0) {
+            return;
+        }
+        try {
+            segment.truncate(size);
+        } catch (IOException e) {
+            log.error("Не удалось отрезать недописанную запись журнала {}", dir, e);
+        }
+    }
+
+    private void startSegment(long firstSeq) throws IOException {
+        segment = FileChannel.open(JournalFormat.segmentFile(dir, firstSeq),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Сохраняет снимок во временный файл, сбрасывает его на диск и атомарно
+     * переименовывает. Недописанный временный файл удаляется.
+     */
+    private void writeSnapshot(List<Contact> contacts, long seq) throws IOException {
+        Path target = JournalFormat.snapshotFile(dir, seq);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            new PhonebookStorage(tmp).write(contacts);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Удаляет снимки старше {@code snapshotSeq} и сегменты, целиком покрытые им.
+     */
+    private void deleteObsolete(long snapshotSeq) throws IOException {
+        for (long s : JournalFormat.snapshots(dir)) {
+            if (s < snapshotSeq) {
+                Files.deleteIfExists(JournalFormat.snapshotFile(dir, s));
+            }
+        }
+        for (long first : JournalFormat.segments(dir)) {
+            if (first <= snapshotSeq) {
+                Files.deleteIfExists(JournalFormat.segmentFile(dir, first));
+            }
+        }
+    }
+
+    /**
+     * Находит номер последнего изменения, записанного предыдущим запуском.
+     * Оборванная запись в конце последнего сегмента отрезается.
+     */
+    private long recoverLastSequence() throws IOException {
+        long last = JournalFormat.latestSnapshot(dir).orElse(0L);
+        List<Long> segments = JournalFormat.segments(dir);
+        if (segments.isEmpty()) {
+            return last;
+        }
+
+        long first = segments.get(segments.size() - 1);
+        try (FileChannel ch = FileChannel.open(JournalFormat.segmentFile(dir, first),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long pos = 0;
+            long size = ch.size();
+            ByteBuffer header = ByteBuffer.allocate(JournalFormat.HEADER_SIZE);
+            while (size - pos >= JournalFormat.HEADER_SIZE) {
+                header.clear();
+                ch.read(header, pos);
+                header.flip();
+                long seq = header.getLong();
+                header.getLong();
+                int len = header.getInt();
+                int crc = header.getInt();
+                if (len < 0 || size - pos - JournalFormat.HEADER_SIZE < len) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(len);
+                ch.read(payload, pos + JournalFormat.HEADER_SIZE);
+                if (JournalFormat.crc(payload.array()) != crc) {
+                    break;
+                }
+                last = Math.max(last, seq);
+                pos += JournalFormat.HEADER_SIZE + len;
+            }
+            if (pos < size) {
+                log.warn("Отрезана незавершённая запись журнала {} ({} байт)", first, size - pos);
+                ch.truncate(pos);
+            }
+        }
+        return last;
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.phonebook.replication;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.service.PhonebookService;
+import com.example.phonebook.storage.PhonebookStorage;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ведомая сторона репликации: экземпляр справочника только для чтения,
+ * который догоняет ведущий по журналу в общем каталоге.
+ * <p>При запуске реплика загружает последний снимок, а затем с заданным
+ * интервалом дочитывает новые записи журнала и применяет их к своему
+ * {@link PhonebookService} через {@link PhonebookService#replicate(List)}.
+ * Таким образом отставание ограничено интервалом опроса. Если нужные
+ * записи уже удалены (реплика отстала сильнее, чем хранится журнал,
+ * или ведущий экземпляр был перезапущен), реплика заново загружает
+ * последний снимок. Так же реплика поступает, если запись журнала не совпадает
+ * с её содержимым ({@link PhonebookService#replicate(List)} отказывается её применять).</p>
+ */
+public final class ReplicaFollower implements Closeable {
+
+    private static final Logger log = LogManager.getLogger(ReplicaFollower.class);
+
+    private final Path dir;
+    private final PhonebookService service;
+    private final ScheduledExecutorService scheduler;
+
+    private long appliedSeq;
+    private long segmentFirst = -1;
+    private FileChannel segment;
+    private long position;
+    private volatile long lastApplyDelayMillis;
+
+    /**
+     * Создаёт реплику, которая опрашивает каталог с указанным интервалом.
+     * @param dir          общий каталог репликации
+     * @param pollInterval интервал опроса журнала
+     * @throws IOException если каталог недоступен
+     */
+    public ReplicaFollower(Path dir, Duration pollInterval) throws IOException {
+        this(dir);
+        scheduler.scheduleWithFixedDelay(this::pollQuietly,
+                pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Создаёт реплику без фонового опроса: записи применяются только
+     * при явном вызове {@link #poll()}.
+     * @param dir общий каталог репликации
+     * @throws IOException если каталог недоступен
+     */
+    public ReplicaFollower(Path dir) throws IOException {
+        this.dir = dir;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replica-follower");
+            t.setDaemon(true);
+            return t;
+        });
+
+        Optional<Long> snapshot = JournalFormat.latestSnapshot(dir);
+        if (snapshot.isEmpty()) {
+            throw new NoSuchFileException(dir.toString(), null, "в каталоге репликации нет снимка");
+        }
+        long seq = snapshot.get();
+        this.service = new PhonebookService(JournalFormat.snapshotFile(dir, seq));
+        this.service.setReadOnly(true);
+        // Пустой справочник может означать, что снимок не прочитан (например, его удалила
+        // контрольная точка ведущего экземпляра): перечитываем его так, чтобы ошибка не терялась.
+        while (service.read(List::isEmpty)) {
+            try {
+                service.resetTo(readSnapshot(seq));
+                break;
+            } catch (NoSuchFileException e) {
+                long newer = JournalFormat.latestSnapshot(dir).orElse(0L);
+                if (newer <= seq) {
+                    throw e;
+                }
+                seq = newer;
+            }
+        }
+        this.appliedSeq = seq;
+        log.info("Реплика запущена со снимка {}", appliedSeq);
+    }
+
+    /**
+     * Возвращает сервис реплики. Он открыт только для чтения.
+     * @return сервис для поиска контактов
+     */
+    public PhonebookService getService() {
+        return service;
+    }
+
+    /**
+     * Возвращает номер последнего применённого изменения.
+     * @return номер изменения
+     */
+    public synchronized long getAppliedSequence() {
+        return appliedSeq;
+    }
+
+    /**
+     * Возвращает задержку применения последней записи журнала:
+     * время от её записи ведущим экземпляром до применения репликой.
+     * @return задержка репликации
+     */
+    public Duration getLastApplyDelay() {
+        return Duration.ofMillis(lastApplyDelayMillis);
+    }
+
+    /**
+     * Применяет все доступные записи журнала.
+     * @return количество применённых записей
+     * @throws IOException если журнал или снимок не удалось прочитать
+     */
+    public synchronized int poll() throws IOException {
+        int applied = 0;
+        ByteBuffer header = ByteBuffer.allocate(JournalFormat.HEADER_SIZE);
+
+        while (true) {
+            if (segment == null && !openSegment()) {
+                return applied;
+            }
+
+            long size = segment.size();
+            boolean complete = false;
+            long seq = 0;
+            long time = 0;
+            byte[] payload = null;
+
+            if (size - position >= JournalFormat.HEADER_SIZE) {
+                header.clear();
+                segment.read(header, position);
+                header.flip();
+                seq = header.getLong();
+                time = header.getLong();
+                int len = header.getInt();
+                int crc = header.getInt();
+                if (len >= 0 && size - position - JournalFormat.HEADER_SIZE >= len) {
+                    ByteBuffer buf = ByteBuffer.allocate(len);
+                    segment.read(buf, position + JournalFormat.HEADER_SIZE);
+                    payload = buf.array();
+                    complete = JournalFormat.crc(payload) == crc;
+                }
+            }
+
+            if (!complete) {
+                // Конец сегмента или запись ещё дописывается.
+                // Переходим дальше, только если ведущий уже начал новый сегмент.
+                if (!advanceSegment(size)) {
+                    return applied;
+                }
+                continue;
+            }
+
+            position += JournalFormat.HEADER_SIZE + payload.length;
+            if (seq <= appliedSeq) {
+                continue;
+            }
+            if (seq != appliedSeq + 1) {
+                log.warn("Разрыв в журнале: ожидалась запись {}, получена {}", appliedSeq + 1, seq);
+                if (!resync()) {
+                    return applied;
+                }
+                continue;
+            }
+
+            try {
+                service.replicate(JournalFormat.decode(payload));
+            } catch (IllegalStateException e) {
+                log.error("Запись {} журнала не применена: {}", seq, e.getMessage());
+                if (!resync()) {
+                    return applied;
+                }
+                continue;
+            }
+            appliedSeq = seq;
+            lastApplyDelayMillis = Math.max(0, System.currentTimeMillis() - time);
+            applied++;
+        }
+    }
+
+    /**
+     * Останавливает опрос журнала.
+     * @throws IOException если текущий сегмент не удалось закрыть
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        scheduler.shutdownNow();
+        closeSegment();
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (IOException | RuntimeException e) {
+            log.error("Ошибка чтения журнала репликации {}", dir, e);
+        }
+    }
+
+    /**
+     * Открывает сегмент, содержащий следующую нужную запись.
+     * @return {@code false}, если такого сегмента пока нет
+     */
+    private boolean openSegment() throws IOException {
+        long next = appliedSeq + 1;
+        long candidate = -1;
+        for (long first : JournalFormat.segments(dir)) {
+            if (first <= next) {
+                candidate = first;
+            }
+        }
+        if (candidate < 0) {
+            return JournalFormat.latestSnapshot(dir).orElse(0L) > appliedSeq && resync() && openSegment();
+        }
+        try {
+            segment = FileChannel.open(JournalFormat.segmentFile(dir, candidate), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        segmentFirst = candidate;
+        position = 0;
+        return true;
+    }
+
+    /**
+     * Переходит к следующему сегменту, если текущий уже закрыт ведущим.
+     * @param readSize размер текущего сегмента, до которого он прочитан
+     * @return {@code true}, если чтение можно продолжить
+     */
+    private boolean advanceSegment(long readSize) throws IOException {
+        long newer = -1;
+        for (long first : JournalFormat.segments(dir)) {
+            if (first > segmentFirst) {
+                newer = first;
+                break;
+            }
+        }
+        if (newer < 0 || segment.size() != readSize) {
+            return false;
+        }
+        closeSegment();
+        if (newer == appliedSeq + 1) {
+            return openSegment();
+        }
+        return resync();
+    }
+
+    /**
+     * Загружает последний снимок, если он новее применённых изменений.
+     * Если снимок не удалось прочитать (например, ведущий экземпляр удалил его
+     * при контрольной точке), справочник реплики не меняется,
+     * а загрузка повторяется при следующем опросе.
+     * @return {@code true}, если снимок загружен
+     */
+    private boolean resync() throws IOException {
+        closeSegment();
+        long snapshot = JournalFormat.latestSnapshot(dir).orElse(0L);
+        if (snapshot <= appliedSeq) {
+            log.error("Нет снимка новее {}: реплика ожидает ведущий экземпляр", appliedSeq);
+            return false;
+        }
+        List<Contact> contacts;
+        try {
+            contacts = readSnapshot(snapshot);
+        } catch (IOException e) {
+            log.warn("Не удалось прочитать снимок {}, повторю при следующем опросе", snapshot, e);
+            return false;
+        }
+        service.resetTo(contacts);
+        appliedSeq = snapshot;
+        log.info("Реплика догнала ведущий экземпляр по снимку {}", snapshot);
+        return true;
+    }
+
+    private List<Contact> readSnapshot(long seq) throws IOException {
+        return new PhonebookStorage(JournalFormat.snapshotFile(dir, seq)).loadOrThrow();
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment != null) {
+            segment.close();
+            segment = null;
+            segmentFirst = -1;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.phonebook.server;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Блокирующий клиент протокола {@link LookupProtocol} поверх TCP.
+ * <p>Поддерживает конвейер: несколько {@link #send(int, String)},
+ * один {@link #flush()}, затем столько же {@link #receive()}.
+ * Клиент не потокобезопасен.</p>
+ */
+public class LookupClient implements Closeable {
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(64 * 1024);
+    private final ByteBuffer in = ByteBuffer.allocateDirect(64 * 1024);
+    private final byte[] name = new byte[LookupProtocol.MAX_NAME_BYTES];
+
+    /**
+     * Подключается к серверу.
+     * @param address адрес сервера
+     * @throws IOException если подключиться не удалось
+     */
+    public LookupClient(InetSocketAddress address) throws IOException {
+        channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        in.flip();
+    }
+
+    /**
+     * Определяет один номер: отправляет запрос и ждёт ответа.
+     * @param number номер телефона
+     * @return ответ сервера
+     * @throws IOException при ошибке соединения
+     */
+    public LookupResponse lookup(String number) throws IOException {
+        send(0, number);
+        flush();
+        return receive();
+    }
+
+    /**
+     * Добавляет запрос в буфер отправки. Полный буфер отправляется автоматически.
+     * @param requestId номер запроса, который вернётся в ответе
+     * @param number    номер телефона
+     * @throws IOException при ошибке соединения
+     */
+    public void send(int requestId, String number) throws IOException {
+        if (out.remaining() < LookupProtocol.LENGTH_BYTES + LookupProtocol.REQUEST_HEADER + number.length()) {
+            flush();
+        }
+        LookupProtocol.writeRequest(out, requestId, number);
+    }
+
+    /**
+     * Отправляет накопленные запросы.
+     * @throws IOException при ошибке соединения
+     */
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Ждёт и читает следующий ответ.
+     * @return ответ сервера
+     * @throws IOException при ошибке соединения или разрыве
+     */
+    public LookupResponse receive() throws IOException {
+        fill(LookupProtocol.LENGTH_BYTES);
+        int length = in.getShort(in.position()) & 0xFFFF;
+        fill(LookupProtocol.LENGTH_BYTES + length);
+        in.position(in.position() + LookupProtocol.LENGTH_BYTES);
+        int requestId = in.getInt();
+        byte status = in.get();
+        int type = in.get() & 0xFF;
+        int nameLength = length - LookupProtocol.RESPONSE_HEADER;
+        in.get(name, 0, nameLength);
+        String fullName = status == LookupProtocol.STATUS_FOUND
+                ? new String(name, 0, nameLength, StandardCharsets.UTF_8)
+                : null;
+        return new LookupResponse(requestId, status, LookupProtocol.typeOf(type), fullName);
+    }
+
+    /** Дочитывает из сокета, пока в буфере не окажется хотя бы {@code bytes} байт */
+    private void fill(int bytes) throws IOException {
+        while (in.remaining() < bytes) {
+            in.compact();
+            int n = channel.read(in);
+            in.flip();
+            if (n < 0) {
+                throw new EOFException("Сервер закрыл соединение");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.phonebook.server;
+
+import com.example.phonebook.model.PhoneType;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Двоичный протокол определения номера для АТС.
+ * <p>Все числа — в сетевом порядке байт. Каждое сообщение предваряется
+ * двухбайтовой длиной тела, поэтому по TCP запросы можно отправлять подряд,
+ * не дожидаясь ответов (конвейер): сервер отвечает в том же порядке.
+ * По UDP одна датаграмма содержит ровно одно сообщение в том же формате.</p>
+ * <pre>
+ * запрос:  u16 длина, i32 номер запроса, u8 код операции (1 — LOOKUP), byte[] номер (ASCII)
+ * ответ:   u16 длина, i32 номер запроса, u8 статус, u8 тип телефона, byte[] ФИО (UTF-8)
+ * </pre>
+ * <p>Тип телефона — порядковый номер {@link PhoneType} или {@code 0xFF},
+ * если номер не найден. ФИО в ответе обрезается до {@link #MAX_NAME_BYTES} байт
+ * по границе символа.</p>
+ */
+public final class LookupProtocol {
+
+    /** Код операции «определить номер» */
+    public static final byte OP_LOOKUP = 1;
+
+    /** Статус: номер найден */
+    public static final byte STATUS_FOUND = 0;
+
+    /** Статус: номера нет в справочнике */
+    public static final byte STATUS_NOT_FOUND = 1;
+
+    /** Статус: запрос не распознан */
+    public static final byte STATUS_BAD_REQUEST = 2;
+
+    /** Тип телефона в ответе, если номер не найден */
+    public static final int NO_TYPE = 0xFF;
+
+    /** Размер заголовка длины */
+    public static final int LENGTH_BYTES = 2;
+
+    /** Длина тела запроса без номера */
+    public static final int REQUEST_HEADER = 5;
+
+    /** Длина тела ответа без ФИО */
+    public static final int RESPONSE_HEADER = 6;
+
+    /** Максимальная длина номера в запросе */
+    public static final int MAX_NUMBER_BYTES = 64;
+
+    /** Максимальная длина ФИО в ответе */
+    public static final int MAX_NAME_BYTES = 512;
+
+    /** Максимальный размер ответа вместе с длиной */
+    public static final int MAX_RESPONSE_BYTES = LENGTH_BYTES + RESPONSE_HEADER + MAX_NAME_BYTES;
+
+    private static final PhoneType[] TYPES = PhoneType.values();
+
+    private LookupProtocol() {
+    }
+
+    /**
+     * Записывает запрос в буфер.
+     * @param out       буфер; должно быть не меньше {@code 7 + длина номера} свободных байт
+     * @param requestId номер запроса
+     * @param number    номер телефона (ASCII, не длиннее {@link #MAX_NUMBER_BYTES})
+     */
+    public static void writeRequest(ByteBuffer out, int requestId, String number) {
+        int length = number.length();
+        if (length > MAX_NUMBER_BYTES) {
+            throw new IllegalArgumentException("Слишком длинный номер: " + number);
+        }
+        out.putShort((short) (REQUEST_HEADER + length));
+        out.putInt(requestId);
+        out.put(OP_LOOKUP);
+        for (int i = 0; i < length; i++) {
+            char ch = number.charAt(i);
+            out.put(ch < 0x80 ? (byte) ch : (byte) '?');
+        }
+    }
+
+    /**
+     * Записывает ответ в буфер.
+     * @param out       буфер; должно быть не меньше {@link #MAX_RESPONSE_BYTES} свободных байт
+     * @param requestId номер запроса
+     * @param status    статус ответа
+     * @param type      тип найденного телефона или {@code null}
+     * @param name      ФИО или {@code null}
+     * @param encoder   переиспользуемый кодировщик UTF-8
+     */
+    static void writeResponse(ByteBuffer out, int requestId, byte status, PhoneType type, String name,
+                              CharsetEncoder encoder) {
+        int start = out.position();
+        out.position(start + LENGTH_BYTES);
+        out.putInt(requestId);
+        out.put(status);
+        out.put((byte) (type == null ? NO_TYPE : type.ordinal()));
+        if (name != null && !name.isEmpty()) {
+            int limit = out.limit();
+            out.limit(out.position() + MAX_NAME_BYTES);
+            encoder.reset();
+            // При переполнении кодировщик останавливается на границе символа
+            encoder.encode(CharBuffer.wrap(name), out, true);
+            out.limit(limit);
+        }
+        out.putShort(start, (short) (out.position() - start - LENGTH_BYTES));
+    }
+
+    /**
+     * Возвращает тип телефона по коду из ответа.
+     * @param code код из ответа
+     * @return тип или {@code null}, если номер не найден
+     */
+    public static PhoneType typeOf(int code) {
+        return code >= 0 && code < TYPES.length ? TYPES[code] : null;
+    }
+
+    /**
+     * Создаёт кодировщик ФИО, заменяющий некорректные символы.
+     * @return новый кодировщик UTF-8
+     */
+    static CharsetEncoder newEncoder() {
+        return StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+}
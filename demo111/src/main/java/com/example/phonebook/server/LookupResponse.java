@@ -0,0 +1,73 @@
+package com.example.phonebook.server;
+
+import com.example.phonebook.model.PhoneType;
+
+/**
+ * Ответ сервера определения номера.
+ */
+public final class LookupResponse {
+
+    private final int requestId;
+    private final byte status;
+    private final PhoneType type;
+    private final String fullName;
+
+    /**
+     * Создаёт ответ.
+     * @param requestId номер запроса
+     * @param status    статус ({@link LookupProtocol#STATUS_FOUND} и другие)
+     * @param type      тип найденного телефона или {@code null}
+     * @param fullName  ФИО или {@code null}
+     */
+    public LookupResponse(int requestId, byte status, PhoneType type, String fullName) {
+        this.requestId = requestId;
+        this.status = status;
+        this.type = type;
+        this.fullName = fullName;
+    }
+
+    /**
+     * Возвращает номер запроса, на который дан ответ.
+     * @return номер запроса
+     */
+    public int getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Возвращает статус ответа.
+     * @return статус
+     */
+    public byte getStatus() {
+        return status;
+    }
+
+    /**
+     * Проверяет, найден ли номер.
+     * @return {@code true}, если номер есть в справочнике
+     */
+    public boolean isFound() {
+        return status == LookupProtocol.STATUS_FOUND;
+    }
+
+    /**
+     * Возвращает тип найденного телефона.
+     * @return тип или {@code null}, если номер не найден
+     */
+    public PhoneType getType() {
+        return type;
+    }
+
+    /**
+     * Возвращает ФИО владельца номера.
+     * @return ФИО или {@code null}, если номер не найден
+     */
+    public String getFullName() {
+        return fullName;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + requestId + " " + (isFound() ? fullName + " (" + type + ")" : "status=" + status);
+    }
+}
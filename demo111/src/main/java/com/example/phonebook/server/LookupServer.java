@@ -0,0 +1,325 @@
+package com.example.phonebook.server;
+
+import com.example.phonebook.model.PhoneType;
+import com.example.phonebook.service.CallerId;
+import com.example.phonebook.service.PhonebookService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Optional;
+
+/**
+ * Сервер определения номера по протоколу {@link LookupProtocol}.
+ * <p>Все соединения обслуживает один поток с неблокирующим {@link Selector}:
+ * для каждого готового к чтению соединения разбираются все пришедшие запросы,
+ * ответы складываются в исходящий буфер и отправляются одной записью.
+ * Если клиент не успевает читать ответы, сервер перестаёт читать его запросы,
+ * пока буфер не освободится.</p>
+ * <p>Буферы соединений выделяются вне кучи ({@link ByteBuffer#allocateDirect(int)}),
+ * поэтому сокет читает и пишет их без промежуточного копирования; после закрытия
+ * соединения буферы возвращаются в пул и достаются следующим соединениям.</p>
+ */
+public class LookupServer implements Closeable {
+
+    private static final Logger log = LogManager.getLogger(LookupServer.class);
+
+    private static final int IN_BUFFER_BYTES = 16 * 1024;
+    private static final int OUT_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 64;
+
+    private final PhonebookService service;
+    private final Selector selector;
+    private final ServerSocketChannel tcp;
+    private final DatagramChannel udp;
+    private final Thread loop;
+
+    private final ArrayDeque<ByteBuffer> inPool = new ArrayDeque<>();
+    private final ArrayDeque<ByteBuffer> outPool = new ArrayDeque<>();
+    private final ByteBuffer udpIn = ByteBuffer.allocateDirect(LookupProtocol.LENGTH_BYTES
+            + LookupProtocol.REQUEST_HEADER + LookupProtocol.MAX_NUMBER_BYTES + 1);
+    private final ByteBuffer udpOut = ByteBuffer.allocateDirect(LookupProtocol.MAX_RESPONSE_BYTES);
+    private final byte[] number = new byte[LookupProtocol.MAX_NUMBER_BYTES];
+    private final CharsetEncoder encoder = LookupProtocol.newEncoder();
+
+    private volatile boolean running = true;
+
+    /**
+     * Запускает сервер только с TCP.
+     * @param service сервис справочника
+     * @param tcp     адрес TCP (порт 0 — любой свободный)
+     * @return запущенный сервер
+     * @throws IOException если адрес недоступен
+     */
+    public static LookupServer start(PhonebookService service, InetSocketAddress tcp) throws IOException {
+        return new LookupServer(service, tcp, null);
+    }
+
+    /**
+     * Запускает сервер.
+     * @param service сервис справочника
+     * @param tcpAddress адрес TCP (порт 0 — любой свободный)
+     * @param udpAddress адрес UDP или {@code null}, если UDP не нужен
+     * @throws IOException если адрес недоступен
+     */
+    public LookupServer(PhonebookService service, InetSocketAddress tcpAddress, InetSocketAddress udpAddress)
+            throws IOException {
+        this.service = service;
+        this.selector = Selector.open();
+        this.tcp = ServerSocketChannel.open();
+        tcp.bind(tcpAddress);
+        tcp.configureBlocking(false);
+        tcp.register(selector, SelectionKey.OP_ACCEPT);
+
+        if (udpAddress != null) {
+            udp = DatagramChannel.open();
+            udp.bind(udpAddress);
+            udp.configureBlocking(false);
+            udp.register(selector, SelectionKey.OP_READ);
+        } else {
+            udp = null;
+        }
+
+        loop = new Thread(this::run, "lookup-server");
+        loop.setDaemon(true);
+        loop.start();
+        log.info("Сервер определения номера запущен: TCP {}, UDP {}",
+                tcp.getLocalAddress(), udp == null ? "выключен" : udp.getLocalAddress());
+    }
+
+    /**
+     * Возвращает порт TCP, на котором принимаются соединения.
+     * @return номер порта
+     * @throws IOException если сервер закрыт
+     */
+    public int getTcpPort() throws IOException {
+        return ((InetSocketAddress) tcp.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Возвращает порт UDP.
+     * @return номер порта или {@code -1}, если UDP выключен
+     * @throws IOException если сервер закрыт
+     */
+    public int getUdpPort() throws IOException {
+        return udp == null ? -1 : ((InetSocketAddress) udp.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Останавливает сервер и закрывает все соединения.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            loop.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Сервер определения номера остановлен");
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        handle(key);
+                    } catch (IOException e) {
+                        log.debug("Ошибка соединения {}: {}", key.channel(), e.toString());
+                        closeConnection(key);
+                    } catch (RuntimeException e) {
+                        log.error("Ошибка обработки запроса от {}", key.channel(), e);
+                        closeConnection(key);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            log.error("Ошибка цикла сервера определения номера", e);
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void handle(SelectionKey key) throws IOException {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+        } else if (key.channel() == udp) {
+            receiveDatagrams();
+        } else {
+            Connection c = (Connection) key.attachment();
+            if (key.isReadable() && c.channel.read(c.in) < 0) {
+                closeConnection(key);
+                return;
+            }
+            process(key, c);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = tcp.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            ByteBuffer in = inPool.isEmpty() ? ByteBuffer.allocateDirect(IN_BUFFER_BYTES) : inPool.pop();
+            ByteBuffer out = outPool.isEmpty() ? ByteBuffer.allocateDirect(OUT_BUFFER_BYTES) : outPool.pop();
+            channel.register(selector, SelectionKey.OP_READ, new Connection(channel, in, out));
+        }
+    }
+
+    /**
+     * Отвечает на все полностью пришедшие запросы соединения и отправляет ответы.
+     */
+    private void process(SelectionKey key, Connection c) throws IOException {
+        ByteBuffer in = c.in;
+        ByteBuffer out = c.out;
+        boolean more;
+        do {
+            in.flip();
+            more = false;
+            while (in.remaining() >= LookupProtocol.LENGTH_BYTES) {
+                int length = in.getShort(in.position()) & 0xFFFF;
+                if (length < LookupProtocol.REQUEST_HEADER
+                        || length > LookupProtocol.REQUEST_HEADER + LookupProtocol.MAX_NUMBER_BYTES) {
+                    throw new IOException("Некорректная длина запроса: " + length);
+                }
+                if (in.remaining() < LookupProtocol.LENGTH_BYTES + length) {
+                    break;
+                }
+                if (out.remaining() < LookupProtocol.MAX_RESPONSE_BYTES) {
+                    more = true;
+                    break;
+                }
+                in.position(in.position() + LookupProtocol.LENGTH_BYTES);
+                answer(in, length, out);
+            }
+            in.compact();
+
+            out.flip();
+            c.channel.write(out);
+            out.compact();
+            // Повторяем, если разбор остановился из-за полного буфера ответов, а запись его освободила.
+        } while (more && out.position() == 0);
+
+        // Пока ответы не ушли, новые запросы не читаются: клиент, не читающий ответы,
+        // не может заставить сервер копить их без ограничения.
+        boolean pending = out.position() > 0;
+        key.interestOps(pending ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    private void receiveDatagrams() throws IOException {
+        SocketAddress sender;
+        while ((sender = udp.receive(udpIn.clear())) != null) {
+            udpIn.flip();
+            if (udpIn.remaining() < LookupProtocol.LENGTH_BYTES) {
+                continue;
+            }
+            int length = udpIn.getShort() & 0xFFFF;
+            if (length != udpIn.remaining() || length < LookupProtocol.REQUEST_HEADER
+                    || length > LookupProtocol.REQUEST_HEADER + LookupProtocol.MAX_NUMBER_BYTES) {
+                continue;
+            }
+            udpOut.clear();
+            answer(udpIn, length, udpOut);
+            udp.send(udpOut.flip(), sender);
+        }
+    }
+
+    /**
+     * Читает тело одного запроса (без длины) и записывает ответ.
+     */
+    private void answer(ByteBuffer in, int length, ByteBuffer out) {
+        int requestId = in.getInt();
+        byte op = in.get();
+        int numberLength = length - LookupProtocol.REQUEST_HEADER;
+        in.get(number, 0, numberLength);
+        if (op != LookupProtocol.OP_LOOKUP) {
+            LookupProtocol.writeResponse(out, requestId, LookupProtocol.STATUS_BAD_REQUEST, null, null, encoder);
+            return;
+        }
+
+        Optional<CallerId> found = service.lookupNumber(new String(number, 0, numberLength, StandardCharsets.US_ASCII));
+        if (found.isPresent()) {
+            CallerId id = found.get();
+            PhoneType type = id.getPhone().getType();
+            LookupProtocol.writeResponse(out, requestId, LookupProtocol.STATUS_FOUND, type,
+                    id.getContact().getFullName(), encoder);
+        } else {
+            LookupProtocol.writeResponse(out, requestId, LookupProtocol.STATUS_NOT_FOUND, null, null, encoder);
+        }
+    }
+
+    private void closeConnection(SelectionKey key) {
+        if (!(key.channel() instanceof SocketChannel) && running) {
+            // Ошибки UDP и приёма соединений не останавливают сервер
+            return;
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            log.debug("Ошибка при закрытии соединения", e);
+        }
+        if (key.attachment() instanceof Connection c) {
+            release(c);
+        }
+    }
+
+    private void release(Connection c) {
+        if (inPool.size() < MAX_POOLED_BUFFERS) {
+            inPool.push(c.in.clear());
+            outPool.push(c.out.clear());
+        }
+    }
+
+    private void shutdown() {
+        for (SelectionKey key : selector.keys()) {
+            closeConnection(key);
+        }
+        try {
+            selector.close();
+            tcp.close();
+            if (udp != null) {
+                udp.close();
+            }
+        } catch (IOException e) {
+            log.error("Ошибка при остановке сервера определения номера", e);
+        }
+    }
+
+    /** Состояние одного TCP-соединения */
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer in;
+        private final ByteBuffer out;
+
+        private Connection(SocketChannel channel, ByteBuffer in, ByteBuffer out) {
+            this.channel = channel;
+            this.in = in;
+            this.out = out;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.phonebook.service;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.model.PhoneNumber;
+
+/**
+ * Результат определения номера: контакт и его телефон, совпавший с номером.
+ */
+public final class CallerId {
+
+    private final Contact contact;
+    private final PhoneNumber phone;
+
+    /**
+     * Создаёт результат определения номера.
+     * @param contact найденный контакт
+     * @param phone   телефон контакта, совпавший с искомым номером
+     */
+    public CallerId(Contact contact, PhoneNumber phone) {
+        this.contact = contact;
+        this.phone = phone;
+    }
+
+    /**
+     * Возвращает найденный контакт.
+     * @return контакт
+     */
+    public Contact getContact() {
+        return contact;
+    }
+
+    /**
+     * Возвращает совпавший телефон; по нему можно узнать тип номера.
+     * @return телефонный номер
+     */
+    public PhoneNumber getPhone() {
+        return phone;
+    }
+
+    @Override
+    public String toString() {
+        return contact.getFullName() + " (" + phone + ")";
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.phonebook.service;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.storage.ContactStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Разница между текущим содержимым справочника и новой версией
+ * (например, файлом, заменённым другой программой).
+ * <p>Контакты сопоставляются по ФИО. Контакт с тем же ФИО и теми же телефонами
+ * считается неизменным; с тем же ФИО, но другими телефонами — обновлённым.
+ * Если контактов с одним ФИО несколько, лишние считаются добавленными
+ * или удалёнными.</p>
+ */
+final class ContactDiff {
+
+    private ContactDiff() {
+    }
+
+    /**
+     * Вычисляет изменения, превращающие текущее содержимое в новое.
+     * Оба списка просматриваются по одному разу.
+     * @param current текущие контакты
+     * @param loaded  новое содержимое
+     * @return удаления, затем обновления, затем добавления; в изменениях
+     *         участвуют те же объекты, что лежат в {@code current}
+     */
+    static List<Mutation> between(List<Contact> current, List<Contact> loaded) {
+        Map<String, List<Contact>> unmatched = new HashMap<>(current.size() * 4 / 3 + 1);
+        for (Contact c : current) {
+            unmatched.computeIfAbsent(ContactStore.keyOf(c), k -> new ArrayList<>(1)).add(c);
+        }
+
+        Map<String, List<Contact>> changed = new LinkedHashMap<>();
+        for (Contact c : loaded) {
+            String key = ContactStore.keyOf(c);
+            List<Contact> candidates = unmatched.get(key);
+            if (candidates == null || !removeSame(candidates, c)) {
+                changed.computeIfAbsent(key, k -> new ArrayList<>(1)).add(c);
+            }
+        }
+
+        List<Mutation> updates = new ArrayList<>();
+        List<Mutation> additions = new ArrayList<>();
+        for (Map.Entry<String, List<Contact>> e : changed.entrySet()) {
+            List<Contact> previous = unmatched.getOrDefault(e.getKey(), List.of());
+            List<Contact> next = e.getValue();
+            int paired = Math.min(previous.size(), next.size());
+            for (int i = 0; i < next.size(); i++) {
+                if (i < paired) {
+                    updates.add(Mutation.updated(previous.get(i), next.get(i)));
+                } else {
+                    additions.add(Mutation.added(next.get(i)));
+                }
+            }
+            if (paired > 0) {
+                previous.subList(0, paired).clear();
+            }
+        }
+
+        Set<Contact> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (List<Contact> rest : unmatched.values()) {
+            removed.addAll(rest);
+        }
+        List<Mutation> result = new ArrayList<>(removed.size() + updates.size() + additions.size());
+        if (!removed.isEmpty()) {
+            for (Contact c : current) {
+                if (removed.contains(c)) {
+                    result.add(Mutation.removed(c));
+                }
+            }
+        }
+        result.addAll(updates);
+        result.addAll(additions);
+        return result;
+    }
+
+    /** Убирает из кандидатов первый контакт с тем же содержимым */
+    private static boolean removeSame(List<Contact> candidates, Contact contact) {
+        for (int i = 0; i < candidates.size(); i++) {
+            if (sameContent(candidates.get(i), contact)) {
+                candidates.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Совпадают ли у контактов ФИО и телефоны */
+    static boolean sameContent(Contact a, Contact b) {
+        return Objects.equals(a.getFullName(), b.getFullName()) && a.getPhones().equals(b.getPhones());
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.phonebook.service;
+
+/**
+ * Порядок обхода контактов при постраничном чтении.
+ */
+public enum ContactSort {
+
+    /** В порядке справочника (порядке добавления) */
+    INSERTION,
+
+    /** По ФИО без учёта регистра */
+    NAME
+}
@@ -0,0 +1,144 @@
+package com.example.phonebook.service;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.storage.PhonebookStorage;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Следит за файлом справочника и подхватывает его замену другой программой.
+ * <p>Каталог файла отслеживается через {@link WatchService}. После изменения файла
+ * наблюдатель ждёт, пока изменения затихнут (файл могут дописывать по частям),
+ * читает файл в фоновом потоке и передаёт его содержимое
+ * {@link PhonebookService#reload(List)}, который применяет только различия.
+ * Поиск и определение номера при этом не останавливаются.</p>
+ * <p>Собственные сохранения приложения не перечитываются: хранилище помнит
+ * состояние файла после своей последней записи ({@link PhonebookStorage#loadIfModified()}).
+ * Недописанный или повреждённый файл пропускается до следующего изменения.</p>
+ */
+public final class DataFileWatcher implements Closeable {
+
+    private static final Logger log = LogManager.getLogger(DataFileWatcher.class);
+
+    /** Время без новых изменений файла, после которого он перечитывается */
+    public static final Duration DEFAULT_QUIET_PERIOD = Duration.ofMillis(300);
+
+    private final PhonebookService service;
+    private final PhonebookStorage storage;
+    private final Duration quietPeriod;
+    private final Path fileName;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    /**
+     * Запускает наблюдение с паузой по умолчанию.
+     * @param service сервис, в который применяются изменения
+     * @param storage хранилище этого сервиса
+     * @return запущенный наблюдатель
+     * @throws IOException если каталог файла недоступен
+     */
+    public static DataFileWatcher start(PhonebookService service, PhonebookStorage storage) throws IOException {
+        return new DataFileWatcher(service, storage, DEFAULT_QUIET_PERIOD);
+    }
+
+    /**
+     * Запускает наблюдение за файлом хранилища.
+     * @param service     сервис, в который применяются изменения
+     * @param storage     хранилище этого сервиса
+     * @param quietPeriod сколько ждать после последнего изменения файла перед чтением
+     * @throws IOException если каталог файла недоступен
+     */
+    public DataFileWatcher(PhonebookService service, PhonebookStorage storage, Duration quietPeriod)
+            throws IOException {
+        this.service = service;
+        this.storage = storage;
+        this.quietPeriod = quietPeriod;
+        Path file = storage.getFilePath().toAbsolutePath();
+        this.fileName = file.getFileName();
+        Path dir = file.getParent();
+        Files.createDirectories(dir);
+        this.watchService = FileSystems.getDefault().newWatchService();
+        dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::run, "data-file-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        log.info("Запущено наблюдение за файлом {}", file);
+    }
+
+    /**
+     * Перечитывает файл, если он изменился после последнего сохранения
+     * или загрузки, и применяет различия к справочнику.
+     * @return количество применённых изменений
+     * @throws IOException если файл не удалось прочитать
+     */
+    public synchronized int reloadNow() throws IOException {
+        long started = System.nanoTime();
+        List<Contact> loaded = storage.loadIfModified();
+        if (loaded == null) {
+            return 0;
+        }
+        int applied = service.reload(loaded);
+        log.info("Файл {} изменён извне: применено изменений {} за {} мс",
+                storage.getFilePath(), applied, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return applied;
+    }
+
+    /**
+     * Останавливает наблюдение.
+     * @throws IOException при ошибке закрытия {@link WatchService}
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                if (!concernsFile(watchService.take())) {
+                    continue;
+                }
+                WatchKey next;
+                while ((next = watchService.poll(quietPeriod.toMillis(), TimeUnit.MILLISECONDS)) != null) {
+                    concernsFile(next);
+                }
+                try {
+                    reloadNow();
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Не удалось перечитать файл {}: {}", storage.getFilePath(), e.toString());
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.debug("Наблюдение за файлом {} остановлено", storage.getFilePath());
+        }
+    }
+
+    /** Разбирает события ключа и сообщает, касается ли хоть одно файла справочника */
+    private boolean concernsFile(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            relevant |= event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context());
+        }
+        key.reset();
+        return relevant;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.phonebook.service;
+
+import com.example.phonebook.model.Contact;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Одно изменение телефонного справочника.
+ * <p>Изменения рассылаются слушателям {@link MutationListener} в том порядке,
+ * в котором они применялись к списку контактов, и могут быть повторно
+ * применены к другому экземпляру сервиса ({@link PhonebookService#replicate(java.util.List)}).</p>
+ * <p>Изменение, применённое к списку, знает позицию контакта в списке на момент
+ * применения ({@link #getPosition()}). По позиции и прежнему содержимому реплика
+ * находит именно тот контакт, который изменил ведущий экземпляр, даже если
+ * в справочнике несколько контактов с одним ФИО.</p>
+ * <p>Класс реализует {@link Serializable}, чтобы изменения можно было
+ * записывать в журнал и передавать на реплики.</p>
+ */
+public final class Mutation implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 2L;
+
+    /**
+     * Вид изменения.
+     */
+    public enum Kind {
+        /** Добавлен новый контакт */
+        ADD,
+        /** Контакт удалён */
+        REMOVE,
+        /** Контакт заменён новой версией */
+        UPDATE
+    }
+
+    private final Kind kind;
+    private final Contact before;
+    private final Contact after;
+    private final int position;
+
+    private Mutation(Kind kind, Contact before, Contact after, int position) {
+        this.kind = kind;
+        this.before = before;
+        this.after = after;
+        this.position = position;
+    }
+
+    /**
+     * Создаёт изменение «контакт добавлен».
+     * @param contact добавленный контакт
+     * @return изменение
+     */
+    public static Mutation added(Contact contact) {
+        return new Mutation(Kind.ADD, null, Objects.requireNonNull(contact), -1);
+    }
+
+    /**
+     * Создаёт изменение «контакт удалён».
+     * @param contact удалённый контакт
+     * @return изменение
+     */
+    public static Mutation removed(Contact contact) {
+        return new Mutation(Kind.REMOVE, Objects.requireNonNull(contact), null, -1);
+    }
+
+    /**
+     * Создаёт изменение «контакт обновлён».
+     * @param before прежняя версия контакта
+     * @param after  новая версия контакта
+     * @return изменение
+     */
+    public static Mutation updated(Contact before, Contact after) {
+        return new Mutation(Kind.UPDATE, Objects.requireNonNull(before), Objects.requireNonNull(after), -1);
+    }
+
+    /**
+     * Возвращает то же изменение с позицией контакта в списке.
+     * @param position позиция удалённого или заменённого контакта до изменения,
+     *                 добавленного — после
+     * @return изменение с позицией
+     */
+    Mutation at(int position) {
+        return new Mutation(kind, before, after, position);
+    }
+
+    /**
+     * Возвращает вид изменения.
+     * @return вид изменения
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Возвращает контакт до изменения.
+     * @return прежняя версия; {@code null} для {@link Kind#ADD}
+     */
+    public Contact getBefore() {
+        return before;
+    }
+
+    /**
+     * Возвращает контакт после изменения.
+     * @return новая версия; {@code null} для {@link Kind#REMOVE}
+     */
+    public Contact getAfter() {
+        return after;
+    }
+
+    /**
+     * Возвращает позицию контакта в списке справочника на момент применения изменения.
+     * @return позиция удалённого или заменённого контакта до изменения, добавленного —
+     *         после; {@code -1}, если изменение ещё не применялось к списку
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    @Override
+    public String toString() {
+        return switch (kind) {
+            case ADD -> "ADD " + after.getFullName();
+            case REMOVE -> "REMOVE " + before.getFullName();
+            case UPDATE -> "UPDATE " + before.getFullName() + " -> " + after.getFullName();
+        };
+    }
+}
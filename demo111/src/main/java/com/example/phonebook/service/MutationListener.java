@@ -0,0 +1,20 @@
+package com.example.phonebook.service;
+
+import java.util.List;
+
+/**
+ * Слушатель изменений телефонного справочника.
+ * <p>Вызывается сервисом сразу после применения изменений к списку контактов,
+ * пока сервис удерживает блокировку записи. Поэтому слушатель видит изменения
+ * строго в порядке их применения и не должен выполнять долгих операций
+ * или обращаться к изменяющим методам сервиса.</p>
+ */
+@FunctionalInterface
+public interface MutationListener {
+
+    /**
+     * Обрабатывает группу изменений, применённых как одно целое.
+     * @param mutations изменения в порядке применения
+     */
+    void onMutations(List<Mutation> mutations);
+}
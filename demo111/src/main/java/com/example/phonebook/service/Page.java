@@ -0,0 +1,52 @@
+package com.example.phonebook.service;
+
+import java.util.List;
+
+/**
+ * Одна страница результатов постраничного чтения.
+ * <p>Страница содержит не больше запрошенного количества элементов
+ * и курсор, с которого начинается следующая страница. Курсор непрозрачен:
+ * его нужно передавать обратно без изменений. Позиция по курсору
+ * определяется ключом последнего элемента, поэтому добавление и удаление
+ * контактов между запросами не приводит к пропускам и повторам.</p>
+ * @param <T> тип элементов
+ */
+public final class Page<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    /**
+     * Создаёт страницу.
+     * @param items      элементы страницы
+     * @param nextCursor курсор следующей страницы или {@code null}, если страница последняя
+     */
+    public Page(List<T> items, String nextCursor) {
+        this.items = List.copyOf(items);
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Возвращает элементы страницы.
+     * @return неизменяемый список элементов
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Возвращает курсор следующей страницы.
+     * @return курсор или {@code null}, если дальше элементов нет
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Проверяет, есть ли следующая страница.
+     * @return {@code true}, если за этой страницей есть ещё элементы
+     */
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -1,139 +1,1204 @@
 package com.example.phonebook.service;
 
+import com.example.phonebook.cache.CacheStats;
+import com.example.phonebook.cache.TinyLfuCache;
+import com.example.phonebook.dedup.DuplicateDetector;
+import com.example.phonebook.dedup.DuplicateGroup;
+import com.example.phonebook.diagnostics.MutationEvent;
+import com.example.phonebook.diagnostics.SearchEvent;
+import com.example.phonebook.index.ContactIndex;
+import com.example.phonebook.index.IndexedContact;
+import com.example.phonebook.index.NumberFilter;
+import com.example.phonebook.index.OffHeapKeyIndex;
+import com.example.phonebook.index.PhoneFilter;
+import com.example.phonebook.index.SearchTerm;
 import com.example.phonebook.model.Contact;
+import com.example.phonebook.query.Query;
+import com.example.phonebook.query.QueryParser;
+import com.example.phonebook.query.QueryPlan;
+import com.example.phonebook.query.QueryPlanner;
+import com.example.phonebook.query.QueryResult;
+import com.example.phonebook.storage.ContactStore;
 import com.example.phonebook.storage.PhonebookStorage;
+import com.example.phonebook.suggest.Autocomplete;
+import com.example.phonebook.suggest.Suggestion;
+import com.example.phonebook.util.TextNormalizer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Сервис телефонного справочника.
  * <p> Хранит список контактов в оперативной памяти,
  * а также обеспечивает:
  * <ul>
- *     <li>Загрузку данных из бинарного файла</li>
- *     <li>Добавление, обновление и удаление контактов</li>
+ *     <li>Загрузку данных из хранилища {@link ContactStore}</li>
+ *     <li>Добавление, обновление и удаление контактов, в том числе пакетами</li>
  *     <li>Поиск по ФИО или номеру телефона</li>
- *     <li>Сортировку контактов</li>
- *     <li>Сохранение данных в файл через {@link PhonebookStorage}</li>
+ *     <li>Определение абонента по номеру с кэшированием популярных номеров</li>
+ *     <li>Сортировку контактов и постраничное чтение по курсору</li>
+ *     <li>Поиск и объединение дубликатов</li>
+ *     <li>Рассылку изменений слушателям {@link MutationListener} (например, для репликации)</li>
+ *     <li>Сохранение изменений в хранилище: по умолчанию весь справочник
+ *     записывается в файл {@link PhonebookStorage}, а LSM-хранилище получает
+ *     только изменившиеся ключи</li>
  * </ul>
  * <p>Сервис является основным для логики приложения.</p>
+ * <p>Методы сервиса потокобезопасны: чтение выполняется под общей блокировкой,
+ * изменения — под исключительной.</p>
  */
 public class PhonebookService {
 
     private static final Logger log = LogManager.getLogger(PhonebookService.class);
 
-    private final PhonebookStorage storage;
+    /** Ёмкость кэша определения номера */
+    public static final int CALLER_ID_CACHE_SIZE = 10_000;
+
+    /** Длительность запроса ({@link #query(String)}), начиная с которой он записывается в журнал */
+    public static final long SLOW_QUERY_MILLIS = 100;
+
+    private final ContactStore storage;
     private final List<Contact> contacts = new ArrayList<>();
+    private final ContactIndex index;
+    private final TinyLfuCache<String, Optional<CallerId>> callerIdCache =
+            new TinyLfuCache<>(CALLER_ID_CACHE_SIZE);
+    private NumberFilter numberFilter;
+    /** Фильтр номеров изменился после загрузки или последнего сохранения */
+    private boolean numberFilterDirty;
+    /** Последнее сохранение в хранилище не удалось: его содержимое может отличаться от списка */
+    private boolean storageStale;
+    private final Autocomplete autocomplete = new Autocomplete();
+
+    /** Номер версии содержимого: растёт при каждом изменении, меняется под блокировкой записи */
+    private long version;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<MutationListener> listeners = new CopyOnWriteArrayList<>();
+
+    /** Режим только для чтения: изменяющие методы запрещены (используется репликами) */
+    private volatile boolean readOnly;
 
     /**
      * Создаёт сервис телефонного справочника и загружает данные из файла.
      * @param filePath путь к бинарному файлу-хранилищу
      */
     public PhonebookService(Path filePath) {
-        this.storage = new PhonebookStorage(filePath);
-        log.info("Инициализация PhonebookService. Файл: {}", filePath.toAbsolutePath());
-        contacts.addAll(storage.load());
-        log.info("Загрузка завершена. Количество контактов: {}", contacts.size());
+        this(new PhonebookStorage(filePath));
+    }
+
+    /**
+     * Создаёт сервис поверх готового хранилища и загружает из него данные.
+     * Позволяет, например, включить сжатие файла или выбрать LSM-хранилище.
+     * @param storage хранилище справочника
+     */
+    public PhonebookService(ContactStore storage) {
+        this(storage, null);
+    }
+
+    /**
+     * Создаёт сервис поверх готового хранилища, сохраняя индекс ключей
+     * номеров и слов ФИО ({@link OffHeapKeyIndex}) в файл между запусками.
+     * @param storage  хранилище справочника
+     * @param keysFile файл образа индекса ключей или {@code null}, чтобы держать
+     *                 индекс только в памяти
+     */
+    public PhonebookService(ContactStore storage, Path keysFile) {
+        this.storage = storage;
+        log.info("Инициализация PhonebookService. Хранилище: {}", storage.getLocation().toAbsolutePath());
+        index = new ContactIndex(keysFile == null ? OffHeapKeyIndex.inMemory() : OffHeapKeyIndex.open(keysFile));
+        contacts.addAll(storage.snapshot());
+        index.rebuild(contacts);
+        autocomplete.rebuild(index.byInsertion(-1));
+        numberFilter = storage.loadNumberFilter();
+        if (numberFilter == null) {
+            numberFilter = NumberFilter.of(index.byInsertion(-1));
+            numberFilterDirty = true;
+        }
+        log.info("Загрузка завершена. Количество контактов: {}, индекс ключей вне кучи: {} КБ",
+                contacts.size(), index.getOffHeapBytes() / 1024);
     }
 
     /**
      * Возвращает список всех контактов.
-     * @return неизменяемый список контактов
+     * @return неизменяемая копия списка контактов на момент вызова
      */
     public List<Contact> getAllContacts() {
-        return Collections.unmodifiableList(contacts);
+        lock.readLock().lock();
+        try {
+            return List.copyOf(contacts);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
      * Добавляет новый контакт и сохраняет изменения в файл.
      * @param contact контакт для добавления
+     * @throws UncheckedIOException если хранилище не сохранило изменение; справочник не меняется
      */
     public void addContact(Contact contact) {
-        contacts.add(contact);
-        log.info("Добавлен контакт: {}", contact.getFullName());
-        save();
+        checkWritable();
+        MutationEvent event = new MutationEvent();
+        event.begin();
+        lock.writeLock().lock();
+        try {
+            Transaction tx = new Transaction();
+            tx.add(contact);
+            log.info("Добавлен контакт: {}", contact.getFullName());
+            commit(tx.mutations, tx::rollback);
+            event.complete("ADD", tx.mutations.size(), contacts.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
      * Удаляет контакт из списка и сохраняет изменения.
      * @param contact контакт для удаления
+     * @throws UncheckedIOException если хранилище не сохранило изменение; справочник не меняется
      */
     public void removeContact(Contact contact) {
-        contacts.remove(contact);
-        log.info("Удалён контакт: {}", contact.getFullName());
-        save();
+        checkWritable();
+        MutationEvent event = new MutationEvent();
+        event.begin();
+        lock.writeLock().lock();
+        try {
+            Transaction tx = new Transaction();
+            tx.remove(contact);
+            log.info("Удалён контакт: {}", contact.getFullName());
+            commit(tx.mutations, tx::rollback);
+            event.complete("REMOVE", tx.mutations.size(), contacts.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
      * Обновляет существующий контакт.
      * @param oldContact     старый вариант контакта (для поиска в списке)
      * @param updatedContact новый вариант
+     * @throws UncheckedIOException если хранилище не сохранило изменение; справочник не меняется
      */
     public void updateContact(Contact oldContact, Contact updatedContact) {
-        int index = contacts.indexOf(oldContact);
-        if (index >= 0) {
-            contacts.set(index, updatedContact);
-            log.info("Обновлён контакт: {} -> {}",
-                    oldContact.getFullName(), updatedContact.getFullName());
-            save();
-        } else {
-            log.warn("Попытка обновить контакт, которого нет в списке: {}",
-                    oldContact.getFullName());
+        checkWritable();
+        MutationEvent event = new MutationEvent();
+        event.begin();
+        lock.writeLock().lock();
+        try {
+            Transaction tx = new Transaction();
+            if (tx.update(oldContact, updatedContact)) {
+                log.info("Обновлён контакт: {} -> {}",
+                        oldContact.getFullName(), updatedContact.getFullName());
+                commit(tx.mutations, tx::rollback);
+                event.complete("UPDATE", tx.mutations.size(), contacts.size());
+            } else {
+                log.warn("Попытка обновить контакт, которого нет в списке: {}",
+                        oldContact.getFullName());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Выполняет пакет изменений как одно целое.
+     * <p>Все изменения применяются под одной блокировкой записи, слушатели
+     * получают их одной группой, а файл сохраняется один раз в конце.
+     * Если действие бросает исключение или хранилище не сохранило изменения,
+     * справочник возвращается в состояние до начала пакета, а исключение
+     * пробрасывается дальше.</p>
+     * <pre>{@code
+     * service.batch(tx -> {
+     *     tx.add(new Contact("Иванов Иван"));
+     *     tx.remove(old);
+     * });
+     * }</pre>
+     * @param action действие, выполняющее изменения через {@link PhonebookTransaction}
+     * @return количество применённых изменений
+     */
+    public int batch(Consumer<PhonebookTransaction> action) {
+        checkWritable();
+        MutationEvent event = new MutationEvent();
+        event.begin();
+        lock.writeLock().lock();
+        try {
+            Transaction tx = new Transaction();
+            try {
+                action.accept(tx);
+            } catch (RuntimeException | Error e) {
+                tx.rollback();
+                log.warn("Пакет изменений отменён: {}", e.toString());
+                throw e;
+            } finally {
+                tx.active = false;
+            }
+
+            if (!tx.mutations.isEmpty()) {
+                log.info("Применён пакет изменений: {}", tx.mutations.size());
+                commit(tx.mutations, tx::rollback);
+            }
+            event.complete("BATCH", tx.mutations.size(), contacts.size());
+            return tx.mutations.size();
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     /**
      * Выполняет поиск по ФИО или по номеру телефона.
      * Метод объединяет оба типа поиска в один.
+     * <p>ФИО сравнивается без учёта регистра, номера — только по цифрам,
+     * поэтому «931 922» находит «+7 (931) 922-23-22». Сравнение идёт
+     * по заранее нормализованным формам из индекса ({@link SearchTerm})
+     * и не выделяет память на каждый просмотренный контакт.</p>
      * @param query строка поиска
      * @return список подходящих контактов
      */
     public List<Contact> search(String query) {
-        if (query == null || query.isBlank()) {
-            return getAllContacts();
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        SearchTerm term = SearchTerm.of(query);
+
+        lock.readLock().lock();
+        try {
+            List<Contact> result;
+            if (term == null) {
+                result = List.copyOf(contacts);
+            } else {
+                result = new ArrayList<>();
+                for (IndexedContact e : index.byInsertion(-1)) {
+                    if (term.matches(e)) {
+                        result.add(e.getContact());
+                    }
+                }
+            }
+            event.complete(query, result.size(), contacts.size());
+            return result;
+        } finally {
+            lock.readLock().unlock();
         }
+    }
 
-        String q = query.toLowerCase(Locale.ROOT).replace(" ", "");
+    /**
+     * Выполняет запрос на языке запросов справочника ({@link QueryParser}), например
+     * {@code name:иван* AND type:MOBILE AND number:^7495}.
+     * <p>Планировщик ({@link QueryPlanner}) выбирает самый избирательный
+     * из применимых индексов или полный просмотр. Запрос с {@code EXPLAIN}
+     * только планируется. Запросы дольше {@link #SLOW_QUERY_MILLIS} мс
+     * записываются в журнал вместе с планом.</p>
+     * @param text текст запроса
+     * @return найденные контакты и план
+     * @throws IllegalArgumentException если запрос содержит ошибку
+     */
+    public QueryResult query(String text) {
+        Query query = QueryParser.parse(text);
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        long start = System.nanoTime();
 
-        return contacts.stream()
-                .filter(c -> {
-                    boolean nameMatch =
-                            c.getFullName() != null &&
-                                    c.getFullName().toLowerCase(Locale.ROOT).contains(query.toLowerCase());
+        QueryPlan plan;
+        List<Contact> found;
+        int total;
+        lock.readLock().lock();
+        try {
+            plan = new QueryPlanner(index).plan(query);
+            found = query.isExplain() ? List.of() : plan.execute();
+            total = contacts.size();
+        } finally {
+            lock.readLock().unlock();
+        }
 
-                    boolean phoneMatch =
-                            c.getPhones().stream().anyMatch(
-                                    p -> p.getNumber()
-                                            .toLowerCase(Locale.ROOT)
-                                            .replace(" ", "")
-                                            .contains(q)
-                            );
+        QueryResult result = new QueryResult(plan, found, System.nanoTime() - start);
+        if (!query.isExplain()) {
+            event.complete(text, found.size(), total);
+            long millis = result.getElapsedNanos() / 1_000_000;
+            if (millis >= SLOW_QUERY_MILLIS) {
+                log.warn("Медленный запрос ({} мс, найдено {}):\n{}", millis, found.size(), plan.explain());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Выполняет поиск по ФИО или номеру с фильтром по телефонам.
+     * <p>Кандидаты сначала отбираются пересечением битовых индексов
+     * ({@link ContactIndex#select(PhoneFilter)}), и строка поиска проверяется
+     * только у них, поэтому узкий фильтр не просматривает весь справочник.
+     * Результат идёт в порядке добавления, как и у {@link #search(String)}.</p>
+     * @param query  строка поиска
+     * @param filter фильтр по телефонам или {@code null}
+     * @return список подходящих контактов
+     */
+    public List<Contact> search(String query, PhoneFilter filter) {
+        if (filter == null || filter.isEmpty()) {
+            return search(query);
+        }
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        SearchTerm term = SearchTerm.of(query);
+
+        lock.readLock().lock();
+        try {
+            List<Contact> result = new ArrayList<>();
+            index.select(filter).forEach(id -> {
+                IndexedContact e = index.byId(id);
+                if (e != null && filter.matches(e) && (term == null || term.matches(e))) {
+                    result.add(e.getContact());
+                }
+            });
+            event.complete(query, result.size(), contacts.size());
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Определяет абонента по номеру телефона (например, для входящего звонка).
+     * <p>Номер сравнивается целиком после нормализации: «8 (931) 922-23-22»
+     * и «+79319222322» считаются одним номером. Номера, которых точно нет
+     * в справочнике, отсекаются фильтром Блума ({@link NumberFilter}) без обращения
+     * к кэшу, остальные ищутся по хеш-таблице номеров вне кучи
+     * ({@link ContactIndex#firstWithNumber(String)}). Результаты, в том числе отрицательные,
+     * кэшируются ({@link TinyLfuCache}); элементы кэша удаляются при любом
+     * изменении телефонов соответствующих контактов. Найденный номер учитывается
+     * в автодополнении уже после поиска и без блокировок.</p>
+     * @param number номер в произвольной записи
+     * @return контакт с совпавшим телефоном или пустой результат
+     */
+    public Optional<CallerId> lookupNumber(String number) {
+        String key = TextNormalizer.digits(number);
+        if (key.isEmpty()) {
+            return Optional.empty();
+        }
+        Optional<CallerId> result = findCaller(key);
+        if (result.isPresent()) {
+            // счётчик обращений увеличивается без блокировок, уже после поиска
+            autocomplete.recordLookup(key);
+        }
+        return result;
+    }
+
+    /**
+     * Ищет абонента по нормализованному номеру под блокировкой чтения: фильтр, кэш, индекс.
+     */
+    private Optional<CallerId> findCaller(String key) {
+        lock.readLock().lock();
+        try {
+            if (!numberFilter.mightContain(key)) {
+                return Optional.empty();
+            }
+            Optional<CallerId> cached = callerIdCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+
+            Optional<CallerId> result = Optional.empty();
+            IndexedContact e = index.firstWithNumber(key);
+            if (e != null) {
+                result = Optional.of(new CallerId(e.getContact(), e.phoneFor(key)));
+            }
+            // Кэш заполняется под блокировкой чтения: изменение не может
+            // проскочить между поиском и записью и оставить устаревший результат.
+            callerIdCache.put(key, result);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Предлагает варианты дополнения строки поиска: слова ФИО или номера,
+     * начинающиеся с набранного, чаще запрашиваемые первыми (см. {@link Autocomplete}).
+     * Ответ не зависит от размера справочника и занимает микросекунды.
+     * @param input строка поиска
+     * @param limit сколько вариантов нужно (не больше {@link Autocomplete#MAX_SUGGESTIONS})
+     * @return варианты, лучшие первыми
+     */
+    public List<Suggestion> suggest(String input, int limit) {
+        lock.readLock().lock();
+        try {
+            return autocomplete.suggest(input, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Учитывает обращение к контакту (например, его открытие в интерфейсе):
+     * его слова ФИО и номера поднимаются в вариантах дополнения.
+     * @param contact контакт; отсутствующий в справочнике игнорируется
+     */
+    public void recordLookup(Contact contact) {
+        lock.readLock().lock();
+        try {
+            autocomplete.recordLookup(index.entry(contact));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-                    return nameMatch || phoneMatch;
-                })
-                .collect(Collectors.toList());
+    /**
+     * Возвращает статистику кэша определения номера.
+     * @return снимок счётчиков кэша
+     */
+    public CacheStats getCallerIdCacheStats() {
+        return callerIdCache.stats();
     }
 
     /**
      * Возвращает список контактов, отсортированных по ФИО по алфавиту.
+     * Порядок берётся из индекса, пересортировка не выполняется.
      * @return отсортированный список
      */
     public List<Contact> getSortedByName() {
-        return contacts.stream()
-                .sorted(Comparator.comparing(
-                        Contact::getFullName,
-                        Comparator.nullsLast(String::compareToIgnoreCase)))
-                .collect(Collectors.toList());
+        lock.readLock().lock();
+        try {
+            List<Contact> result = new ArrayList<>(index.size());
+            for (IndexedContact e : index.byName()) {
+                result.add(e.getContact());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает одну страницу контактов, начиная после курсора.
+     * <p>Контакты читаются из упорядоченного индекса лениво: просматривается
+     * ровно столько записей, сколько нужно, чтобы набрать страницу, поэтому
+     * память и время зависят от размера страницы, а не от размера справочника
+     * (при фильтрации — ещё и от доли подходящих контактов).</p>
+     * @param after курсор из {@link Page#getNextCursor()} или {@code null} для первой страницы
+     * @param limit максимальное количество контактов на странице
+     * @param sort  порядок обхода
+     * @param query строка поиска, как в {@link #search(String)}; {@code null} — без фильтра
+     * @return страница контактов
+     * @throws IllegalArgumentException если курсор некорректен или не соответствует порядку
+     */
+    public Page<Contact> page(String after, int limit, ContactSort sort, String query) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть положительным: " + limit);
+        }
+        SearchTerm term = SearchTerm.of(query);
+
+        lock.readLock().lock();
+        try {
+            Iterable<IndexedContact> source = tail(after, sort);
+            List<Contact> items = new ArrayList<>(Math.min(limit, 1024));
+            IndexedContact last = null;
+            for (IndexedContact e : source) {
+                if (term != null && !term.matches(e)) {
+                    continue;
+                }
+                if (items.size() == limit) {
+                    return new Page<>(items, cursor(last, sort));
+                }
+                items.add(e.getContact());
+                last = e;
+            }
+            return new Page<>(items, null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает представление индекса, начинающееся после курсора.
+     */
+    private Iterable<IndexedContact> tail(String cursor, ContactSort sort) {
+        if (cursor == null) {
+            return sort == ContactSort.NAME ? index.byName() : index.byInsertion(-1);
+        }
+        try {
+            char kind = cursor.charAt(0);
+            if (sort == ContactSort.INSERTION && kind == 'i') {
+                return index.byInsertion(Integer.parseInt(cursor.substring(1)));
+            }
+            if (sort == ContactSort.NAME && kind == 'n') {
+                int sep = cursor.indexOf(':');
+                int id = Integer.parseInt(cursor.substring(1, sep));
+                String name = cursor.charAt(sep + 1) == '-' ? null : cursor.substring(sep + 2);
+                return index.byName(id, name);
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Некорректный курсор: " + cursor, e);
+        }
+        throw new IllegalArgumentException("Курсор не соответствует порядку " + sort + ": " + cursor);
+    }
+
+    /**
+     * Кодирует позицию записи в курсор: «i&lt;номер&gt;» или «n&lt;номер&gt;:+&lt;ФИО&gt;».
+     */
+    private static String cursor(IndexedContact e, ContactSort sort) {
+        if (sort == ContactSort.INSERTION) {
+            return "i" + e.getId();
+        }
+        return "n" + e.getId() + ":" + (e.getSortName() == null ? "-" : "+" + e.getSortName());
+    }
+
+    /**
+     * Находит группы контактов, похожих на дубликаты одного абонента.
+     * Список контактов не изменяется.
+     * @return предлагаемые группы для объединения
+     * @see DuplicateDetector
+     */
+    public List<DuplicateGroup> findDuplicates() {
+        return new DuplicateDetector().findDuplicates(getAllContacts());
+    }
+
+    /**
+     * Объединяет переданные группы дубликатов.
+     * <p>Контакты каждой группы заменяются одним объединённым контактом
+     * ({@link DuplicateGroup#merged()}), изменения сохраняются в файл один раз.
+     * Группы найдены до вызова, поэтому под блокировкой записи каждая проверяется
+     * заново: группа, контакт которой уже удалён или заменён (или вошёл в другую
+     * группу), пропускается, чтобы не вернуть в справочник его телефоны.</p>
+     * @param groups группы, найденные {@link #findDuplicates()}
+     * @return количество удалённых контактов
+     */
+    public int mergeDuplicates(List<DuplicateGroup> groups) {
+        if (groups.isEmpty()) {
+            return 0;
+        }
+        checkWritable();
+
+        lock.writeLock().lock();
+        try {
+            Set<Contact> merged = Collections.newSetFromMap(new IdentityHashMap<>());
+            List<Contact> added = new ArrayList<>(groups.size());
+            int stale = 0;
+            for (DuplicateGroup group : groups) {
+                if (group.getContacts().stream().allMatch(c -> index.contains(c) && !merged.contains(c))) {
+                    merged.addAll(group.getContacts());
+                    added.add(group.merged());
+                } else {
+                    stale++;
+                }
+            }
+            if (stale > 0) {
+                log.warn("Пропущено групп дубликатов, изменившихся после поиска: {}", stale);
+            }
+            if (added.isEmpty()) {
+                return 0;
+            }
+
+            List<Contact> before = new ArrayList<>(contacts);
+            List<Mutation> mutations = new ArrayList<>();
+            int[] position = {0};
+            contacts.removeIf(c -> {
+                if (merged.contains(c)) {
+                    mutations.add(Mutation.removed(c).at(position[0]));
+                    return true;
+                }
+                position[0]++;
+                return false;
+            });
+            int removed = mutations.size() - added.size();
+            for (Contact c : added) {
+                contacts.add(c);
+                mutations.add(Mutation.added(c).at(contacts.size() - 1));
+            }
+
+            log.info("Объединено групп дубликатов: {}, удалено контактов: {}", added.size(), removed);
+            commit(mutations, () -> {
+                contacts.clear();
+                contacts.addAll(before);
+            });
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Регистрирует слушателя изменений.
+     * @param listener слушатель
+     */
+    public void addMutationListener(MutationListener listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    /**
+     * Отменяет регистрацию слушателя изменений.
+     * @param listener ранее зарегистрированный слушатель
+     */
+    public void removeMutationListener(MutationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Выполняет действие над текущим списком контактов под блокировкой чтения.
+     * <p>Пока действие выполняется, список не изменяется, поэтому метод
+     * позволяет атомарно снять снимок справочника и, например,
+     * зарегистрировать слушателя без потери изменений между этими шагами.
+     * Переданный список нельзя сохранять после завершения действия.</p>
+     * @param action действие над неизменяемым представлением списка
+     * @param <T>    тип результата
+     * @return результат действия
+     */
+    public <T> T read(Function<List<Contact>, T> action) {
+        lock.readLock().lock();
+        try {
+            return action.apply(Collections.unmodifiableList(contacts));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Применяет изменения, полученные с ведущего экземпляра.
+     * <p>Изменения не сохраняются в файл этого экземпляра, но рассылаются
+     * его слушателям. Метод доступен и в режиме только для чтения.</p>
+     * <p>Каждое изменение применяется к контакту в той же позиции списка, что и на
+     * ведущем экземпляре ({@link Mutation#getPosition()}), поэтому контакты с одинаковым
+     * ФИО не путаются. Если в позиции оказался контакт с другим ФИО или телефонами,
+     * справочники разошлись: все изменения группы отменяются.</p>
+     * @param mutations изменения в порядке их применения на ведущем экземпляре
+     * @throws IllegalStateException если изменение не совпадает с содержимым справочника;
+     *                               справочник нужно заново загрузить из снимка
+     */
+    public void replicate(List<Mutation> mutations) {
+        lock.writeLock().lock();
+        try {
+            Transaction tx = new Transaction();
+            for (Mutation m : mutations) {
+                if (!tx.replay(m)) {
+                    tx.rollback();
+                    throw new IllegalStateException("Справочник разошёлся с ведущим экземпляром: "
+                            + "в позиции " + m.getPosition() + " нет контакта из изменения " + m);
+                }
+            }
+            applyToIndex(tx.mutations);
+            notifyListeners(tx.mutations);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Полностью заменяет содержимое справочника, не сохраняя его в файл.
+     * Используется репликой при догоне по снимку.
+     * @param snapshot новое содержимое справочника
+     */
+    public void resetTo(Collection<Contact> snapshot) {
+        lock.writeLock().lock();
+        try {
+            contacts.clear();
+            contacts.addAll(snapshot);
+            rebuildIndex();
+            log.info("Справочник заменён снимком. Количество контактов: {}", contacts.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
-     * Сохраняет текущее состояние списка контактов в бинарный файл.
+     * Приводит справочник к новому содержимому, применяя только различия
+     * (см. {@link ContactDiff}). Используется при замене файла данных другой программой.
+     * <p>Различия вычисляются под блокировкой чтения, поэтому поиск и определение
+     * номера во время сравнения не ждут; блокировка записи удерживается только
+     * на время применения найденных изменений. Если справочник успел измениться
+     * между сравнением и применением, сравнение повторяется.</p>
+     * <p>Изменения рассылаются слушателям, но в хранилище не сохраняются:
+     * новое содержимое уже лежит в нём.</p>
+     * @param loaded новое содержимое справочника
+     * @return количество применённых изменений
+     */
+    public int reload(List<Contact> loaded) {
+        while (true) {
+            long seen;
+            List<Mutation> diff;
+            lock.readLock().lock();
+            try {
+                seen = version;
+                diff = ContactDiff.between(contacts, loaded);
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (diff.isEmpty()) {
+                return 0;
+            }
+
+            MutationEvent event = new MutationEvent();
+            event.begin();
+            lock.writeLock().lock();
+            try {
+                if (version == seen) {
+                    diff = applyToList(diff);
+                    applyToIndex(diff);
+                    notifyListeners(diff);
+                    event.complete("RELOAD", diff.size(), contacts.size());
+                    log.info("Справочник перезагружен: изменений {}, контактов {}", diff.size(), contacts.size());
+                    return diff.size();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.debug("Справочник изменился во время сравнения, сравниваю заново");
+        }
+    }
+
+    /**
+     * Включает или выключает режим только для чтения.
+     * В этом режиме добавление, изменение и удаление контактов запрещены.
+     * @param readOnly {@code true}, чтобы запретить изменения
+     */
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Проверяет, работает ли сервис в режиме только для чтения.
+     * @return {@code true}, если изменения запрещены
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Сохраняет текущее состояние списка контактов в бинарный файл,
+     * а после успешного сохранения — фильтр номеров.
+     * Хранилища, которые сохраняют каждое изменение сразу, ничего не делают.
+     * В режиме только для чтения метод ничего не делает: файл может принадлежать
+     * ведущему экземпляру (например, снимок, с которого запущена реплика).
+     * @throws UncheckedIOException если хранилище не сохранило справочник;
+     *                              фильтр номеров в этом случае не сохраняется
      */
     public void save() {
-        storage.save(contacts);
+        if (readOnly) {
+            log.debug("Справочник открыт только для чтения, сохранение пропущено");
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            storage.persist(contacts, Map.of(), this::idOf);
+            storageStale = false;
+            saveNumberFilter();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Сохраняет фильтр номеров, закрывает хранилище и индекс ключей (индекс,
+     * сохраняемый в файл, записывается). После вызова сервис использовать нельзя.
+     */
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            try {
+                saveNumberFilter();
+                storage.close();
+            } finally {
+                index.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Пакет изменений. Для отката хранит журнал обратных операций
+     * с позициями в списке, поэтому отмена стоит O(размер пакета).
+     */
+    private final class Transaction implements PhonebookTransaction {
+
+        private final List<Mutation> mutations = new ArrayList<>();
+        private final List<Undo> undo = new ArrayList<>();
+        /** Объекты, добавленные и удалённые в пакете: индекс обновляется только при фиксации */
+        private final Set<Contact> added = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Set<Contact> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        private boolean active = true;
+
+        @Override
+        public void add(Contact contact) {
+            checkActive();
+            Objects.requireNonNull(contact);
+            if (isPresent(contact)) {
+                throw new IllegalArgumentException("Контакт уже есть в справочнике: " + contact.getFullName());
+            }
+            contacts.add(contact);
+            added.add(contact);
+            removed.remove(contact);
+            undo.add(new Undo(contacts.size() - 1, null, false));
+            mutations.add(Mutation.added(contact).at(contacts.size() - 1));
+        }
+
+        @Override
+        public boolean remove(Contact contact) {
+            checkActive();
+            int index = positionOf(contact);
+            if (index < 0) {
+                return false;
+            }
+            removeAt(index);
+            return true;
+        }
+
+        @Override
+        public boolean update(Contact oldContact, Contact updatedContact) {
+            checkActive();
+            int index = positionOf(oldContact);
+            if (index < 0) {
+                return false;
+            }
+            updateAt(index, updatedContact);
+            return true;
+        }
+
+        @Override
+        public List<Contact> contacts() {
+            checkActive();
+            return Collections.unmodifiableList(contacts);
+        }
+
+        /**
+         * Повторяет изменение ведущего экземпляра в той же позиции списка.
+         * @return {@code false}, если в позиции нет контакта с прежним содержимым
+         *         (для добавления — если позиция не конец списка)
+         */
+        boolean replay(Mutation m) {
+            checkActive();
+            int index = m.getPosition();
+            if (m.getKind() == Mutation.Kind.ADD) {
+                if (index != contacts.size()) {
+                    return false;
+                }
+                add(m.getAfter());
+                return true;
+            }
+            if (index < 0 || index >= contacts.size() || !ContactDiff.sameContent(contacts.get(index), m.getBefore())) {
+                return false;
+            }
+            if (m.getKind() == Mutation.Kind.REMOVE) {
+                removeAt(index);
+            } else {
+                updateAt(index, m.getAfter());
+            }
+            return true;
+        }
+
+        /**
+         * Отменяет изменения пакета в обратном порядке.
+         */
+        void rollback() {
+            for (int i = undo.size() - 1; i >= 0; i--) {
+                Undo op = undo.get(i);
+                if (op.previous() == null) {
+                    contacts.remove(op.index());
+                } else if (op.reinsert()) {
+                    contacts.add(op.index(), op.previous());
+                } else {
+                    contacts.set(op.index(), op.previous());
+                }
+            }
+            undo.clear();
+            mutations.clear();
+        }
+
+        private void removeAt(int index) {
+            Contact previous = contacts.remove(index);
+            undo.add(new Undo(index, previous, true));
+            mutations.add(Mutation.removed(previous).at(index));
+            if (!added.remove(previous)) {
+                removed.add(previous);
+            }
+        }
+
+        private void updateAt(int index, Contact updatedContact) {
+            Objects.requireNonNull(updatedContact);
+            if (updatedContact != contacts.get(index) && isPresent(updatedContact)) {
+                throw new IllegalArgumentException("Контакт уже есть в справочнике: " + updatedContact.getFullName());
+            }
+            Contact previous = contacts.set(index, updatedContact);
+            undo.add(new Undo(index, previous, false));
+            mutations.add(Mutation.updated(previous, updatedContact).at(index));
+            if (!added.remove(previous)) {
+                removed.add(previous);
+            }
+            added.add(updatedContact);
+            removed.remove(updatedContact);
+        }
+
+        /**
+         * Находит позицию контакта: сначала тот же объект, затем равный по ФИО.
+         * Так из двух контактов с одним ФИО изменяется именно переданный.
+         */
+        private int positionOf(Contact contact) {
+            for (int i = 0; i < contacts.size(); i++) {
+                if (contacts.get(i) == contact) {
+                    return i;
+                }
+            }
+            return contacts.indexOf(contact);
+        }
+
+        /**
+         * Проверяет, находится ли объект контакта в справочнике с учётом изменений пакета.
+         */
+        private boolean isPresent(Contact contact) {
+            return added.contains(contact) || (index.contains(contact) && !removed.contains(contact));
+        }
+
+        private void checkActive() {
+            if (!active) {
+                throw new IllegalStateException("Пакет изменений уже завершён");
+            }
+        }
+    }
+
+    /**
+     * Обратная операция пакета.
+     * @param index    позиция в списке
+     * @param previous прежнее значение; {@code null}, если позиция была добавлена
+     * @param reinsert {@code true}, если значение нужно вставить обратно (оно было удалено)
+     */
+    private record Undo(int index, Contact previous, boolean reinsert) {
+    }
+
+    /**
+     * Фиксирует применённые к списку изменения: обновляет индекс, сохраняет изменения
+     * в хранилище и только затем оповещает слушателей. Вызывается под блокировкой записи.
+     * <p>Если сохранить изменения не удалось, список возвращается в прежнее состояние,
+     * изменения индекса отменяются, а исключение пробрасывается: ни справочник
+     * в памяти, ни реплики не получают изменений, которых нет в хранилище.
+     * Индекс не перестраивается, чтобы контакты сохранили свои номера
+     * ({@link IndexedContact#getId()}), по которым хранилище упорядочивает справочник.</p>
+     * @param mutations изменения, уже применённые к списку
+     * @param rollback  возвращает список в состояние до изменений
+     */
+    private void commit(List<Mutation> mutations, Runnable rollback) {
+        if (mutations.isEmpty()) {
+            return;
+        }
+        Map<Contact, IndexedContact> removed = applyToIndex(mutations);
+        try {
+            persist(mutations);
+            storageStale = false;
+        } catch (RuntimeException e) {
+            storageStale = true;
+            log.error("Изменения не сохранены в хранилище и отменены: {}", mutations.size(), e);
+            undoIndex(mutations, removed);
+            rollback.run();
+            throw e;
+        }
+        notifyListeners(mutations);
+    }
+
+    /**
+     * Передаёт хранилищу новые значения всех ключей (ФИО), затронутых изменениями.
+     * Значение ключа — все контакты с этим ФИО в порядке справочника.
+     */
+    private void persist(List<Mutation> mutations) {
+        Map<String, List<Contact>> changed = new HashMap<>();
+        for (Mutation m : mutations) {
+            if (m.getBefore() != null) {
+                changed.put(ContactStore.keyOf(m.getBefore()), null);
+            }
+            if (m.getAfter() != null) {
+                changed.put(ContactStore.keyOf(m.getAfter()), null);
+            }
+        }
+        changed.replaceAll((key, ignored) -> contactsWithKey(key));
+        storage.persist(contacts, changed, this::idOf);
+    }
+
+    private int idOf(Contact contact) {
+        return index.entry(contact).getId();
+    }
+
+    /**
+     * Сохраняет фильтр номеров, если он изменился. Фильтр записывается, только
+     * когда хранилище содержит ровно то, по чему он построен: если последнее
+     * сохранение не удалось, устаревший фильтр мог бы ответить «номера нет»
+     * для номера из файла. Вызывается под блокировкой записи.
+     */
+    private void saveNumberFilter() {
+        if (readOnly || !numberFilterDirty) {
+            return;
+        }
+        if (storageStale) {
+            log.warn("Фильтр номеров не сохранён: последнее сохранение справочника не удалось");
+            return;
+        }
+        storage.saveNumberFilter(numberFilter);
+        numberFilterDirty = false;
+    }
+
+    private List<Contact> contactsWithKey(String key) {
+        List<IndexedContact> entries = index.withName(key);
+        if (key.isEmpty()) {
+            entries = new ArrayList<>(entries);
+            entries.addAll(index.withName(null));
+            entries.sort(Comparator.comparingInt(IndexedContact::getId));
+        }
+        List<Contact> result = new ArrayList<>(entries.size());
+        for (IndexedContact e : entries) {
+            result.add(e.getContact());
+        }
+        return result;
+    }
+
+    /**
+     * Применяет к списку контактов изменения, в которых участвуют объекты из этого списка.
+     * Обновлённые контакты остаются на своих местах, добавленные дописываются в конец.
+     * Список обходится один раз, сколько бы изменений ни было.
+     * @return те же изменения с позициями в списке ({@link Mutation#at(int)}) в порядке,
+     *         в котором их можно повторить: удаления по порядку списка, затем обновления,
+     *         затем добавления
+     */
+    private List<Mutation> applyToList(List<Mutation> mutations) {
+        Map<Contact, Mutation> changes = new IdentityHashMap<>();
+        for (Mutation m : mutations) {
+            if (m.getKind() != Mutation.Kind.ADD) {
+                changes.put(m.getBefore(), m);
+            }
+        }
+        List<Mutation> applied = new ArrayList<>(mutations.size());
+        Map<Mutation, Mutation> updated = new IdentityHashMap<>();
+        if (!changes.isEmpty()) {
+            // позиция — место контакта после удалений, стоящих в списке раньше него
+            int position = 0;
+            for (int i = 0; i < contacts.size(); i++) {
+                Mutation m = changes.get(contacts.get(i));
+                if (m == null) {
+                    position++;
+                } else if (m.getKind() == Mutation.Kind.REMOVE) {
+                    applied.add(m.at(position));
+                    contacts.set(i, null);
+                } else {
+                    updated.put(m, m.at(position++));
+                    contacts.set(i, m.getAfter());
+                }
+            }
+            contacts.removeIf(Objects::isNull);
+        }
+        for (Mutation m : mutations) {
+            if (m.getKind() == Mutation.Kind.UPDATE && updated.containsKey(m)) {
+                applied.add(updated.get(m));
+            }
+        }
+        for (Mutation m : mutations) {
+            if (m.getKind() == Mutation.Kind.ADD) {
+                contacts.add(m.getAfter());
+                applied.add(m.at(contacts.size() - 1));
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Переносит изменения в индекс, фильтр номеров и автодополнение и удаляет из кэша
+     * определения номера все номера затронутых контактов — и прежние, и новые.
+     * @return удалённые записи индекса по контактам (для {@link #undoIndex(List, Map)})
+     */
+    private Map<Contact, IndexedContact> applyToIndex(List<Mutation> mutations) {
+        Map<Contact, IndexedContact> removed = new IdentityHashMap<>();
+        for (Mutation m : mutations) {
+            switch (m.getKind()) {
+                case ADD -> entryAdded(index.add(m.getAfter()));
+                case REMOVE -> {
+                    IndexedContact entry = index.remove(m.getBefore());
+                    if (entry != null) {
+                        removed.put(m.getBefore(), entry);
+                    }
+                    entryRemoved(entry);
+                }
+                case UPDATE -> {
+                    entryRemoved(index.entry(m.getBefore()));
+                    entryAdded(index.replace(m.getBefore(), m.getAfter()));
+                }
+            }
+        }
+        if (numberFilter.isOverloaded()) {
+            numberFilter = NumberFilter.of(index.byInsertion(-1));
+            log.info("Фильтр номеров перестроен: {} номеров", numberFilter.size());
+        }
+        numberFilterDirty = true;
+        version++;
+        return removed;
+    }
+
+    /**
+     * Отменяет {@link #applyToIndex(List)} в обратном порядке, возвращая контактам
+     * прежние номера записей.
+     * @param mutations отменяемые изменения
+     * @param removed   записи удалённых контактов, какими они были до изменений
+     */
+    private void undoIndex(List<Mutation> mutations, Map<Contact, IndexedContact> removed) {
+        for (int i = mutations.size() - 1; i >= 0; i--) {
+            Mutation m = mutations.get(i);
+            switch (m.getKind()) {
+                case ADD -> entryRemoved(index.remove(m.getAfter()));
+                case REMOVE -> {
+                    IndexedContact entry = removed.get(m.getBefore());
+                    if (entry != null) {
+                        entryAdded(index.restore(entry));
+                    }
+                }
+                case UPDATE -> {
+                    entryRemoved(index.entry(m.getAfter()));
+                    entryAdded(index.replace(m.getAfter(), m.getBefore()));
+                }
+            }
+        }
+        numberFilterDirty = true;
+        version++;
+    }
+
+    /**
+     * Перестраивает индекс, автодополнение и фильтр номеров по списку контактов
+     * и очищает кэш определения номера. Вызывается под блокировкой записи.
+     */
+    private void rebuildIndex() {
+        index.rebuild(contacts);
+        autocomplete.rebuild(index.byInsertion(-1));
+        numberFilter = NumberFilter.of(index.byInsertion(-1));
+        numberFilterDirty = true;
+        callerIdCache.invalidateAll();
+        version++;
+    }
+
+    private void entryAdded(IndexedContact entry) {
+        numberFilter.add(entry);
+        autocomplete.add(entry);
+        invalidateNumbers(entry);
+    }
+
+    private void entryRemoved(IndexedContact entry) {
+        numberFilter.remove(entry);
+        autocomplete.remove(entry);
+        invalidateNumbers(entry);
+    }
+
+    private void invalidateNumbers(IndexedContact entry) {
+        if (entry != null) {
+            entry.getNumberKeys().forEach(callerIdCache::invalidate);
+        }
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new IllegalStateException("Справочник открыт только для чтения");
+        }
+    }
+
+    private void notifyListeners(List<Mutation> mutations) {
+        for (MutationListener listener : listeners) {
+            try {
+                listener.onMutations(mutations);
+            } catch (RuntimeException e) {
+                log.error("Ошибка в слушателе изменений {}", listener, e);
+            }
+        }
     }
 }
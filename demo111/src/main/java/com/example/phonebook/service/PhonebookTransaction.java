@@ -0,0 +1,43 @@
+package com.example.phonebook.service;
+
+import com.example.phonebook.model.Contact;
+
+import java.util.List;
+
+/**
+ * Пакет изменений справочника, применяемых как одно целое.
+ * <p>Экземпляр передаётся в {@link PhonebookService#batch(java.util.function.Consumer)}
+ * и действителен только внутри переданного действия. Изменения сразу видны
+ * через {@link #contacts()}, но слушатели оповещаются и файл сохраняется
+ * один раз — после успешного завершения действия. Если действие завершилось
+ * исключением, все изменения пакета отменяются.</p>
+ */
+public interface PhonebookTransaction {
+
+    /**
+     * Добавляет контакт.
+     * @param contact новый контакт
+     */
+    void add(Contact contact);
+
+    /**
+     * Удаляет контакт (поиск выполняется по {@link Contact#equals(Object)}).
+     * @param contact контакт для удаления
+     * @return {@code true}, если контакт был найден и удалён
+     */
+    boolean remove(Contact contact);
+
+    /**
+     * Заменяет контакт новой версией.
+     * @param oldContact     прежняя версия (для поиска в списке)
+     * @param updatedContact новая версия
+     * @return {@code true}, если прежняя версия найдена
+     */
+    boolean update(Contact oldContact, Contact updatedContact);
+
+    /**
+     * Возвращает текущее содержимое справочника с учётом изменений пакета.
+     * @return неизменяемое представление списка, действительное внутри пакета
+     */
+    List<Contact> contacts();
+}
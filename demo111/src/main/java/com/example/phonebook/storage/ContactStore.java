@@ -0,0 +1,144 @@
+package com.example.phonebook.storage;
+
+import com.example.phonebook.index.NumberFilter;
+import com.example.phonebook.model.Contact;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Интерфейс хранилища контактов, через который работает
+ * {@link com.example.phonebook.service.PhonebookService}.
+ * <p>Хранилище — упорядоченное отображение «ключ → контакты с этим ключом».
+ * Ключом служит ФИО ({@link #keyOf(Contact)}); так как ФИО не обязано быть
+ * уникальным, значением является список контактов, а не один контакт.
+ * Порядок контактов внутри ключа сохраняется, а {@link #snapshot()} возвращает
+ * справочник в порядке, переданном в {@link #persist(List, Map, ToIntFunction)}.</p>
+ * <p>Реализации:</p>
+ * <ul>
+ *     <li>{@link PhonebookStorage} — весь справочник в одном сериализованном файле;</li>
+ *     <li>{@link com.example.phonebook.storage.lsm.LsmContactStore} — LSM-дерево
+ *     с журналом, отсортированными сегментами и фоновым слиянием.</li>
+ * </ul>
+ * <p>Ошибки ввода/вывода реализации либо логируют, либо сообщают через
+ * {@link java.io.UncheckedIOException} — это описано в самой реализации.
+ * Исключение — {@link #persist(List, Map, ToIntFunction)}: он сообщает об ошибке всегда.</p>
+ * <p>Хранилище не снимает ограничения на объём справочника: сервис при запуске
+ * читает {@link #snapshot()} целиком и держит все контакты и индексы в памяти,
+ * поэтому справочник по-прежнему ограничен объёмом оперативной памяти
+ * независимо от реализации.</p>
+ */
+public interface ContactStore extends Closeable {
+
+    /**
+     * Возвращает ключ хранилища для контакта.
+     * @param contact контакт
+     * @return ФИО контакта; пустая строка, если ФИО не задано
+     */
+    static String keyOf(Contact contact) {
+        String name = contact.getFullName();
+        return name == null ? "" : name;
+    }
+
+    /**
+     * Возвращает расположение хранилища (файл или каталог).
+     * @return путь к данным
+     */
+    Path getLocation();
+
+    /**
+     * Ищет контакты по ключу.
+     * @param key ключ
+     * @return контакты с этим ключом; пустой список, если их нет
+     */
+    List<Contact> get(String key);
+
+    /**
+     * Заменяет все контакты с указанным ключом.
+     * Пустой список равносилен {@link #delete(String)}.
+     * @param key      ключ
+     * @param contacts новые контакты с этим ключом
+     */
+    void put(String key, List<Contact> contacts);
+
+    /**
+     * Удаляет все контакты с указанным ключом.
+     * @param key ключ
+     */
+    void delete(String key);
+
+    /**
+     * Обходит ключи в порядке возрастания.
+     * @param fromKey первый ключ (включительно) или {@code null} — с начала
+     * @param toKey   граница (не включительно) или {@code null} — до конца
+     * @param visitor получатель пар «ключ → контакты»; не должен изменять хранилище
+     */
+    void scan(String fromKey, String toKey, BiConsumer<String, List<Contact>> visitor);
+
+    /**
+     * Читает всё содержимое хранилища.
+     * <p>Реализация по умолчанию возвращает контакты в порядке ключей;
+     * реализации, хранящие порядок справочника, возвращают их в нём.</p>
+     * @return все контакты в порядке хранилища
+     */
+    default List<Contact> snapshot() {
+        List<Contact> all = new ArrayList<>();
+        scan(null, null, (key, contacts) -> all.addAll(contacts));
+        return all;
+    }
+
+    /**
+     * Сохраняет результат изменений справочника.
+     * <p>Реализация может записать либо весь справочник, либо только
+     * изменившиеся ключи. По умолчанию выполняются отдельные
+     * {@link #put(String, List)} и {@link #delete(String)}.</p>
+     * <p>Если изменения не сохранены, метод обязан бросить исключение,
+     * а не только записать ошибку в журнал: по нему сервис отменяет изменения
+     * в памяти и не рассылает их слушателям.</p>
+     * <p>{@code order} задаёт место контакта в справочнике: контакты последнего
+     * {@link #snapshot()} получают номера 0..n-1 в его порядке, добавленные
+     * после него — возрастающие номера, а изменённый контакт сохраняет номер
+     * того, который он заменил. Хранилища, записывающие {@code all} целиком,
+     * его не используют.</p>
+     * @param all     все контакты справочника в его порядке
+     * @param changed новые значения изменившихся ключей (пустой список — ключ удалён)
+     * @param order   номер контакта в справочнике
+     * @throws java.io.UncheckedIOException если изменения не удалось сохранить
+     */
+    default void persist(List<Contact> all, Map<String, List<Contact>> changed, ToIntFunction<Contact> order) {
+        changed.forEach((key, contacts) -> {
+            if (contacts.isEmpty()) {
+                delete(key);
+            } else {
+                put(key, contacts);
+            }
+        });
+    }
+
+    /**
+     * Загружает сохранённый фильтр номеров, если хранилище его поддерживает.
+     * @return фильтр или {@code null}, если его нужно построить заново
+     */
+    default NumberFilter loadNumberFilter() {
+        return null;
+    }
+
+    /**
+     * Сохраняет фильтр номеров, если хранилище его поддерживает.
+     * @param filter фильтр, соответствующий сохранённым контактам
+     */
+    default void saveNumberFilter(NumberFilter filter) {
+    }
+
+    /**
+     * Освобождает ресурсы хранилища. По умолчанию ничего не делает.
+     */
+    @Override
+    default void close() {
+    }
+}
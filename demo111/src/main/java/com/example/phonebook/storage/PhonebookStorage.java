@@ -1,16 +1,38 @@
 package com.example.phonebook.storage;
 
+import com.example.phonebook.diagnostics.StorageEvent;
+import com.example.phonebook.index.NumberFilter;
 import com.example.phonebook.model.Contact;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
 
 /**
  * Класс, отвечающий за хранение телефонного справочника.
@@ -19,45 +41,212 @@ import java.util.List;
  * <ul>
  *     <li>Сохранение списка контактов в бинарный файл</li>
  *     <li>Загрузка списка контактов из файла</li>
+ *     <li>Необязательное блочное сжатие файла (см. {@link SnapshotCodec})</li>
+ *     <li>Хранение фильтра номеров рядом с файлом данных</li>
  *     <li>Создание директории при необходимости</li>
- *     <li>Обработка ошибок ввода/вывода с логированием</li>
+ *     <li>Обработка ошибок ввода/вывода с логированием; {@link #persist(List, Map, ToIntFunction)}
+ *     и {@link #write(List)} сообщают об ошибке исключением</li>
  * </ul>
+ * <p>Формат файла определяется при загрузке автоматически, поэтому
+ * сжатые и несжатые файлы читаются одинаково независимо от настроек.</p>
+ * <p>Как {@link ContactStore} хранилище всегда перезаписывает файл целиком:
+ * точечные операции загружают весь справочник, поэтому подходят только
+ * для небольших справочников. Для больших используйте
+ * {@link com.example.phonebook.storage.lsm.LsmContactStore}.</p>
  */
-public class PhonebookStorage {
+public class PhonebookStorage implements ContactStore {
 
     private static final Logger log = LogManager.getLogger(PhonebookStorage.class);
 
+    /** Уровень сжатия, при котором файл пишется в исходном несжатом формате */
+    public static final int NO_COMPRESSION = -1;
+
+    /** Сигнатура файла фильтра номеров: «PBN2» */
+    private static final int FILTER_MAGIC = 0x50424E32;
+
+    /** Суффикс имени файла фильтра номеров */
+    private static final String FILTER_SUFFIX = ".numbers";
+
     /** Путь к бинарному файлу с сохранёнными контактами */
     private final Path filePath;
 
+    /** Уровень сжатия Deflate (0–9) или {@link #NO_COMPRESSION} */
+    private final int compressionLevel;
+
+    /** Состояние файла после последнего сохранения или загрузки этим хранилищем */
+    private FileState lastKnown;
+
+    /** Состояние файла, для которого посчитана {@link #checksum} */
+    private FileState checksummed;
+
+    /** Контрольная сумма содержимого файла (CRC-32C) */
+    private long checksum;
+
     /**
      * Создаёт объект хранилища для указанного файла.
+     * Файл сохраняется без сжатия.
      * @param filePath путь к файлу формата .bin
      */
     public PhonebookStorage(Path filePath) {
+        this(filePath, NO_COMPRESSION);
+    }
+
+    /**
+     * Создаёт объект хранилища с блочным сжатием.
+     * @param filePath         путь к файлу формата .bin
+     * @param compressionLevel уровень сжатия Deflate от 0 до 9
+     *                         или {@link #NO_COMPRESSION} для исходного формата
+     */
+    public PhonebookStorage(Path filePath, int compressionLevel) {
+        if (compressionLevel < NO_COMPRESSION || compressionLevel > 9) {
+            throw new IllegalArgumentException("Недопустимый уровень сжатия: " + compressionLevel);
+        }
         this.filePath = filePath;
-        log.info("Создан PhonebookStorage с файлом: {}", filePath.toAbsolutePath());
+        this.compressionLevel = compressionLevel;
+        log.info("Создан PhonebookStorage с файлом: {}, уровень сжатия: {}",
+                filePath.toAbsolutePath(), compressionLevel);
+    }
+
+    /**
+     * Возвращает путь к файлу хранилища.
+     * @return путь к файлу
+     */
+    public Path getFilePath() {
+        return filePath;
+    }
+
+    @Override
+    public Path getLocation() {
+        return filePath;
+    }
+
+    @Override
+    public List<Contact> get(String key) {
+        List<Contact> found = new ArrayList<>();
+        for (Contact c : load()) {
+            if (ContactStore.keyOf(c).equals(key)) {
+                found.add(c);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void put(String key, List<Contact> contacts) {
+        List<Contact> all = load();
+        all.removeIf(c -> ContactStore.keyOf(c).equals(key));
+        all.addAll(contacts);
+        save(all);
+    }
+
+    @Override
+    public void delete(String key) {
+        List<Contact> all = load();
+        if (all.removeIf(c -> ContactStore.keyOf(c).equals(key))) {
+            save(all);
+        }
+    }
+
+    @Override
+    public void scan(String fromKey, String toKey, BiConsumer<String, List<Contact>> visitor) {
+        TreeMap<String, List<Contact>> byKey = new TreeMap<>();
+        for (Contact c : load()) {
+            byKey.computeIfAbsent(ContactStore.keyOf(c), k -> new ArrayList<>()).add(c);
+        }
+        Map<String, List<Contact>> range = byKey;
+        if (fromKey != null) {
+            range = byKey.tailMap(fromKey, true);
+        }
+        for (Map.Entry<String, List<Contact>> e : range.entrySet()) {
+            if (toKey != null && e.getKey().compareTo(toKey) >= 0) {
+                break;
+            }
+            visitor.accept(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Возвращает содержимое файла в исходном порядке (см. {@link #load()}).
+     * @return список контактов
+     */
+    @Override
+    public List<Contact> snapshot() {
+        return load();
+    }
+
+    /**
+     * Перезаписывает файл целиком: формат не поддерживает частичную запись.
+     * @param all     все контакты справочника
+     * @param changed не используется
+     * @param order   не используется: порядок задаёт {@code all}
+     * @throws UncheckedIOException если файл не удалось записать (см. {@link #write(List)})
+     */
+    @Override
+    public void persist(List<Contact> all, Map<String, List<Contact>> changed, ToIntFunction<Contact> order) {
+        try {
+            write(all);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
      * Сохраняет список контактов в бинарный файл.
      * Файл будет создан, если отсутствует.
      * Родительская директория создаётся автоматически.
+     * Ошибки записи логируются (см. {@link #write(List)}).
      * @param contacts список контактов для сохранения
+     * @return {@code true}, если файл сохранён; иначе он может быть недописан
      */
-    public void save(List<Contact> contacts) {
+    public synchronized boolean save(List<Contact> contacts) {
         try {
-            Files.createDirectories(filePath.getParent());
+            write(contacts);
+            return true;
+        } catch (IOException e) {
+            log.error("Ошибка при сохранении контактов в файл {}", filePath, e);
+            return false;
+        }
+    }
+
+    /**
+     * Сохраняет список контактов в бинарный файл и сбрасывает его на диск.
+     * <p>В отличие от {@link #save(List)} ошибка не логируется, а пробрасывается:
+     * после неё файл может остаться недописанным, и полагаться на него нельзя.</p>
+     * @param contacts список контактов для сохранения
+     * @throws IOException если файл не удалось записать
+     */
+    public synchronized void write(List<Contact> contacts) throws IOException {
+        StorageEvent event = new StorageEvent();
+        event.begin();
+        // до успешной записи сумма прежнего содержимого недействительна
+        checksummed = null;
+        Path parent = filePath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
 
-            try (ObjectOutputStream oos =
-                         new ObjectOutputStream(Files.newOutputStream(filePath))) {
+        long sum;
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CheckedOutputStream checked = new CheckedOutputStream(Channels.newOutputStream(channel), new CRC32C());
+            OutputStream out = new BufferedOutputStream(checked, 64 * 1024);
+            if (compressionLevel == NO_COMPRESSION) {
+                ObjectOutputStream oos = new ObjectOutputStream(out);
                 oos.writeObject(contacts);
+                oos.flush();
+            } else {
+                SnapshotCodec.write(contacts, compressionLevel, out);
             }
-
-            log.info("Успешно сохранены контакты. Количество: {}", contacts.size());
-        } catch (IOException e) {
-            log.error("Ошибка при сохранении контактов в файл {}", filePath, e);
+            out.flush();
+            channel.force(true);
+            sum = checked.getChecksum().getValue();
         }
+
+        lastKnown = FileState.of(filePath);
+        checksummed = lastKnown;
+        checksum = sum;
+        event.complete("SAVE", filePath.toString(), contacts.size(), lastKnown.size());
+        log.info("Успешно сохранены контакты. Количество: {}", contacts.size());
     }
 
     /**
@@ -65,30 +254,194 @@ public class PhonebookStorage {
      * Если файл отсутствует или содержит некорректные данные — возвращается пустой список.
      * @return список контактов, загруженных из файла
      */
-    @SuppressWarnings("unchecked")
-    public List<Contact> load() {
+    public synchronized List<Contact> load() {
         if (!Files.exists(filePath)) {
             log.warn("Файл {} не найден. Возвращаю пустой список контактов.", filePath);
             return new ArrayList<>();
         }
+        try {
+            return read();
+        } catch (IOException e) {
+            log.error("Ошибка при загрузке контактов из файла {}", filePath, e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Загружает контакты из бинарного файла.
+     * <p>В отличие от {@link #load()} отсутствующий, недописанный или повреждённый
+     * файл не превращается в пустой список.</p>
+     * @return список контактов, загруженных из файла
+     * @throws IOException если файла нет или его не удалось прочитать
+     */
+    public synchronized List<Contact> loadOrThrow() throws IOException {
+        return read();
+    }
+
+    /**
+     * Загружает контакты, если файл изменился после последнего сохранения
+     * или загрузки этим хранилищем — например, его заменила другая программа.
+     * <p>В отличие от {@link #load()} ошибки чтения не превращаются в пустой
+     * список: недописанный или повреждённый файл не должен выглядеть
+     * как справочник, из которого удалили все контакты.</p>
+     * @return контакты из файла или {@code null}, если файл не изменился или отсутствует
+     * @throws IOException если файл не удалось прочитать
+     */
+    public synchronized List<Contact> loadIfModified() throws IOException {
+        if (!Files.exists(filePath) || FileState.of(filePath).equals(lastKnown)) {
+            return null;
+        }
+        return read();
+    }
+
+    /**
+     * Читает файл и запоминает его состояние. Состояние снимается до чтения:
+     * если файл изменится во время чтения, следующая проверка это заметит.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Contact> read() throws IOException {
+        FileState state = FileState.of(filePath);
+        StorageEvent event = new StorageEvent();
+        event.begin();
+        CheckedInputStream checked = new CheckedInputStream(Files.newInputStream(filePath), new CRC32C());
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(checked))) {
 
-        try (ObjectInputStream ois =
-                     new ObjectInputStream(Files.newInputStream(filePath))) {
+            in.mark(4);
+            if (in.readInt() == SnapshotCodec.MAGIC) {
+                List<Contact> contacts = SnapshotCodec.read(in, state.size() - 4);
+                rememberChecksum(state, in, checked);
+                lastKnown = state;
+                event.complete("LOAD", filePath.toString(), contacts.size(), state.size());
+                log.info("Успешно загружены сжатые контакты. Количество: {}", contacts.size());
+                return contacts;
+            }
+            in.reset();
 
-            Object obj = ois.readObject();
+            Object obj = new ObjectInputStream(in).readObject();
 
             if (obj instanceof List<?>) {
                 List<Contact> contacts = (List<Contact>) obj;
+                rememberChecksum(state, in, checked);
+                lastKnown = state;
+                event.complete("LOAD", filePath.toString(), contacts.size(), state.size());
                 log.info("Успешно загружены контакты. Количество: {}", contacts.size());
                 return contacts;
-            } else {
-                log.error("Некорректный формат данных в файле {}", filePath);
-                return new ArrayList<>();
             }
+            throw new IOException("Некорректный формат данных в файле " + filePath);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Некорректный формат данных в файле " + filePath, e);
+        }
+    }
 
-        } catch (IOException | ClassNotFoundException e) {
-            log.error("Ошибка при загрузке контактов из файла {}", filePath, e);
-            return new ArrayList<>();
+    /**
+     * Дочитывает файл до конца и запоминает контрольную сумму прочитанного содержимого.
+     */
+    private void rememberChecksum(FileState state, InputStream in, CheckedInputStream checked) throws IOException {
+        in.transferTo(OutputStream.nullOutputStream());
+        checksummed = state;
+        checksum = checked.getChecksum().getValue();
+    }
+
+    /**
+     * Возвращает контрольную сумму текущего содержимого файла данных.
+     * Сумма, посчитанная при последнем сохранении или загрузке, используется,
+     * только пока файл не изменился; иначе файл читается заново.
+     */
+    private long dataChecksum() throws IOException {
+        FileState state = FileState.of(filePath);
+        if (!state.equals(checksummed)) {
+            CheckedInputStream in = new CheckedInputStream(Files.newInputStream(filePath), new CRC32C());
+            try (in) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            checksummed = state;
+            checksum = in.getChecksum().getValue();
+        }
+        return checksum;
+    }
+
+    /**
+     * Возвращает путь к файлу фильтра номеров, лежащему рядом с файлом данных.
+     * @return путь к файлу фильтра
+     */
+    public Path getNumberFilterPath() {
+        return filePath.resolveSibling(filePath.getFileName() + FILTER_SUFFIX);
+    }
+
+    /**
+     * Сохраняет фильтр номеров рядом с файлом данных.
+     * <p>В заголовок записываются размер и контрольная сумма содержимого файла данных
+     * (CRC-32C): по ним {@link #loadNumberFilter()} отличает актуальный фильтр
+     * от устаревшего. Время изменения для этого не годится: файл, перезаписанный
+     * в ту же миллисекунду с тем же размером, выглядел бы неизменным, и устаревший
+     * фильтр отвечал бы «номера нет» для существующих номеров. Сумма, посчитанная
+     * при последней успешной записи, используется, пока файл не изменился; после
+     * неудачной записи она считается по файлу заново. Сохранять фильтр можно, только
+     * если файл содержит именно те контакты, по которым он построен, то есть после
+     * успешного сохранения. Файл заменяется атомарно, ошибки только логируются.</p>
+     * @param filter фильтр, соответствующий сохранённым контактам
+     */
+    @Override
+    public synchronized void saveNumberFilter(NumberFilter filter) {
+        Path target = getNumberFilterPath();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            long size = Files.size(filePath);
+            long sum = dataChecksum();
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024))) {
+                out.writeInt(FILTER_MAGIC);
+                out.writeLong(size);
+                out.writeLong(sum);
+                filter.writeTo(out);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Сохранён фильтр номеров: {} номеров", filter.size());
+        } catch (IOException e) {
+            log.error("Ошибка при сохранении фильтра номеров в файл {}", target, e);
+        }
+    }
+
+    /**
+     * Загружает фильтр номеров, если он соответствует текущему файлу данных:
+     * совпадают размер и контрольная сумма содержимого. При любом сомнении
+     * возвращается {@code null}, и фильтр перестраивается по контактам.
+     * @return фильтр или {@code null}, если файла нет, он повреждён
+     *         или записан для другой версии файла данных
+     */
+    @Override
+    public synchronized NumberFilter loadNumberFilter() {
+        Path source = getNumberFilterPath();
+        if (!Files.exists(source) || !Files.exists(filePath)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(source), 64 * 1024))) {
+            if (in.readInt() != FILTER_MAGIC
+                    || in.readLong() != Files.size(filePath)
+                    || in.readLong() != dataChecksum()) {
+                log.info("Фильтр номеров {} устарел и будет перестроен", source);
+                return null;
+            }
+            NumberFilter filter = NumberFilter.readFrom(in);
+            log.info("Загружен фильтр номеров: {} номеров", filter.size());
+            return filter;
+        } catch (IOException e) {
+            log.warn("Не удалось прочитать фильтр номеров из файла {}", source, e);
+            return null;
+        }
+    }
+
+    /**
+     * Размер, время изменения и идентификатор файла (например, inode).
+     * Идентификатор меняется при атомарной замене файла переименованием,
+     * даже если размер и время изменения совпали.
+     */
+    private record FileState(long size, FileTime modified, Object fileKey) {
+
+        static FileState of(Path path) throws IOException {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            return new FileState(attrs.size(), attrs.lastModifiedTime(), attrs.fileKey());
         }
     }
 }
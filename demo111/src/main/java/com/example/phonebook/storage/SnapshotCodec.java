@@ -0,0 +1,239 @@
+package com.example.phonebook.storage;
+
+import com.example.phonebook.model.Contact;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Блочный сжатый формат снимка справочника.
+ * <p>Контакты делятся на блоки по {@link #BLOCK_SIZE} штук. Каждый блок
+ * сериализуется отдельно и сжимается алгоритмом Deflate с заранее заданным
+ * словарём, поэтому блоки не зависят друг от друга: их можно сжимать
+ * и распаковывать параллельно.</p>
+ * <p>Структура файла:</p>
+ * <pre>
+ * int  MAGIC ("PBZ1")
+ * int  контрольная сумма словаря (Adler-32)
+ * int  количество блоков
+ * блок: int число контактов, int длина до сжатия, int длина после сжатия, byte[] данные
+ * </pre>
+ * <p>Номера телефонов, части ФИО и служебные строки сериализации сильно
+ * повторяются, поэтому словарь составлен именно из них: он помогает
+ * уже с первых байт каждого блока.</p>
+ */
+final class SnapshotCodec {
+
+    /** Признак сжатого формата: «PBZ1» */
+    static final int MAGIC = 0x50425A31;
+
+    /** Количество контактов в одном блоке */
+    static final int BLOCK_SIZE = 1024;
+
+    /** Размер заголовка блока: три {@code int} */
+    private static final int BLOCK_HEADER = 12;
+
+    /** Наибольшая степень сжатия Deflate: 1032 байта из одного */
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    /** Предустановленный словарь; наиболее частые фрагменты находятся в конце */
+    private static final byte[] DICTIONARY = (
+            "java.util.ArrayList" + "sizexp" + "java.lang.Enum" + "Ljava/lang/String;" + "Ljava/util/List;"
+                    + "Lcom/example/phonebook/model/PhoneType;"
+                    + "com.example.phonebook.model.PhoneType"
+                    + "com.example.phonebook.model.PhoneNumber" + "numbert" + "typet"
+                    + "com.example.phonebook.model.Contact" + "fullNamet" + "phonest"
+                    + "Александр Алексей Андрей Владимир Дмитрий Евгений Иван Михаил Николай Сергей "
+                    + "Анна Елена Мария Наталья Ольга Татьяна Екатерина Ирина "
+                    + "Александрович Сергеевич Владимирович Андреевич Иванович "
+                    + "Александровна Сергеевна Владимировна Андреевна Ивановна "
+                    + "ова ева ина ов ев ин "
+                    + "FAX WORK HOME MOBILE +7 (495) +7 (812) +7 9 +79"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    private static final int DICTIONARY_ID = dictionaryId();
+
+    private SnapshotCodec() {
+    }
+
+    /**
+     * Записывает контакты в сжатом блочном формате.
+     * Блоки сжимаются параллельно.
+     * @param contacts контакты
+     * @param level    уровень сжатия Deflate (0–9)
+     * @param out      поток для записи
+     * @throws IOException ошибка записи
+     */
+    static void write(List<Contact> contacts, int level, OutputStream out) throws IOException {
+        int blocks = (contacts.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        List<Block> encoded = IntStream.range(0, blocks)
+                .parallel()
+                .mapToObj(b -> encode(contacts.subList(b * BLOCK_SIZE,
+                        Math.min(contacts.size(), (b + 1) * BLOCK_SIZE)), level))
+                .toList();
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(DICTIONARY_ID);
+        data.writeInt(blocks);
+        for (Block block : encoded) {
+            data.writeInt(block.count());
+            data.writeInt(block.rawLength());
+            data.writeInt(block.data().length);
+            data.write(block.data());
+        }
+        data.flush();
+    }
+
+    /**
+     * Читает контакты из сжатого блочного формата.
+     * Признак {@link #MAGIC} должен быть уже прочитан из потока.
+     * Блоки распаковываются параллельно.
+     * <p>Все длины из файла проверяются до выделения памяти: по оставшемуся размеру
+     * файла, {@link #BLOCK_SIZE} и наибольшей степени сжатия Deflate. Поэтому
+     * повреждённый или обрезанный файл приводит к {@link IOException},
+     * а не к ошибке выделения памяти.</p>
+     * @param in        поток, установленный сразу после признака формата
+     * @param remaining сколько байт файла осталось после признака формата
+     * @return список контактов в исходном порядке
+     * @throws IOException ошибка чтения или повреждённые данные
+     */
+    static List<Contact> read(DataInputStream in, long remaining) throws IOException {
+        int dictionaryId = in.readInt();
+        if (dictionaryId != DICTIONARY_ID) {
+            throw new IOException("Снимок сжат с неизвестным словарём: " + Integer.toHexString(dictionaryId));
+        }
+        int blocks = in.readInt();
+        remaining -= 8;
+        if (blocks < 0 || (long) blocks * BLOCK_HEADER > remaining) {
+            throw new IOException("Снимок повреждён: некорректное количество блоков " + blocks);
+        }
+        List<Block> raw = new ArrayList<>(blocks);
+        long total = 0;
+        for (int i = 0; i < blocks; i++) {
+            int count = in.readInt();
+            int rawLength = in.readInt();
+            int length = in.readInt();
+            remaining -= BLOCK_HEADER;
+            if (count <= 0 || count > BLOCK_SIZE) {
+                throw new IOException("Блок снимка повреждён: некорректное число контактов " + count);
+            }
+            if (length < 0 || length > remaining) {
+                throw new IOException("Блок снимка повреждён: длина " + length + " больше остатка файла " + remaining);
+            }
+            if (rawLength <= 0 || rawLength > (long) length * MAX_DEFLATE_RATIO) {
+                throw new IOException("Блок снимка повреждён: некорректная длина до сжатия " + rawLength);
+            }
+            byte[] data = new byte[length];
+            in.readFully(data);
+            remaining -= length;
+            raw.add(new Block(count, rawLength, data));
+            total += count;
+        }
+
+        List<List<Contact>> decoded;
+        try {
+            decoded = raw.parallelStream().map(SnapshotCodec::decode).toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        List<Contact> result = new ArrayList<>((int) Math.min(total, Integer.MAX_VALUE - 8));
+        decoded.forEach(result::addAll);
+        return result;
+    }
+
+    private static Block encode(List<Contact> contacts, int level) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(contacts.size() * 96);
+            try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+                oos.writeObject(new ArrayList<>(contacts));
+            }
+            byte[] raw = bytes.toByteArray();
+
+            Deflater deflater = new Deflater(level);
+            try {
+                deflater.setDictionary(DICTIONARY);
+                deflater.setInput(raw);
+                deflater.finish();
+                ByteArrayOutputStream packed = new ByteArrayOutputStream(raw.length / 3 + 64);
+                byte[] buf = new byte[16 * 1024];
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buf);
+                    packed.write(buf, 0, n);
+                }
+                return new Block(contacts.size(), raw.length, packed.toByteArray());
+            } finally {
+                deflater.end();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Contact> decode(Block block) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(block.data());
+            byte[] raw = new byte[block.rawLength()];
+            int off = 0;
+            while (off < raw.length) {
+                int n = inflater.inflate(raw, off, raw.length - off);
+                if (n == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY);
+                    } else if (inflater.finished() || inflater.needsInput()) {
+                        throw new IOException("Блок снимка повреждён: недостаточно данных");
+                    }
+                }
+                off += n;
+            }
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(raw))) {
+                List<Contact> contacts = (List<Contact>) ois.readObject();
+                if (contacts.size() != block.count()) {
+                    throw new IOException("Блок снимка повреждён: ожидалось " + block.count()
+                            + " контактов, прочитано " + contacts.size());
+                }
+                return contacts;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (DataFormatException | ClassNotFoundException | ClassCastException e) {
+            throw new UncheckedIOException(new IOException("Блок снимка повреждён", e));
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int dictionaryId() {
+        Adler32 adler = new Adler32();
+        adler.update(DICTIONARY);
+        return (int) adler.getValue();
+    }
+
+    /**
+     * Один блок снимка.
+     * @param count     количество контактов
+     * @param rawLength длина сериализованных данных до сжатия
+     * @param data      сжатые данные
+     */
+    private record Block(int count, int rawLength, byte[] data) {
+    }
+}
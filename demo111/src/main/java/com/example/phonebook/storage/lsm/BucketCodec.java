@@ -0,0 +1,107 @@
+package com.example.phonebook.storage.lsm;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.model.PhoneNumber;
+import com.example.phonebook.model.PhoneType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Компактная двоичная запись списка контактов одного ключа.
+ * <p>В отличие от стандартной сериализации Java не записывает описания
+ * классов, поэтому значение в несколько контактов занимает десятки байт.</p>
+ * <p>Каждый контакт хранится со своим порядковым номером в справочнике:
+ * по нему {@link LsmContactStore#snapshot()} восстанавливает порядок добавления.</p>
+ * <pre>
+ * int  количество контактов
+ * контакт: long порядковый номер, boolean есть ФИО, UTF ФИО, int количество телефонов
+ * телефон: boolean есть номер, UTF номер, byte тип (порядковый номер, -1 — не задан)
+ * </pre>
+ */
+final class BucketCodec {
+
+    private static final PhoneType[] TYPES = PhoneType.values();
+
+    private BucketCodec() {
+    }
+
+    /**
+     * Кодирует контакты.
+     * @param contacts непустой список контактов
+     * @param order    порядковые номера контактов в справочнике
+     * @return закодированное значение
+     */
+    static byte[] encode(List<Contact> contacts, long[] order) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * contacts.size());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(contacts.size());
+            for (int i = 0; i < contacts.size(); i++) {
+                Contact c = contacts.get(i);
+                out.writeLong(order[i]);
+                writeNullable(out, c.getFullName());
+                out.writeInt(c.getPhones().size());
+                for (PhoneNumber pn : c.getPhones()) {
+                    writeNullable(out, pn.getNumber());
+                    out.writeByte(pn.getType() == null ? -1 : pn.getType().ordinal());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Декодирует значение, записанное {@link #encode(List, long[])}.
+     * @param value закодированное значение
+     * @return новый изменяемый список контактов
+     */
+    static List<Contact> decode(byte[] value) {
+        List<Contact> contacts = new ArrayList<>();
+        decode(value, (c, ordinal) -> contacts.add(c));
+        return contacts;
+    }
+
+    /**
+     * Декодирует значение, передавая каждый контакт вместе с его порядковым номером.
+     * @param value    закодированное значение
+     * @param consumer получатель контактов в порядке значения
+     */
+    static void decode(byte[] value, ObjLongConsumer<Contact> consumer) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(value))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long ordinal = in.readLong();
+                Contact c = new Contact(readNullable(in));
+                int phones = in.readInt();
+                for (int j = 0; j < phones; j++) {
+                    String number = readNullable(in);
+                    int type = in.readByte();
+                    c.addPhone(new PhoneNumber(number, type < 0 ? null : TYPES[type]));
+                }
+                consumer.accept(c, ordinal);
+            }
+        } catch (IOException | ArrayIndexOutOfBoundsException e) {
+            throw new UncheckedIOException(new IOException("Повреждено значение LSM-хранилища", e));
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
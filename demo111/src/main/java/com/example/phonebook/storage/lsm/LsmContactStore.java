@@ -0,0 +1,519 @@
+package com.example.phonebook.storage.lsm;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.storage.ContactStore;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище контактов на основе LSM-дерева (log-structured merge tree).
+ * <p>Устройство:</p>
+ * <ul>
+ *     <li>изменения записываются в журнал ({@link WriteAheadLog}) и в отсортированную
+ *     таблицу в памяти;</li>
+ *     <li>когда таблица превышает заданный размер, она целиком сбрасывается
+ *     в новый неизменяемый сегмент ({@link Segment}), а журнал очищается;</li>
+ *     <li>чтение ключа просматривает таблицу, затем сегменты от нового к старому;
+ *     в памяти держатся только таблица и разреженные индексы сегментов;</li>
+ *     <li>когда сегментов становится много, фоновый поток сливает их в один,
+ *     отбрасывая перекрытые значения и удаления.</li>
+ * </ul>
+ * <p>Список действующих сегментов (от нового к старому) хранится в файле
+ * {@code MANIFEST}, который заменяется атомарно. Файлы сегментов, не указанные
+ * в нём (недописанные при сбое), удаляются при открытии.</p>
+ * <p>Ключи упорядочены по {@link String#compareTo(String)}; контакты одного ключа
+ * хранятся в порядке добавления. Кроме того, каждый контакт хранится со своим
+ * порядковым номером в справочнике, поэтому {@link #snapshot()} возвращает
+ * контакты в порядке добавления, а не в порядке ключей: после перезапуска
+ * справочник и позиции контактов в нём остаются прежними.</p>
+ * <p>Само хранилище не требует держать данные в памяти, но
+ * {@link com.example.phonebook.service.PhonebookService} при запуске читает
+ * справочник целиком, так что его объём по-прежнему ограничен памятью
+ * (см. {@link ContactStore}).</p>
+ * <p>Все методы потокобезопасны. Ошибки ввода/вывода сообщаются через
+ * {@link UncheckedIOException}.</p>
+ */
+public class LsmContactStore implements ContactStore {
+
+    private static final Logger log = LogManager.getLogger(LsmContactStore.class);
+
+    /** Размер таблицы в памяти по умолчанию, после которого она сбрасывается в сегмент */
+    public static final long DEFAULT_MEMTABLE_BYTES = 4L * 1024 * 1024;
+
+    /** Количество сегментов по умолчанию, при котором запускается слияние */
+    public static final int DEFAULT_COMPACTION_TRIGGER = 4;
+
+    private static final String MANIFEST = "MANIFEST";
+    private static final String WAL = "wal.log";
+
+    private final Path dir;
+    private final long memtableBytes;
+    private final int compactionTrigger;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    private final ExecutorService compactor;
+
+    private TreeMap<String, byte[]> memtable = new TreeMap<>();
+    private long memtableSize;
+    /** Сегменты от нового к старому */
+    private List<Segment> segments = new ArrayList<>();
+    private final WriteAheadLog wal;
+    private long nextSegmentId;
+    private boolean compactionScheduled;
+    private boolean closed;
+    /** Порядковые номера контактов последнего {@link #snapshot()} в его порядке */
+    private long[] ranked;
+    /** Номер, с которого нумеруются контакты, добавленные после {@link #snapshot()} */
+    private long rankedEnd;
+    /** Следующий свободный порядковый номер; -1 — ещё не вычислен */
+    private long nextOrdinal = -1;
+
+    /**
+     * Открывает хранилище в каталоге с настройками по умолчанию.
+     * @param dir каталог хранилища; создаётся при необходимости
+     * @return открытое хранилище
+     * @throws IOException если каталог недоступен или данные повреждены
+     */
+    public static LsmContactStore open(Path dir) throws IOException {
+        return new LsmContactStore(dir, DEFAULT_MEMTABLE_BYTES, DEFAULT_COMPACTION_TRIGGER);
+    }
+
+    /**
+     * Открывает хранилище в каталоге.
+     * @param dir               каталог хранилища; создаётся при необходимости
+     * @param memtableBytes     размер таблицы в памяти, после которого она сбрасывается в сегмент
+     * @param compactionTrigger количество сегментов, при котором запускается слияние (не меньше 2)
+     * @throws IOException если каталог недоступен или данные повреждены
+     */
+    public LsmContactStore(Path dir, long memtableBytes, int compactionTrigger) throws IOException {
+        if (memtableBytes <= 0 || compactionTrigger < 2) {
+            throw new IllegalArgumentException("Недопустимые параметры LSM-хранилища");
+        }
+        this.dir = dir;
+        this.memtableBytes = memtableBytes;
+        this.compactionTrigger = compactionTrigger;
+        Files.createDirectories(dir);
+
+        List<String> live = readManifest();
+        for (String name : live) {
+            segments.add(Segment.open(dir.resolve(name)));
+            nextSegmentId = Math.max(nextSegmentId, segmentId(name) + 1);
+        }
+        deleteOrphans(live);
+
+        this.wal = new WriteAheadLog(dir.resolve(WAL), this::applyToMemtable);
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "lsm-compaction");
+            t.setDaemon(true);
+            return t;
+        });
+        log.info("Открыто LSM-хранилище {}: сегментов {}, записей в журнале {}",
+                dir.toAbsolutePath(), segments.size(), memtable.size());
+    }
+
+    @Override
+    public Path getLocation() {
+        return dir;
+    }
+
+    @Override
+    public List<Contact> get(String key) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            byte[] value = memtable.get(key);
+            for (int i = 0; value == null && i < segments.size(); i++) {
+                value = segments.get(i).get(key);
+            }
+            return value == null || value.length == 0 ? new ArrayList<>() : BucketCodec.decode(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Контакты получают номера после всех уже сохранённых, то есть
+     * оказываются в конце справочника.</p>
+     */
+    @Override
+    public void put(String key, List<Contact> contacts) {
+        persist(null, Map.of(key, contacts), null);
+    }
+
+    @Override
+    public void delete(String key) {
+        persist(null, Map.of(key, List.of()), null);
+    }
+
+    /**
+     * Возвращает все контакты в порядке их номеров, то есть в порядке добавления.
+     * <p>Запоминает номера возвращённых контактов, чтобы переводить в них
+     * номера из {@link #persist(List, Map, ToIntFunction)}.</p>
+     */
+    @Override
+    public List<Contact> snapshot() {
+        lock.writeLock().lock();
+        try {
+            List<Ranked> all = new ArrayList<>();
+            scanValues(null, null, (key, value) -> BucketCodec.decode(value,
+                    (contact, ordinal) -> all.add(new Ranked(ordinal, contact))));
+            all.sort(Comparator.comparingLong(Ranked::ordinal));
+
+            List<Contact> contacts = new ArrayList<>(all.size());
+            ranked = new long[all.size()];
+            for (int i = 0; i < ranked.length; i++) {
+                contacts.add(all.get(i).contact());
+                ranked[i] = all.get(i).ordinal();
+            }
+            rankedEnd = ranked.length == 0 ? 0 : ranked[ranked.length - 1] + 1;
+            nextOrdinal = Math.max(nextOrdinal, rankedEnd);
+            return contacts;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Записывает изменившиеся ключи одной группой: журнал сбрасывается
+     * на диск один раз. Полный список контактов не используется.
+     * <p>Номер из {@code order} переводится в сохраняемый порядковый номер:
+     * контакты последнего {@link #snapshot()} получают свои прежние номера,
+     * добавленные после него — следующие по порядку.</p>
+     * @param all     не используется
+     * @param changed новые значения изменившихся ключей (пустой список — ключ удалён)
+     * @param order   номер контакта в справочнике или {@code null} — дописать контакты в конец
+     */
+    @Override
+    public void persist(List<Contact> all, Map<String, List<Contact>> changed, ToIntFunction<Contact> order) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            Map<String, byte[]> encoded = new TreeMap<>();
+            changed.forEach((key, contacts) -> encoded.put(key,
+                    contacts.isEmpty() ? Segment.TOMBSTONE : BucketCodec.encode(contacts, ordinals(contacts, order))));
+            for (Map.Entry<String, byte[]> e : encoded.entrySet()) {
+                wal.append(e.getKey(), e.getValue());
+            }
+            wal.sync();
+            encoded.forEach(this::applyToMemtable);
+            if (memtableSize >= memtableBytes) {
+                flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>На время обхода изменения хранилища блокируются.</p>
+     */
+    @Override
+    public void scan(String fromKey, String toKey, BiConsumer<String, List<Contact>> visitor) {
+        scanValues(fromKey, toKey, (key, value) -> visitor.accept(key, BucketCodec.decode(value)));
+    }
+
+    private void scanValues(String fromKey, String toKey, BiConsumer<String, byte[]> visitor) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            List<Iterator<Map.Entry<String, byte[]>>> sources = new ArrayList<>(segments.size() + 1);
+            sources.add((fromKey == null ? memtable : memtable.tailMap(fromKey, true)).entrySet().iterator());
+            for (Segment s : segments) {
+                sources.add(s.iterator(fromKey));
+            }
+            MergingIterator it = new MergingIterator(sources);
+            while (it.hasNext()) {
+                Map.Entry<String, byte[]> e = it.next();
+                if (toKey != null && e.getKey().compareTo(toKey) >= 0) {
+                    break;
+                }
+                if (e.getValue().length > 0) {
+                    visitor.accept(e.getKey(), e.getValue());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Сбрасывает таблицу из памяти в новый сегмент.
+     * @throws UncheckedIOException при ошибке записи
+     */
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            if (memtable.isEmpty()) {
+                return;
+            }
+            String name = segmentName(nextSegmentId++);
+            Segment segment = Segment.write(dir.resolve(name), memtable.entrySet().iterator(), segments.isEmpty());
+            List<Segment> updated = new ArrayList<>(segments.size() + 1);
+            if (segment != null) {
+                updated.add(segment);
+            }
+            updated.addAll(segments);
+            writeManifest(updated);
+            segments = updated;
+            wal.reset();
+            log.debug("Таблица из памяти сброшена в сегмент {}: {} записей", name, memtable.size());
+            memtable = new TreeMap<>();
+            memtableSize = 0;
+
+            if (segments.size() >= compactionTrigger && !compactionScheduled && !compactor.isShutdown()) {
+                compactionScheduled = true;
+                compactor.execute(this::compactInBackground);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Сливает все текущие сегменты в один. Новые записи во время слияния
+     * не блокируются: сегменты, появившиеся после начала, остаются как есть.
+     * @throws UncheckedIOException при ошибке записи
+     */
+    public void compact() {
+        compactionLock.lock();
+        try {
+            List<Segment> inputs;
+            String name;
+            lock.readLock().lock();
+            try {
+                checkOpen();
+                inputs = List.copyOf(segments);
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (inputs.size() < 2) {
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                name = segmentName(nextSegmentId++);
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            // Входные сегменты включают самый старый, поэтому удаления можно отбросить.
+            List<Iterator<Map.Entry<String, byte[]>>> sources = new ArrayList<>(inputs.size());
+            for (Segment s : inputs) {
+                sources.add(s.iterator(null));
+            }
+            Segment merged = Segment.write(dir.resolve(name), new MergingIterator(sources), true);
+
+            lock.writeLock().lock();
+            try {
+                checkOpen();
+                List<Segment> updated = new ArrayList<>(segments);
+                updated.removeAll(inputs);
+                if (merged != null) {
+                    updated.add(merged);
+                }
+                writeManifest(updated);
+                segments = updated;
+                for (Segment s : inputs) {
+                    s.close();
+                    Files.deleteIfExists(s.path());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Слияние сегментов: {} -> {}, записей {}",
+                    inputs.size(), name, merged == null ? 0 : merged.records());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает количество сегментов на диске.
+     * @return количество сегментов
+     */
+    public int getSegmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Дожидается фонового слияния, сбрасывает таблицу в сегмент и закрывает файлы.
+     */
+    @Override
+    public void close() {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (!memtable.isEmpty()) {
+                flush();
+            }
+            closed = true;
+            wal.close();
+            for (Segment s : segments) {
+                s.close();
+            }
+            log.info("LSM-хранилище {} закрыто", dir.toAbsolutePath());
+        } catch (IOException e) {
+            log.error("Ошибка при закрытии LSM-хранилища {}", dir, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compactInBackground() {
+        lock.writeLock().lock();
+        try {
+            compactionScheduled = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            log.error("Ошибка фонового слияния сегментов в {}", dir, e);
+        }
+    }
+
+    /**
+     * Вычисляет сохраняемые порядковые номера контактов. Вызывается под блокировкой записи.
+     */
+    private long[] ordinals(List<Contact> contacts, ToIntFunction<Contact> order) {
+        if (nextOrdinal < 0) {
+            long[] max = {-1};
+            scanValues(null, null, (key, value) -> BucketCodec.decode(value,
+                    (contact, ordinal) -> max[0] = Math.max(max[0], ordinal)));
+            nextOrdinal = max[0] + 1;
+        }
+        if (ranked == null) {
+            ranked = new long[0];
+            rankedEnd = nextOrdinal;
+        }
+        long[] result = new long[contacts.size()];
+        for (int i = 0; i < result.length; i++) {
+            if (order == null) {
+                result[i] = nextOrdinal++;
+            } else {
+                int id = order.applyAsInt(contacts.get(i));
+                result[i] = id < ranked.length ? ranked[id] : rankedEnd + (id - ranked.length);
+                nextOrdinal = Math.max(nextOrdinal, result[i] + 1);
+            }
+        }
+        return result;
+    }
+
+    private void applyToMemtable(String key, byte[] value) {
+        byte[] previous = memtable.put(key, value);
+        if (previous == null) {
+            // Грубая оценка накладных расходов TreeMap на ключ
+            memtableSize += 2L * key.length() + 64 + value.length;
+        } else {
+            memtableSize += value.length - previous.length;
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("LSM-хранилище закрыто");
+        }
+    }
+
+    private List<String> readManifest() throws IOException {
+        Path manifest = dir.resolve(MANIFEST);
+        if (!Files.exists(manifest)) {
+            return List.of();
+        }
+        List<String> names = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            if (!line.isBlank()) {
+                names.add(line.strip());
+            }
+        }
+        return names;
+    }
+
+    private void writeManifest(List<Segment> live) throws IOException {
+        List<String> names = new ArrayList<>(live.size());
+        for (Segment s : live) {
+            names.add(s.path().getFileName().toString());
+        }
+        Path tmp = dir.resolve(MANIFEST + ".tmp");
+        Files.write(tmp, names, StandardCharsets.UTF_8);
+        Files.move(tmp, dir.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteOrphans(List<String> live) throws IOException {
+        Set<String> keep = new HashSet<>(live);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                if (name.startsWith("segment-") && name.endsWith(".sst") && !keep.contains(name)) {
+                    log.warn("Удаляю недописанный сегмент {}", p);
+                    Files.delete(p);
+                }
+            }
+        }
+    }
+
+    /**
+     * Контакт с его порядковым номером в справочнике.
+     */
+    private record Ranked(long ordinal, Contact contact) {
+    }
+
+    private static String segmentName(long id) {
+        return String.format("segment-%020d.sst", id);
+    }
+
+    private static long segmentId(String name) {
+        return Long.parseLong(name.substring("segment-".length(), name.length() - ".sst".length()));
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.phonebook.storage.lsm;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Слияние нескольких отсортированных потоков записей в один.
+ * <p>Источники передаются от нового к старому. Если ключ встречается
+ * в нескольких источниках, возвращается только самая новая запись,
+ * остальные пропускаются — так перекрываются устаревшие значения
+ * и значения, удалённые позднее.</p>
+ */
+final class MergingIterator implements Iterator<Map.Entry<String, byte[]>> {
+
+    private final PriorityQueue<Source> queue = new PriorityQueue<>(
+            Comparator.comparing((Source s) -> s.current.getKey()).thenComparingInt(s -> s.rank));
+
+    /**
+     * Создаёт итератор слияния.
+     * @param sources отсортированные источники от самого нового к самому старому
+     */
+    MergingIterator(List<Iterator<Map.Entry<String, byte[]>>> sources) {
+        for (int i = 0; i < sources.size(); i++) {
+            Iterator<Map.Entry<String, byte[]>> it = sources.get(i);
+            if (it.hasNext()) {
+                queue.add(new Source(i, it, it.next()));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !queue.isEmpty();
+    }
+
+    @Override
+    public Map.Entry<String, byte[]> next() {
+        Source top = queue.poll();
+        if (top == null) {
+            throw new NoSuchElementException();
+        }
+        Map.Entry<String, byte[]> result = top.current;
+        advance(top);
+        while (!queue.isEmpty() && queue.peek().current.getKey().equals(result.getKey())) {
+            advance(queue.poll());
+        }
+        return result;
+    }
+
+    private void advance(Source source) {
+        if (source.iterator.hasNext()) {
+            source.current = source.iterator.next();
+            queue.add(source);
+        }
+    }
+
+    /** Источник вместе с его текущей записью */
+    private static final class Source {
+        private final int rank;
+        private final Iterator<Map.Entry<String, byte[]>> iterator;
+        private Map.Entry<String, byte[]> current;
+
+        private Source(int rank, Iterator<Map.Entry<String, byte[]>> iterator, Map.Entry<String, byte[]> current) {
+            this.rank = rank;
+            this.iterator = iterator;
+            this.current = current;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.example.phonebook.storage.lsm;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Неизменяемый отсортированный файл LSM-хранилища.
+ * <p>Записи лежат по возрастанию ключа. В памяти хранится только
+ * разреженный индекс — каждый {@link #INDEX_INTERVAL}-й ключ со смещением,
+ * поэтому поиск ключа читает с диска один небольшой блок записей.</p>
+ * <pre>
+ * int  MAGIC ("PBL1")
+ * запись: int длина ключа, byte[] ключ (UTF-8), int длина значения (0 — удаление), byte[] значение
+ * индекс: int n, n × (int длина ключа, byte[] ключ, long смещение), int длина, byte[] последний ключ
+ * long смещение индекса, int количество записей, int MAGIC
+ * </pre>
+ * <p>Чтение выполняется позиционно ({@link FileChannel#read(ByteBuffer, long)}),
+ * поэтому сегмент можно читать из нескольких потоков одновременно.</p>
+ */
+final class Segment implements Closeable {
+
+    /** Признак файла сегмента: «PBL1» */
+    static final int MAGIC = 0x50424C31;
+
+    /** Каждый какой ключ попадает в разреженный индекс */
+    static final int INDEX_INTERVAL = 16;
+
+    /** Значение-признак удаления ключа */
+    static final byte[] TOMBSTONE = new byte[0];
+
+    private static final int FOOTER_BYTES = 16;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final String[] indexKeys;
+    private final long[] indexOffsets;
+    private final long dataEnd;
+    private final String lastKey;
+    private final int records;
+
+    private Segment(Path path, FileChannel channel, String[] indexKeys, long[] indexOffsets,
+                    long dataEnd, String lastKey, int records) {
+        this.path = path;
+        this.channel = channel;
+        this.indexKeys = indexKeys;
+        this.indexOffsets = indexOffsets;
+        this.dataEnd = dataEnd;
+        this.lastKey = lastKey;
+        this.records = records;
+    }
+
+    /**
+     * Записывает отсортированные записи в новый файл и открывает его.
+     * @param path           путь к новому файлу
+     * @param entries        записи по возрастанию ключа
+     * @param dropTombstones отбрасывать ли удаления (допустимо, если старее сегментов нет)
+     * @return открытый сегмент или {@code null}, если записывать нечего
+     * @throws IOException при ошибке записи
+     */
+    static Segment write(Path path, Iterator<Map.Entry<String, byte[]>> entries, boolean dropTombstones)
+            throws IOException {
+        List<byte[]> keys = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        byte[] last = null;
+        int records = 0;
+        long offset = 4;
+
+        try (OutputStream file = Files.newOutputStream(path);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            while (entries.hasNext()) {
+                Map.Entry<String, byte[]> e = entries.next();
+                byte[] value = e.getValue();
+                if (dropTombstones && value.length == 0) {
+                    continue;
+                }
+                byte[] key = e.getKey().getBytes(StandardCharsets.UTF_8);
+                if (records % INDEX_INTERVAL == 0) {
+                    keys.add(key);
+                    offsets.add(offset);
+                }
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeInt(value.length);
+                out.write(value);
+                offset += 8L + key.length + value.length;
+                last = key;
+                records++;
+            }
+            if (records > 0) {
+                out.writeInt(keys.size());
+                for (int i = 0; i < keys.size(); i++) {
+                    out.writeInt(keys.get(i).length);
+                    out.write(keys.get(i));
+                    out.writeLong(offsets.get(i));
+                }
+                out.writeInt(last.length);
+                out.write(last);
+                out.writeLong(offset);
+                out.writeInt(records);
+                out.writeInt(MAGIC);
+            }
+        }
+        if (records == 0) {
+            // все записи оказались удалениями: пустой сегмент не нужен
+            Files.delete(path);
+            return null;
+        }
+
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+        return open(path);
+    }
+
+    /**
+     * Открывает существующий сегмент и читает его индекс.
+     * @param path путь к файлу
+     * @return открытый сегмент
+     * @throws IOException если файл недоступен или повреждён
+     */
+    static Segment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < 4 + FOOTER_BYTES) {
+                throw new IOException("Сегмент " + path + " слишком короткий");
+            }
+            ByteBuffer footer = read(channel, size - FOOTER_BYTES, FOOTER_BYTES);
+            long dataEnd = footer.getLong();
+            int records = footer.getInt();
+            if (footer.getInt() != MAGIC || dataEnd < 4 || dataEnd > size - FOOTER_BYTES) {
+                throw new IOException("Сегмент " + path + " повреждён");
+            }
+
+            ByteBuffer index = read(channel, dataEnd, (int) (size - FOOTER_BYTES - dataEnd));
+            int n = index.getInt();
+            String[] keys = new String[n];
+            long[] offsets = new long[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = readKey(index);
+                offsets[i] = index.getLong();
+            }
+            String lastKey = readKey(index);
+            return new Segment(path, channel, keys, offsets, dataEnd, lastKey, records);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException io ? io : new IOException("Сегмент " + path + " повреждён", e);
+        }
+    }
+
+    /**
+     * Ищет значение ключа.
+     * @param key ключ
+     * @return значение, {@link #TOMBSTONE} для удалённого ключа
+     *         или {@code null}, если сегмент ничего не знает о ключе
+     * @throws IOException при ошибке чтения
+     */
+    byte[] get(String key) throws IOException {
+        if (key.compareTo(indexKeys[0]) < 0 || key.compareTo(lastKey) > 0) {
+            return null;
+        }
+        int block = floorBlock(key);
+        ByteBuffer buffer = readBlock(block);
+        while (buffer.hasRemaining()) {
+            int cmp = readKey(buffer).compareTo(key);
+            int length = buffer.getInt();
+            if (cmp == 0) {
+                byte[] value = length == 0 ? TOMBSTONE : new byte[length];
+                buffer.get(value);
+                return value;
+            }
+            if (cmp > 0) {
+                return null;
+            }
+            buffer.position(buffer.position() + length);
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает записи по возрастанию ключа, начиная с указанного.
+     * Блоки читаются с диска по мере обхода.
+     * @param fromKey первый ключ (включительно) или {@code null} — с начала
+     * @return итератор записей, включая удаления
+     */
+    Iterator<Map.Entry<String, byte[]>> iterator(String fromKey) {
+        int first = fromKey == null ? 0 : Math.max(0, floorBlock(fromKey));
+        return new Iterator<>() {
+            private int block = first;
+            private ByteBuffer buffer;
+            private Map.Entry<String, byte[]> next = advance();
+
+            private Map.Entry<String, byte[]> advance() {
+                try {
+                    while (true) {
+                        if (buffer == null || !buffer.hasRemaining()) {
+                            if (block >= indexKeys.length) {
+                                return null;
+                            }
+                            buffer = readBlock(block++);
+                        }
+                        String key = readKey(buffer);
+                        byte[] value = new byte[buffer.getInt()];
+                        buffer.get(value);
+                        if (fromKey == null || key.compareTo(fromKey) >= 0) {
+                            return Map.entry(key, value.length == 0 ? TOMBSTONE : value);
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Map.Entry<String, byte[]> next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<String, byte[]> result = next;
+                next = advance();
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Возвращает путь к файлу сегмента.
+     * @return путь
+     */
+    Path path() {
+        return path;
+    }
+
+    /**
+     * Возвращает количество записей, включая удаления.
+     * @return количество записей
+     */
+    int records() {
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /** Номер блока, в котором может находиться ключ; {@code -1}, если ключ меньше первого */
+    private int floorBlock(String key) {
+        int i = Arrays.binarySearch(indexKeys, key);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    private ByteBuffer readBlock(int block) throws IOException {
+        long start = indexOffsets[block];
+        long end = block + 1 < indexOffsets.length ? indexOffsets[block + 1] : dataEnd;
+        return read(channel, start, (int) (end - start));
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Неожиданный конец файла сегмента");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static String readKey(ByteBuffer buffer) {
+        byte[] key = new byte[buffer.getInt()];
+        buffer.get(key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.phonebook.storage.lsm;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал упреждающей записи LSM-хранилища.
+ * <p>Каждое изменение таблицы в памяти сначала дописывается сюда, поэтому
+ * после сбоя таблица восстанавливается повторным применением журнала.
+ * Записи идемпотентны (значение ключа заменяется целиком), так что повторное
+ * применение записи, уже попавшей в сегмент, ничего не портит.</p>
+ * <pre>
+ * запись: int длина, int CRC32, byte[] данные
+ * данные: int длина ключа, byte[] ключ (UTF-8), int длина значения (0 — удаление), byte[] значение
+ * </pre>
+ * <p>Оборванная или повреждённая запись в конце файла считается
+ * недописанной и отбрасывается при открытии.</p>
+ */
+final class WriteAheadLog implements Closeable {
+
+    private static final Logger log = LogManager.getLogger(WriteAheadLog.class);
+
+    private static final int HEADER_BYTES = 8;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(4096);
+    private final DataOutputStream pendingOut = new DataOutputStream(pending);
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Открывает журнал, передавая получателю все сохранённые в нём записи.
+     * @param path   файл журнала
+     * @param replay получатель пар «ключ → значение» (пустое значение — удаление)
+     * @throws IOException если файл недоступен
+     */
+    WriteAheadLog(Path path, BiConsumer<String, byte[]> replay) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long valid = replay(replay);
+        if (valid < channel.size()) {
+            log.warn("Журнал {} обрезан до {} байт: конец файла не дописан", path, valid);
+            channel.truncate(valid);
+        }
+        channel.position(valid);
+    }
+
+    private long replay(BiConsumer<String, byte[]> replay) throws IOException {
+        long size = channel.size();
+        long pos = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (pos + HEADER_BYTES <= size) {
+            header.clear();
+            channel.read(header, pos);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 8 || pos + HEADER_BYTES + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            while (payload.hasRemaining() && channel.read(payload, pos + HEADER_BYTES + payload.position()) > 0) {
+                // дочитываем запись целиком
+            }
+            crc.reset();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            payload.flip();
+            byte[] key = new byte[payload.getInt()];
+            payload.get(key);
+            byte[] value = new byte[payload.getInt()];
+            payload.get(value);
+            replay.accept(new String(key, StandardCharsets.UTF_8), value);
+            pos += HEADER_BYTES + length;
+        }
+        return pos;
+    }
+
+    /**
+     * Добавляет запись в буфер. На диск она попадёт при {@link #sync()}.
+     * @param key   ключ
+     * @param value значение; пустой массив означает удаление
+     * @throws IOException при ошибке записи
+     */
+    void append(String key, byte[] value) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int length = 8 + keyBytes.length + value.length;
+        crc.reset();
+        byte[] payload = ByteBuffer.allocate(length)
+                .putInt(keyBytes.length).put(keyBytes)
+                .putInt(value.length).put(value)
+                .array();
+        crc.update(payload);
+        pendingOut.writeInt(length);
+        pendingOut.writeInt((int) crc.getValue());
+        pendingOut.write(payload);
+    }
+
+    /**
+     * Записывает накопленные записи и сбрасывает их на диск.
+     * @throws IOException при ошибке записи
+     */
+    void sync() throws IOException {
+        if (pending.size() == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        pending.reset();
+        channel.force(false);
+    }
+
+    /**
+     * Очищает журнал после того, как его записи попали в сегмент.
+     * @throws IOException при ошибке записи
+     */
+    void reset() throws IOException {
+        pending.reset();
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+        log.debug("Закрыт журнал {}", path);
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.phonebook.suggest;
+
+import com.example.phonebook.index.IndexedContact;
+import com.example.phonebook.model.PhoneNumber;
+import com.example.phonebook.util.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Автодополнение строки поиска по словам ФИО и номерам телефонов.
+ * <p>Варианты ранжируются по числу обращений (открытие контакта,
+ * определение номера), затем по числу контактов. Ответ берётся из заранее
+ * вычисленных лучших вариантов узла {@link SuggestionTrie}, поэтому время
+ * не зависит от размера справочника.</p>
+ * <p>Слова сравниваются в нормализованном виде ({@link TextNormalizer#foldName(String)}),
+ * номера — по нормализованному ключу ({@link TextNormalizer#digits(String)});
+ * набранная «8» в начале номера ищется и как «7». Методы потокобезопасны.</p>
+ * <p>Обращения учитываются без блокировки: {@link #recordLookup(String)} только
+ * увеличивает счётчик варианта, а в дерево накопленные счётчики переносятся
+ * пачкой перед ответом {@link #suggest(String, int)} и перед перестроением.
+ * Поэтому определение номера не ждёт автодополнения и не перестраивает дерево.</p>
+ */
+public final class Autocomplete {
+
+    /** Наибольшее количество вариантов в ответе */
+    public static final int MAX_SUGGESTIONS = SuggestionTrie.TOP_K;
+
+    private final SuggestionTrie trie = new SuggestionTrie();
+    private final Map<String, SuggestionTrie.Term> terms = new HashMap<>();
+
+    /** Обращения, ещё не перенесённые в дерево: ключ варианта — счётчик */
+    private final Map<String, LongAdder> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Заполняет варианты по записям индекса заново. Счётчики обращений
+     * сохраняются у вариантов, которые остались в справочнике.
+     * @param entries записи индекса
+     */
+    public synchronized void rebuild(Iterable<IndexedContact> entries) {
+        drainLookups();
+        Map<String, Long> lookups = new HashMap<>();
+        terms.forEach((key, term) -> {
+            if (term.lookups > 0) {
+                lookups.put(key, term.lookups);
+            }
+        });
+        terms.clear();
+        trie.clear();
+        for (IndexedContact e : entries) {
+            forEachTerm(e, (key, display, kind) -> {
+                SuggestionTrie.Term term = terms.get(key);
+                if (term == null) {
+                    term = new SuggestionTrie.Term(key, display, kind);
+                    term.lookups = lookups.getOrDefault(key, 0L);
+                    terms.put(key, term);
+                    trie.insert(term, true);
+                }
+                term.contacts++;
+            });
+        }
+        trie.recomputeAll();
+    }
+
+    /**
+     * Учитывает слова и номера добавленного контакта.
+     * @param entry запись индекса или {@code null}
+     */
+    public synchronized void add(IndexedContact entry) {
+        if (entry == null) {
+            return;
+        }
+        forEachTerm(entry, (key, display, kind) -> {
+            SuggestionTrie.Term term = terms.get(key);
+            if (term == null) {
+                term = new SuggestionTrie.Term(key, display, kind);
+                term.contacts = 1;
+                terms.put(key, term);
+                trie.insert(term, false);
+            } else {
+                term.contacts++;
+                trie.increased(term);
+            }
+        });
+    }
+
+    /**
+     * Убирает слова и номера удалённого контакта; варианты, которые больше
+     * ни у кого не встречаются, удаляются.
+     * @param entry запись индекса или {@code null}
+     */
+    public synchronized void remove(IndexedContact entry) {
+        if (entry == null) {
+            return;
+        }
+        forEachTerm(entry, (key, display, kind) -> {
+            SuggestionTrie.Term term = terms.get(key);
+            if (term == null) {
+                return;
+            }
+            if (--term.contacts <= 0) {
+                terms.remove(key);
+                trie.delete(term);
+            } else {
+                trie.decreased(term);
+            }
+        });
+    }
+
+    /**
+     * Учитывает обращение к контакту: поднимает в выдаче его слова и номера.
+     * Не блокирует; в выдаче обращение появится при следующем переносе счётчиков.
+     * @param entry запись индекса или {@code null}
+     */
+    public void recordLookup(IndexedContact entry) {
+        if (entry != null) {
+            forEachTerm(entry, (key, display, kind) -> recordLookup(key));
+        }
+    }
+
+    /**
+     * Учитывает обращение к номеру (например, определение входящего звонка).
+     * Не блокирует; в выдаче обращение появится при следующем переносе счётчиков.
+     * @param numberKey нормализованный номер
+     */
+    public void recordLookup(String numberKey) {
+        LongAdder counter = pending.get(numberKey);
+        if (counter == null) {
+            counter = pending.computeIfAbsent(numberKey, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * Возвращает лучшие варианты для строки поиска. Для строки, похожей на номер,
+     * дополняется весь номер, для остальных — последнее слово.
+     * @param input строка поиска
+     * @param limit сколько вариантов нужно (не больше {@link #MAX_SUGGESTIONS})
+     * @return варианты, лучшие первыми; пустой список, если дополнять нечего
+     */
+    public synchronized List<Suggestion> suggest(String input, int limit) {
+        if (input == null || input.isBlank() || limit <= 0) {
+            return List.of();
+        }
+        drainLookups();
+        int k = Math.min(limit, MAX_SUGGESTIONS);
+        List<SuggestionTrie.Term> found;
+        if (TextNormalizer.isNumberLike(input)) {
+            String digits = TextNormalizer.digitsOnly(input);
+            found = trie.top(digits, k);
+            if (digits.charAt(0) == '8') {
+                found = merge(found, trie.top('7' + digits.substring(1), k), k);
+            }
+        } else {
+            String word = TextNormalizer.foldName(input.substring(lastWordStart(input)));
+            if (word.isEmpty()) {
+                return List.of();
+            }
+            found = trie.top(word, k);
+        }
+        List<Suggestion> result = new ArrayList<>(found.size());
+        for (SuggestionTrie.Term t : found) {
+            result.add(new Suggestion(t.display, t.kind, t.contacts, t.lookups));
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает количество вариантов.
+     * @return число различных слов и номеров
+     */
+    public synchronized int size() {
+        return terms.size();
+    }
+
+    /** Начало последнего слова строки: позиция после последнего символа, не являющегося буквой или цифрой */
+    static int lastWordStart(String input) {
+        int i = input.length();
+        while (i > 0 && Character.isLetterOrDigit(input.charAt(i - 1))) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Переносит накопленные обращения в дерево. Счётчики вариантов, которых
+     * больше нет, выбрасываются. Обращение, учтённое одновременно с переносом,
+     * может попасть в следующую пачку.
+     */
+    private void drainLookups() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, LongAdder> e : pending.entrySet()) {
+            SuggestionTrie.Term term = terms.get(e.getKey());
+            if (term == null) {
+                pending.remove(e.getKey());
+                continue;
+            }
+            long count = e.getValue().sumThenReset();
+            if (count > 0) {
+                term.lookups += count;
+                trie.increased(term);
+            }
+        }
+    }
+
+    private static List<SuggestionTrie.Term> merge(List<SuggestionTrie.Term> a, List<SuggestionTrie.Term> b, int k) {
+        List<SuggestionTrie.Term> all = new ArrayList<>(a);
+        for (SuggestionTrie.Term t : b) {
+            if (!all.contains(t)) {
+                all.add(t);
+            }
+        }
+        all.sort(SuggestionTrie.RANK);
+        return all.subList(0, Math.min(k, all.size()));
+    }
+
+    /** Перебирает различные слова ФИО и номера контакта */
+    private static void forEachTerm(IndexedContact entry, TermConsumer action) {
+        String name = entry.getSortName() == null ? "" : entry.getSortName();
+        List<String> seen = new ArrayList<>(6);
+        int start = -1;
+        for (int i = 0; i <= name.length(); i++) {
+            boolean letter = i < name.length() && Character.isLetterOrDigit(name.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                String word = name.substring(start, i);
+                String key = TextNormalizer.foldName(word);
+                if (!seen.contains(key)) {
+                    seen.add(key);
+                    action.accept(key, word, Suggestion.Kind.NAME);
+                }
+                start = -1;
+            }
+        }
+        for (String key : entry.getNumberKeys()) {
+            if (!key.isEmpty() && !seen.contains(key)) {
+                seen.add(key);
+                PhoneNumber phone = entry.phoneFor(key);
+                action.accept(key, phone == null ? key : phone.getNumber(), Suggestion.Kind.NUMBER);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface TermConsumer {
+        void accept(String key, String display, Suggestion.Kind kind);
+    }
+}
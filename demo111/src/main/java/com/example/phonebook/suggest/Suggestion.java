@@ -0,0 +1,85 @@
+package com.example.phonebook.suggest;
+
+/**
+ * Вариант автодополнения строки поиска: слово ФИО или номер телефона.
+ * Объект неизменяем и отражает вес варианта на момент запроса.
+ */
+public final class Suggestion {
+
+    /** Вид варианта */
+    public enum Kind {
+        /** Слово из ФИО */
+        NAME,
+        /** Номер телефона */
+        NUMBER
+    }
+
+    private final String text;
+    private final Kind kind;
+    private final int contactCount;
+    private final long lookupCount;
+
+    /**
+     * Создаёт вариант.
+     * @param text         текст для подстановки в строку поиска
+     * @param kind         вид варианта
+     * @param contactCount у скольких контактов встречается
+     * @param lookupCount  сколько раз запрашивался
+     */
+    public Suggestion(String text, Kind kind, int contactCount, long lookupCount) {
+        this.text = text;
+        this.kind = kind;
+        this.contactCount = contactCount;
+        this.lookupCount = lookupCount;
+    }
+
+    /**
+     * Возвращает текст варианта в том виде, в каком он записан у контакта.
+     * @return слово ФИО или номер
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Возвращает вид варианта.
+     * @return слово ФИО или номер
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Возвращает количество контактов с этим словом или номером.
+     * @return количество контактов
+     */
+    public int getContactCount() {
+        return contactCount;
+    }
+
+    /**
+     * Возвращает, сколько раз вариант запрашивался.
+     * @return количество обращений
+     */
+    public long getLookupCount() {
+        return lookupCount;
+    }
+
+    /**
+     * Подставляет вариант в строку поиска: номер заменяет строку целиком,
+     * слово ФИО — последнее (недописанное) слово строки.
+     * @param input текущая строка поиска
+     * @return строка поиска с подставленным вариантом
+     */
+    public String applyTo(String input) {
+        if (kind == Kind.NUMBER || input == null) {
+            return text;
+        }
+        return input.substring(0, Autocomplete.lastWordStart(input)) + text;
+    }
+
+    @Override
+    public String toString() {
+        return text + " (" + kind + ", контактов " + contactCount + ", обращений " + lookupCount + ")";
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.phonebook.suggest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Префиксное дерево вариантов автодополнения с заранее вычисленными
+ * лучшими вариантами в каждом узле.
+ * <p>Каждый внутренний узел хранит до {@link #TOP_K} лучших вариантов своего
+ * поддерева ({@link #RANK}), поэтому ответ на запрос — спуск по символам
+ * префикса и копирование готового массива; время не зависит от числа вариантов.
+ * Узлы создаются лениво (burst trie): пока вариантов с общим началом не больше
+ * {@link #BURST}, они лежат в одном списке-корзине, который просматривается
+ * целиком, а при переполнении корзина разбивается по следующему символу.</p>
+ * <p>При росте веса варианта лучшие варианты узлов на его пути обновляются
+ * за {@code O(длина × TOP_K)}; при уменьшении и удалении пересчитываются
+ * только узлы, в лучших вариантах которых он был. Класс не потокобезопасен.</p>
+ */
+final class SuggestionTrie {
+
+    /** Сколько лучших вариантов хранит каждый узел */
+    static final int TOP_K = 10;
+
+    /** Размер корзины, после которого она разбивается на узлы */
+    static final int BURST = 32;
+
+    /** Порядок вариантов: чаще запрашиваемые, затем встречающиеся у большего числа контактов */
+    static final Comparator<Term> RANK = Comparator.comparingLong((Term t) -> -t.lookups)
+            .thenComparingInt(t -> -t.contacts)
+            .thenComparing(t -> t.key);
+
+    private static final Term[] NO_TERMS = new Term[0];
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private Node root = Node.bucket(0);
+
+    /**
+     * Вариант автодополнения и его вес.
+     */
+    static final class Term {
+        final String key;
+        final Suggestion.Kind kind;
+        String display;
+        int contacts;
+        long lookups;
+
+        Term(String key, String display, Suggestion.Kind kind) {
+            this.key = key;
+            this.display = display;
+            this.kind = kind;
+        }
+    }
+
+    private static final class Node {
+        final int depth;
+        /** Варианты с началом этого узла, пока узел — корзина; {@code null} у внутреннего узла */
+        List<Term> bucket;
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        /** Вариант, совпадающий с началом узла */
+        Term terminal;
+        Term[] top = NO_TERMS;
+
+        private Node(int depth) {
+            this.depth = depth;
+        }
+
+        static Node bucket(int depth) {
+            Node node = new Node(depth);
+            node.bucket = new ArrayList<>(4);
+            return node;
+        }
+
+        Node child(char ch) {
+            int i = Arrays.binarySearch(keys, ch);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node childOrCreate(char ch) {
+            int i = Arrays.binarySearch(keys, ch);
+            if (i >= 0) {
+                return children[i];
+            }
+            int at = -i - 1;
+            char[] k = new char[keys.length + 1];
+            Node[] c = new Node[children.length + 1];
+            System.arraycopy(keys, 0, k, 0, at);
+            System.arraycopy(children, 0, c, 0, at);
+            k[at] = ch;
+            c[at] = bucket(depth + 1);
+            System.arraycopy(keys, at, k, at + 1, keys.length - at);
+            System.arraycopy(children, at, c, at + 1, children.length - at);
+            keys = k;
+            children = c;
+            return c[at];
+        }
+    }
+
+    /** Удаляет все варианты */
+    void clear() {
+        root = Node.bucket(0);
+    }
+
+    /**
+     * Добавляет новый вариант.
+     * @param term    вариант, которого ещё нет в дереве
+     * @param deferTop {@code true} при массовой загрузке: лучшие варианты узлов
+     *                 не обновляются до вызова {@link #recomputeAll()}
+     */
+    void insert(Term term, boolean deferTop) {
+        Node node = root;
+        while (node.bucket == null) {
+            if (node.depth == term.key.length()) {
+                node.terminal = term;
+                break;
+            }
+            node = node.childOrCreate(term.key.charAt(node.depth));
+        }
+        if (node.bucket != null) {
+            node.bucket.add(term);
+            if (node.bucket.size() > BURST) {
+                burst(node, deferTop);
+            }
+        }
+        if (!deferTop) {
+            increased(term);
+        }
+    }
+
+    /**
+     * Учитывает рост веса варианта.
+     * @param term вариант, который есть в дереве
+     */
+    void increased(Term term) {
+        Node node = root;
+        while (node.bucket == null) {
+            offer(node, term);
+            if (node.depth == term.key.length()) {
+                return;
+            }
+            node = node.child(term.key.charAt(node.depth));
+        }
+    }
+
+    /**
+     * Учитывает уменьшение веса варианта.
+     * @param term вариант, который есть в дереве
+     */
+    void decreased(Term term) {
+        recomputePath(term);
+    }
+
+    /**
+     * Удаляет вариант.
+     * @param term вариант, который есть в дереве
+     */
+    void delete(Term term) {
+        Node node = root;
+        while (node.bucket == null && node.depth < term.key.length()) {
+            node = node.child(term.key.charAt(node.depth));
+        }
+        if (node.bucket != null) {
+            node.bucket.remove(term);
+        } else {
+            node.terminal = null;
+        }
+        recomputePath(term);
+    }
+
+    /** Пересчитывает лучшие варианты всех узлов после массовой загрузки */
+    void recomputeAll() {
+        recomputeSubtree(root);
+    }
+
+    /**
+     * Возвращает лучшие варианты, начинающиеся с префикса.
+     * @param prefix начало ключа
+     * @param limit  сколько вариантов нужно, не больше {@link #TOP_K}
+     * @return варианты в порядке {@link #RANK}
+     */
+    List<Term> top(String prefix, int limit) {
+        Node node = root;
+        while (node.bucket == null) {
+            if (node.depth == prefix.length()) {
+                return List.of(Arrays.copyOf(node.top, Math.min(limit, node.top.length)));
+            }
+            node = node.child(prefix.charAt(node.depth));
+            if (node == null) {
+                return List.of();
+            }
+        }
+        List<Term> matching = new ArrayList<>();
+        for (Term t : node.bucket) {
+            if (t.key.startsWith(prefix)) {
+                matching.add(t);
+            }
+        }
+        matching.sort(RANK);
+        return List.copyOf(matching.subList(0, Math.min(limit, matching.size())));
+    }
+
+    /** Разбивает переполненную корзину по следующему символу */
+    private void burst(Node node, boolean deferTop) {
+        List<Term> terms = node.bucket;
+        node.bucket = null;
+        for (Term t : terms) {
+            if (t.key.length() == node.depth) {
+                node.terminal = t;
+            } else {
+                node.childOrCreate(t.key.charAt(node.depth)).bucket.add(t);
+            }
+        }
+        for (Node child : node.children) {
+            if (child.bucket.size() > BURST) {
+                burst(child, deferTop);
+            }
+        }
+        if (!deferTop) {
+            recompute(node);
+        }
+    }
+
+    /** Ставит вариант в лучшие узла, если он туда проходит */
+    private static void offer(Node node, Term term) {
+        Term[] top = node.top;
+        for (Term t : top) {
+            if (t == term) {
+                Arrays.sort(top, RANK);
+                return;
+            }
+        }
+        if (top.length < TOP_K) {
+            top = Arrays.copyOf(top, top.length + 1);
+        } else if (RANK.compare(term, top[top.length - 1]) >= 0) {
+            return;
+        }
+        top[top.length - 1] = term;
+        Arrays.sort(top, RANK);
+        node.top = top;
+    }
+
+    /** Пересчитывает снизу вверх узлы на пути варианта, в лучших которых он был */
+    private void recomputePath(Term term) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        while (node != null && node.bucket == null) {
+            path.add(node);
+            node = node.depth < term.key.length() ? node.child(term.key.charAt(node.depth)) : null;
+        }
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node n = path.get(i);
+            if (!contains(n.top, term)) {
+                break;
+            }
+            recompute(n);
+        }
+    }
+
+    private static void recomputeSubtree(Node node) {
+        if (node.bucket != null) {
+            return;
+        }
+        for (Node child : node.children) {
+            recomputeSubtree(child);
+        }
+        recompute(node);
+    }
+
+    /** Собирает лучшие варианты узла из терминального варианта и лучших вариантов детей */
+    private static void recompute(Node node) {
+        List<Term> candidates = new ArrayList<>();
+        if (node.terminal != null) {
+            candidates.add(node.terminal);
+        }
+        for (Node child : node.children) {
+            if (child.bucket != null) {
+                candidates.addAll(child.bucket);
+            } else {
+                candidates.addAll(Arrays.asList(child.top));
+            }
+        }
+        candidates.sort(RANK);
+        node.top = candidates.subList(0, Math.min(TOP_K, candidates.size())).toArray(NO_TERMS);
+    }
+
+    private static boolean contains(Term[] terms, Term term) {
+        for (Term t : terms) {
+            if (t == term) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.phonebook.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Набор функций нормализации ФИО и телефонных номеров.
+ * <p>Нормализованные формы используются там, где нужно сравнивать
+ * данные независимо от способа записи: «+7 (931) 922-23-22» и «89319222322»
+ * приводятся к одному ключу, а «Иванов  Иван» и «иванов иван» — к одной строке.</p>
+ */
+public final class TextNormalizer {
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * Оставляет в номере только цифры.
+     * <p>Российские номера вида «8XXXXXXXXXX» приводятся к виду «7XXXXXXXXXX»,
+     * чтобы внутренняя и международная запись давали один ключ.</p>
+     * @param number номер телефона в произвольной записи
+     * @return строка из цифр; пустая строка, если цифр нет или номер {@code null}
+     */
+    public static String digits(String number) {
+        String digits = digitsOnly(number);
+        if (digits.length() == 11 && digits.charAt(0) == '8') {
+            return '7' + digits.substring(1);
+        }
+        return digits;
+    }
+
+    /**
+     * Оставляет в строке только цифры, не меняя их.
+     * В отличие от {@link #digits(String)} код страны не приводится,
+     * поэтому результат подходит для поиска по части номера.
+     * @param number номер телефона в произвольной записи
+     * @return строка из цифр; пустая строка, если цифр нет или номер {@code null}
+     */
+    public static String digitsOnly(String number) {
+        if (number == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(number.length());
+        for (int i = 0; i < number.length(); i++) {
+            char ch = number.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                sb.append(ch);
+            }
+        }
+        return sb.length() == number.length() ? number : sb.toString();
+    }
+
+    /**
+     * Проверяет, похожа ли строка на (часть) телефонного номера:
+     * содержит хотя бы одну цифру и, кроме цифр, только символы записи номера.
+     * @param text проверяемая строка
+     * @return {@code true}, если строку имеет смысл искать среди номеров
+     */
+    public static boolean isNumberLike(String text) {
+        boolean digit = false;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                digit = true;
+            } else if ("+-()./ ".indexOf(ch) < 0 && !Character.isWhitespace(ch)) {
+                return false;
+            }
+        }
+        return digit;
+    }
+
+    /**
+     * Приводит ФИО к нижнему регистру, заменяет «ё» на «е»
+     * и схлопывает повторяющиеся пробелы.
+     * @param fullName ФИО абонента
+     * @return нормализованное ФИО; пустая строка для {@code null}
+     */
+    public static String foldName(String fullName) {
+        if (fullName == null) {
+            return "";
+        }
+        String lower = fullName.toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(lower.length());
+        boolean space = false;
+        for (int i = 0; i < lower.length(); i++) {
+            char ch = lower.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                space = sb.length() > 0;
+                continue;
+            }
+            if (space) {
+                sb.append(' ');
+                space = false;
+            }
+            sb.append(ch == 'ё' ? 'е' : ch);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Разбивает ФИО на нормализованные слова.
+     * Разделителями считаются любые символы, кроме букв и цифр.
+     * @param fullName ФИО абонента
+     * @return список слов в порядке следования
+     */
+    public static List<String> nameTokens(String fullName) {
+        String folded = foldName(fullName);
+        List<String> tokens = new ArrayList<>(3);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean letter = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                tokens.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
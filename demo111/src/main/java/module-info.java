@@ -6,6 +6,9 @@ module com.example.phonebook {
     // Log4j2
     requires org.apache.logging.log4j;
 
+    // Flight Recorder: собственные события
+    requires jdk.jfr;
+
     opens com.example.phonebook to javafx.fxml;
     opens com.example.phonebook.model to javafx.base;
     opens com.example.phonebook.storage to javafx.base;
@@ -15,5 +18,15 @@ module com.example.phonebook {
     exports com.example.phonebook;
     exports com.example.phonebook.model;
     exports com.example.phonebook.storage;
+    exports com.example.phonebook.storage.lsm;
     exports com.example.phonebook.service;
+    exports com.example.phonebook.dedup;
+    exports com.example.phonebook.util;
+    exports com.example.phonebook.replication;
+    exports com.example.phonebook.index;
+    exports com.example.phonebook.query;
+    exports com.example.phonebook.suggest;
+    exports com.example.phonebook.cache;
+    exports com.example.phonebook.diagnostics;
+    exports com.example.phonebook.server;
 }
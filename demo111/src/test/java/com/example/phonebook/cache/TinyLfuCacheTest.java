@@ -0,0 +1,134 @@
+package com.example.phonebook.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для класса {@link TinyLfuCache}.
+ * <p>
+ * Проверяются:
+ * <ul>
+ *     <li>ограничение размера;</li>
+ *     <li>защита популярных ключей от вытеснения потоком разовых ключей;</li>
+ *     <li>инвалидация и статистика попаданий;</li>
+ *     <li>чтение и запись из нескольких потоков.</li>
+ * </ul>
+ */
+class TinyLfuCacheTest {
+
+    /**
+     * Размер кэша никогда не превышает ёмкость.
+     */
+    @Test
+    void sizeIsBounded() {
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<>(100);
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(i, "v" + i);
+        }
+        assertTrue(cache.stats().getSize() <= 100);
+        assertTrue(cache.stats().getEvictions() >= 9_900);
+    }
+
+    /**
+     * Часто запрашиваемые ключи остаются в кэше, даже если после них
+     * прошёл длинный поток ключей, запрошенных по одному разу.
+     */
+    @Test
+    void frequentKeysSurviveScan() {
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<>(100);
+        for (int round = 0; round < 20; round++) {
+            for (int hot = 0; hot < 50; hot++) {
+                if (cache.get(hot) == null) {
+                    cache.put(hot, "hot" + hot);
+                }
+            }
+        }
+        for (int cold = 1_000; cold < 11_000; cold++) {
+            if (cache.get(cold) == null) {
+                cache.put(cold, "cold" + cold);
+            }
+        }
+
+        int survived = 0;
+        for (int hot = 0; hot < 50; hot++) {
+            if (cache.get(hot) != null) {
+                survived++;
+            }
+        }
+        assertTrue(survived >= 45, "Популярных ключей осталось: " + survived);
+    }
+
+    /**
+     * Инвалидированный ключ больше не находится, а статистика учитывает
+     * попадания и промахи.
+     */
+    @Test
+    void invalidateAndStats() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(10);
+        cache.put("79319222322", "Иванов");
+
+        assertEquals("Иванов", cache.get("79319222322"));
+        cache.invalidate("79319222322");
+        assertNull(cache.get("79319222322"));
+
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getInvalidations());
+        assertEquals(0.5, stats.getHitRate());
+    }
+
+    /**
+     * Потоки читают и заполняют кэш одновременно: каждое чтение учтено
+     * в статистике, размер ограничен, а популярные ключи остаются в кэше.
+     */
+    @Test
+    void concurrentReadsAndWrites() throws InterruptedException {
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<>(200);
+        int threads = 8;
+        int reads = 50_000;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            Thread w = new Thread(() -> {
+                try {
+                    for (int i = 0; i < reads; i++) {
+                        // каждое второе обращение — к одному из 20 популярных ключей
+                        int key = i % 2 == 0 ? i / 2 % 20 : 1_000 + (i * 31 + seed * 7_919) % 100_000;
+                        String value = cache.get(key);
+                        if (value == null) {
+                            cache.put(key, "v" + key);
+                        } else if (!value.equals("v" + key)) {
+                            throw new AssertionError("Чужое значение для " + key + ": " + value);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            workers.add(w);
+            w.start();
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+        assertNull(failure.get());
+
+        CacheStats stats = cache.stats();
+        assertEquals((long) threads * reads, stats.getHits() + stats.getMisses());
+        assertTrue(stats.getSize() <= 200);
+        int survived = 0;
+        for (int hot = 0; hot < 20; hot++) {
+            if (cache.get(hot) != null) {
+                survived++;
+            }
+        }
+        assertTrue(survived >= 18, "Популярных ключей осталось: " + survived);
+    }
+}
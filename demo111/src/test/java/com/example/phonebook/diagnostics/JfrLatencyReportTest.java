@@ -0,0 +1,80 @@
+package com.example.phonebook.diagnostics;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.service.PhonebookService;
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для класса {@link JfrLatencyReport}.
+ * <p>
+ * Проверяются:
+ * <ul>
+ *     <li>запись событий справочника в JFR и их чтение анализатором;</li>
+ *     <li>вычисление перцентилей.</li>
+ * </ul>
+ */
+class JfrLatencyReportTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Операции сервиса и хранилища попадают в запись и группируются
+     * по событию и операции.
+     */
+    @Test
+    void serviceEventsAreRecordedAndReported() throws Exception {
+        Path file = tempDir.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(SearchEvent.NAME).withoutThreshold();
+            recording.enable(MutationEvent.NAME).withoutThreshold();
+            recording.enable(StorageEvent.NAME).withoutThreshold();
+            recording.start();
+
+            PhonebookService service = new PhonebookService(tempDir.resolve("phonebook.bin"));
+            service.addContact(new Contact("Иванов Иван"));
+            service.addContact(new Contact("Петров Пётр"));
+            for (int i = 0; i < 10; i++) {
+                service.search("Иван");
+            }
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        Map<String, List<Long>> durations = JfrLatencyReport.read(file);
+        assertEquals(10, durations.get("Поиск контактов").size());
+        assertEquals(2, durations.get("Изменение справочника / ADD").size());
+        assertEquals(2, durations.get("Файл справочника / SAVE").size());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JfrLatencyReport.print(durations, new PrintStream(out, true, StandardCharsets.UTF_8));
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("Поиск контактов"));
+    }
+
+    /**
+     * Перцентиль вычисляется методом ближайшего ранга.
+     */
+    @Test
+    void percentileUsesNearestRank() {
+        long[] sorted = new long[100];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i + 1;
+        }
+        assertEquals(50, JfrLatencyReport.percentile(sorted, 50));
+        assertEquals(99, JfrLatencyReport.percentile(sorted, 99));
+        assertEquals(100, JfrLatencyReport.percentile(sorted, 99.9));
+        assertEquals(7, JfrLatencyReport.percentile(new long[]{7}, 50));
+    }
+}
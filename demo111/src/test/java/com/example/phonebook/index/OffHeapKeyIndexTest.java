@@ -0,0 +1,187 @@
+package com.example.phonebook.index;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.model.PhoneNumber;
+import com.example.phonebook.model.PhoneType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты индекса ключей вне кучи: {@link OffHeapKeyIndex}
+ * и его использование в {@link ContactIndex}.
+ * <p>
+ * Проверяются:
+ * <ul>
+ *     <li>совпадение поиска номера и выборок по началу номера и слова
+ *     с полным перебором после добавлений, удалений и замен;</li>
+ *     <li>сохранение в файл и повторное использование после перезапуска;</li>
+ *     <li>номера длиннее ключа и работа с закрытым индексом.</li>
+ * </ul>
+ */
+class OffHeapKeyIndexTest {
+
+    private static final String[] SURNAMES = {"Иванов", "Петров", "Сидоров", "Смирнов", "Ивашкин", "Попов"};
+    private static final String[] NAMES = {"Иван", "Пётр", "Ия", "Анна", "Мария", "Алексей"};
+    private static final String[] CODES = {"495", "499", "812", "931", "911"};
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * После случайных изменений (с многократным слиянием упорядоченных массивов)
+     * индекс отвечает так же, как просмотр всех записей.
+     */
+    @Test
+    void matchesBruteForce() {
+        Random random = new Random(5);
+        List<Contact> contacts = generate(4_000, random);
+        ContactIndex index = new ContactIndex();
+        index.rebuild(contacts);
+        for (int i = 0; i < 6_000; i++) {
+            int at = random.nextInt(contacts.size());
+            Contact victim = contacts.get(at);
+            int action = random.nextInt(3);
+            if (action == 0) {
+                contacts.addAll(generate(1, random));
+                index.add(contacts.get(contacts.size() - 1));
+            } else if (action == 1 && index.contains(victim)) {
+                index.remove(victim);
+            } else if (index.contains(victim)) {
+                Contact updated = generate(1, random).get(0);
+                contacts.set(at, updated);
+                index.replace(victim, updated);
+            }
+        }
+
+        for (String prefix : List.of("7", "8", "7495", "7812111", "749900", "79310000000", "1")) {
+            assertEquals(bruteNumbers(index, prefix), index.selectNumberPrefix(prefix), prefix);
+            assertTrue(index.estimateNumberPrefix(prefix) >= bruteNumbers(index, prefix).getCardinality());
+        }
+        for (String fragment : List.of("и", "ив", "ия", "ива", "иван", "п", "алекс", "мария", "я")) {
+            RoaringBitmap expected = bruteWords(index, fragment);
+            RoaringBitmap actual = index.selectWordPrefix(fragment);
+            if (fragment.length() <= OffHeapKeyIndex.WORD_KEY_CHARS) {
+                assertEquals(expected, actual, fragment);
+            } else {
+                assertEquals(expected, RoaringBitmap.and(expected, actual), fragment);
+            }
+        }
+        assertNull(index.selectWordPrefix(" ив"));
+        assertEquals(-1, index.estimateWordPrefix("-"));
+
+        for (IndexedContact e : index.byInsertion(-1)) {
+            for (String key : e.getNumberKeys()) {
+                IndexedContact first = index.firstWithNumber(key);
+                assertNotNull(first, key);
+                assertTrue(first.getId() <= e.getId(), key);
+                assertNotNull(first.phoneFor(key), key);
+            }
+        }
+        assertNull(index.firstWithNumber("70000000000"));
+        assertNull(index.firstWithNumber(""));
+        index.close();
+    }
+
+    /**
+     * Индекс, открытый из файла, сохраняется при закрытии и после перезапуска
+     * не строится заново; повреждённый файл приводит к перестроению.
+     */
+    @Test
+    void survivesRestartThroughFile() throws IOException {
+        Path file = tempDir.resolve("phonebook.keys");
+        List<Contact> contacts = generate(3_000, new Random(8));
+        Contact longNumber = new Contact("Международный Абонент");
+        longNumber.addPhone(new PhoneNumber("+00 1234 5678 9012 3456", PhoneType.WORK));
+        contacts.add(longNumber);
+
+        ContactIndex index = new ContactIndex(OffHeapKeyIndex.open(file));
+        index.rebuild(contacts);
+        index.close();
+        assertTrue(Files.size(file) > 0);
+        assertThrows(IllegalStateException.class, () -> index.firstWithNumber("74951112233"));
+
+        ContactIndex restarted = new ContactIndex();
+        restarted.rebuild(contacts);
+        OffHeapKeyIndex keys = OffHeapKeyIndex.open(file);
+        assertEquals(contacts.size(), keys.size());
+        assertTrue(keys.rebuild(restarted.byInsertion(-1)));
+        // длинный номер попадает в каждую выборку по номеру
+        RoaringBitmap longIds = RoaringBitmap.of(contacts.size() - 1);
+        assertEquals(RoaringBitmap.or(bruteNumbers(restarted, "7931"), longIds), keys.selectNumberPrefix("7931"));
+        assertEquals(bruteWords(restarted, "пет"), keys.selectWordPrefix("пет"));
+        for (IndexedContact e : restarted.byInsertion(2_900)) {
+            for (String key : e.getNumberKeys()) {
+                if (key.length() <= OffHeapKeyIndex.MAX_NUMBER_DIGITS) {
+                    assertEquals(restarted.firstWithNumber(key).getId(), keys.firstWithNumber(key), key);
+                }
+            }
+        }
+        assertEquals(longIds, keys.selectNumberPrefix("001234567890123456"));
+        assertSame(longNumber, restarted.firstWithNumber("001234567890123456").getContact());
+
+        // другой состав справочника: индекс строится заново
+        restarted.remove(contacts.get(0));
+        assertFalse(keys.rebuild(restarted.byInsertion(-1)));
+        assertEquals(contacts.size() - 1, keys.size());
+        keys.close();
+
+        Files.write(file, new byte[]{1, 2, 3});
+        OffHeapKeyIndex damaged = OffHeapKeyIndex.open(file);
+        assertEquals(0, damaged.size());
+        assertFalse(damaged.rebuild(restarted.byInsertion(-1)));
+        assertEquals(RoaringBitmap.or(bruteNumbers(restarted, "7"), longIds), damaged.selectNumberPrefix("7"));
+        damaged.close();
+        damaged.close();
+    }
+
+    private static RoaringBitmap bruteNumbers(ContactIndex index, String prefix) {
+        RoaringBitmap result = new RoaringBitmap();
+        for (IndexedContact e : index.byInsertion(-1)) {
+            for (String key : e.getNumberKeys()) {
+                if (key.startsWith(prefix)) {
+                    result.add(e.getId());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static RoaringBitmap bruteWords(ContactIndex index, String fragment) {
+        RoaringBitmap result = new RoaringBitmap();
+        for (IndexedContact e : index.byInsertion(-1)) {
+            for (String word : e.getFoldedName().split("[^\\p{L}\\p{N}]+")) {
+                if (word.startsWith(fragment)) {
+                    result.add(e.getId());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static List<Contact> generate(int count, Random random) {
+        List<Contact> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String surname = SURNAMES[random.nextInt(SURNAMES.length)];
+            String name = NAMES[random.nextInt(NAMES.length)];
+            Contact c = new Contact(surname + " " + name);
+            int phones = random.nextInt(4);
+            for (int p = 0; p < phones; p++) {
+                // мало различных номеров: у разных контактов встречаются одинаковые
+                String number = String.format("%s (%s) %03d-%02d-%02d", random.nextBoolean() ? "+7" : "8",
+                        CODES[random.nextInt(CODES.length)], random.nextInt(3) * 111, random.nextInt(10), random.nextInt(100));
+                c.addPhone(new PhoneNumber(number, PhoneType.MOBILE));
+            }
+            result.add(c);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.phonebook.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для класса {@link RoaringBitmap}.
+ * <p>
+ * Проверяются:
+ * <ul>
+ *     <li>добавление и удаление в сравнении с {@link TreeSet};</li>
+ *     <li>переход блоков между списком и битовой картой;</li>
+ *     <li>пересечение и объединение.</li>
+ * </ul>
+ */
+class RoaringBitmapTest {
+
+    /**
+     * Случайные добавления и удаления в нескольких блоках дают то же множество,
+     * что и {@link TreeSet}.
+     */
+    @Test
+    void matchesTreeSet() {
+        Random random = new Random(42);
+        RoaringBitmap bitmap = new RoaringBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 50_000; i++) {
+            int value = random.nextInt(300_000);
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove(value), bitmap.remove(value));
+            } else {
+                assertEquals(expected.add(value), bitmap.add(value));
+            }
+        }
+
+        assertEquals(expected.size(), bitmap.getCardinality());
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), bitmap.toArray());
+        for (int value = 0; value < 300_000; value += 7) {
+            assertEquals(expected.contains(value), bitmap.contains(value));
+        }
+    }
+
+    /**
+     * Плотный блок превращается в битовую карту, а после удаления
+     * большей части чисел снова становится списком; содержимое не теряется.
+     */
+    @Test
+    void denseBlockSwitchesRepresentation() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int i = 0; i < 10_000; i++) {
+            bitmap.add(i);
+        }
+        assertEquals(10_000, bitmap.getCardinality());
+
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 100 != 0) {
+                bitmap.remove(i);
+            }
+        }
+        assertEquals(100, bitmap.getCardinality());
+        assertTrue(bitmap.contains(9_900));
+        assertFalse(bitmap.contains(9_901));
+
+        for (int i = 0; i < 10_000; i += 100) {
+            bitmap.remove(i);
+        }
+        assertTrue(bitmap.isEmpty());
+    }
+
+    /**
+     * Пересечение и объединение совпадают с операциями над {@link TreeSet}
+     * для разреженных и плотных блоков и не меняют исходные множества.
+     */
+    @Test
+    void andOr() {
+        Random random = new Random(7);
+        RoaringBitmap a = new RoaringBitmap();
+        RoaringBitmap b = new RoaringBitmap();
+        TreeSet<Integer> setA = new TreeSet<>();
+        TreeSet<Integer> setB = new TreeSet<>();
+        for (int i = 0; i < 20_000; i++) {
+            // первый блок плотный у обоих, остальные разреженные
+            int va = i < 10_000 ? random.nextInt(65_536) : random.nextInt(1_000_000);
+            int vb = i < 10_000 ? random.nextInt(65_536) : random.nextInt(1_000_000);
+            a.add(va);
+            setA.add(va);
+            b.add(vb);
+            setB.add(vb);
+        }
+        RoaringBitmap copyA = a.copy();
+
+        TreeSet<Integer> and = new TreeSet<>(setA);
+        and.retainAll(setB);
+        TreeSet<Integer> or = new TreeSet<>(setA);
+        or.addAll(setB);
+
+        assertArrayEquals(and.stream().mapToInt(Integer::intValue).toArray(), RoaringBitmap.and(a, b).toArray());
+        assertArrayEquals(or.stream().mapToInt(Integer::intValue).toArray(), RoaringBitmap.or(a, b).toArray());
+        assertEquals(copyA, a);
+        assertEquals(RoaringBitmap.of(3, 5), RoaringBitmap.and(RoaringBitmap.of(1, 3, 5), RoaringBitmap.of(3, 5, 70_000)));
+    }
+}
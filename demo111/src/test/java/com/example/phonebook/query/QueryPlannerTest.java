@@ -0,0 +1,198 @@
+package com.example.phonebook.query;
+
+import com.example.phonebook.index.ContactIndex;
+import com.example.phonebook.index.IndexedContact;
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.model.PhoneNumber;
+import com.example.phonebook.model.PhoneType;
+import com.example.phonebook.service.PhonebookService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты языка запросов: {@link QueryParser}, {@link QueryPlanner} и {@link QueryPlan}.
+ * <p>
+ * Проверяются:
+ * <ul>
+ *     <li>разбор, приоритет операций и сообщения об ошибках;</li>
+ *     <li>выбор самого избирательного индекса и полный просмотр без индекса;</li>
+ *     <li>совпадение результатов плана с проверкой всех контактов;</li>
+ *     <li>{@code EXPLAIN} через сервис.</li>
+ * </ul>
+ */
+class QueryPlannerTest {
+
+    private static final String[] SURNAMES = {"Иванов", "Петров", "Сидоров", "Смирнов", "Кузнецов", "Попов"};
+    private static final String[] NAMES = {"Иван", "Пётр", "Сергей", "Анна", "Мария", "Алексей"};
+    private static final String[] CODES = {"495", "499", "812", "931", "911"};
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Запрос разбирается с учётом приоритета {@code NOT > AND > OR}
+     * и записывается обратно в нормализованном виде.
+     */
+    @Test
+    void parsesPrecedenceAndNormalizes() {
+        Query query = QueryParser.parse("EXPLAIN Name:Иван* type:мобильный OR NOT number:\"^+7 (495)\" phones:3+");
+
+        assertTrue(query.isExplain());
+        Condition.Or or = assertInstanceOf(Condition.Or.class, query.getCondition());
+        assertEquals(2, or.operands().size());
+        assertEquals("name:иван* AND type:MOBILE OR NOT number:^7495 AND phones:3+",
+                query.getCondition().toString());
+        assertEquals("name:\"иванов иван\" AND (number:922 OR name:922)",
+                QueryParser.parse("name:\"Иванов  Иван\" (number:922 OR name:922)").toString());
+        assertEquals("name:иван OR number:922", QueryParser.parse("\"иван\" OR number:\"9-22\"").toString());
+        assertEquals("name:922 OR number:922", QueryParser.parse("922").toString());
+    }
+
+    /**
+     * Ошибки разбора сообщают позицию.
+     */
+    @Test
+    void reportsSyntaxErrors() {
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("  "));
+        assertTrue(assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("name:иван AND"))
+                .getMessage().contains("позиция 14"));
+        assertTrue(assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("type:SATELLITE"))
+                .getMessage().contains("SATELLITE"));
+        assertTrue(assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("email:a"))
+                .getMessage().contains("email"));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("(name:иван"));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("name:иван)"));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("phones:4"));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("number:^abc"));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("name:\"иван"));
+    }
+
+    /**
+     * Для {@code AND} выбирается самый избирательный индекс, для {@code OR} —
+     * объединение, а без применимого индекса — полный просмотр.
+     */
+    @Test
+    void choosesMostSelectiveIndex() {
+        ContactIndex index = new ContactIndex();
+        index.rebuild(generate(2_000, 1));
+        QueryPlanner planner = new QueryPlanner(index);
+
+        QueryPlan byNumber = planner.plan(QueryParser.parse("type:MOBILE AND number:^7495111"));
+        assertEquals(AccessPath.Kind.NUMBER_KEYS, byNumber.getAccess().getKind());
+        assertTrue(byNumber.getRejected().stream().anyMatch(p -> p.getKind() == AccessPath.Kind.TYPE_BITMAP));
+        assertTrue(byNumber.getRejected().stream().anyMatch(p -> p.getKind() == AccessPath.Kind.FULL_SCAN));
+
+        QueryPlan byName = planner.plan(QueryParser.parse("name:смирнов AND type:HOME"));
+        assertEquals(AccessPath.Kind.NAME_GRAMS, byName.getAccess().getKind());
+
+        QueryPlan union = planner.plan(QueryParser.parse("type:FAX OR number:^7812"));
+        assertEquals(AccessPath.Kind.UNION, union.getAccess().getKind());
+        assertEquals(2, union.getAccess().getInputs().size());
+
+        assertEquals(AccessPath.Kind.NAME_KEYS, planner.plan(QueryParser.parse("name:с*")).getAccess().getKind());
+        assertEquals(AccessPath.Kind.FULL_SCAN, planner.plan(QueryParser.parse("name:ив")).getAccess().getKind());
+        assertEquals(AccessPath.Kind.FULL_SCAN, planner.plan(QueryParser.parse("NOT type:FAX")).getAccess().getKind());
+        assertEquals(AccessPath.Kind.FULL_SCAN, planner.plan(QueryParser.parse("number:922")).getAccess().getKind());
+
+        String explain = byNumber.explain();
+        assertTrue(explain.contains("Ключи номеров number:^7495111"), explain);
+        assertTrue(explain.contains("Отклонено:"), explain);
+        assertTrue(explain.contains("Полный просмотр — строк 2000, стоимость 2000"), explain);
+    }
+
+    /**
+     * Результат выполнения плана совпадает с проверкой условия на каждом
+     * контакте, в том числе после изменений индекса.
+     */
+    @Test
+    void planResultsMatchFullCheck() {
+        List<Contact> contacts = generate(3_000, 2);
+        ContactIndex index = new ContactIndex();
+        index.rebuild(contacts);
+        Random random = new Random(3);
+        for (int i = 0; i < 500; i++) {
+            Contact victim = contacts.get(random.nextInt(contacts.size()));
+            if (index.contains(victim)) {
+                index.remove(victim);
+            }
+        }
+        for (Contact c : generate(300, 4)) {
+            index.add(c);
+        }
+
+        String[] queries = {
+                "name:иван*", "name:иван", "name:ван", "name:\"петров ан\"", "name:ов*",
+                "ив*", "type:MOBILE", "type:WORK AND number:^7495", "number:^7812 OR number:^7911",
+                "phones:0", "phones:2 AND name:мари*", "phones:3+", "NOT type:HOME AND name:смир*",
+                "(type:FAX OR type:HOME) AND number:^79", "931", "number:^749511", "name:сидоров* AND phones:1",
+                "name:а*", "name:\"мар\"* OR type:FAX",
+        };
+        QueryPlanner planner = new QueryPlanner(index);
+        for (String text : queries) {
+            Query query = QueryParser.parse(text);
+            List<Contact> expected = new ArrayList<>();
+            for (IndexedContact e : index.byInsertion(-1)) {
+                if (query.getCondition().matches(e)) {
+                    expected.add(e.getContact());
+                }
+            }
+            List<Contact> actual = planner.plan(query).execute();
+            assertEquals(expected.size(), actual.size(), text);
+            for (int i = 0; i < expected.size(); i++) {
+                assertSame(expected.get(i), actual.get(i), text);
+            }
+        }
+    }
+
+    /**
+     * Сервис выполняет запрос, а с {@code EXPLAIN} только возвращает план.
+     */
+    @Test
+    void serviceQueryAndExplain() {
+        PhonebookService service = new PhonebookService(tempDir.resolve("phonebook.bin"));
+        Contact ivanov = new Contact("Иванов Иван Иванович");
+        ivanov.addPhone(new PhoneNumber("+7 (495) 111-22-33", PhoneType.MOBILE));
+        Contact ivanova = new Contact("Иванова Анна");
+        ivanova.addPhone(new PhoneNumber("8 (812) 111-22-33", PhoneType.MOBILE));
+        service.addContact(ivanov);
+        service.addContact(ivanova);
+
+        QueryResult result = service.query("name:иван* AND type:MOBILE AND number:^7495");
+        assertFalse(result.isExplain());
+        assertEquals(List.of(ivanov), result.getContacts());
+
+        QueryResult explained = service.query("EXPLAIN name:иван* AND type:MOBILE AND number:^7495");
+        assertTrue(explained.isExplain());
+        assertTrue(explained.getContacts().isEmpty());
+        assertTrue(explained.getPlan().explain().startsWith("Запрос: name:иван* AND type:MOBILE AND number:^7495"));
+    }
+
+    private static List<Contact> generate(int count, long seed) {
+        Random random = new Random(seed);
+        PhoneType[] types = PhoneType.values();
+        List<Contact> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String surname = SURNAMES[random.nextInt(SURNAMES.length)];
+            String name = NAMES[random.nextInt(NAMES.length)];
+            boolean female = name.endsWith("а") || name.endsWith("я");
+            Contact c = new Contact(surname + (female ? "а " : " ") + name);
+            int phones = random.nextInt(4);
+            for (int p = 0; p < phones; p++) {
+                String number = String.format("%s (%s) %03d-%02d-%02d", random.nextBoolean() ? "+7" : "8",
+                        CODES[random.nextInt(CODES.length)], random.nextInt(1000), random.nextInt(100), random.nextInt(100));
+                // тип факса встречается редко
+                PhoneType type = random.nextInt(20) == 0 ? PhoneType.FAX : types[random.nextInt(types.length - 1)];
+                c.addPhone(new PhoneNumber(number, type));
+            }
+            result.add(c);
+        }
+        return result;
+    }
+}
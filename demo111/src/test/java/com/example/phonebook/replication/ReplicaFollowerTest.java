@@ -0,0 +1,233 @@
+package com.example.phonebook.replication;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.model.PhoneNumber;
+import com.example.phonebook.model.PhoneType;
+import com.example.phonebook.service.PhonebookService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты репликации справочника через общий каталог журнала.
+ * <p>
+ * Проверяются:
+ * <ul>
+ *     <li>применение новых записей журнала репликой;</li>
+ *     <li>изменение именно того из контактов с одинаковым ФИО, что и на ведущем;</li>
+ *     <li>переход реплики через контрольную точку;</li>
+ *     <li>сохранение прежнего снимка, если контрольная точка не удалась;</li>
+ *     <li>догон по снимку после перезапуска ведущего экземпляра;</li>
+ *     <li>сохранение содержимого реплики, если снимок не прочитан;</li>
+ *     <li>запрет изменений и сохранения на реплике.</li>
+ * </ul>
+ */
+class ReplicaFollowerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private PhonebookService primary;
+    private Path journalDir;
+
+    @BeforeEach
+    void setUp() {
+        primary = new PhonebookService(tempDir.resolve("primary.bin"));
+        journalDir = tempDir.resolve("journal");
+    }
+
+    private Contact createContact(String name, String number) {
+        Contact c = new Contact(name);
+        c.addPhone(new PhoneNumber(number, PhoneType.MOBILE));
+        return c;
+    }
+
+    /**
+     * Реплика стартует со снимка и затем применяет добавление,
+     * изменение и удаление контактов из журнала.
+     */
+    @Test
+    void followerAppliesJournal() throws IOException {
+        primary.addContact(createContact("Иванов Иван", "+79319222322"));
+
+        try (JournalWriter writer = JournalWriter.open(journalDir, primary);
+             ReplicaFollower follower = new ReplicaFollower(journalDir)) {
+            assertEquals(1, follower.getService().getAllContacts().size());
+
+            Contact petrov = createContact("Петров Пётр", "+79110000001");
+            primary.addContact(petrov);
+            primary.updateContact(petrov, createContact("Петров Пётр Петрович", "+79110000001"));
+            primary.removeContact(new Contact("Иванов Иван"));
+
+            assertEquals(3, follower.poll());
+            assertEquals(writer.getLastSequence(), follower.getAppliedSequence());
+            assertEquals(1, follower.getService().getAllContacts().size());
+            assertEquals("Петров Пётр Петрович",
+                    follower.getService().getAllContacts().get(0).getFullName());
+        }
+    }
+
+    /**
+     * Из нескольких контактов с одним ФИО реплика изменяет и удаляет те же,
+     * что и ведущий экземпляр.
+     */
+    @Test
+    void followerKeepsNamesakesApart() throws IOException {
+        Contact first = createContact("Иванов Иван", "+79310000001");
+        Contact second = createContact("Иванов Иван", "+79310000002");
+        Contact third = createContact("Иванов Иван", "+79310000003");
+        primary.addContact(first);
+        primary.addContact(second);
+        primary.addContact(third);
+
+        try (JournalWriter writer = JournalWriter.open(journalDir, primary);
+             ReplicaFollower follower = new ReplicaFollower(journalDir)) {
+            primary.updateContact(third, createContact("Иванов Иван", "+79310000033"));
+            primary.removeContact(second);
+
+            assertEquals(2, follower.poll());
+            assertEquals(writer.getLastSequence(), follower.getAppliedSequence());
+            assertEquals(phones(primary), phones(follower.getService()));
+            assertEquals("[+79310000001, +79310000033]", phones(follower.getService()));
+        }
+    }
+
+    private static String phones(PhonebookService service) {
+        return service.getAllContacts().stream()
+                .map(c -> c.getPhones().get(0).getNumber())
+                .toList()
+                .toString();
+    }
+
+    /**
+     * Реплика переходит в новый сегмент после контрольной точки,
+     * а новая реплика стартует с последнего снимка.
+     */
+    @Test
+    void followerCrossesCheckpoint() throws IOException {
+        try (JournalWriter writer = JournalWriter.open(journalDir, primary);
+             ReplicaFollower follower = new ReplicaFollower(journalDir)) {
+            primary.addContact(createContact("Иванов Иван", "+79319222322"));
+            writer.checkpoint();
+            primary.addContact(createContact("Петров Пётр", "+79110000001"));
+
+            follower.poll();
+            assertEquals(2, follower.getService().getAllContacts().size());
+
+            try (ReplicaFollower fresh = new ReplicaFollower(journalDir)) {
+                assertEquals(1, fresh.getService().getAllContacts().size());
+                fresh.poll();
+                assertEquals(2, fresh.getService().getAllContacts().size());
+            }
+        }
+    }
+
+    /**
+     * Если снимок контрольной точки не записан, прежний снимок и сегменты
+     * остаются, и реплика продолжает читать журнал.
+     */
+    @Test
+    void failedCheckpointKeepsPreviousSnapshot() throws IOException {
+        try (JournalWriter writer = JournalWriter.open(journalDir, primary);
+             ReplicaFollower follower = new ReplicaFollower(journalDir)) {
+            long snapshot = follower.getAppliedSequence();
+            primary.addContact(createContact("Иванов Иван", "+79319222322"));
+
+            // на месте временного файла снимка — непустой каталог: запись не удастся
+            Path target = JournalFormat.snapshotFile(journalDir, writer.getLastSequence());
+            Path blocker = target.resolveSibling(target.getFileName() + ".tmp");
+            Files.createDirectories(blocker.resolve("busy"));
+            assertThrows(IOException.class, writer::checkpoint);
+            assertFalse(Files.exists(target));
+            assertTrue(Files.exists(JournalFormat.snapshotFile(journalDir, snapshot)));
+
+            primary.addContact(createContact("Петров Пётр", "+79110000001"));
+            assertEquals(2, follower.poll());
+            assertEquals(writer.getLastSequence(), follower.getAppliedSequence());
+            assertEquals(2, follower.getService().getAllContacts().size());
+        }
+    }
+
+    /**
+     * После перезапуска ведущего экземпляра реплика догоняет его по новому снимку.
+     */
+    @Test
+    void followerResyncsAfterPrimaryRestart() throws IOException {
+        ReplicaFollower follower;
+        try (JournalWriter writer = JournalWriter.open(journalDir, primary)) {
+            follower = new ReplicaFollower(journalDir);
+            primary.addContact(createContact("Иванов Иван", "+79319222322"));
+            assertEquals(writer.getLastSequence() - 1, follower.getAppliedSequence());
+        }
+        primary.addContact(createContact("Петров Пётр", "+79110000001"));
+
+        try (JournalWriter writer = JournalWriter.open(journalDir, primary)) {
+            follower.poll();
+            assertEquals(writer.getLastSequence(), follower.getAppliedSequence());
+            assertEquals(2, follower.getService().getAllContacts().size());
+        } finally {
+            follower.close();
+        }
+    }
+
+    /**
+     * Нечитаемый снимок не выдаётся за пустой справочник: реплика не запускается
+     * с него, а запущенная реплика сохраняет своё содержимое и повторяет загрузку.
+     */
+    @Test
+    void followerKeepsStateWhenSnapshotUnreadable() throws IOException {
+        primary.addContact(createContact("Сидоров Сидор", "+79120000000"));
+        ReplicaFollower follower;
+        try (JournalWriter writer = JournalWriter.open(journalDir, primary)) {
+            follower = new ReplicaFollower(journalDir);
+            assertEquals(writer.getLastSequence(), follower.getAppliedSequence());
+        }
+        primary.addContact(createContact("Петров Пётр", "+79110000001"));
+
+        try (JournalWriter writer = JournalWriter.open(journalDir, primary)) {
+            long applied = follower.getAppliedSequence();
+            Path snapshot = JournalFormat.snapshotFile(journalDir, writer.getLastSequence());
+            Files.write(snapshot, new byte[]{1, 2, 3});
+
+            assertThrows(IOException.class, () -> new ReplicaFollower(journalDir));
+            assertEquals(0, follower.poll());
+            assertEquals(applied, follower.getAppliedSequence());
+            assertEquals(1, follower.getService().getAllContacts().size());
+
+            writer.checkpoint();
+            follower.poll();
+            assertEquals(writer.getLastSequence(), follower.getAppliedSequence());
+            assertEquals(2, follower.getService().getAllContacts().size());
+        } finally {
+            follower.close();
+        }
+    }
+
+    /**
+     * Реплика открыта только для чтения.
+     */
+    @Test
+    void followerIsReadOnly() throws IOException {
+        try (JournalWriter writer = JournalWriter.open(journalDir, primary);
+             ReplicaFollower follower = new ReplicaFollower(journalDir)) {
+            assertThrows(IllegalStateException.class,
+                    () -> follower.getService().addContact(new Contact("Сидоров")));
+
+            // сохранение реплики не перезаписывает снимок ведущего экземпляра
+            Path snapshot = JournalFormat.snapshotFile(journalDir, follower.getAppliedSequence());
+            byte[] before = Files.readAllBytes(snapshot);
+            primary.addContact(createContact("Петров Пётр", "+79110000001"));
+            follower.poll();
+            assertEquals(writer.getLastSequence(), follower.getAppliedSequence());
+            follower.getService().save();
+            assertArrayEquals(before, Files.readAllBytes(snapshot));
+            assertFalse(Files.exists(snapshot.resolveSibling(snapshot.getFileName() + ".numbers")));
+        }
+    }
+}
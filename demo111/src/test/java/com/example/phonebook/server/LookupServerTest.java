@@ -0,0 +1,119 @@
+package com.example.phonebook.server;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.model.PhoneNumber;
+import com.example.phonebook.model.PhoneType;
+import com.example.phonebook.service.PhonebookService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для класса {@link LookupServer}.
+ * <p>
+ * Проверяются:
+ * <ul>
+ *     <li>ответы на найденный и ненайденный номер по TCP;</li>
+ *     <li>конвейерные запросы: ответы приходят по порядку;</li>
+ *     <li>запрос по UDP.</li>
+ * </ul>
+ */
+class LookupServerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private LookupServer server;
+    private InetSocketAddress tcpAddress;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        PhonebookService service = new PhonebookService(tempDir.resolve("phonebook.bin"));
+        Contact ivanov = new Contact("Иванов Иван Иванович");
+        ivanov.addPhone(new PhoneNumber("+7 (931) 922-23-22", PhoneType.MOBILE));
+        ivanov.addPhone(new PhoneNumber("+7 (495) 100-00-01", PhoneType.WORK));
+        service.addContact(ivanov);
+
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        server = new LookupServer(service, new InetSocketAddress(loopback, 0), new InetSocketAddress(loopback, 0));
+        tcpAddress = new InetSocketAddress(loopback, server.getTcpPort());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    /**
+     * Найденный номер возвращает ФИО и тип телефона, ненайденный — статус без ФИО.
+     */
+    @Test
+    void lookupOverTcp() throws Exception {
+        try (LookupClient client = new LookupClient(tcpAddress)) {
+            LookupResponse found = client.lookup("84951000001");
+            assertTrue(found.isFound());
+            assertEquals("Иванов Иван Иванович", found.getFullName());
+            assertEquals(PhoneType.WORK, found.getType());
+
+            LookupResponse missing = client.lookup("+79990000000");
+            assertEquals(LookupProtocol.STATUS_NOT_FOUND, missing.getStatus());
+            assertNull(missing.getFullName());
+            assertNull(missing.getType());
+        }
+    }
+
+    /**
+     * Запросы, отправленные подряд без ожидания, получают ответы в том же порядке,
+     * даже если их больше, чем помещается в буфер ответов сервера.
+     */
+    @Test
+    void pipelinedRequestsAreAnsweredInOrder() throws Exception {
+        int count = 5_000;
+        try (LookupClient client = new LookupClient(tcpAddress)) {
+            for (int i = 0; i < count; i++) {
+                client.send(i, i % 2 == 0 ? "+79319222322" : "+79990000000");
+            }
+            client.flush();
+            for (int i = 0; i < count; i++) {
+                LookupResponse r = client.receive();
+                assertEquals(i, r.getRequestId());
+                assertEquals(i % 2 == 0, r.isFound());
+            }
+        }
+    }
+
+    /**
+     * Одна датаграмма — один запрос и один ответ.
+     */
+    @Test
+    void lookupOverUdp() throws Exception {
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            channel.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getUdpPort()));
+            ByteBuffer request = ByteBuffer.allocate(64);
+            LookupProtocol.writeRequest(request, 42, "89319222322");
+            channel.write(request.flip());
+
+            ByteBuffer response = ByteBuffer.allocate(LookupProtocol.MAX_RESPONSE_BYTES);
+            channel.read(response);
+            response.flip();
+            int length = response.getShort() & 0xFFFF;
+            assertEquals(response.remaining(), length);
+            assertEquals(42, response.getInt());
+            assertEquals(LookupProtocol.STATUS_FOUND, response.get());
+            assertEquals(PhoneType.MOBILE, LookupProtocol.typeOf(response.get() & 0xFF));
+            byte[] name = new byte[response.remaining()];
+            response.get(name);
+            assertEquals("Иванов Иван Иванович", new String(name, StandardCharsets.UTF_8));
+        }
+    }
+}
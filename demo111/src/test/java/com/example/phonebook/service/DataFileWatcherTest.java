@@ -0,0 +1,142 @@
+package com.example.phonebook.service;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.model.PhoneNumber;
+import com.example.phonebook.model.PhoneType;
+import com.example.phonebook.storage.PhonebookStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты перезагрузки файла справочника, заменённого другой программой:
+ * <ul>
+ *     <li>применяются только различия, неизменные контакты остаются теми же объектами;</li>
+ *     <li>собственные сохранения приложения не перечитываются;</li>
+ *     <li>недописанный файл не стирает справочник;</li>
+ *     <li>фоновое наблюдение подхватывает атомарную замену файла.</li>
+ * </ul>
+ */
+class DataFileWatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+    private PhonebookStorage storage;
+    private PhonebookService service;
+    private DataFileWatcher watcher;
+    private final List<Mutation> received = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = tempDir.resolve("phonebook.bin");
+        storage = new PhonebookStorage(file);
+        service = new PhonebookService(storage);
+        service.batch(tx -> {
+            tx.add(contact("Иванов Иван", "+79000000001"));
+            tx.add(contact("Петров Пётр", "+79000000002"));
+            tx.add(contact("Сидоров Сидор", "+79000000003"));
+        });
+        service.addMutationListener(received::addAll);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        watcher.close();
+    }
+
+    /**
+     * Запускает наблюдатель. Тесты, вызывающие {@link DataFileWatcher#reloadNow()} сами,
+     * задают длинную паузу, чтобы фоновый поток не успел перечитать файл раньше.
+     */
+    private void startWatcher(Duration quietPeriod) throws IOException {
+        watcher = new DataFileWatcher(service, storage, quietPeriod);
+    }
+
+    @Test
+    void reloadAppliesOnlyDifferences() throws IOException {
+        startWatcher(Duration.ofMinutes(1));
+        Contact unchanged = service.getAllContacts().get(0);
+        writeExternally(List.of(
+                contact("Иванов Иван", "+79000000001"),
+                contact("Петров Пётр", "+79000000022"),
+                contact("Смирнов Семён", "+79000000004")));
+
+        assertEquals(3, watcher.reloadNow());
+
+        List<Mutation.Kind> kinds = received.stream().map(Mutation::getKind).toList();
+        assertEquals(List.of(Mutation.Kind.REMOVE, Mutation.Kind.UPDATE, Mutation.Kind.ADD), kinds);
+        // позиции позволяют реплике повторить изменения по порядку
+        assertEquals(List.of(2, 1, 2), received.stream().map(Mutation::getPosition).toList());
+        assertSame(unchanged, service.getAllContacts().get(0));
+        assertEquals(List.of("Иванов Иван", "Петров Пётр", "Смирнов Семён"),
+                service.getAllContacts().stream().map(Contact::getFullName).toList());
+        assertEquals("Петров Пётр", service.lookupNumber("+79000000022").orElseThrow().getContact().getFullName());
+        assertTrue(service.lookupNumber("+79000000002").isEmpty());
+        assertTrue(service.lookupNumber("+79000000003").isEmpty());
+        assertEquals(0, watcher.reloadNow());
+    }
+
+    @Test
+    void ownSavesAreNotReloaded() throws IOException {
+        startWatcher(Duration.ofMinutes(1));
+        service.addContact(contact("Козлов Кирилл", "+79000000005"));
+        received.clear();
+
+        assertEquals(0, watcher.reloadNow());
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void truncatedFileDoesNotClearPhonebook() throws IOException {
+        startWatcher(Duration.ofMinutes(1));
+        byte[] data = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(data, data.length / 2));
+
+        assertThrows(IOException.class, watcher::reloadNow);
+        assertEquals(3, service.getAllContacts().size());
+    }
+
+    @Test
+    void watcherPicksUpReplacedFile() throws Exception {
+        startWatcher(Duration.ofMillis(50));
+        List<Contact> replacement = new ArrayList<>(service.getAllContacts());
+        replacement.add(contact("Смирнов Семён", "+79000000004"));
+        writeExternally(replacement);
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (service.getAllContacts().size() != 4 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(4, service.getAllContacts().size());
+        assertEquals(1, received.size());
+        assertEquals(Mutation.Kind.ADD, received.get(0).getKind());
+    }
+
+    /** Записывает файл так, как это сделала бы другая программа: во временный файл и переименованием */
+    private void writeExternally(List<Contact> contacts) throws IOException {
+        Path tmp = tempDir.resolve("external.tmp");
+        new PhonebookStorage(tmp).save(contacts);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Contact contact(String name, String number) {
+        Contact c = new Contact(name);
+        c.addPhone(new PhoneNumber(number, PhoneType.MOBILE));
+        return c;
+    }
+}
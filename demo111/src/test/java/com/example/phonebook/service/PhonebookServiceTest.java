@@ -1,13 +1,20 @@
 package com.example.phonebook.service;
 
+import com.example.phonebook.dedup.DuplicateGroup;
+import com.example.phonebook.index.PhoneFilter;
 import com.example.phonebook.model.Contact;
 import com.example.phonebook.model.PhoneNumber;
 import com.example.phonebook.model.PhoneType;
+import com.example.phonebook.storage.PhonebookStorage;
+import com.example.phonebook.storage.lsm.LsmContactStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -21,6 +28,14 @@ import static org.junit.jupiter.api.Assertions.*;
  *     <li>сортировка по имени;</li>
  *     <li>поиск по имени;</li>
  *     <li>поиск по номеру телефона;</li>
+ *     <li>поиск и объединение дубликатов;</li>
+ *     <li>пакетные изменения и их откат, в том числе при ошибке хранилища;</li>
+ *     <li>постраничное чтение по курсору;</li>
+ *     <li>определение абонента по номеру и инвалидация кэша;</li>
+ *     <li>поиск с фильтром по типу, началу номера и количеству телефонов,
+ *     в том числе для номеров без типа;</li>
+ *     <li>фильтр номеров после удаления контакта и перезапуска;</li>
+ *     <li>работа поверх LSM-хранилища;</li>
  *     <li>корректная работа с временным файлом БД;</li>
  * </ul>
  * Каждый тест выполняется в отдельной временной директории
@@ -143,4 +158,383 @@ class PhonebookServiceTest {
         assertEquals(1, result.size());
         assertEquals("Иванов Иван Иванович", result.get(0).getFullName());
     }
+
+    /**
+     * Проверяет, что поиск по номеру сравнивает только цифры,
+     * а поиск по имени не зависит от регистра и буквы «ё».
+     */
+    @Test
+    void searchIgnoresNumberFormattingAndCase() {
+        service.addContact(createContact("Петров Пётр Петрович", "+7 (931) 922-23-21"));
+        service.addContact(createContact("Иванов Иван Иванович", "+79319222322"));
+
+        assertEquals(2, service.search("931 922").size());
+        assertEquals(1, service.search("(931)922-23-21").size());
+        assertEquals("Петров Пётр Петрович", service.search("ПЕТР").get(0).getFullName());
+    }
+
+    /**
+     * Проверяет, что дубликатами считаются контакты с одним номером
+     * в разной записи и контакты с переставленными словами ФИО.
+     */
+    @Test
+    void findDuplicatesBySameNumberAndReorderedName() {
+        service.addContact(createContact("Иванов Иван", "+7 (931) 922-23-22"));
+        service.addContact(createContact("Ваня Иванов", "89319222322"));
+        service.addContact(createContact("Петров Пётр", "+79110000001"));
+        service.addContact(createContact("Пётр Петров", "+79110000002"));
+        service.addContact(createContact("Сидоров Семён", "+79110000003"));
+
+        List<DuplicateGroup> groups = service.findDuplicates();
+
+        assertEquals(2, groups.size());
+        assertTrue(groups.get(0).getReasons().contains(DuplicateGroup.Reason.SAME_NUMBER));
+        assertTrue(groups.get(1).getReasons().contains(DuplicateGroup.Reason.SAME_NAME));
+    }
+
+    /**
+     * Проверяет, что общий номер семьи или коммутатора организации
+     * не делает разных людей дубликатами.
+     */
+    @Test
+    void sharedNumberAloneIsNotDuplicate() {
+        service.addContact(createContact("Иванов Иван", "+74950000001"));
+        service.addContact(createContact("Иванова Мария", "+74950000001"));
+        service.addContact(createContact("Иванов Пётр", "8 495 000-00-01"));
+        for (String name : List.of("Смирнов Алексей", "Кузнецова Ольга", "Попов Дмитрий", "Соколова Анна")) {
+            service.addContact(createContact(name, "+74950000100"));
+        }
+
+        assertTrue(service.findDuplicates().isEmpty());
+    }
+
+    /**
+     * Проверяет объединение группы: остаётся один контакт
+     * со всеми телефонами без повторов.
+     */
+    @Test
+    void mergeDuplicatesCombinesPhones() {
+        Contact first = createContact("Петров Пётр", "+79110000001");
+        Contact second = createContact("Пётр Петров", "8 911 000-00-01");
+        second.addPhone(new PhoneNumber("+74950000000", PhoneType.WORK));
+        service.addContact(first);
+        service.addContact(second);
+
+        int removed = service.mergeDuplicates(service.findDuplicates());
+
+        assertEquals(1, removed);
+        List<Contact> all = service.getAllContacts();
+        assertEquals(1, all.size());
+        assertEquals(2, all.get(0).getPhones().size());
+    }
+
+    /**
+     * Проверяет, что группа, контакт которой удалён после поиска дубликатов,
+     * не объединяется и не возвращает удалённый телефон.
+     */
+    @Test
+    void mergeDuplicatesSkipsStaleGroups() {
+        Contact first = createContact("Петров Пётр", "+79110000001");
+        Contact second = createContact("Пётр Петров", "+79110000002");
+        Contact third = createContact("Сидоров Семён", "+79110000003");
+        Contact fourth = createContact("Семён Сидоров", "+79110000004");
+        service.addContact(first);
+        service.addContact(second);
+        service.addContact(third);
+        service.addContact(fourth);
+        List<DuplicateGroup> groups = service.findDuplicates();
+        assertEquals(2, groups.size());
+
+        service.removeContact(second);
+
+        assertEquals(1, service.mergeDuplicates(groups));
+        assertEquals(2, service.getAllContacts().size());
+        assertTrue(service.lookupNumber("+79110000002").isEmpty());
+        assertEquals(2, service.lookupNumber("+79110000004").orElseThrow().getContact().getPhones().size());
+    }
+
+    /**
+     * Проверяет, что пакет изменений применяется целиком
+     * и сохраняется в файл.
+     */
+    @Test
+    void batchAppliesAllMutations() {
+        Contact petrov = createContact("Петров Пётр Петрович", "+79319222321");
+        service.addContact(petrov);
+
+        int applied = service.batch(tx -> {
+            tx.add(createContact("Иванов Иван Иванович", "+79319222322"));
+            tx.add(createContact("Сидоров Семён", "+79319222323"));
+            tx.remove(petrov);
+        });
+
+        assertEquals(3, applied);
+        assertEquals(2, service.getAllContacts().size());
+        assertEquals(2, new PhonebookService(tempDir.resolve("phonebook-test.bin")).getAllContacts().size());
+    }
+
+    /**
+     * Проверяет, что при исключении внутри пакета
+     * справочник возвращается в исходное состояние.
+     */
+    @Test
+    void batchRollsBackOnFailure() {
+        Contact petrov = createContact("Петров Пётр Петрович", "+79319222321");
+        Contact ivanov = createContact("Иванов Иван Иванович", "+79319222322");
+        service.addContact(petrov);
+        service.addContact(ivanov);
+
+        assertThrows(IllegalArgumentException.class, () -> service.batch(tx -> {
+            tx.remove(petrov);
+            tx.update(ivanov, createContact("Иванов Иван", "+79319222322"));
+            tx.add(createContact("Сидоров Семён", "+79319222323"));
+            throw new IllegalArgumentException("сбой сценария");
+        }));
+
+        assertEquals(List.of(petrov, ivanov), service.getAllContacts());
+        assertSame(ivanov, service.getAllContacts().get(1));
+    }
+
+    /**
+     * Если хранилище не сохранило изменение, оно отменяется в памяти и в индексе,
+     * а слушатели его не получают.
+     */
+    @Test
+    void failedPersistRollsBack() throws Exception {
+        Contact petrov = createContact("Петров Пётр Петрович", "+79319222321");
+        service.addContact(petrov);
+        List<List<Mutation>> notified = new ArrayList<>();
+        service.addMutationListener(notified::add);
+
+        // на месте файла — каталог: сохранить справочник не удастся
+        Path file = tempDir.resolve("phonebook-test.bin");
+        Files.delete(file);
+        Files.createDirectory(file);
+
+        Contact ivanov = createContact("Иванов Иван Иванович", "+79319222322");
+        assertThrows(UncheckedIOException.class, () -> service.addContact(ivanov));
+        assertThrows(UncheckedIOException.class, () -> service.batch(tx -> {
+            tx.remove(petrov);
+            tx.add(createContact("Сидоров Семён", "+79319222323"));
+        }));
+
+        assertEquals(List.of(petrov), service.getAllContacts());
+        assertEquals(List.of(petrov), service.search("79319222"));
+        assertTrue(service.lookupNumber("+79319222322").isEmpty());
+        assertTrue(notified.isEmpty());
+
+        // файл не сохранён, поэтому и фильтр номеров для него не записывается
+        service.close();
+        assertFalse(Files.exists(new PhonebookStorage(file).getNumberFilterPath()));
+    }
+
+    /**
+     * Проверяет постраничный обход по ФИО: страницы идут по алфавиту,
+     * а удаление уже выданного контакта не сдвигает следующую страницу.
+     */
+    @Test
+    void pageByNameWithCursor() {
+        service.addContact(createContact("Петров Пётр", "+79110000001"));
+        service.addContact(createContact("Иванов Иван", "+79110000002"));
+        service.addContact(createContact("Сидоров Семён", "+79110000003"));
+        Contact alexeev = createContact("Алексеев Алексей", "+79110000004");
+        service.addContact(alexeev);
+        service.addContact(createContact("Борисов Борис", "+79110000005"));
+
+        Page<Contact> first = service.page(null, 2, ContactSort.NAME, null);
+        assertEquals(List.of("Алексеев Алексей", "Борисов Борис"), names(first.getItems()));
+        assertTrue(first.hasNext());
+
+        service.removeContact(alexeev);
+
+        Page<Contact> second = service.page(first.getNextCursor(), 2, ContactSort.NAME, null);
+        assertEquals(List.of("Иванов Иван", "Петров Пётр"), names(second.getItems()));
+
+        Page<Contact> third = service.page(second.getNextCursor(), 2, ContactSort.NAME, null);
+        assertEquals(List.of("Сидоров Семён"), names(third.getItems()));
+        assertFalse(third.hasNext());
+    }
+
+    /**
+     * Проверяет постраничный обход в порядке справочника с фильтром.
+     */
+    @Test
+    void pageByInsertionWithFilter() {
+        for (int i = 0; i < 10; i++) {
+            service.addContact(createContact("Контакт " + i, "+7911000000" + i));
+        }
+
+        Page<Contact> first = service.page(null, 3, ContactSort.INSERTION, "+79110000");
+        assertEquals(List.of("Контакт 0", "Контакт 1", "Контакт 2"), names(first.getItems()));
+
+        Page<Contact> odd = service.page(first.getNextCursor(), 3, ContactSort.INSERTION, "Контакт 7");
+        assertEquals(List.of("Контакт 7"), names(odd.getItems()));
+        assertFalse(odd.hasNext());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.page(first.getNextCursor(), 3, ContactSort.NAME, null));
+    }
+
+    private static List<String> names(List<Contact> contacts) {
+        return contacts.stream().map(Contact::getFullName).toList();
+    }
+
+    /**
+     * Проверяет определение номера: запись номера не важна,
+     * повторный запрос обслуживается кэшем, а изменение телефонов
+     * контакта сразу отражается в результате, в том числе отрицательном.
+     */
+    @Test
+    void lookupNumberUsesCacheAndInvalidates() {
+        Contact ivanov = createContact("Иванов Иван Иванович", "+7 (931) 922-23-22");
+        service.addContact(ivanov);
+
+        assertEquals("Иванов Иван Иванович",
+                service.lookupNumber("89319222322").orElseThrow().getContact().getFullName());
+        assertEquals(PhoneType.MOBILE, service.lookupNumber("+79319222322").orElseThrow().getPhone().getType());
+        assertTrue(service.lookupNumber("+79110000001").isEmpty());
+        assertEquals(1, service.getCallerIdCacheStats().getHits());
+
+        Contact updated = createContact("Иванов Иван Иванович", "+79110000001");
+        service.updateContact(ivanov, updated);
+
+        assertTrue(service.lookupNumber("89319222322").isEmpty());
+        assertSame(updated, service.lookupNumber("+7 911 000-00-01").orElseThrow().getContact());
+    }
+
+    /**
+     * Поиск с фильтром отбирает контакты по типу номера, началу номера
+     * того же телефона и количеству телефонов и учитывает изменения.
+     */
+    @Test
+    void searchWithPhoneFilter() {
+        Contact ivanov = new Contact("Иванов Иван Иванович");
+        ivanov.addPhone(new PhoneNumber("+7 (495) 111-22-33", PhoneType.WORK));
+        ivanov.addPhone(new PhoneNumber("+7 (931) 922-23-22", PhoneType.MOBILE));
+        Contact petrov = new Contact("Петров Пётр Петрович");
+        petrov.addPhone(new PhoneNumber("8 (812) 000-00-01", PhoneType.WORK));
+        petrov.addPhone(new PhoneNumber("8 (495) 000-00-02", PhoneType.HOME));
+        Contact sidorov = createContact("Сидоров Сидор Сидорович", "+7 (495) 333-44-55");
+        service.addContact(ivanov);
+        service.addContact(petrov);
+        service.addContact(sidorov);
+
+        assertEquals(List.of(ivanov, petrov), service.search("", PhoneFilter.ofType(PhoneType.WORK)));
+        assertEquals(List.of(ivanov), service.search("", PhoneFilter.ofType(PhoneType.WORK).withPrefix("495")));
+        assertEquals(List.of(ivanov), service.search(null, PhoneFilter.ANY.withPrefix("4951")));
+        assertEquals(List.of(ivanov, petrov, sidorov), service.search(null, PhoneFilter.ANY.withPrefix("49")));
+        assertEquals(List.of(sidorov), service.search("", PhoneFilter.ANY.withPhoneCount(1)));
+        assertEquals(List.of(petrov), service.search("петров", PhoneFilter.ofType(PhoneType.WORK)));
+        assertTrue(service.search("", PhoneFilter.ofType(PhoneType.FAX)).isEmpty());
+        assertEquals(service.search("иван"), service.search("иван", PhoneFilter.ANY));
+
+        Contact fax = new Contact("Сидоров Сидор Сидорович");
+        fax.addPhone(new PhoneNumber("+7 (495) 333-44-56", PhoneType.FAX));
+        service.updateContact(sidorov, fax);
+        service.removeContact(ivanov);
+
+        assertEquals(List.of(fax), service.search("", PhoneFilter.ofType(PhoneType.FAX)));
+        assertTrue(service.search("", PhoneFilter.ofType(PhoneType.MOBILE)).isEmpty());
+        assertEquals(List.of(petrov, fax), service.search("", PhoneFilter.ANY.withPrefix("495")));
+    }
+
+    /**
+     * Номер без типа не ломает битовые индексы: контакт находится фильтром
+     * по началу номера и количеству телефонов, но не фильтром по типу.
+     */
+    @Test
+    void searchWithPhoneFilterAllowsUntypedNumber() {
+        Contact untyped = new Contact("Борисов Борис Борисович");
+        untyped.addPhone(new PhoneNumber("+7 (495) 777-88-99", null));
+        Contact typed = createContact("Петров Пётр Петрович", "+7 (495) 000-00-01");
+        service.addContact(untyped);
+        service.addContact(typed);
+
+        assertEquals(List.of(untyped, typed), service.getAllContacts());
+        assertEquals(List.of(untyped, typed), service.search("", PhoneFilter.ANY.withPrefix("495")));
+        assertEquals(List.of(untyped), service.search("", PhoneFilter.ANY.withPrefix("4957")));
+        assertEquals(List.of(untyped, typed), service.search("", PhoneFilter.ANY.withPhoneCount(1)));
+        assertEquals(List.of(typed), service.search("", PhoneFilter.ofType(PhoneType.MOBILE).withPrefix("49")));
+
+        service.removeContact(untyped);
+        assertEquals(List.of(typed), service.search("", PhoneFilter.ANY.withPrefix("495")));
+    }
+
+    /**
+     * Удалённый номер перестаёт находиться, а фильтр номеров,
+     * сохранённый рядом с файлом при закрытии, подхватывается при следующем запуске.
+     */
+    @Test
+    void lookupNumberAfterRemoveAndRestart() {
+        Contact ivanov = createContact("Иванов Иван Иванович", "+7 (931) 922-23-22");
+        Contact petrov = createContact("Петров Пётр Петрович", "+7 (911) 000-00-01");
+        service.addContact(ivanov);
+        service.addContact(petrov);
+        service.removeContact(ivanov);
+        assertTrue(service.lookupNumber("89319222322").isEmpty());
+
+        Path file = tempDir.resolve("phonebook-test.bin");
+        Path filter = new PhonebookStorage(file).getNumberFilterPath();
+        assertFalse(Files.exists(filter));
+        service.close();
+        assertTrue(Files.exists(filter));
+        PhonebookService restarted = new PhonebookService(file);
+        assertTrue(restarted.lookupNumber("89319222322").isEmpty());
+        assertEquals("Петров Пётр Петрович",
+                restarted.lookupNumber("89110000001").orElseThrow().getContact().getFullName());
+    }
+
+    /**
+     * Сервис поверх LSM-хранилища сохраняет каждое изменение, включая
+     * контакты с одинаковым ФИО, и видит их после перезапуска.
+     */
+    @Test
+    void lsmStorageKeepsChangesAcrossRestart() throws Exception {
+        Path dir = tempDir.resolve("lsm");
+        PhonebookService lsm = new PhonebookService(LsmContactStore.open(dir));
+        Contact first = createContact("Иванов Иван Иванович", "+79310000001");
+        Contact second = createContact("Иванов Иван Иванович", "+79310000002");
+        Contact petrov = createContact("Петров Пётр Петрович", "+79310000003");
+        lsm.batch(tx -> {
+            tx.add(first);
+            tx.add(second);
+            tx.add(petrov);
+        });
+        lsm.updateContact(petrov, createContact("Сидоров Пётр Петрович", "+79310000003"));
+        lsm.removeContact(first);
+        lsm.close();
+
+        PhonebookService restarted = new PhonebookService(LsmContactStore.open(dir));
+        List<Contact> all = restarted.getAllContacts();
+        assertEquals(2, all.size());
+        assertEquals("+79310000002", all.get(0).getPhones().get(0).getNumber());
+        assertEquals("Сидоров Пётр Петрович", all.get(1).getFullName());
+        restarted.close();
+    }
+
+    /**
+     * LSM-хранилище сохраняет порядок добавления, а не порядок ключей: изменённый
+     * контакт остаётся на месте, добавленный после перезапуска — в конце.
+     */
+    @Test
+    void lsmStorageKeepsInsertionOrderAcrossRestart() throws Exception {
+        Path dir = tempDir.resolve("lsm");
+        PhonebookService lsm = new PhonebookService(LsmContactStore.open(dir));
+        Contact abramov = createContact("Абрамов Антон Антонович", "+79310000002");
+        lsm.addContact(createContact("Сидоров Сидор Сидорович", "+79310000001"));
+        lsm.addContact(abramov);
+        lsm.addContact(createContact("Петров Пётр Петрович", "+79310000003"));
+        lsm.updateContact(abramov, createContact("Яковлев Антон Антонович", "+79310000002"));
+        lsm.close();
+
+        PhonebookService restarted = new PhonebookService(LsmContactStore.open(dir));
+        restarted.addContact(createContact("Борисов Борис Борисович", "+79310000004"));
+        restarted.close();
+
+        PhonebookService again = new PhonebookService(LsmContactStore.open(dir));
+        assertEquals(List.of("Сидоров Сидор Сидорович", "Яковлев Антон Антонович",
+                        "Петров Пётр Петрович", "Борисов Борис Борисович"),
+                again.getAllContacts().stream().map(Contact::getFullName).toList());
+        again.close();
+    }
 }
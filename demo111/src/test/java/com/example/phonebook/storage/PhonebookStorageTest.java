@@ -0,0 +1,146 @@
+package com.example.phonebook.storage;
+
+import com.example.phonebook.index.NumberFilter;
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.model.PhoneNumber;
+import com.example.phonebook.model.PhoneType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для класса {@link PhonebookStorage}.
+ * <p>
+ * Проверяются:
+ * <ul>
+ *     <li>сохранение и загрузка в сжатом блочном формате;</li>
+ *     <li>чтение несжатого файла хранилищем со сжатием и наоборот;</li>
+ *     <li>отказ от чтения повреждённого или обрезанного сжатого файла;</li>
+ *     <li>сохранение фильтра номеров и проверка его актуальности;</li>
+ * </ul>
+ */
+class PhonebookStorageTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Создаёт контакты, которых хватает на несколько блоков сжатого формата.
+     */
+    private List<Contact> createContacts(int count) {
+        List<Contact> contacts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Contact c = new Contact("Иванов Иван " + i);
+            c.addPhone(new PhoneNumber("+7931" + (1000000 + i), PhoneType.MOBILE));
+            c.addPhone(new PhoneNumber("+7495" + (2000000 + i), PhoneType.WORK));
+            contacts.add(c);
+        }
+        return contacts;
+    }
+
+    /**
+     * Сжатый файл читается обратно без потерь, с сохранением порядка,
+     * и занимает меньше места, чем несжатый.
+     */
+    @Test
+    void compressedRoundTrip() throws Exception {
+        List<Contact> contacts = createContacts(SnapshotCodec.BLOCK_SIZE * 2 + 17);
+        Path plain = tempDir.resolve("plain.bin");
+        Path packed = tempDir.resolve("packed.bin");
+
+        new PhonebookStorage(plain).save(contacts);
+        new PhonebookStorage(packed, 6).save(contacts);
+
+        List<Contact> loaded = new PhonebookStorage(packed, 6).load();
+        assertEquals(contacts, loaded);
+        assertEquals(contacts.get(5).getPhones(), loaded.get(5).getPhones());
+        assertTrue(Files.size(packed) < Files.size(plain) / 2);
+    }
+
+    /**
+     * Формат определяется по содержимому файла, а не по настройкам хранилища.
+     */
+    @Test
+    void formatIsDetectedOnLoad() {
+        List<Contact> contacts = createContacts(10);
+        Path plain = tempDir.resolve("plain.bin");
+        Path packed = tempDir.resolve("packed.bin");
+
+        new PhonebookStorage(plain).save(contacts);
+        new PhonebookStorage(packed, 1).save(contacts);
+
+        assertEquals(contacts, new PhonebookStorage(plain, 9).load());
+        assertEquals(contacts, new PhonebookStorage(packed).load());
+    }
+
+    /**
+     * Повреждённые длины и обрезанный сжатый файл дают пустой результат загрузки
+     * (как любой нечитаемый файл), а не исключение или выделение гигабайтов памяти.
+     */
+    @Test
+    void damagedCompressedFileIsRejected() throws Exception {
+        Path packed = tempDir.resolve("packed.bin");
+        new PhonebookStorage(packed, 6).save(createContacts(SnapshotCodec.BLOCK_SIZE + 1));
+        byte[] valid = Files.readAllBytes(packed);
+        PhonebookStorage storage = new PhonebookStorage(packed);
+
+        // смещения: количество блоков — 8, у первого блока число контактов — 12,
+        // длина до сжатия — 16, длина после сжатия — 20
+        int[][] damages = {{8, -1}, {8, Integer.MAX_VALUE}, {12, 0}, {12, SnapshotCodec.BLOCK_SIZE + 1},
+                {16, -5}, {16, Integer.MAX_VALUE}, {20, -1}, {20, Integer.MAX_VALUE}};
+        for (int[] damage : damages) {
+            byte[] bytes = valid.clone();
+            ByteBuffer.wrap(bytes).putInt(damage[0], damage[1]);
+            Files.write(packed, bytes);
+            assertTrue(storage.load().isEmpty(), "смещение " + damage[0] + ": " + damage[1]);
+        }
+
+        Files.write(packed, Arrays.copyOf(valid, valid.length / 2));
+        assertTrue(storage.load().isEmpty());
+        Files.write(packed, valid);
+        assertEquals(SnapshotCodec.BLOCK_SIZE + 1, storage.load().size());
+    }
+
+    /**
+     * Фильтр номеров читается обратно, пока файл данных не изменился,
+     * и считается устаревшим после перезаписи файла данных, даже если размер
+     * и время изменения файла данных остались прежними.
+     */
+    @Test
+    void numberFilterIsValidatedAgainstDataFile() throws Exception {
+        Path file = tempDir.resolve("phonebook.bin");
+        PhonebookStorage storage = new PhonebookStorage(file);
+        assertNull(storage.loadNumberFilter());
+
+        storage.save(createContacts(10));
+        NumberFilter filter = NumberFilter.withCapacity(10);
+        filter.add("79311000003");
+        storage.saveNumberFilter(filter);
+
+        NumberFilter loaded = new PhonebookStorage(file).loadNumberFilter();
+        assertNotNull(loaded);
+        assertEquals(1, loaded.size());
+        assertTrue(loaded.mightContain("79311000003"));
+        assertFalse(loaded.mightContain("79311000004"));
+
+        // тот же размер и то же время изменения, но другое содержимое
+        byte[] bytes = Files.readAllBytes(file);
+        FileTime modified = Files.getLastModifiedTime(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        Files.setLastModifiedTime(file, modified);
+        assertNull(new PhonebookStorage(file).loadNumberFilter());
+
+        storage.save(createContacts(11));
+        assertNull(storage.loadNumberFilter());
+    }
+}
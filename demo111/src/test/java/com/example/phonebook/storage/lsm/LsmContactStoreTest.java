@@ -0,0 +1,102 @@
+package com.example.phonebook.storage.lsm;
+
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.model.PhoneNumber;
+import com.example.phonebook.model.PhoneType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для класса {@link LsmContactStore}.
+ * <p>
+ * Проверяются:
+ * <ul>
+ *     <li>восстановление таблицы в памяти по журналу без закрытия хранилища;</li>
+ *     <li>чтение ключей из нескольких сегментов и их слияние;</li>
+ *     <li>обход диапазона ключей по порядку.</li>
+ * </ul>
+ */
+class LsmContactStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static Contact contact(String name, String number) {
+        Contact c = new Contact(name);
+        c.addPhone(new PhoneNumber(number, PhoneType.MOBILE));
+        return c;
+    }
+
+    /**
+     * Изменения, которые ещё не сброшены в сегмент, восстанавливаются
+     * из журнала при следующем открытии.
+     */
+    @Test
+    void walIsReplayedOnOpen() throws Exception {
+        LsmContactStore store = LsmContactStore.open(tempDir);
+        store.put("Иванов Иван", List.of(contact("Иванов Иван", "+79310000001"),
+                contact("Иванов Иван", "+79310000002")));
+        store.put("Петров Пётр", List.of(contact("Петров Пётр", "+79310000003")));
+        store.delete("Петров Пётр");
+        assertEquals(0, store.getSegmentCount());
+
+        // Хранилище не закрыто: имитируем аварийное завершение
+        LsmContactStore reopened = LsmContactStore.open(tempDir);
+        List<Contact> ivanov = reopened.get("Иванов Иван");
+        assertEquals(2, ivanov.size());
+        assertEquals("+79310000002", ivanov.get(1).getPhones().get(0).getNumber());
+        assertTrue(reopened.get("Петров Пётр").isEmpty());
+        reopened.close();
+    }
+
+    /**
+     * Ключи находятся в любом сегменте, перекрытые значения и удаления
+     * учитываются, а после слияния остаётся один сегмент с тем же содержимым.
+     */
+    @Test
+    void segmentsAreMergedByCompaction() throws Exception {
+        LsmContactStore store = new LsmContactStore(tempDir, 1, 100);
+        for (int i = 0; i < 40; i++) {
+            String name = String.format("Абонент %03d", i);
+            store.put(name, List.of(contact(name, "+7931" + (1000000 + i))));
+        }
+        store.put("Абонент 005", List.of(contact("Абонент 005", "+79990000005")));
+        store.delete("Абонент 007");
+        assertEquals(42, store.getSegmentCount());
+
+        store.compact();
+        assertEquals(1, store.getSegmentCount());
+        store.close();
+
+        LsmContactStore reopened = new LsmContactStore(tempDir, 1, 100);
+        assertEquals("+79990000005", reopened.get("Абонент 005").get(0).getPhones().get(0).getNumber());
+        assertTrue(reopened.get("Абонент 007").isEmpty());
+        assertEquals("+79311000039", reopened.get("Абонент 039").get(0).getPhones().get(0).getNumber());
+        assertEquals(39, reopened.snapshot().size());
+        reopened.close();
+    }
+
+    /**
+     * Обход возвращает ключи диапазона по возрастанию, объединяя
+     * таблицу в памяти и сегменты.
+     */
+    @Test
+    void scanReturnsRangeInKeyOrder() throws Exception {
+        LsmContactStore store = new LsmContactStore(tempDir, 256, 100);
+        for (String name : List.of("Д", "Б", "Е", "А", "Г", "В")) {
+            store.put(name, List.of(contact(name, "+79310000000")));
+        }
+        assertTrue(store.getSegmentCount() > 0);
+
+        List<String> keys = new ArrayList<>();
+        store.scan("Б", "Е", (key, contacts) -> keys.add(key));
+        assertEquals(List.of("Б", "В", "Г", "Д"), keys);
+        store.close();
+    }
+}
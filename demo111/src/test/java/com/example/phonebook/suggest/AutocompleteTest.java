@@ -0,0 +1,162 @@
+package com.example.phonebook.suggest;
+
+import com.example.phonebook.index.ContactIndex;
+import com.example.phonebook.index.IndexedContact;
+import com.example.phonebook.model.Contact;
+import com.example.phonebook.model.PhoneNumber;
+import com.example.phonebook.model.PhoneType;
+import com.example.phonebook.service.PhonebookService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты автодополнения: {@link SuggestionTrie} и {@link Autocomplete}.
+ * <p>
+ * Проверяются:
+ * <ul>
+ *     <li>совпадение готовых лучших вариантов узлов с полным перебором
+ *     при добавлении, удалении и росте счётчиков;</li>
+ *     <li>ранжирование по обращениям и подстановка варианта в строку поиска;</li>
+ *     <li>учёт открытия контакта и определения номера в сервисе.</li>
+ * </ul>
+ */
+class AutocompleteTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * После случайных изменений ответ дерева для любого префикса совпадает
+     * с сортировкой всех подходящих вариантов.
+     */
+    @Test
+    void trieMatchesBruteForce() {
+        Random random = new Random(11);
+        SuggestionTrie trie = new SuggestionTrie();
+        Map<String, SuggestionTrie.Term> terms = new HashMap<>();
+        for (int i = 0; i < 3_000; i++) {
+            String key = randomKey(random);
+            SuggestionTrie.Term term = terms.get(key);
+            int action = random.nextInt(10);
+            if (term == null) {
+                term = new SuggestionTrie.Term(key, key, Suggestion.Kind.NAME);
+                term.contacts = 1 + random.nextInt(3);
+                terms.put(key, term);
+                trie.insert(term, i < 1_000);
+            } else if (action < 6) {
+                term.lookups += 1 + random.nextInt(5);
+                trie.increased(term);
+            } else if (action < 8) {
+                term.contacts = Math.max(1, term.contacts - 1);
+                term.lookups = term.lookups / 2;
+                trie.decreased(term);
+            } else {
+                terms.remove(key);
+                trie.delete(term);
+            }
+            if (i == 999) {
+                // первая тысяча — массовая загрузка
+                trie.recomputeAll();
+            }
+        }
+
+        for (String prefix : List.of("", "а", "б", "аб", "ба", "абв", "вв", "аааа", "в", "бвба")) {
+            List<SuggestionTrie.Term> expected = new ArrayList<>();
+            for (SuggestionTrie.Term t : terms.values()) {
+                if (t.key.startsWith(prefix)) {
+                    expected.add(t);
+                }
+            }
+            expected.sort(SuggestionTrie.RANK);
+            expected = expected.subList(0, Math.min(SuggestionTrie.TOP_K, expected.size()));
+            assertEquals(expected, trie.top(prefix, SuggestionTrie.TOP_K), prefix);
+        }
+    }
+
+    /**
+     * Варианты ранжируются по обращениям, затем по числу контактов;
+     * слово подставляется вместо последнего слова строки, номер — вместо всей строки.
+     */
+    @Test
+    void ranksByLookupsAndAppliesSuggestion() {
+        ContactIndex index = new ContactIndex();
+        IndexedContact ivanov = index.add(contact("Иванов Иван", "+7 (495) 111-22-33"));
+        IndexedContact ivanova = index.add(contact("Иванова Анна", "+7 (495) 111-44-55"));
+        index.add(contact("Иванов Пётр", "+7 (812) 000-00-01"));
+        Autocomplete autocomplete = new Autocomplete();
+        autocomplete.rebuild(index.byInsertion(-1));
+
+        assertEquals(List.of("Иванов", "Иван", "Иванова"), texts(autocomplete.suggest("ив", 5)));
+
+        autocomplete.recordLookup(ivanova);
+        List<Suggestion> suggestions = autocomplete.suggest("Петров ив", 2);
+        assertEquals(List.of("Иванова", "Иванов"), texts(suggestions));
+        assertEquals(1, suggestions.get(0).getLookupCount());
+        assertEquals(2, suggestions.get(1).getContactCount());
+        assertEquals("Петров Иванова", suggestions.get(0).applyTo("Петров ив"));
+
+        autocomplete.recordLookup("74951114455");
+        List<Suggestion> numbers = autocomplete.suggest("8 (495", 5);
+        assertEquals(List.of("+7 (495) 111-44-55", "+7 (495) 111-22-33"), texts(numbers));
+        assertEquals("+7 (495) 111-44-55", numbers.get(0).applyTo("8 (495"));
+
+        autocomplete.remove(ivanov);
+        assertEquals(List.of("Иванова", "Иванов"), texts(autocomplete.suggest("иван", 5)));
+        assertEquals(1, autocomplete.suggest("иванов", 5).get(1).getContactCount());
+        assertTrue(autocomplete.suggest("", 5).isEmpty());
+        assertTrue(autocomplete.suggest("я", 5).isEmpty());
+    }
+
+    /**
+     * Сервис поднимает в вариантах открытые контакты и определённые номера
+     * и следит за изменениями справочника.
+     */
+    @Test
+    void serviceRecordsLookups() {
+        PhonebookService service = new PhonebookService(tempDir.resolve("phonebook.bin"));
+        Contact smirnov = contact("Смирнов Алексей", "+7 (931) 922-23-22");
+        Contact smirnova = contact("Смирнова Мария", "+7 (931) 922-00-00");
+        service.addContact(smirnov);
+        service.addContact(smirnova);
+
+        assertEquals("Смирнов", service.suggest("смир", 1).get(0).getText());
+        service.recordLookup(smirnova);
+        assertEquals("Смирнова", service.suggest("смир", 1).get(0).getText());
+
+        assertEquals("+7 (931) 922-00-00", service.suggest("7931", 1).get(0).getText());
+        service.lookupNumber("89319222322");
+        service.lookupNumber("89319222322");
+        assertEquals("+7 (931) 922-23-22", service.suggest("7931", 1).get(0).getText());
+
+        service.removeContact(smirnova);
+        assertEquals(List.of("Смирнов"), texts(service.suggest("смир", 5)));
+    }
+
+    private static String randomKey(Random random) {
+        int length = 1 + random.nextInt(5);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('а' + random.nextInt(3)));
+        }
+        return sb.toString();
+    }
+
+    private static Contact contact(String name, String number) {
+        Contact c = new Contact(name);
+        c.addPhone(new PhoneNumber(number, PhoneType.MOBILE));
+        return c;
+    }
+
+    private static List<String> texts(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::getText).toList();
+    }
+}